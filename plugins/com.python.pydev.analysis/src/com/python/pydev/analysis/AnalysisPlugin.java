@@ -20,6 +20,7 @@ import org.python.pydev.core.ICompletionCache;
 import org.python.pydev.core.IDefinition;
 import org.python.pydev.core.IModule;
 import org.python.pydev.core.IPythonNature;
+import org.python.pydev.builder.pep8.Pep8InterpretersPool;
 import org.python.pydev.core.bundle.ImageCache;
 import org.python.pydev.editor.codecompletion.revisited.CompletionStateFactory;
 import org.python.pydev.editor.codecompletion.revisited.visitors.Definition;
@@ -103,6 +104,7 @@ public class AnalysisPlugin extends AbstractUIPlugin {
      * This method is called when the plug-in is stopped
      */
     public void stop(BundleContext context) throws Exception {
+        Pep8InterpretersPool.disposeCurrent();
         super.stop(context);
         plugin = null;
     }
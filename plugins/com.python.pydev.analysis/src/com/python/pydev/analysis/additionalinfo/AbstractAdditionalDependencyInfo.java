@@ -21,6 +21,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -36,12 +37,14 @@ import org.python.pydev.core.Tuple3;
 import org.python.pydev.core.cache.CompleteIndexKey;
 import org.python.pydev.core.cache.CompleteIndexValue;
 import org.python.pydev.core.cache.DiskCache;
+import org.python.pydev.core.concurrency.ParallelRunner;
 import org.python.pydev.core.docutils.PySelection;
 import org.python.pydev.core.docutils.StringUtils;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.codecompletion.revisited.PyPublicTreeMap;
 import org.python.pydev.editor.codecompletion.revisited.PythonPathHelper;
 import org.python.pydev.logging.DebugSettings;
+import org.python.pydev.parser.fastparser.FastDefinitionsParser;
 import org.python.pydev.parser.jython.SimpleNode;
 
 import com.aptana.shared_core.callbacks.ICallback;
@@ -78,6 +81,14 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
      */
     public DiskCache completeIndex;
 
+    /**
+     * Inverted index from the tokens to the modules which contain them (it's recreated lazily for the modules
+     * whose time changed when getModulesWithToken is called).
+     * 
+     * Note that the values in the completeIndex are no longer used (only its keys).
+     */
+    protected InvertedTokensIndex tokensIndex = new InvertedTokensIndex();
+
     /**
      * default constructor
      * @throws MisconfigurationException 
@@ -165,6 +176,7 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
             } catch (NullPointerException e) {
                 //that's ok... because it might be called before actually having any values
             }
+            tokensIndex.clear();
         }
     }
 
@@ -213,9 +225,56 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
             }
         }
 
+        applyKeysAndSave(newKeys, removedKeys);
+    }
+
+    /**
+     * Updates the info only for the given modules (i.e.: when a package is installed in the pythonpath).
+     * 
+     * @param added the modules added or changed (the info of a module is only recreated if its time changed).
+     * @param removed the modules removed.
+     */
+    public void updateKeysIfNeededAndSave(Collection<ModulesKey> added, Collection<ModulesKey> removed) {
+        Map<CompleteIndexKey, CompleteIndexKey> keys = this.completeIndex.keys();
+
+        ArrayList<ModulesKey> newKeys = new ArrayList<ModulesKey>();
+        ArrayList<ModulesKey> removedKeys = new ArrayList<ModulesKey>();
+
+        //temporary
+        CompleteIndexKey tempKey = new CompleteIndexKey((ModulesKey) null);
+
+        for (ModulesKey next : removed) {
+            tempKey.key = next;
+            if (keys.containsKey(tempKey)) {
+                removedKeys.add(next);
+            }
+        }
+
+        for (ModulesKey next : added) {
+            tempKey.key = next;
+            CompleteIndexKey completeIndexKey = keys.get(tempKey);
+            if (PythonPathHelper.canAddAstInfoFor(next)) {
+                if (completeIndexKey == null || completeIndexKey.lastModified != next.file.lastModified()) {
+                    newKeys.add(next);
+                }
+            } else if (completeIndexKey != null) {
+                removedKeys.add(next);
+            }
+        }
+
+        applyKeysAndSave(newKeys, removedKeys);
+    }
+
+    private void applyKeysAndSave(List<ModulesKey> newKeys, List<ModulesKey> removedKeys) {
         boolean hasNew = newKeys.size() != 0;
         boolean hasRemoved = removedKeys.size() != 0;
 
+        if (hasRemoved) {
+            for (ModulesKey removedKey : removedKeys) {
+                this.removeInfoFromModule(removedKey.name, false);
+            }
+        }
+
         if (hasNew) {
             for (ModulesKey newKey : newKeys) {
                 try {
@@ -226,12 +285,6 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
             }
         }
 
-        if (hasRemoved) {
-            for (ModulesKey removedKey : removedKeys) {
-                this.removeInfoFromModule(removedKey.name, false);
-            }
-        }
-
         if (hasNew || hasRemoved) {
             if (DebugSettings.DEBUG_INTERPRETER_AUTO_UPDATE) {
                 Log.toLogFile(this,
@@ -243,7 +296,6 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
 
     @Override
     public List<ModulesKey> getModulesWithToken(String token, IProgressMonitor monitor) {
-        FastStringBuffer temp = new FastStringBuffer();
         ArrayList<ModulesKey> ret = new ArrayList<ModulesKey>();
         if (monitor == null) {
             monitor = new NullProgressMonitor();
@@ -257,164 +309,201 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                 throw new RuntimeException(com.aptana.shared_core.string.StringUtils.format("Token: %s is not a valid token to search for.", token));
             }
         }
-        synchronized (lock) {
-            FastStringBuffer bufProgress = new FastStringBuffer();
-            //Note that this operation is not as fast as the others, as it relies on a cache that is optimized
-            //for space and not for speed (but still, should be faster than having to do a text-search to know the 
-            //tokens when the cache is available).
+        try {
+            //Only the modules whose time changed since they were indexed are actually read (the others are 
+            //gotten from the inverted index with a single lookup).
+            Map<CompleteIndexKey, CompleteIndexKey> keys;
+            List<ModuleToCheck> toCheck;
+            synchronized (lock) {
+                keys = completeIndex.keys();
+                toCheck = new ArrayList<ModuleToCheck>(keys.size());
+                for (CompleteIndexKey indexKey : keys.values()) {
+                    toCheck.add(new ModuleToCheck(indexKey, tokensIndex.getIndexedTime(indexKey.key.name)));
+                }
+            }
 
-            Tuple<List<Tuple<CompleteIndexKey, CompleteIndexValue>>, Collection<CompleteIndexKey>> memoryInfo = completeIndex
-                    .getInMemoryInfo();
+            monitor.beginTask("Get modules with token", toCheck.size());
+            monitor.setTaskName("Searching modules with token: " + token);
 
-            long last = System.currentTimeMillis();
-            int worked = 0;
-            try {
-                monitor.beginTask("Get modules with token", memoryInfo.o1.size() + memoryInfo.o2.size());
-                for (Tuple<CompleteIndexKey, CompleteIndexValue> tup : memoryInfo.o1) {
-                    CompleteIndexKey indexKey = tup.o1;
-                    CompleteIndexValue obj = tup.o2;
-
-                    worked++;
-                    if (monitor.isCanceled()) {
-                        return ret;
-                    }
-                    long current = System.currentTimeMillis();
-                    if (last + 200 < current) {
-                        last = current;
-                        monitor.setTaskName(bufProgress.clear().append("Searching: ").append(indexKey.key.name)
-                                .toString());
-                        monitor.worked(worked);
-                    }
-                    check(indexKey, obj, temp, token, ret);
+            //Reading and tokenizing the changed modules is done in parallel and without holding the lock (so,
+            //other clients are not blocked while the files are read).
+            List<CheckResult> results = ParallelRunner.run(toCheck, new ICallback<CheckResult, ModuleToCheck>() {
+
+                public CheckResult call(ModuleToCheck arg) {
+                    return check(arg);
                 }
+            }, ParallelRunner.getDefaultParallelism(), monitor, "Get modules with token");
 
-                for (CompleteIndexKey indexKey : memoryInfo.o2) {
-                    worked++;
-                    if (monitor.isCanceled()) {
-                        return ret;
+            if (monitor.isCanceled()) {
+                return ret;
+            }
+
+            synchronized (lock) {
+                for (CheckResult result : results) {
+                    if (result != null) {
+                        apply(result);
                     }
-                    long current = System.currentTimeMillis();
-                    if (last + 200 < current) {
-                        last = current;
-                        monitor.setTaskName(bufProgress.clear().append("Searching: ").append(indexKey.key.name)
-                                .toString());
-                        monitor.worked(worked);
+                }
+
+                ArrayList<String> moduleNames = new ArrayList<String>();
+                tokensIndex.getModulesWithToken(token, moduleNames);
+                for (String moduleName : moduleNames) {
+                    CompleteIndexKey indexKey = keys.get(new CompleteIndexKey(moduleName));
+                    if (indexKey != null) {
+                        ret.add(indexKey.key);
                     }
-                    check(indexKey, null, temp, token, ret);
                 }
-            } finally {
-                monitor.done();
             }
+        } finally {
+            monitor.done();
         }
         return ret;
     }
 
-    private void check(CompleteIndexKey indexKey, CompleteIndexValue obj, FastStringBuffer temp, String token,
-            ArrayList<ModulesKey> ret) {
-        if (obj == null) {
-            obj = completeIndex.getObj(indexKey);
+    /**
+     * A module to be checked in getModulesWithToken (with the time it had in the tokens index when the check
+     * started).
+     */
+    private static final class ModuleToCheck {
+
+        private final CompleteIndexKey indexKey;
+        private final long indexedTime;
+
+        private ModuleToCheck(CompleteIndexKey indexKey, long indexedTime) {
+            this.indexKey = indexKey;
+            this.indexedTime = indexedTime;
         }
-        boolean canAddAstInfoFor = PythonPathHelper.canAddAstInfoFor(indexKey.key);
-        if (obj == null) {
-            if (canAddAstInfoFor) {
-                try {
-                    //Should be there (recreate the entry in the index and in the actual AST)
-                    this.addAstInfo(indexKey.key, true);
-                } catch (Exception e) {
-                    Log.log(e);
-                }
+    }
 
-                obj = new CompleteIndexValue();
-            } else {
-                if (DEBUG) {
-                    System.out.println("Removing (file does not exist or is not a valid source module): "
-                            + indexKey.key.name);
-                }
-                this.removeInfoFromModule(indexKey.key.name, true);
-                return;
-            }
+    /**
+     * What has to be changed in the indexes for a module (computed without holding the lock and applied
+     * later on with the lock held).
+     */
+    private static final class CheckResult {
+
+        private final ModulesKey key;
+
+        /**
+         * If true, the module must be removed (and the other fields are not used).
+         */
+        private final boolean remove;
+
+        private final long lastModified;
+        private final Set<String> tokens;
+
+        /**
+         * If not null, the ast info for the module must be recreated with this node.
+         */
+        private final SimpleNode node;
+
+        private CheckResult(ModulesKey key, boolean remove, long lastModified, Set<String> tokens, SimpleNode node) {
+            this.key = key;
+            this.remove = remove;
+            this.lastModified = lastModified;
+            this.tokens = tokens;
+            this.node = node;
         }
+    }
 
-        long lastModified = indexKey.key.file.lastModified();
+    /**
+     * Checks whether the tokens for the given module are up to date in the inverted index (if they're not, the
+     * module contents are read and tokenized).
+     * 
+     * Note that it's called from multiple threads without the lock held, so, it must not access the indexes.
+     * 
+     * @return null if the module is up to date or the changes that must be applied to the indexes otherwise.
+     */
+    private CheckResult check(ModuleToCheck moduleToCheck) {
+        CompleteIndexKey indexKey = moduleToCheck.indexKey;
+        ModulesKey key = indexKey.key;
+        boolean canAddAstInfoFor = PythonPathHelper.canAddAstInfoFor(key);
+        long lastModified = key.file != null ? key.file.lastModified() : 0;
         if (lastModified == 0 || !canAddAstInfoFor) {
             //File no longer exists or is not a valid source module.
             if (DEBUG) {
                 System.out.println("Removing (file no longer exists or is not a valid source module): "
-                        + indexKey.key.name + " indexKey.key.file: " + indexKey.key.file + " exists: "
-                        + indexKey.key.file.exists());
+                        + key.name + " indexKey.key.file: " + key.file);
             }
-            this.removeInfoFromModule(indexKey.key.name, true);
-            return;
+            return new CheckResult(key, true, 0, null, null);
         }
 
         //if it got here, it must be a valid source module!
+        if (moduleToCheck.indexedTime == lastModified) {
+            return null;
+        }
 
-        if (obj.entries != null) {
-            if (lastModified != indexKey.lastModified) {
-                obj = new CompleteIndexValue();
-                try {
-                    //Recreate the entry on the new time (recreate the entry in the index and in the actual AST)
-                    this.addAstInfo(indexKey.key, true);
-                } catch (Exception e) {
-                    Log.log(e);
-                }
+        FastStringBuffer buf;
+        try {
+            if (key instanceof ModulesKeyForZip) {
+                ModulesKeyForZip modulesKeyForZip = (ModulesKeyForZip) key;
+                buf = (FastStringBuffer) FileUtilsFileBuffer.getCustomReturnFromZip(modulesKeyForZip.file,
+                        modulesKeyForZip.zipModulePath, FastStringBuffer.class);
+            } else {
+                buf = (FastStringBuffer) FileUtils.getFileContentsCustom(key.file, FastStringBuffer.class);
             }
+        } catch (Exception e) {
+            Log.log(e);
+            return null;
         }
 
-        //The actual values are always recreated lazily (in the case that it's really needed).
-        if (obj.entries == null) {
-            FastStringBuffer buf;
-            ModulesKey key = indexKey.key;
+        SimpleNode node = null;
+        if (moduleToCheck.indexedTime != -1
+                || (indexKey.lastModified != 0 && indexKey.lastModified != lastModified)) {
+            //Recreate the entry on the new time (recreate the entry in the index and in the actual AST)
             try {
-                if (key instanceof ModulesKeyForZip) {
-                    ModulesKeyForZip modulesKeyForZip = (ModulesKeyForZip) key;
-                    buf = (FastStringBuffer) FileUtilsFileBuffer.getCustomReturnFromZip(modulesKeyForZip.file,
-                            modulesKeyForZip.zipModulePath, FastStringBuffer.class);
-                } else {
-                    buf = (FastStringBuffer) FileUtils.getFileContentsCustom(key.file, FastStringBuffer.class);
-                }
+                node = FastDefinitionsParser.parse(buf.getInternalCharsArray(), key.file.getName(), buf.length());
             } catch (Exception e) {
                 Log.log(e);
-                return;
-            }
-
-            HashSet<String> set = new HashSet<String>();
-            temp = temp.clear();
-            int length = buf.length();
-            for (int i = 0; i < length; i++) {
-                char c = buf.charAt(i);
-                if (Character.isJavaIdentifierStart(c)) {
-                    temp.clear();
-                    temp.append(c);
-                    i++;
-                    for (; i < length; i++) {
-                        c = buf.charAt(i);
-                        if (c == ' ' || c == '\t') {
-                            break; //Fast forward through the most common case...
-                        }
-                        if (Character.isJavaIdentifierPart(c)) {
-                            temp.append(c);
-                        } else {
-                            break;
-                        }
+            }
+        }
+
+        HashSet<String> set = new HashSet<String>();
+        FastStringBuffer temp = new FastStringBuffer();
+        int length = buf.length();
+        for (int i = 0; i < length; i++) {
+            char c = buf.charAt(i);
+            if (Character.isJavaIdentifierStart(c)) {
+                temp.clear();
+                temp.append(c);
+                i++;
+                for (; i < length; i++) {
+                    c = buf.charAt(i);
+                    if (c == ' ' || c == '\t') {
+                        break; //Fast forward through the most common case...
                     }
-                    String str = temp.toString();
-                    if (PySelection.ALL_KEYWORD_TOKENS.contains(str)) {
-                        continue;
+                    if (Character.isJavaIdentifierPart(c)) {
+                        temp.append(c);
+                    } else {
+                        break;
                     }
-                    set.add(str);
                 }
+                String str = temp.toString();
+                if (PySelection.ALL_KEYWORD_TOKENS.contains(str)) {
+                    continue;
+                }
+                set.add(str);
             }
-
-            obj.entries = set;
-            indexKey.lastModified = lastModified;
-            completeIndex.add(indexKey, obj); //Serialize the new contents
         }
+        return new CheckResult(key, false, lastModified, set, node);
+    }
 
-        if (obj.entries != null && obj.entries.contains(token)) {
-            ret.add(indexKey.key);
+    /**
+     * Applies the changes computed in check() (must be called with the lock held).
+     */
+    private void apply(CheckResult result) {
+        ModulesKey key = result.key;
+        if (result.remove) {
+            this.removeInfoFromModule(key.name, true);
+            return;
+        }
+        if (result.node != null) {
+            this.addAstInfo(result.node, key, true);
         }
 
+        tokensIndex.addModule(key.name, result.lastModified, result.tokens);
+        CompleteIndexKey newIndexKey = new CompleteIndexKey(key);
+        newIndexKey.lastModified = result.lastModified;
+        completeIndex.add(newIndexKey, null);
     }
 
     @Override
@@ -428,7 +517,9 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                 addAstInfo = super.addAstInfo(node, key, generateDelta);
 
                 if (key.file != null) {
-                    completeIndex.add(new CompleteIndexKey(key), new CompleteIndexValue());
+                    //The tokens will be recreated when needed.
+                    tokensIndex.removeModule(key.name);
+                    completeIndex.add(new CompleteIndexKey(key), null);
                 }
 
             }
@@ -445,6 +536,7 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                 throw new AssertionError("The module name may not be null.");
             }
             completeIndex.remove(new CompleteIndexKey(moduleName));
+            tokensIndex.removeModule(moduleName);
             super.removeInfoFromModule(moduleName, generateDelta);
         }
     }
@@ -453,8 +545,10 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
     protected void saveTo(OutputStreamWriter writer, FastStringBuffer tempBuf, File pathToSave) throws IOException {
         synchronized (lock) {
             completeIndex.writeTo(tempBuf);
+            tempBuf.append("-- START TOKENS INDEX\n");
             writer.write(tempBuf.getInternalCharsArray(), 0, tempBuf.length());
             tempBuf.clear();
+            tokensIndex.saveTo(InvertedTokensIndex.getIndexFile(pathToSave));
 
             super.saveTo(writer, tempBuf, pathToSave);
         }
@@ -537,6 +631,7 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
             ObjectsPoolMap objectsPoolMap = new ObjectsPool.ObjectsPoolMap();
             if (string != null && string.startsWith("-- VERSION_")) {
                 Tuple tupWithResults = new Tuple(new Tuple3(null, null, null), null);
+                InvertedTokensIndex loadedTokensIndex = null;
                 Tuple3 superTupWithResults = (Tuple3) tupWithResults.o1;
                 //tupWithResults.o2 = DiskCache
                 if (string.toString().equals(expected)) {
@@ -557,6 +652,13 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                                         superTupWithResults.o2 = TreeIO.loadTreeFrom(bufferedReader, dictionary,
                                                 tempBuf.clear(), objectsPoolMap);
 
+                                    } else if (line.startsWith("-- START BINARY TREES")) {
+                                        Tuple<PyPublicTreeMap<String, Set<IInfo>>, PyPublicTreeMap<String, Set<IInfo>>> trees = TreeIO
+                                                .loadTreesFromBinaryFile(TreeIO.getBinaryTreesFile(file),
+                                                        objectsPoolMap);
+                                        superTupWithResults.o1 = trees.o1;
+                                        superTupWithResults.o2 = trees.o2;
+
                                     } else if (line.startsWith("-- START DICTIONARY")) {
                                         dictionary = TreeIO.loadDictFrom(bufferedReader, tempBuf.clear(),
                                                 objectsPoolMap);
@@ -564,6 +666,10 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                                     } else if (line.startsWith("-- START DISKCACHE")) {
                                         tupWithResults.o2 = DiskCache.loadFrom(bufferedReader, objectsPoolMap);
 
+                                    } else if (line.startsWith("-- START TOKENS INDEX")) {
+                                        loadedTokensIndex = InvertedTokensIndex.loadFrom(InvertedTokensIndex
+                                                .getIndexFile(file));
+
                                     } else if (line.startsWith("-- VERSION_")) {
                                         if (!line.endsWith("3")) {
                                             throw new RuntimeException("Expected the version to be 3.");
@@ -583,6 +689,9 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                     }
 
                     restoreSavedInfo(tupWithResults);
+                    if (loadedTokensIndex != null) {
+                        tokensIndex = loadedTokensIndex;
+                    }
                     //                    timer.printDiff("Time taken");
                     return tupWithResults;
                 } else {
@@ -611,6 +720,7 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
 
     protected void addInfoToModuleOnRestoreInsertCommand(Tuple<ModulesKey, List<IInfo>> data) {
         completeIndex.add(new CompleteIndexKey(data.o1), null);
+        tokensIndex.removeModule(data.o1.name);
 
         //current way (saves a list of iinfo)
         for (Iterator<IInfo> it = data.o2.iterator(); it.hasNext();) {
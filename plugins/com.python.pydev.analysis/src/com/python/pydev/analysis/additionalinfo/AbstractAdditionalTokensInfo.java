@@ -19,11 +19,10 @@ import java.io.ObjectInputStream;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
@@ -85,11 +84,6 @@ import com.aptana.shared_core.structure.Tuple;
  */
 public abstract class AbstractAdditionalTokensInfo {
 
-    /**
-     * this is the number of initials that is used for indexing
-     */
-    public static final int NUMBER_OF_INITIALS_TO_INDEX = 3;
-
     /**
      * Do you want to debug this class?
      */
@@ -107,7 +101,8 @@ public abstract class AbstractAdditionalTokensInfo {
 
     /**
      * indexes used so that we can access the information faster - it is ordered through a tree map, and should be
-     * very fast to access given its initials.
+     * very fast to access given a prefix (the key is the full name lowercased, so, getting the tokens starting with 
+     * some qualifier is a range in the tree and no further filtering is needed).
      * 
      * It contains only top/level information for a module
      * 
@@ -120,6 +115,16 @@ public abstract class AbstractAdditionalTokensInfo {
      */
     protected SortedMap<String, Set<IInfo>> innerInitialsToInfo = new PyPublicTreeMap<String, Set<IInfo>>();
 
+    /**
+     * indexes from the CamelCase initials of a name to its info (i.e.: OrderedSetEntry and ordered_set_entry are both
+     * indexed as 'ose'), so that 'OSE' can find those. Only names with at least 2 parts are indexed.
+     * 
+     * These maps are not persisted (they're recreated from the maps above when the info is restored).
+     */
+    protected SortedMap<String, Set<IInfo>> topLevelCamelCaseToInfo = new PyPublicTreeMap<String, Set<IInfo>>();
+
+    protected SortedMap<String, Set<IInfo>> innerCamelCaseToInfo = new PyPublicTreeMap<String, Set<IInfo>>();
+
     /**
      * Should be used before re-creating the info, so that we have enough memory. 
      */
@@ -131,6 +136,8 @@ public abstract class AbstractAdditionalTokensInfo {
             if (innerInitialsToInfo != null) {
                 innerInitialsToInfo.clear();
             }
+            topLevelCamelCaseToInfo.clear();
+            innerCamelCaseToInfo.clear();
         }
     }
 
@@ -164,7 +171,9 @@ public abstract class AbstractAdditionalTokensInfo {
     private final Filter startingWithFilter = new Filter() {
 
         public boolean doCompare(String lowerCaseQual, IInfo info) {
-            return doCompare(lowerCaseQual, info.getName());
+            //The infos passed are already the ones in the range for the lowercased qualifier (so, there's no need
+            //to check it again).
+            return true;
         }
 
         public boolean doCompare(String qualifier, String infoName) {
@@ -190,8 +199,9 @@ public abstract class AbstractAdditionalTokensInfo {
     protected void add(IInfo info, int doOn) {
         synchronized (lock) {
             String name = info.getName();
-            String initials = getInitials(name);
+            String initials = getIndexKey(name);
             SortedMap<String, Set<IInfo>> initialsToInfo;
+            SortedMap<String, Set<IInfo>> camelCaseToInfo;
 
             if (doOn == TOP_LEVEL) {
                 if (info.getPath() != null && info.getPath().length() > 0) {
@@ -199,6 +209,7 @@ public abstract class AbstractAdditionalTokensInfo {
                             "Error: the info being added is added as an 'top level' info, but has path. Info:" + info);
                 }
                 initialsToInfo = topLevelInitialsToInfo;
+                camelCaseToInfo = topLevelCamelCaseToInfo;
 
             } else if (doOn == INNER) {
                 if (info.getPath() == null || info.getPath().length() == 0) {
@@ -207,24 +218,62 @@ public abstract class AbstractAdditionalTokensInfo {
                                     + info);
                 }
                 initialsToInfo = innerInitialsToInfo;
+                camelCaseToInfo = innerCamelCaseToInfo;
 
             } else {
                 throw new RuntimeException("List to add is invalid: " + doOn);
             }
             Set<IInfo> listForInitials = getAndCreateListForInitials(initials, initialsToInfo);
             listForInitials.add(info);
+
+            String camelCaseInitials = getCamelCaseInitials(name);
+            if (camelCaseInitials != null) {
+                getAndCreateListForInitials(camelCaseInitials, camelCaseToInfo).add(info);
+            }
         }
     }
 
     /**
-     * @param name the name from where we want to get the initials
-     * @return the initials for the name
+     * @param name the name from where we want to get the key
+     * @return the key used to index the name (the name lowercased)
      */
-    protected String getInitials(String name) {
-        if (name.length() < NUMBER_OF_INITIALS_TO_INDEX) {
-            return name;
+    protected String getIndexKey(String name) {
+        return name.toLowerCase();
+    }
+
+    /**
+     * @return the lowercased initials of each part of a CamelCase or underscore-separated name (i.e.: 
+     * OrderedSetEntry and ordered_set_entry both return 'ose') or null if the name doesn't have at least 2 parts.
+     */
+    public static String getCamelCaseInitials(String name) {
+        FastStringBuffer buf = null;
+        int len = name.length();
+        char prev = '_';
+        for (int i = 0; i < len; i++) {
+            char c = name.charAt(i);
+            boolean startsPart = false;
+            if (c != '_') {
+                if (prev == '_') {
+                    startsPart = true;
+
+                } else if (Character.isUpperCase(c)) {
+                    //HTTPServer: H and S start parts.
+                    startsPart = !Character.isUpperCase(prev)
+                            || (i + 1 < len && Character.isLowerCase(name.charAt(i + 1)));
+                }
+            }
+            if (startsPart) {
+                if (buf == null) {
+                    buf = new FastStringBuffer(len);
+                }
+                buf.append(Character.toLowerCase(c));
+            }
+            prev = c;
+        }
+        if (buf == null || buf.length() < 2) {
+            return null;
         }
-        return name.substring(0, NUMBER_OF_INITIALS_TO_INDEX).toLowerCase();
+        return buf.toString();
     }
 
     /**
@@ -235,12 +284,67 @@ public abstract class AbstractAdditionalTokensInfo {
     protected Set<IInfo> getAndCreateListForInitials(String initials, SortedMap<String, Set<IInfo>> initialsToInfo) {
         Set<IInfo> lInfo = initialsToInfo.get(initials);
         if (lInfo == null) {
-            lInfo = new HashSet<IInfo>();
+            //Most names are unique, so, start small.
+            lInfo = new HashSet<IInfo>(2);
             initialsToInfo.put(initials, lInfo);
         }
         return lInfo;
     }
 
+    /**
+     * Makes sure that the trees are indexed with the current keys (i.e.: info saved in a previous format was indexed
+     * by the first 3 chars of the name) and recreates the CamelCase indexes (which are not persisted).
+     */
+    protected void reindex() {
+        synchronized (lock) {
+            topLevelInitialsToInfo = reindexIfNeeded(topLevelInitialsToInfo);
+            innerInitialsToInfo = reindexIfNeeded(innerInitialsToInfo);
+
+            topLevelCamelCaseToInfo.clear();
+            innerCamelCaseToInfo.clear();
+            fillCamelCaseIndex(topLevelInitialsToInfo, topLevelCamelCaseToInfo);
+            fillCamelCaseIndex(innerInitialsToInfo, innerCamelCaseToInfo);
+        }
+    }
+
+    private SortedMap<String, Set<IInfo>> reindexIfNeeded(SortedMap<String, Set<IInfo>> initialsToInfo) {
+        boolean needsReindex = false;
+        for (Entry<String, Set<IInfo>> entry : initialsToInfo.entrySet()) {
+            Iterator<IInfo> it = entry.getValue().iterator();
+            if (it.hasNext()) {
+                String key = entry.getKey();
+                String name = it.next().getName();
+                if (key.length() != name.length() || !key.equals(getIndexKey(name))) {
+                    needsReindex = true;
+                    break;
+                }
+            }
+        }
+        if (!needsReindex) {
+            return initialsToInfo;
+        }
+
+        SortedMap<String, Set<IInfo>> newInitialsToInfo = new PyPublicTreeMap<String, Set<IInfo>>();
+        for (Set<IInfo> set : initialsToInfo.values()) {
+            for (IInfo info : set) {
+                getAndCreateListForInitials(getIndexKey(info.getName()), newInitialsToInfo).add(info);
+            }
+        }
+        return newInitialsToInfo;
+    }
+
+    private void fillCamelCaseIndex(SortedMap<String, Set<IInfo>> initialsToInfo,
+            SortedMap<String, Set<IInfo>> camelCaseToInfo) {
+        for (Set<IInfo> set : initialsToInfo.values()) {
+            for (IInfo info : set) {
+                String camelCaseInitials = getCamelCaseInitials(info.getName());
+                if (camelCaseInitials != null) {
+                    getAndCreateListForInitials(camelCaseInitials, camelCaseToInfo).add(info);
+                }
+            }
+        }
+    }
+
     private IInfo addAssignTargets(ASTEntry entry, String moduleName, int doOn, String path, boolean lastIsMethod) {
         String rep = NodeUtils.getFullRepresentationString(entry.node);
         if (lastIsMethod) {
@@ -538,6 +642,8 @@ public abstract class AbstractAdditionalTokensInfo {
         synchronized (lock) {
             removeInfoFromMap(moduleName, topLevelInitialsToInfo);
             removeInfoFromMap(moduleName, innerInitialsToInfo);
+            removeInfoFromMap(moduleName, topLevelCamelCaseToInfo);
+            removeInfoFromMap(moduleName, innerCamelCaseToInfo);
         }
 
     }
@@ -550,7 +656,8 @@ public abstract class AbstractAdditionalTokensInfo {
         Iterator<Set<IInfo>> itListOfInfo = initialsToInfo.values().iterator();
         while (itListOfInfo.hasNext()) {
 
-            Iterator<IInfo> it = itListOfInfo.next().iterator();
+            Set<IInfo> set = itListOfInfo.next();
+            Iterator<IInfo> it = set.iterator();
             while (it.hasNext()) {
 
                 IInfo info = it.next();
@@ -560,6 +667,10 @@ public abstract class AbstractAdditionalTokensInfo {
                     }
                 }
             }
+            if (set.size() == 0) {
+                //The keys are the full names, so, don't leave empty entries behind.
+                itListOfInfo.remove();
+            }
         }
     }
 
@@ -581,6 +692,37 @@ public abstract class AbstractAdditionalTokensInfo {
         }
     }
 
+    /**
+     * Same as getTokensStartingWith, but stops adding to the result when it reaches maxResults.
+     */
+    public Collection<IInfo> getTokensStartingWith(String qualifier, int getWhat, Collection<IInfo> result,
+            int maxResults) {
+        synchronized (lock) {
+            return getWithFilter(qualifier, getWhat, startingWithFilter, true, result, maxResults);
+        }
+    }
+
+    /**
+     * @param qualifier the CamelCase initials we're looking for (i.e.: OSE will find OrderedSetEntry and
+     * ordered_set_entry).
+     * @return a list of info, all with CamelCase initials starting with the given qualifier
+     */
+    public Collection<IInfo> getTokensWithCamelCaseInitials(String qualifier, int getWhat,
+            Collection<IInfo> result, int maxResults) {
+        synchronized (lock) {
+            if (result == null) {
+                result = new ArrayList<IInfo>();
+            }
+            if ((getWhat & TOP_LEVEL) != 0) {
+                getWithFilter(qualifier, topLevelCamelCaseToInfo, result, startingWithFilter, true, maxResults);
+            }
+            if ((getWhat & INNER) != 0) {
+                getWithFilter(qualifier, innerCamelCaseToInfo, result, startingWithFilter, true, maxResults);
+            }
+            return result;
+        }
+    }
+
     public Collection<IInfo> getTokensEqualTo(String qualifier, int getWhat) {
         synchronized (lock) {
             return getWithFilter(qualifier, getWhat, equalsFilter, false, null);
@@ -595,16 +737,21 @@ public abstract class AbstractAdditionalTokensInfo {
 
     protected Collection<IInfo> getWithFilter(String qualifier, int getWhat, Filter filter, boolean useLowerCaseQual,
             Collection<IInfo> result) {
+        return getWithFilter(qualifier, getWhat, filter, useLowerCaseQual, result, Integer.MAX_VALUE);
+    }
+
+    protected Collection<IInfo> getWithFilter(String qualifier, int getWhat, Filter filter, boolean useLowerCaseQual,
+            Collection<IInfo> result, int maxResults) {
         synchronized (lock) {
             if (result == null) {
                 result = new ArrayList<IInfo>();
             }
 
             if ((getWhat & TOP_LEVEL) != 0) {
-                getWithFilter(qualifier, topLevelInitialsToInfo, result, filter, useLowerCaseQual);
+                getWithFilter(qualifier, topLevelInitialsToInfo, result, filter, useLowerCaseQual, maxResults);
             }
             if ((getWhat & INNER) != 0) {
-                getWithFilter(qualifier, innerInitialsToInfo, result, filter, useLowerCaseQual);
+                getWithFilter(qualifier, innerInitialsToInfo, result, filter, useLowerCaseQual, maxResults);
             }
             return result;
         }
@@ -614,24 +761,39 @@ public abstract class AbstractAdditionalTokensInfo {
      * @param qualifier
      * @param initialsToInfo this is where we are going to get the info from (currently: inner or top level list)
      * @param toks (out) the tokens will be added to this list
-     * @return
+     * @param useLowerCaseQual if true, all the entries whose key starts with the lowercased qualifier are checked, 
+     * otherwise, only the entry that matches the lowercased qualifier is checked.
+     * @param maxResults no more tokens are added after toks reaches this size.
      */
     protected void getWithFilter(String qualifier, SortedMap<String, Set<IInfo>> initialsToInfo,
-            Collection<IInfo> toks, Filter filter, boolean useLowerCaseQual) {
-        String initials = getInitials(qualifier);
+            Collection<IInfo> toks, Filter filter, boolean useLowerCaseQual, int maxResults) {
+        if (toks.size() >= maxResults) {
+            return;
+        }
+        String key = getIndexKey(qualifier);
         String qualToCompare = qualifier;
+        Collection<Set<IInfo>> values;
         if (useLowerCaseQual) {
-            qualToCompare = qualifier.toLowerCase();
-        }
+            qualToCompare = key;
+            //get all the names that start with the key
+            values = initialsToInfo.subMap(key, key + Character.MAX_VALUE).values();
 
-        //get until the end of the alphabet
-        SortedMap<String, Set<IInfo>> subMap = initialsToInfo.subMap(initials, initials + "z");
+        } else {
+            Set<IInfo> set = initialsToInfo.get(key);
+            if (set == null) {
+                return;
+            }
+            values = Collections.singleton(set);
+        }
 
-        for (Set<IInfo> listForInitials : subMap.values()) {
+        for (Set<IInfo> listForInitials : values) {
 
             for (IInfo info : listForInitials) {
                 if (filter.doCompare(qualToCompare, info)) {
                     toks.add(info);
+                    if (toks.size() >= maxResults) {
+                        return;
+                    }
                 }
             }
         }
@@ -725,24 +887,15 @@ public abstract class AbstractAdditionalTokensInfo {
                         + getAllTokens().size() + ") " + pathToSave);
             }
 
-            Map<String, Integer> dictionary = new HashMap<String, Integer>();
-            tempBuf.append("-- START TREE 1\n");
-            TreeIO.dumpTreeToBuffer(this.topLevelInitialsToInfo, tempBuf, dictionary);
-
-            tempBuf.append("-- START TREE 2\n");
-            TreeIO.dumpTreeToBuffer(this.innerInitialsToInfo, tempBuf, dictionary);
-
-            FastStringBuffer buf2 = new FastStringBuffer(50 * (dictionary.size() + 4));
-            TreeIO.dumpDictToBuffer(dictionary, buf2);
-
-            //Write the dictionary before the actual trees.
-            writer.write(buf2.getInternalCharsArray(), 0, buf2.length());
-            buf2 = null;
-
-            //Note: tried LZFFileInputStream from https://github.com/ning/compress
-            //and Snappy from https://github.com/dain/snappy checking to see if by writing less we'd
-            //get a better time but it got a bit slower (gzip was slowest, then snappy and the faster was LZFFileInputStream)
+            //The trees are saved in a binary format side by side with the text file (which only has a marker
+            //saying that it should be loaded). The text format (TreeIO.dumpTreeToBuffer) is still readable as
+            //a fallback when loading.
+            tempBuf.append("-- START BINARY TREES\n");
             writer.write(tempBuf.getInternalCharsArray(), 0, tempBuf.length());
+            tempBuf.clear();
+
+            TreeIO.dumpTreesToBinaryFile(TreeIO.getBinaryTreesFile(pathToSave), this.topLevelInitialsToInfo,
+                    this.innerInitialsToInfo);
         }
     }
 
@@ -760,6 +913,7 @@ public abstract class AbstractAdditionalTokensInfo {
 
             this.topLevelInitialsToInfo = (SortedMap<String, Set<IInfo>>) o1;
             this.innerInitialsToInfo = (SortedMap<String, Set<IInfo>>) o2;
+            reindex();
             if (readFromFile.o3 != null) {
                 //may be null in new format (where that's checked during load time).
                 if (AbstractAdditionalTokensInfo.version != (Integer) readFromFile.o3) {
@@ -224,10 +224,57 @@ public class AdditionalProjectInterpreterInfo extends AbstractAdditionalInfoWith
 
     public static List<IInfo> getTokensStartingWith(String qualifier, IPythonNature nature, int getWhat)
             throws MisconfigurationException {
+        return getTokensStartingWith(qualifier, nature, getWhat, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Same as getTokensStartingWith, but stops looking for tokens after maxResults are found (in all the
+     * infos).
+     */
+    public static List<IInfo> getTokensStartingWith(String qualifier, IPythonNature nature, int getWhat,
+            int maxResults) throws MisconfigurationException {
+        ArrayList<IInfo> ret = new ArrayList<IInfo>();
+        List<AbstractAdditionalTokensInfo> additionalInfo = getAdditionalInfo(nature);
+        for (AbstractAdditionalTokensInfo info : additionalInfo) {
+            if (ret.size() >= maxResults) {
+                break;
+            }
+            info.getTokensStartingWith(qualifier, getWhat, ret, maxResults);
+        }
+        return ret;
+    }
+
+    /**
+     * @return the tokens whose CamelCase initials start with the given qualifier (i.e.: OSE will find 
+     * OrderedSetEntry) or an empty list if the qualifier is not composed only by uppercase letters.
+     */
+    public static List<IInfo> getTokensWithCamelCaseInitials(String qualifier, IPythonNature nature, int getWhat)
+            throws MisconfigurationException {
+        return getTokensWithCamelCaseInitials(qualifier, nature, getWhat, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Same as getTokensWithCamelCaseInitials, but stops looking for tokens after maxResults are found (in all the
+     * infos).
+     */
+    public static List<IInfo> getTokensWithCamelCaseInitials(String qualifier, IPythonNature nature, int getWhat,
+            int maxResults) throws MisconfigurationException {
         ArrayList<IInfo> ret = new ArrayList<IInfo>();
+        int len = qualifier.length();
+        if (len < 2) {
+            return ret;
+        }
+        for (int i = 0; i < len; i++) {
+            if (!Character.isUpperCase(qualifier.charAt(i))) {
+                return ret;
+            }
+        }
         List<AbstractAdditionalTokensInfo> additionalInfo = getAdditionalInfo(nature);
         for (AbstractAdditionalTokensInfo info : additionalInfo) {
-            info.getTokensStartingWith(qualifier, getWhat, ret);
+            if (ret.size() >= maxResults) {
+                break;
+            }
+            info.getTokensWithCamelCaseInitials(qualifier, getWhat, ret, maxResults);
         }
         return ret;
     }
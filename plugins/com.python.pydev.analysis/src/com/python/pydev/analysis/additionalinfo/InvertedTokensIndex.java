@@ -0,0 +1,344 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * An inverted index from a token to the modules where that token appears (so that we can know the modules that
+ * have some token with a single lookup).
+ *
+ * Each module indexed receives an id (and the posting list of each token is a sorted list of those ids). When a
+ * module is removed or re-indexed, its previous id is just marked as removed (and is filtered when querying) and
+ * the index is compacted before being saved.
+ *
+ * Note that this class is not synchronized (clients must synchronize the access to it).
+ *
+ * @author Fabio
+ */
+public final class InvertedTokensIndex {
+
+    /**
+     * Magic header for the file ('PYTK').
+     */
+    private static final int MAGIC = 0x5059544B;
+
+    /**
+     * 1: module names + time, tokens with delta-encoded posting lists
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * A growable list of ints (sorted in ascending order as new ids are always bigger than the previous ones).
+     */
+    private static final class Postings {
+
+        private int[] ids;
+        private int size;
+
+        private Postings(int initialSize) {
+            ids = new int[initialSize];
+        }
+
+        private void add(int id) {
+            if (size == ids.length) {
+                int[] newIds = new int[size < 4 ? 4 : size * 2];
+                System.arraycopy(ids, 0, newIds, 0, size);
+                ids = newIds;
+            }
+            ids[size] = id;
+            size++;
+        }
+    }
+
+    /**
+     * The name of the module for each id (null if the id was removed).
+     */
+    private final List<String> idToModule = new ArrayList<String>();
+
+    /**
+     * The modification time of the module when it was indexed (for each id).
+     */
+    private long[] idToTime = new long[16];
+
+    /**
+     * Only the live ids are here.
+     */
+    private final Map<String, Integer> moduleToId = new HashMap<String, Integer>();
+
+    private final Map<String, Postings> tokenToPostings = new HashMap<String, Postings>();
+
+    private int removedIds;
+
+    /**
+     * Adds the tokens of the given module to the index (if the module was already indexed, its previous tokens are
+     * removed).
+     */
+    public void addModule(String moduleName, long lastModified, Set<String> tokens) {
+        removeModule(moduleName);
+
+        int id = idToModule.size();
+        idToModule.add(moduleName);
+        if (id == idToTime.length) {
+            long[] newTimes = new long[id * 2];
+            System.arraycopy(idToTime, 0, newTimes, 0, id);
+            idToTime = newTimes;
+        }
+        idToTime[id] = lastModified;
+        moduleToId.put(moduleName, id);
+
+        for (String token : tokens) {
+            Postings postings = tokenToPostings.get(token);
+            if (postings == null) {
+                postings = new Postings(1);
+                tokenToPostings.put(token, postings);
+            }
+            postings.add(id);
+        }
+    }
+
+    /**
+     * Marks the module as removed (it won't be returned anymore and will be removed from the posting lists when
+     * the index is compacted).
+     */
+    public void removeModule(String moduleName) {
+        Integer id = moduleToId.remove(moduleName);
+        if (id != null) {
+            idToModule.set(id, null);
+            removedIds++;
+        }
+    }
+
+    /**
+     * @return the modification time of the module when it was indexed or -1 if it's not indexed.
+     */
+    public long getIndexedTime(String moduleName) {
+        Integer id = moduleToId.get(moduleName);
+        if (id == null) {
+            return -1;
+        }
+        return idToTime[id];
+    }
+
+    /**
+     * Adds the names of the modules which have the given token to the passed collection.
+     */
+    public void getModulesWithToken(String token, Collection<String> moduleNames) {
+        Postings postings = tokenToPostings.get(token);
+        if (postings == null) {
+            return;
+        }
+        int[] ids = postings.ids;
+        int size = postings.size;
+        for (int i = 0; i < size; i++) {
+            String moduleName = idToModule.get(ids[i]);
+            if (moduleName != null) {
+                moduleNames.add(moduleName);
+            }
+        }
+    }
+
+    public int getModulesCount() {
+        return moduleToId.size();
+    }
+
+    public void clear() {
+        idToModule.clear();
+        idToTime = new long[16];
+        moduleToId.clear();
+        tokenToPostings.clear();
+        removedIds = 0;
+    }
+
+    /**
+     * Renumbers the live ids and removes the ids which were removed from the posting lists.
+     */
+    public void compact() {
+        if (removedIds == 0) {
+            return;
+        }
+        int size = idToModule.size();
+        int[] oldToNew = new int[size];
+        long[] newTimes = new long[Math.max(16, size - removedIds)];
+        List<String> newIdToModule = new ArrayList<String>(size - removedIds);
+        for (int i = 0; i < size; i++) {
+            String moduleName = idToModule.get(i);
+            if (moduleName == null) {
+                oldToNew[i] = -1;
+            } else {
+                int newId = newIdToModule.size();
+                oldToNew[i] = newId;
+                newTimes[newId] = idToTime[i];
+                newIdToModule.add(moduleName);
+                moduleToId.put(moduleName, newId);
+            }
+        }
+
+        Iterator<Postings> it = tokenToPostings.values().iterator();
+        while (it.hasNext()) {
+            Postings postings = it.next();
+            int newSize = 0;
+            for (int i = 0; i < postings.size; i++) {
+                int newId = oldToNew[postings.ids[i]];
+                if (newId != -1) {
+                    postings.ids[newSize] = newId; //Still sorted (the relative order is kept).
+                    newSize++;
+                }
+            }
+            if (newSize == 0) {
+                it.remove();
+            } else {
+                postings.size = newSize;
+            }
+        }
+
+        idToModule.clear();
+        idToModule.addAll(newIdToModule);
+        idToTime = newTimes;
+        removedIds = 0;
+    }
+
+    /**
+     * @return the file where the index should be saved for the given text file (it's saved side by side).
+     */
+    public static File getIndexFile(File textFile) {
+        return new File(textFile.getAbsolutePath() + ".tokens");
+    }
+
+    /**
+     * The index is saved (compacted) in binary format as:
+     *
+     * int magic
+     * int version
+     * int number of modules, followed by each module as: utf name, long time
+     * int number of tokens, followed by each token as: utf token, varint number of ids, varint ids (the first is
+     *     written as is and the others as the delta from the previous one).
+     */
+    public void saveTo(File file) throws IOException {
+        compact();
+
+        //Write to a temporary file and rename it later on (so that a failure while writing doesn't leave
+        //a corrupted file in place).
+        File tempFile = new File(file.getAbsolutePath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile),
+                64 * 1024));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            int size = idToModule.size();
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeUTF(idToModule.get(i));
+                out.writeLong(idToTime[i]);
+            }
+
+            out.writeInt(tokenToPostings.size());
+            for (Entry<String, Postings> entry : tokenToPostings.entrySet()) {
+                out.writeUTF(entry.getKey());
+                Postings postings = entry.getValue();
+                writeVarInt(out, postings.size);
+                int last = 0;
+                for (int i = 0; i < postings.size; i++) {
+                    int id = postings.ids[i];
+                    writeVarInt(out, id - last);
+                    last = id;
+                }
+            }
+        } finally {
+            out.close();
+        }
+
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Unable to delete: " + file);
+        }
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Unable to rename: " + tempFile + " to: " + file);
+        }
+    }
+
+    /**
+     * Loads an index saved with saveTo.
+     */
+    public static InvertedTokensIndex loadFrom(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new RuntimeException("Invalid tokens index file: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new RuntimeException("Expected tokens index version to be: " + VERSION + ". Found: " + version);
+            }
+
+            InvertedTokensIndex index = new InvertedTokensIndex();
+            int size = in.readInt();
+            index.idToTime = new long[Math.max(16, size)];
+            for (int i = 0; i < size; i++) {
+                String moduleName = in.readUTF();
+                index.idToModule.add(moduleName);
+                index.idToTime[i] = in.readLong();
+                index.moduleToId.put(moduleName, i);
+            }
+
+            int tokens = in.readInt();
+            for (int i = 0; i < tokens; i++) {
+                String token = in.readUTF();
+                int postingsSize = readVarInt(in);
+                Postings postings = new Postings(postingsSize);
+                int last = 0;
+                for (int j = 0; j < postingsSize; j++) {
+                    last += readVarInt(in);
+                    if (last >= size) {
+                        throw new RuntimeException("Invalid module id: " + last + " for token: " + token);
+                    }
+                    postings.add(last);
+                }
+                index.tokenToPostings.put(token, postings);
+            }
+            return index;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
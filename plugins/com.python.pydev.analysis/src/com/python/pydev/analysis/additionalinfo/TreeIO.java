@@ -6,10 +6,19 @@
  */
 package com.python.pydev.analysis.additionalinfo;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -23,6 +32,8 @@ import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.codecompletion.revisited.PyPublicTreeMap;
 
 import com.aptana.shared_core.string.FastStringBuffer;
+import com.aptana.shared_core.structure.Tuple;
+import com.aptana.shared_core.utils.PlatformUtils;
 
 /**
  * @author Fabio
@@ -216,24 +227,9 @@ public class TreeIO {
                             if (infoName == null) {
                                 throw new AssertionError("Info name may not be null. Line: " + line);
                             }
-                            switch (type) {
-                                case IInfo.CLASS_WITH_IMPORT_TYPE:
-                                    set.add(new ClassInfo(infoName, moduleDeclared, path, false));
-                                    break;
-                                case IInfo.METHOD_WITH_IMPORT_TYPE:
-                                    set.add(new FuncInfo(infoName, moduleDeclared, path, false));
-                                    break;
-                                case IInfo.ATTRIBUTE_WITH_IMPORT_TYPE:
-                                    set.add(new AttrInfo(infoName, moduleDeclared, path, false));
-                                    break;
-                                case IInfo.NAME_WITH_IMPORT_TYPE:
-                                    set.add(new NameInfo(infoName, moduleDeclared, path, false));
-                                    break;
-                                case IInfo.MOD_IMPORT_TYPE:
-                                    set.add(new ModInfo(infoName, false));
-                                    break;
-                                default:
-                                    Log.log("Unexpected type: " + type);
+                            IInfo created = createInfo(type, infoName, moduleDeclared, path);
+                            if (created != null) {
+                                set.add(created);
                             }
                             break;
                         default:
@@ -308,4 +304,255 @@ public class TreeIO {
             }
         }
     }
+
+    /**
+     * Creates the info for the given type (the strings passed are not interned in the construct).
+     * 
+     * @return the info created or null if the type is not known.
+     */
+    private static IInfo createInfo(int type, String infoName, String moduleDeclared, String path) {
+        switch (type) {
+            case IInfo.CLASS_WITH_IMPORT_TYPE:
+                return new ClassInfo(infoName, moduleDeclared, path, false);
+            case IInfo.METHOD_WITH_IMPORT_TYPE:
+                return new FuncInfo(infoName, moduleDeclared, path, false);
+            case IInfo.ATTRIBUTE_WITH_IMPORT_TYPE:
+                return new AttrInfo(infoName, moduleDeclared, path, false);
+            case IInfo.NAME_WITH_IMPORT_TYPE:
+                return new NameInfo(infoName, moduleDeclared, path, false);
+            case IInfo.MOD_IMPORT_TYPE:
+                //Note: ModInfo computes its name from the module where it's declared, so, it must be created
+                //with the declaring module (it used to be created with the name, which lost the package -- i.e.:
+                //'pack.mod' was loaded as 'mod' and 'pack.__init__' as 'pack').
+                return new ModInfo(moduleDeclared, false);
+            default:
+                Log.log("Unexpected type: " + type);
+                return null;
+        }
+    }
+
+    // Binary format -------------------------------------------------------------------------------------------------
+
+    /**
+     * Magic header for the binary trees file ('PYIT').
+     */
+    private static final int BINARY_MAGIC = 0x50594954;
+
+    /**
+     * 1: string table + sorted fixed-width records
+     */
+    public static final int BINARY_VERSION = 1;
+
+    /**
+     * Size (in bytes) of each info record: name id, module id, path id (-1 if not available) and type.
+     */
+    private static final int BINARY_RECORD_SIZE = 4 + 4 + 4 + 1;
+
+    /**
+     * @return the file where the binary trees should be saved for the given text file (they're saved 
+     * side by side).
+     */
+    public static File getBinaryTreesFile(File textFile) {
+        return new File(textFile.getAbsolutePath() + ".trees");
+    }
+
+    /**
+     * Trees are written in binary format (big endian) as:
+     * 
+     * int magic
+     * int version
+     * int number of strings, followed by each string as: int length, chars
+     * 
+     * and then for each tree:
+     * 
+     * int number of entries, followed by each entry (in the same order as the tree) as: 
+     *     int key id, int number of infos, followed by the fixed-width info records: 
+     *     int name id, int module id, int path id (-1 if not available), byte type.
+     * 
+     * The ids are indexes in the string table (so, each string is written only once). 
+     */
+    public static void dumpTreesToBinaryFile(File file, SortedMap<String, Set<IInfo>> tree1,
+            SortedMap<String, Set<IInfo>> tree2) throws IOException {
+        Map<String, Integer> strToInt = new HashMap<String, Integer>();
+        List<String> strings = new ArrayList<String>();
+        fillStringTable(tree1, strToInt, strings);
+        fillStringTable(tree2, strToInt, strings);
+
+        //Write to a temporary file and rename it later on (so that a failure while writing doesn't leave
+        //a corrupted file in place).
+        File tempFile = new File(file.getAbsolutePath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile),
+                64 * 1024));
+        try {
+            out.writeInt(BINARY_MAGIC);
+            out.writeInt(BINARY_VERSION);
+
+            int size = strings.size();
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                String s = strings.get(i);
+                out.writeInt(s.length());
+                out.writeChars(s);
+            }
+
+            dumpTreeToBinary(tree1, out, strToInt);
+            dumpTreeToBinary(tree2, out, strToInt);
+        } finally {
+            out.close();
+        }
+
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Unable to delete: " + file);
+        }
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Unable to rename: " + tempFile + " to: " + file);
+        }
+    }
+
+    private static void fillStringTable(SortedMap<String, Set<IInfo>> tree, Map<String, Integer> strToInt,
+            List<String> strings) {
+        for (Entry<String, Set<IInfo>> entry : tree.entrySet()) {
+            addToStringTable(entry.getKey(), strToInt, strings);
+            for (IInfo info : entry.getValue()) {
+                addToStringTable(info.getName(), strToInt, strings);
+                addToStringTable(info.getDeclaringModuleName(), strToInt, strings);
+                String path = info.getPath();
+                if (path != null) {
+                    addToStringTable(path, strToInt, strings);
+                }
+            }
+        }
+    }
+
+    private static void addToStringTable(String s, Map<String, Integer> strToInt, List<String> strings) {
+        if (!strToInt.containsKey(s)) {
+            strToInt.put(s, strings.size());
+            strings.add(s);
+        }
+    }
+
+    private static void dumpTreeToBinary(SortedMap<String, Set<IInfo>> tree, DataOutputStream out,
+            Map<String, Integer> strToInt) throws IOException {
+        out.writeInt(tree.size());
+        for (Entry<String, Set<IInfo>> entry : tree.entrySet()) {
+            Set<IInfo> value = entry.getValue();
+            out.writeInt(strToInt.get(entry.getKey()));
+            out.writeInt(value.size());
+            for (IInfo info : value) {
+                out.writeInt(strToInt.get(info.getName()));
+                out.writeInt(strToInt.get(info.getDeclaringModuleName()));
+                String path = info.getPath();
+                out.writeInt(path != null ? strToInt.get(path) : -1);
+                out.writeByte(info.getType());
+            }
+        }
+    }
+
+    /**
+     * Loads the trees written with dumpTreesToBinaryFile. The file is memory-mapped and the records are decoded
+     * directly from the mapped buffer.
+     * 
+     * On Windows the file is read into a heap buffer instead: a mapping is only released when the buffer is garbage
+     * collected and while it's there the file can't be deleted (so, it couldn't be saved again).
+     * 
+     * @return a tuple with the 2 trees that were saved.
+     */
+    public static Tuple<PyPublicTreeMap<String, Set<IInfo>>, PyPublicTreeMap<String, Set<IInfo>>> loadTreesFromBinaryFile(
+            File file, ObjectsPoolMap objectsPoolMap) throws IOException {
+        FileInputStream stream = new FileInputStream(file);
+        try {
+            FileChannel channel = stream.getChannel();
+            long length = channel.size();
+            ByteBuffer buffer;
+            if (PlatformUtils.isWindowsPlatform()) {
+                buffer = ByteBuffer.allocate((int) length);
+                while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                    //keep on reading
+                }
+                buffer.flip();
+            } else {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            }
+
+            if (buffer.getInt() != BINARY_MAGIC) {
+                throw new RuntimeException("Invalid binary trees file: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != BINARY_VERSION) {
+                throw new RuntimeException("Expected binary trees version to be: " + BINARY_VERSION + ". Found: "
+                        + version);
+            }
+
+            int size = buffer.getInt();
+            String[] strings = new String[size];
+            char[] chars = new char[128];
+            for (int i = 0; i < size; i++) {
+                int len = buffer.getInt();
+                if (chars.length < len) {
+                    chars = new char[len];
+                }
+                for (int j = 0; j < len; j++) {
+                    chars[j] = buffer.getChar();
+                }
+                strings[i] = ObjectsPool.internLocal(objectsPoolMap, new String(chars, 0, len));
+            }
+
+            PyPublicTreeMap<String, Set<IInfo>> tree1 = loadTreeFromBinary(buffer, strings);
+            PyPublicTreeMap<String, Set<IInfo>> tree2 = loadTreeFromBinary(buffer, strings);
+            return new Tuple<PyPublicTreeMap<String, Set<IInfo>>, PyPublicTreeMap<String, Set<IInfo>>>(tree1,
+                    tree2);
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static PyPublicTreeMap<String, Set<IInfo>> loadTreeFromBinary(ByteBuffer buffer, String[] strings)
+            throws IOException {
+        PyPublicTreeMap<String, Set<IInfo>> tree = new PyPublicTreeMap<String, Set<IInfo>>();
+        final int size = buffer.getInt();
+        final Entry[] entries = new Entry[size];
+
+        for (int iEntry = 0; iEntry < size; iEntry++) {
+            String key = strings[buffer.getInt()];
+            int hashSize = buffer.getInt();
+            if (buffer.remaining() < hashSize * BINARY_RECORD_SIZE) {
+                throw new RuntimeException("Binary trees file is truncated (entry: " + key + ").");
+            }
+            HashSet<IInfo> set = new HashSet<IInfo>(hashSize);
+            for (int i = 0; i < hashSize; i++) {
+                String infoName = strings[buffer.getInt()];
+                String moduleDeclared = strings[buffer.getInt()];
+                int pathId = buffer.getInt();
+                String path = pathId >= 0 ? strings[pathId] : null;
+                IInfo created = createInfo(buffer.get(), infoName, moduleDeclared, path);
+                if (created != null) {
+                    set.add(created);
+                }
+            }
+            entries[iEntry] = new MapEntry(key, set);
+        }
+
+        try {
+            tree.buildFromSorted(size, new Iterator() {
+                private int iNext;
+
+                public boolean hasNext() {
+                    return iNext < size;
+                }
+
+                public Object next() {
+                    Object o = entries[iNext];
+                    iNext++;
+                    return o;
+                }
+
+                public void remove() {
+                }
+
+            }, null, null);
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+        return tree;
+    }
 }
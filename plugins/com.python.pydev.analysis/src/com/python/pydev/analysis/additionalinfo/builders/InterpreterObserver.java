@@ -3,15 +3,21 @@
  */
 package com.python.pydev.analysis.additionalinfo.builders;
 
+import java.util.List;
+
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.python.pydev.core.IInterpreterManager;
+import org.python.pydev.core.ModulesKey;
+import org.python.pydev.core.log.Log;
 import org.python.pydev.plugin.nature.PythonNature;
 import org.python.pydev.ui.interpreters.IInterpreterObserver;
+import org.python.pydev.ui.interpreters.IInterpreterObserver2;
 
+import com.python.pydev.analysis.additionalinfo.AbstractAdditionalDependencyInfo;
 import com.python.pydev.analysis.additionalinfo.AdditionalProjectInterpreterInfo;
 import com.python.pydev.analysis.additionalinfo.AdditionalSystemInterpreterInfo;
 
-public class InterpreterObserver implements IInterpreterObserver {
+public class InterpreterObserver implements IInterpreterObserver, IInterpreterObserver2 {
 
     /**
      * Received when the user changes the interpreter PYTHONPATH.
@@ -40,4 +46,19 @@ public class InterpreterObserver implements IInterpreterObserver {
         //no-op: the additional info is recreated lazily now (so, the first time it's asked for, it's restored).
     }
 
+    /**
+     * Received when modules in an external source folder change (only the changed modules are updated).
+     */
+    public void notifyProjectModulesChanged(PythonNature nature, List<ModulesKey> added, List<ModulesKey> removed,
+            IProgressMonitor monitor) {
+        try {
+            AbstractAdditionalDependencyInfo info = AdditionalProjectInterpreterInfo.getAdditionalInfoForProject(nature);
+            if (info != null) {
+                info.updateKeysIfNeededAndSave(added, removed);
+            }
+        } catch (Exception e) {
+            Log.log(e);
+        }
+    }
+
 }
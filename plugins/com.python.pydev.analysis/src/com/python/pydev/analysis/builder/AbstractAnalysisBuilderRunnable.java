@@ -47,24 +47,20 @@ public abstract class AbstractAnalysisBuilderRunnable implements IAnalysisBuilde
     final protected boolean forceAnalysis;
     final protected int analysisCause;
     final protected KeyForAnalysisRunnable key;
-    final private Object lock = new Object();
 
     protected IPythonNature nature;
-    protected volatile boolean runFinished = false;
-    private IAnalysisBuilderRunnable oldAnalysisBuilderThread;
     private long documentTime;
     private long resourceModificationStamp;
 
     // ---------------------------------------------------------------------------------------- END ATTRIBUTES
 
     public AbstractAnalysisBuilderRunnable(boolean isFullBuild, String moduleName, boolean forceAnalysis,
-            int analysisCause, IAnalysisBuilderRunnable oldAnalysisBuilderThread, IPythonNature nature,
-            long documentTime, KeyForAnalysisRunnable key, long resourceModificationStamp) {
+            int analysisCause, IPythonNature nature, long documentTime, KeyForAnalysisRunnable key,
+            long resourceModificationStamp) {
         this.isFullBuild = isFullBuild;
         this.moduleName = moduleName;
         this.forceAnalysis = forceAnalysis;
         this.analysisCause = analysisCause;
-        this.oldAnalysisBuilderThread = oldAnalysisBuilderThread;
         this.nature = nature;
         this.documentTime = documentTime;
         this.key = key;
@@ -87,14 +83,14 @@ public abstract class AbstractAnalysisBuilderRunnable implements IAnalysisBuilde
         return forceAnalysis;
     }
 
-    public synchronized boolean getRunFinished() {
-        return runFinished;
-    }
-
     public String getModuleName() {
         return moduleName;
     }
 
+    public KeyForAnalysisRunnable getKey() {
+        return key;
+    }
+
     public String getAnalysisCauseStr() {
         String analysisCauseStr;
         if (analysisCause == ANALYSIS_CAUSE_BUILDER) {
@@ -115,39 +111,14 @@ public abstract class AbstractAnalysisBuilderRunnable implements IAnalysisBuilde
     }
 
     /**
-     * The run for this runnable will only start if there's no other runnable active for the same module.
+     * Calls doAnalysis() if it hasn't been cancelled itself.
      * 
-     * This method will do that and call doAnalysis() if it hasn't been cancelled itself.
+     * Note that it must be run through the AnalysisScheduler (which makes sure that no other runnable for the same
+     * module is running at the same time).
      */
     public void run() {
         try {
             try {
-                if (oldAnalysisBuilderThread != null) {
-                    if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
-                        Log.toLogFile(this, "Waiting for other to be finished...");
-                    }
-
-                    //just to make sure that the analysis of the existing runnable had a request for stopping already
-                    oldAnalysisBuilderThread.stopAnalysis();
-
-                    int attempts = 0;
-                    while (!oldAnalysisBuilderThread.getRunFinished()) {
-                        attempts += 1;
-                        synchronized (lock) {
-                            try {
-                                Thread.sleep(50);
-                            } catch (InterruptedException e) {
-                                //ignore
-                            }
-                        }
-                    }
-                    if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
-                        Log.toLogFile(this, "Starting analysis after attempts: " + attempts);
-                    }
-                }
-                //that's all we need it for... we can already dispose of it.
-                this.oldAnalysisBuilderThread = null;
-
                 if (!internalCancelMonitor.isCanceled()) {
                     doAnalysis();
                 } else {
@@ -160,21 +131,12 @@ public abstract class AbstractAnalysisBuilderRunnable implements IAnalysisBuilde
         } catch (Exception e) {
             Log.log(e);
         } finally {
-            try {
-                AnalysisBuilderRunnableFactory.removeFromThreads(key, this);
-            } catch (Throwable e) {
-                Log.log(e);
-            } finally {
-                runFinished = true;
-            }
-
             dispose();
         }
     }
 
     protected void dispose() {
         this.nature = null;
-        this.oldAnalysisBuilderThread = null;
     }
 
     /**
@@ -189,6 +151,19 @@ public abstract class AbstractAnalysisBuilderRunnable implements IAnalysisBuilde
         this.internalCancelMonitor.setCanceled(true);
     }
 
+    public boolean isAnalysisStopped() {
+        return this.internalCancelMonitor.isCanceled();
+    }
+
+    public void discard() {
+        stopAnalysis();
+        if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
+            Log.toLogFile(this, "Discarded (superseded before running) -- " + moduleName + " -- "
+                    + getAnalysisCauseStr());
+        }
+        dispose();
+    }
+
     private final static OperationCanceledException operationCanceledException = new OperationCanceledException();
 
     /**
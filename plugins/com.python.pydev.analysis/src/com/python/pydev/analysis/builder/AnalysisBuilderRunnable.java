@@ -82,19 +82,15 @@ public class AnalysisBuilderRunnable extends AbstractAnalysisBuilderRunnable {
     }
 
     /**
-     * @param oldAnalysisBuilderThread This is an existing runnable that was already analyzing things... we must wait for it
-     * to finish to start it again.
-     * 
      * @param module: this is a callback that'll be called with a boolean that should return the IModule to be used in the
      * analysis.
      * The parameter is FULL_MODULE or DEFINITIONS_MODULE
      */
     /*Default*/AnalysisBuilderRunnable(IDocument document, IResource resource, ICallback<IModule, Integer> module,
-            boolean isFullBuild, String moduleName, boolean forceAnalysis, int analysisCause,
-            IAnalysisBuilderRunnable oldAnalysisBuilderThread, IPythonNature nature, long documentTime,
-            KeyForAnalysisRunnable key, long resourceModificationStamp) {
-        super(isFullBuild, moduleName, forceAnalysis, analysisCause, oldAnalysisBuilderThread, nature, documentTime,
-                key, resourceModificationStamp);
+            boolean isFullBuild, String moduleName, boolean forceAnalysis, int analysisCause, IPythonNature nature,
+            long documentTime, KeyForAnalysisRunnable key, long resourceModificationStamp) {
+        super(isFullBuild, moduleName, forceAnalysis, analysisCause, nature, documentTime, key,
+                resourceModificationStamp);
 
         if (resource == null) {
             Log.toLogFile(this, "Unexpected null resource for: " + moduleName);
@@ -187,11 +183,16 @@ public class AnalysisBuilderRunnable extends AbstractAnalysisBuilderRunnable {
 
             //get the module for the analysis
             checkStop();
+            AnalysisScheduler scheduler = AnalysisScheduler.getDefault();
+            long initialTime = System.nanoTime();
             SourceModule module = (SourceModule) this.module.call(moduleRequest);
+            scheduler.addStageTime(AnalysisScheduler.STAGE_GET_MODULE, System.nanoTime() - initialTime);
 
             checkStop();
             //recreate the ctx insensitive info
+            initialTime = System.nanoTime();
             recreateCtxInsensitiveInfo(info, module, nature, r);
+            scheduler.addStageTime(AnalysisScheduler.STAGE_CTX_INSENSITIVE_INFO, System.nanoTime() - initialTime);
 
             if (onlyRecreateCtxInsensitiveInfo) {
                 if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
@@ -231,8 +232,10 @@ public class AnalysisBuilderRunnable extends AbstractAnalysisBuilderRunnable {
             //ok, let's do it
             OccurrencesAnalyzer analyzer = new OccurrencesAnalyzer();
             checkStop();
+            initialTime = System.nanoTime();
             IMessage[] messages = analyzer.analyzeDocument(nature, module, analysisPreferences, document,
                     this.internalCancelMonitor, DefaultIndentPrefs.get());
+            scheduler.addStageTime(AnalysisScheduler.STAGE_ANALYZE, System.nanoTime() - initialTime);
 
             checkStop();
             if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
@@ -252,7 +255,9 @@ public class AnalysisBuilderRunnable extends AbstractAnalysisBuilderRunnable {
                         || !analyzeOnlyActiveEditor
                         || (analyzeOnlyActiveEditor && (!PyDevBuilderPrefPage.getRemoveErrorsWhenEditorIsClosed() || PyEdit
                                 .isEditorOpenForResource(r)))) {
+                    initialTime = System.nanoTime();
                     runner.setMarkers(r, document, messages, this.internalCancelMonitor);
+                    scheduler.addStageTime(AnalysisScheduler.STAGE_SET_MARKERS, System.nanoTime() - initialTime);
                 } else {
                     if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
                         Log.toLogFile(this, "Skipped adding markers for module: " + moduleName
@@ -281,12 +286,6 @@ public class AnalysisBuilderRunnable extends AbstractAnalysisBuilderRunnable {
             } catch (Throwable e) {
                 Log.log("Error when analyzing: " + moduleName, e);
             }
-            try {
-                AnalysisBuilderRunnableFactory.removeFromThreads(key, this);
-            } catch (Throwable e) {
-                Log.log(e);
-            }
-
             dispose();
         }
     }
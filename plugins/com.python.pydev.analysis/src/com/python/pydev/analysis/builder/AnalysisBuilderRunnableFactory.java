@@ -6,10 +6,6 @@
  */
 package com.python.pydev.analysis.builder;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
-
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.jface.text.IDocument;
@@ -19,47 +15,11 @@ import org.python.pydev.core.IPythonNature;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.logging.DebugSettings;
 
-import com.aptana.shared_core.cache.LRUCache;
 import com.aptana.shared_core.callbacks.ICallback;
 import com.aptana.shared_core.structure.Tuple;
 
 public class AnalysisBuilderRunnableFactory {
 
-    /**
-     * Field that should know all the threads.
-     * 
-     * Key is tuple with project name and module name. 
-     */
-    private volatile static Map<KeyForAnalysisRunnable, IAnalysisBuilderRunnable> availableThreads;
-
-    /**
-     * Cache to keep the last request time for a module. The key is the project name+module name and the value the documentTime
-     * for the last analysis request for some module.
-     */
-    private volatile static LRUCache<KeyForAnalysisRunnable, Tuple<Long, Long>> analysisTimeCache = new LRUCache<KeyForAnalysisRunnable, Tuple<Long, Long>>(
-            100);
-
-    /**
-     * @return Returns the availableThreads.
-     */
-    private static synchronized Map<KeyForAnalysisRunnable, IAnalysisBuilderRunnable> getAvailableThreads() {
-        if (availableThreads == null) {
-            availableThreads = Collections
-                    .synchronizedMap(new HashMap<KeyForAnalysisRunnable, IAnalysisBuilderRunnable>());
-        }
-        return availableThreads;
-    }
-
-    /*Default*/static synchronized void removeFromThreads(KeyForAnalysisRunnable key, IAnalysisBuilderRunnable runnable) {
-        Map<KeyForAnalysisRunnable, IAnalysisBuilderRunnable> available = getAvailableThreads();
-        synchronized (available) {
-            IAnalysisBuilderRunnable analysisBuilderThread = available.get(key);
-            if (analysisBuilderThread == runnable) {
-                available.remove(key);
-            }
-        }
-    }
-
     // Logging Helpers -------------------------------
 
     private static void logCreate(String moduleName, IAnalysisBuilderRunnable analysisBuilderThread, String factory) {
@@ -89,21 +49,20 @@ public class AnalysisBuilderRunnableFactory {
 
     /**
      * This will check if the nature is not null, related project is open and if the documentTime for the new request
-     * is lower than one already in place (this can happen if we have a notification from a successful parse, but
-     * it's only acknowledged after a build request, because the parse to finish can take some time, while the build
-     * is 'automatic').
+     * is lower than the one for the current request for the module (pending or running in the AnalysisScheduler --
+     * this can happen if we have a notification from a successful parse, but it's only acknowledged after a build
+     * request, because the parse to finish can take some time, while the build is 'automatic').
      * 
      * @param nature the related nature
      * @param moduleName the name of the module we'll analyze
      * @param documentTime the time of the creation of the document we're about to analyze.
-     * @param available the existing threads.
      * @param resourceModificationStamp 
      * 
-     * @return The analysis key if all check were OK or null if some check failed.
+     * @return a tuple with the analysis key and the current runnable for the module (which may be null) if all checks
+     * were OK or null if some check failed.
      */
-    private static synchronized KeyForAnalysisRunnable areNatureAndProjectAndTimeOK(IPythonNature nature,
-            String moduleName, long documentTime, Map<KeyForAnalysisRunnable, IAnalysisBuilderRunnable> available,
-            long resourceModificationStamp) {
+    private static Tuple<KeyForAnalysisRunnable, IAnalysisBuilderRunnable> areNatureAndProjectAndTimeOK(
+            IPythonNature nature, String moduleName, long documentTime, long resourceModificationStamp) {
 
         if (nature == null) {
             return null;
@@ -115,7 +74,7 @@ public class AnalysisBuilderRunnableFactory {
         }
 
         KeyForAnalysisRunnable analysisKey = new KeyForAnalysisRunnable(project.getName(), moduleName);
-        IAnalysisBuilderRunnable oldAnalysisBuilderThread = available.get(analysisKey);
+        IAnalysisBuilderRunnable oldAnalysisBuilderThread = AnalysisScheduler.getDefault().getCurrent(analysisKey);
 
         if (oldAnalysisBuilderThread != null) {
             if (!checkTimesOk(oldAnalysisBuilderThread, oldAnalysisBuilderThread.getDocumentTime(), documentTime,
@@ -124,23 +83,12 @@ public class AnalysisBuilderRunnableFactory {
             }
         }
 
-        Tuple<Long, Long> lastTime = analysisTimeCache.getObj(analysisKey);
-        if (lastTime != null) {
-            long oldDocTime = lastTime.o1;
-            long oldResourceTime = lastTime.o2;
-            if (!checkTimesOk(oldAnalysisBuilderThread, oldDocTime, documentTime, oldResourceTime,
-                    resourceModificationStamp)) {
-                return null;
-            }
-        }
-        analysisTimeCache.add(analysisKey, new Tuple<Long, Long>(documentTime, resourceModificationStamp));
-
-        return analysisKey;
+        return new Tuple<KeyForAnalysisRunnable, IAnalysisBuilderRunnable>(analysisKey, oldAnalysisBuilderThread);
     }
 
     private static boolean checkTimesOk(IAnalysisBuilderRunnable oldAnalysisBuilderThread, long oldDocTime,
             long documentTime, long oldResourceStamp, long resourceStamp) {
-        if (oldAnalysisBuilderThread != null && oldDocTime > documentTime - DELTA_TO_CONSIDER_SAME) {
+        if (oldDocTime > documentTime - DELTA_TO_CONSIDER_SAME) {
             //If the document version of the new one is lower than the one already active, don't do the analysis
             if (oldResourceStamp != resourceStamp) {
                 if (oldResourceStamp == IResource.NULL_STAMP || resourceStamp == IResource.NULL_STAMP) {
@@ -172,8 +120,8 @@ public class AnalysisBuilderRunnableFactory {
     // Factory creation methods -----------------------------------------
 
     /**
-     * Creates a thread for analyzing some module (and stopping analysis of some other thread if there is one
-     * already running).
+     * Creates a runnable for analyzing some module (and stopping the analysis of the current runnable for the module
+     * if there is one -- the AnalysisScheduler makes sure that the new one only runs after the old one finishes).
      *  
      * @return The new runnable or null if there's one there already that has a higher document version.
      */
@@ -181,80 +129,69 @@ public class AnalysisBuilderRunnableFactory {
             ICallback<IModule, Integer> module, boolean isFullBuild, String moduleName, boolean forceAnalysis,
             int analysisCause, IPythonNature nature, long documentTime, long resourceModificationStamp) {
 
-        Map<KeyForAnalysisRunnable, IAnalysisBuilderRunnable> available = getAvailableThreads();
-        synchronized (available) {
-            KeyForAnalysisRunnable analysisKey = areNatureAndProjectAndTimeOK(nature, moduleName, documentTime,
-                    available, resourceModificationStamp);
-            if (analysisKey == null) {
-                return null;
-            }
-
-            IAnalysisBuilderRunnable oldAnalysisBuilderThread = available.get(analysisKey);
-            if (oldAnalysisBuilderThread != null) {
-                //there is some existing thread that we have to stop to create the new one
-                oldAnalysisBuilderThread.stopAnalysis();
-                logStop(oldAnalysisBuilderThread, "Factory: changed");
+        Tuple<KeyForAnalysisRunnable, IAnalysisBuilderRunnable> keyAndOld = areNatureAndProjectAndTimeOK(nature,
+                moduleName, documentTime, resourceModificationStamp);
+        if (keyAndOld == null) {
+            return null;
+        }
 
-                if (!forceAnalysis) {
-                    forceAnalysis = oldAnalysisBuilderThread.getForceAnalysis();
-                    if (forceAnalysis) {
-                        if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
-                            Log.toLogFile(oldAnalysisBuilderThread,
-                                    "Now forcing analysis because old one, which didn't finish was forced!");
-                        }
+        IAnalysisBuilderRunnable oldAnalysisBuilderThread = keyAndOld.o2;
+        if (oldAnalysisBuilderThread != null) {
+            //there is some existing runnable that we have to stop to create the new one
+            oldAnalysisBuilderThread.stopAnalysis();
+            logStop(oldAnalysisBuilderThread, "Factory: changed");
+
+            if (!forceAnalysis) {
+                forceAnalysis = oldAnalysisBuilderThread.getForceAnalysis();
+                if (forceAnalysis) {
+                    if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
+                        Log.toLogFile(oldAnalysisBuilderThread,
+                                "Now forcing analysis because old one, which didn't finish was forced!");
                     }
                 }
-                if (!forceAnalysis) {
-                    if (PyDevBuilderPrefPage.getAnalyzeOnlyActiveEditor()) {
-                        if (analysisCause == IAnalysisBuilderRunnable.ANALYSIS_CAUSE_BUILDER
-                                && oldAnalysisBuilderThread.getAnalysisCause() != IAnalysisBuilderRunnable.ANALYSIS_CAUSE_BUILDER) {
-                            //we're stopping a previous analysis that would really happen, so, let's force this one
-                            forceAnalysis = true;
-                        }
+            }
+            if (!forceAnalysis) {
+                if (PyDevBuilderPrefPage.getAnalyzeOnlyActiveEditor()) {
+                    if (analysisCause == IAnalysisBuilderRunnable.ANALYSIS_CAUSE_BUILDER
+                            && oldAnalysisBuilderThread.getAnalysisCause() != IAnalysisBuilderRunnable.ANALYSIS_CAUSE_BUILDER) {
+                        //we're stopping a previous analysis that would really happen, so, let's force this one
+                        forceAnalysis = true;
                     }
                 }
             }
-            IAnalysisBuilderRunnable analysisBuilderThread = new AnalysisBuilderRunnable(document, resource, module,
-                    isFullBuild, moduleName, forceAnalysis, analysisCause, oldAnalysisBuilderThread, nature,
-                    documentTime, analysisKey, resourceModificationStamp);
-
-            logCreate(moduleName, analysisBuilderThread, "Factory: changed");
-
-            available.put(analysisKey, analysisBuilderThread);
-            return analysisBuilderThread;
         }
+        IAnalysisBuilderRunnable analysisBuilderThread = new AnalysisBuilderRunnable(document, resource, module,
+                isFullBuild, moduleName, forceAnalysis, analysisCause, nature, documentTime, keyAndOld.o1,
+                resourceModificationStamp);
+
+        logCreate(moduleName, analysisBuilderThread, "Factory: changed");
+        return analysisBuilderThread;
     }
 
     /**
      * Creates a runnable for a module removal.
      * @return The new runnable or null if there's one there already that has a higher document version.
      */
-    /*Default*/static IAnalysisBuilderRunnable createRunnable(String moduleName, IPythonNature nature,
+    /*Default*/static synchronized IAnalysisBuilderRunnable createRunnable(String moduleName, IPythonNature nature,
             boolean fullBuild, boolean forceAnalysis, int analysisCause, long documentTime,
             long resourceModificationStamp) {
 
-        Map<KeyForAnalysisRunnable, IAnalysisBuilderRunnable> available = getAvailableThreads();
-        synchronized (available) {
-            KeyForAnalysisRunnable analysisKey = areNatureAndProjectAndTimeOK(nature, moduleName, documentTime,
-                    available, resourceModificationStamp);
-            if (analysisKey == null) {
-                return null;
-            }
-            IAnalysisBuilderRunnable oldAnalysisBuilderThread = available.get(analysisKey);
-            if (oldAnalysisBuilderThread != null) {
-                //there is some existing thread that we have to stop to create the new one
-                oldAnalysisBuilderThread.stopAnalysis();
-                logStop(oldAnalysisBuilderThread, "Factory: remove");
-            }
-            IAnalysisBuilderRunnable analysisBuilderThread = new AnalysisBuilderRunnableForRemove(moduleName, nature,
-                    fullBuild, oldAnalysisBuilderThread, forceAnalysis, analysisCause, documentTime, analysisKey,
-                    resourceModificationStamp);
-
-            logCreate(moduleName, analysisBuilderThread, "Factory: remove");
-
-            available.put(analysisKey, analysisBuilderThread);
-            return analysisBuilderThread;
+        Tuple<KeyForAnalysisRunnable, IAnalysisBuilderRunnable> keyAndOld = areNatureAndProjectAndTimeOK(nature,
+                moduleName, documentTime, resourceModificationStamp);
+        if (keyAndOld == null) {
+            return null;
         }
+        IAnalysisBuilderRunnable oldAnalysisBuilderThread = keyAndOld.o2;
+        if (oldAnalysisBuilderThread != null) {
+            //there is some existing runnable that we have to stop to create the new one
+            oldAnalysisBuilderThread.stopAnalysis();
+            logStop(oldAnalysisBuilderThread, "Factory: remove");
+        }
+        IAnalysisBuilderRunnable analysisBuilderThread = new AnalysisBuilderRunnableForRemove(moduleName, nature,
+                fullBuild, forceAnalysis, analysisCause, documentTime, keyAndOld.o1, resourceModificationStamp);
+
+        logCreate(moduleName, analysisBuilderThread, "Factory: remove");
+        return analysisBuilderThread;
     }
 
 }
@@ -21,19 +21,11 @@ import com.python.pydev.analysis.additionalinfo.AdditionalProjectInterpreterInfo
  */
 public class AnalysisBuilderRunnableForRemove extends AbstractAnalysisBuilderRunnable {
 
-    /**
-     * @param oldAnalysisBuilderThread This is an existing runnable that was already analyzing things... we must wait for it
-     * to finish to start it again.
-     * 
-     * @param module: this is a callback that'll be called with a boolean that should return the IModule to be used in the
-     * analysis.
-     * The parameter is FULL_MODULE or DEFINITIONS_MODULE
-     */
     /*Default*/AnalysisBuilderRunnableForRemove(String moduleName, IPythonNature nature, boolean isFullBuild,
-            IAnalysisBuilderRunnable oldAnalysisBuilderThread, boolean forceAnalysis, int analysisCause,
-            long documentTime, KeyForAnalysisRunnable key, long resourceModificationStamp) {
-        super(isFullBuild, moduleName, forceAnalysis, analysisCause, oldAnalysisBuilderThread, nature, documentTime,
-                key, resourceModificationStamp);
+            boolean forceAnalysis, int analysisCause, long documentTime, KeyForAnalysisRunnable key,
+            long resourceModificationStamp) {
+        super(isFullBuild, moduleName, forceAnalysis, analysisCause, nature, documentTime, key,
+                resourceModificationStamp);
     }
 
     public void doAnalysis() {
@@ -20,7 +20,6 @@ import org.python.pydev.core.IModule;
 import org.python.pydev.core.IPythonNature;
 import org.python.pydev.core.MisconfigurationException;
 import org.python.pydev.core.callbacks.ICallback0;
-import org.python.pydev.core.concurrency.RunnableAsJobsPoolThread;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.codecompletion.revisited.PyCodeCompletionVisitor;
 import org.python.pydev.editor.codecompletion.revisited.modules.SourceModule;
@@ -169,6 +168,7 @@ public class AnalysisBuilderVisitor extends PyDevBuilderVisitor {
 
         if (runnable == null) {
             //It may be null if the document version of the new one is lower than one already active.
+            AnalysisScheduler.getDefault().requestDropped();
             return;
         }
 
@@ -176,14 +176,14 @@ public class AnalysisBuilderVisitor extends PyDevBuilderVisitor {
     }
 
     /**
-     * Depending on whether we're in a full build or delta build, this method will run the runnable directly
-     * or schedule it as a job.
+     * Depending on whether we're in a full build or delta build, this method will run the runnable directly (in the
+     * builder thread) or schedule it in the AnalysisScheduler.
      */
     private void execRunnable(final String moduleName, final IAnalysisBuilderRunnable runnable) {
         if (isFullBuild()) {
-            runnable.run();
+            AnalysisScheduler.getDefault().runInline(runnable);
         } else {
-            RunnableAsJobsPoolThread.getSingleton().scheduleToRun(runnable, "PyDev: Code Analysis:" + moduleName);
+            AnalysisScheduler.getDefault().schedule(runnable);
         }
     }
 
@@ -221,6 +221,7 @@ public class AnalysisBuilderVisitor extends PyDevBuilderVisitor {
 
             if (runnable == null) {
                 //It may be null if the document version of the new one is lower than one already active.
+                AnalysisScheduler.getDefault().requestDropped();
                 return;
             }
 
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.builder;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The pending analysis requests of the AnalysisScheduler.
+ *
+ * - There's at most one pending request for a given module (a new request replaces the pending one, keeping its
+ * place in the queue -- whether the new request should supersede the current one is decided by the factory, which
+ * stops the current one when the new one is created, so, the queue doesn't check the document times again).
+ * - Requests from the parser (i.e.: the editor the user is working on) are given before requests from the builder
+ * (and in the order they were added in each of those).
+ * - A request is never given while another request for the same module is still running.
+ *
+ * It's the only place which knows about the requests for a module (the factory uses it to stop the current request
+ * for a module when a new one is created).
+ *
+ * Not thread-safe (the scheduler synchronizes the access to it).
+ *
+ * @author Fabio
+ */
+/*default*/final class AnalysisRequestsQueue {
+
+    private final LinkedHashMap<KeyForAnalysisRunnable, IAnalysisBuilderRunnable> pendingFromParser = new LinkedHashMap<KeyForAnalysisRunnable, IAnalysisBuilderRunnable>();
+    private final LinkedHashMap<KeyForAnalysisRunnable, IAnalysisBuilderRunnable> pendingFromBuilder = new LinkedHashMap<KeyForAnalysisRunnable, IAnalysisBuilderRunnable>();
+    private final Map<KeyForAnalysisRunnable, IAnalysisBuilderRunnable> running = new HashMap<KeyForAnalysisRunnable, IAnalysisBuilderRunnable>();
+
+    /**
+     * Adds a runnable to the queue.
+     *
+     * @return the runnable that was superseded and will never be run (either the pending runnable for the same
+     * module or the passed runnable if it was already stopped -- i.e.: a newer request for the same module was
+     * already created) or null if nothing was superseded.
+     */
+    public IAnalysisBuilderRunnable add(IAnalysisBuilderRunnable runnable) {
+        if (runnable.isAnalysisStopped()) {
+            return runnable;
+        }
+        KeyForAnalysisRunnable key = runnable.getKey();
+
+        IAnalysisBuilderRunnable replaced = pendingFromParser.get(key);
+        if (replaced != null) {
+            //keeps its place in the queue (and it's already a priority request)
+            pendingFromParser.put(key, runnable);
+            return replaced;
+        }
+
+        replaced = pendingFromBuilder.get(key);
+        if (runnable.getAnalysisCause() == IAnalysisBuilderRunnable.ANALYSIS_CAUSE_PARSER) {
+            if (replaced != null) {
+                pendingFromBuilder.remove(key);
+            }
+            pendingFromParser.put(key, runnable);
+        } else {
+            pendingFromBuilder.put(key, runnable);
+        }
+        return replaced;
+    }
+
+    /**
+     * @return the next runnable to be run or null if there's no runnable which can be run right now. The returned
+     * runnable is considered running until finished() is called for it.
+     */
+    public IAnalysisBuilderRunnable takeNext() {
+        IAnalysisBuilderRunnable next = takeNext(pendingFromParser);
+        if (next == null) {
+            next = takeNext(pendingFromBuilder);
+        }
+        return next;
+    }
+
+    private IAnalysisBuilderRunnable takeNext(Map<KeyForAnalysisRunnable, IAnalysisBuilderRunnable> pending) {
+        Iterator<Map.Entry<KeyForAnalysisRunnable, IAnalysisBuilderRunnable>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<KeyForAnalysisRunnable, IAnalysisBuilderRunnable> entry = it.next();
+            if (!running.containsKey(entry.getKey())) {
+                it.remove();
+                running.put(entry.getKey(), entry.getValue());
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Marks the given runnable as running (it's not added to the queue). The caller must make sure that no other
+     * runnable for the same module is running (see isRunning()).
+     *
+     * @return the pending runnable for the same module (which is superseded and will never be run) or null.
+     */
+    public IAnalysisBuilderRunnable startRunning(IAnalysisBuilderRunnable runnable) {
+        KeyForAnalysisRunnable key = runnable.getKey();
+        running.put(key, runnable);
+        IAnalysisBuilderRunnable replaced = pendingFromParser.remove(key);
+        if (replaced == null) {
+            replaced = pendingFromBuilder.remove(key);
+        }
+        return replaced;
+    }
+
+    /**
+     * Should be called when a runnable gotten from takeNext() (or passed to startRunning()) finishes running.
+     */
+    public void finished(IAnalysisBuilderRunnable runnable) {
+        KeyForAnalysisRunnable key = runnable.getKey();
+        if (running.get(key) == runnable) {
+            running.remove(key);
+        }
+    }
+
+    /**
+     * @return whether there's a runnable running for the given module.
+     */
+    public boolean isRunning(KeyForAnalysisRunnable key) {
+        return running.containsKey(key);
+    }
+
+    /**
+     * @return whether there's a runnable pending for the given module.
+     */
+    public boolean isPending(KeyForAnalysisRunnable key) {
+        return pendingFromParser.containsKey(key) || pendingFromBuilder.containsKey(key);
+    }
+
+    /**
+     * @return the latest runnable for the given module (the pending one or the one running if there's no pending
+     * runnable) or null if there's none.
+     */
+    public IAnalysisBuilderRunnable getCurrent(KeyForAnalysisRunnable key) {
+        IAnalysisBuilderRunnable ret = pendingFromParser.get(key);
+        if (ret == null) {
+            ret = pendingFromBuilder.get(key);
+            if (ret == null) {
+                ret = running.get(key);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return the number of pending runnables.
+     */
+    public int size() {
+        return pendingFromParser.size() + pendingFromBuilder.size();
+    }
+
+    /**
+     * @return the number of runnables currently running.
+     */
+    public int getRunningCount() {
+        return running.size();
+    }
+}
@@ -0,0 +1,395 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.builder;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.python.pydev.core.CorePlugin;
+import org.python.pydev.core.concurrency.RunnableAsJobsPoolThread;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.logging.DebugSettings;
+
+/**
+ * Schedules the analysis runnables (for delta builds and parser notifications).
+ *
+ * Instead of creating a job for each request, the requests are put in a queue (see AnalysisRequestsQueue: a new
+ * request for a module supersedes the one pending for it and requests for the editor being edited are
+ * run before requests from the builder) which is drained by a bounded number of worker jobs.
+ *
+ * When too many requests are pending, requests from the builder will wait a bit for the queue to be drained (that
+ * wait is bounded because the builder may be holding a lock a running analysis needs). Requests which just replace
+ * the one pending for a module don't wait (they don't make the queue grow).
+ *
+ * The runnables of a full build are not scheduled: they're run in the builder thread (see runInline), but still go
+ * through the queue so that a module is never analyzed by 2 threads at the same time.
+ *
+ * Also keeps some metrics on the requests and on the time spent in each stage of the analysis (logged when
+ * DebugSettings.DEBUG_ANALYSIS_REQUESTS is on).
+ *
+ * @author Fabio
+ */
+public class AnalysisScheduler {
+
+    public static final int STAGE_GET_MODULE = 0;
+    public static final int STAGE_CTX_INSENSITIVE_INFO = 1;
+    public static final int STAGE_ANALYZE = 2;
+    public static final int STAGE_SET_MARKERS = 3;
+
+    private static final String[] STAGE_NAMES = new String[] { "module", "ctx insensitive info", "analysis",
+            "markers" };
+
+    /**
+     * Above this number of pending requests, requests from the builder will wait for the queue to be drained.
+     */
+    private static final int MAX_PENDING = 1000;
+
+    /**
+     * The maximum time a request from the builder will wait when the queue is full.
+     */
+    private static final long MAX_WAIT_WHEN_FULL_MILLIS = 500;
+
+    private static AnalysisScheduler singleton;
+
+    public static synchronized AnalysisScheduler getDefault() {
+        if (singleton == null) {
+            singleton = new AnalysisScheduler(RunnableAsJobsPoolThread.getDefaultPoolSize(), MAX_PENDING,
+                    MAX_WAIT_WHEN_FULL_MILLIS);
+        }
+        return singleton;
+    }
+
+    private final Object lock = new Object();
+
+    //synchronized on lock
+    private final AnalysisRequestsQueue queue = new AnalysisRequestsQueue();
+    private int activeWorkers;
+
+    private final int maxWorkers;
+    private final int maxPending;
+    private final long maxWaitWhenFullMillis;
+
+    // metrics
+    private final AtomicLong scheduled = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong[] stageNanos = new AtomicLong[STAGE_NAMES.length];
+    private final AtomicLong[] stageCount = new AtomicLong[STAGE_NAMES.length];
+
+    /*default*/AnalysisScheduler(int maxWorkers, int maxPending, long maxWaitWhenFullMillis) {
+        this.maxWorkers = maxWorkers;
+        this.maxPending = maxPending;
+        this.maxWaitWhenFullMillis = maxWaitWhenFullMillis;
+        for (int i = 0; i < STAGE_NAMES.length; i++) {
+            stageNanos[i] = new AtomicLong();
+            stageCount[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Schedules the given runnable to be run.
+     */
+    public void schedule(IAnalysisBuilderRunnable runnable) {
+        if (runnable.getAnalysisCause() == IAnalysisBuilderRunnable.ANALYSIS_CAUSE_BUILDER) {
+            waitIfQueueFull(runnable.getKey());
+        }
+        scheduled.incrementAndGet();
+
+        IAnalysisBuilderRunnable superseded;
+        synchronized (lock) {
+            superseded = queue.add(runnable);
+            startWorkersIfNeeded();
+        }
+
+        if (superseded != null) {
+            coalesced.incrementAndGet();
+            superseded.discard();
+        }
+    }
+
+    /**
+     * Runs the given runnable in the current thread (used for full builds). If there's a runnable for the same module
+     * running, waits for it to finish (it should've been already stopped by the factory) and a pending runnable for
+     * the same module is discarded.
+     */
+    public void runInline(IAnalysisBuilderRunnable runnable) {
+        KeyForAnalysisRunnable key = runnable.getKey();
+        IAnalysisBuilderRunnable superseded;
+        synchronized (lock) {
+            while (queue.isRunning(key)) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    runnable.discard();
+                    return;
+                }
+            }
+            superseded = queue.startRunning(runnable);
+        }
+        if (superseded != null) {
+            coalesced.incrementAndGet();
+            superseded.discard();
+        }
+
+        try {
+            runnable.run();
+        } finally {
+            synchronized (lock) {
+                queue.finished(runnable);
+                lock.notifyAll();
+                startWorkersIfNeeded(); //a request for the same module may be waiting for this one to finish
+            }
+        }
+    }
+
+    /**
+     * @return the latest runnable for the given module (pending or running) or null if there's none.
+     */
+    public IAnalysisBuilderRunnable getCurrent(KeyForAnalysisRunnable key) {
+        synchronized (lock) {
+            return queue.getCurrent(key);
+        }
+    }
+
+    /**
+     * Should be called when a request for analysis was not even created (i.e.: the factory decided that a newer
+     * request was already there).
+     */
+    public void requestDropped() {
+        dropped.incrementAndGet();
+    }
+
+    /**
+     * Adds the time spent in some stage of the analysis (one of the STAGE_XXX constants).
+     */
+    public void addStageTime(int stage, long nanos) {
+        stageNanos[stage].addAndGet(nanos);
+        stageCount[stage].incrementAndGet();
+    }
+
+    private void waitIfQueueFull(KeyForAnalysisRunnable key) {
+        synchronized (lock) {
+            if (queue.size() < maxPending || queue.isPending(key)) {
+                return;
+            }
+            throttled.incrementAndGet();
+            long deadline = System.currentTimeMillis() + maxWaitWhenFullMillis;
+            while (queue.size() >= maxPending) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Must be called synchronized on lock.
+     */
+    private void startWorkersIfNeeded() {
+        int pending = queue.size();
+        while (pending > 0 && activeWorkers < maxWorkers && activeWorkers - queue.getRunningCount() < pending) {
+            activeWorkers++;
+            startWorker();
+        }
+    }
+
+    /**
+     * Starts a worker which will call runWorker (overridden in tests to avoid creating jobs).
+     */
+    /*default*/void startWorker() {
+        Job job = new AnalysisWorkerJob();
+        job.setPriority(Job.INTERACTIVE);
+        job.schedule();
+    }
+
+    /**
+     * Keeps on running the pending runnables until there's nothing else the worker can run (or until the monitor
+     * is cancelled).
+     *
+     * @param job the job running the worker (used to show the module being analyzed). May be null.
+     */
+    /*default*/void runWorker(IProgressMonitor monitor, Job job) {
+        boolean exited = false; //whether this worker was already removed from activeWorkers
+        try {
+            while (true) {
+                IAnalysisBuilderRunnable runnable;
+                int pending;
+                synchronized (lock) {
+                    runnable = queue.takeNext();
+                    if (runnable == null) {
+                        //Must be done in the same lock: a request scheduled right after this must start a new worker.
+                        exitWorker();
+                        exited = true;
+                        return;
+                    }
+                    pending = queue.size();
+                    lock.notifyAll(); //someone may be waiting for the queue to be drained
+                }
+
+                if (job != null) {
+                    String name = "PyDev: Code Analysis: " + runnable.getModuleName();
+                    if (pending > 0) {
+                        name += " (" + pending + " scheduled)";
+                    }
+                    job.setName(name);
+                }
+
+                try {
+                    runnable.setMonitor(monitor);
+                    runnable.run();
+                } catch (RuntimeException e) {
+                    if (CorePlugin.getDefault() != null) {
+                        //Only log if eclipse still didn't shutdown.
+                        Log.log(e);
+                    }
+                } finally {
+                    //If the user cancelled this job, the monitor (which is passed to the runnables) can't be used
+                    //anymore, so, the worker exits. A new worker is not started right away (otherwise cancelling
+                    //would have no effect): the pending requests are run by the other workers or by the one started
+                    //on the next request.
+                    boolean canceled = monitor.isCanceled();
+                    synchronized (lock) {
+                        queue.finished(runnable);
+                        lock.notifyAll(); //a full build may be waiting for this module
+                        if (canceled) {
+                            exitWorker();
+                            exited = true;
+                        }
+                    }
+                    completed.incrementAndGet();
+                }
+                runnable = null; //make sure it'll be available for garbage collection ASAP.
+
+                if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
+                    Log.toLogFile(this, getMetricsStr());
+                }
+
+                if (exited) {
+                    return;
+                }
+            }
+        } finally {
+            if (!exited) {
+                //Only if some error was thrown.
+                synchronized (lock) {
+                    exitWorker();
+                }
+            }
+        }
+    }
+
+    /**
+     * Must be called synchronized on lock.
+     */
+    private void exitWorker() {
+        activeWorkers--;
+        workerExiting();
+    }
+
+    /**
+     * Called (synchronized on lock) when a worker is about to exit (overridden in tests).
+     */
+    /*default*/void workerExiting() {
+    }
+
+    /**
+     * A job which runs a worker.
+     */
+    private final class AnalysisWorkerJob extends Job {
+
+        public AnalysisWorkerJob() {
+            super("PyDev: Code Analysis");
+        }
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            runWorker(monitor, this);
+            return Status.OK_STATUS;
+        }
+    }
+
+    // metrics -------------------------------------------------------------------------------------------------------
+
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    public int getActiveWorkers() {
+        synchronized (lock) {
+            return activeWorkers;
+        }
+    }
+
+    public long getScheduledCount() {
+        return scheduled.get();
+    }
+
+    /**
+     * @return the number of requests which were superseded by a newer request for the same module before running.
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return the number of requests which were not scheduled because a newer request for the module was there.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    /**
+     * @return the number of times a request from the builder had to wait because the queue was full.
+     */
+    public long getThrottledCount() {
+        return throttled.get();
+    }
+
+    /**
+     * @return the average time (in millis) spent in the given stage (one of the STAGE_XXX constants).
+     */
+    public double getAverageStageTimeMillis(int stage) {
+        long count = stageCount[stage].get();
+        if (count == 0) {
+            return 0;
+        }
+        return stageNanos[stage].get() / 1000000.0 / count;
+    }
+
+    public String getMetricsStr() {
+        StringBuffer buf = new StringBuffer();
+        buf.append("Analysis scheduler -- queue depth: ").append(getQueueDepth());
+        buf.append(", scheduled: ").append(getScheduledCount());
+        buf.append(", completed: ").append(getCompletedCount());
+        buf.append(", coalesced: ").append(getCoalescedCount());
+        buf.append(", dropped: ").append(getDroppedCount());
+        buf.append(", throttled: ").append(getThrottledCount());
+        for (int i = 0; i < STAGE_NAMES.length; i++) {
+            buf.append(", avg ").append(STAGE_NAMES[i]).append(": ");
+            buf.append(Math.round(getAverageStageTimeMillis(i) * 100) / 100.0).append("ms");
+        }
+        return buf.toString();
+    }
+}
@@ -27,6 +27,17 @@ public interface IAnalysisBuilderRunnable extends IRunnableWithMonitor {
      */
     void stopAnalysis();
 
+    /**
+     * @return whether a request to stop the analysis was already done.
+     */
+    boolean isAnalysisStopped();
+
+    /**
+     * Used when this runnable was never run (because a newer request for the same module superseded it before it
+     * had a chance to start): marks it as finished without doing any analysis.
+     */
+    void discard();
+
     /**
      * @return whether the analysis should be forced.
      * 
@@ -39,10 +50,10 @@ public interface IAnalysisBuilderRunnable extends IRunnableWithMonitor {
      */
     boolean getForceAnalysis();
 
-    boolean getRunFinished();
-
     String getModuleName();
 
+    KeyForAnalysisRunnable getKey();
+
     String getAnalysisCauseStr();
 
     long getDocumentTime();
@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.scopeanalysis;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.visitors.scope.ASTEntry;
+
+/**
+ * An index with the names found below some node (name -> entries in the order they appear), so that getting the
+ * local occurrences of some name is a lookup instead of a new visit on the whole scope.
+ *
+ * The index is attached to the node (by identity) and a new AST (i.e.: a new parse) will create a new index. The
+ * node is only weakly referenced, so, the index goes away along with the AST generation it was created for.
+ *
+ * Note that the ASTs must not be changed after an index is created for it (which is already the case for the
+ * ASTs shared from the parser). The entries in the index are never given to clients (only copies of those).
+ *
+ * @author Fabio
+ */
+public final class LocalNamesIndex {
+
+    /**
+     * The maximum number of indexes kept (the most recently used are kept). The indexes are split among STRIPES
+     * lists, so, each list keeps MAX_INDEXES / STRIPES indexes.
+     */
+    public static int MAX_INDEXES = 32;
+
+    /**
+     * The number of lists with the indexes (a node always goes to the same list -- based on its identity hash -- so
+     * that threads working on different ASTs don't contend for the same lock). Must be a power of 2.
+     */
+    private static final int STRIPES = 8;
+
+    private static final class Entry extends WeakReference<SimpleNode> {
+
+        private final boolean onlyFirstAttribPart;
+        private final LocalNamesIndex index;
+
+        private Entry(SimpleNode node, boolean onlyFirstAttribPart, LocalNamesIndex index) {
+            super(node);
+            this.onlyFirstAttribPart = onlyFirstAttribPart;
+            this.index = index;
+        }
+    }
+
+    /**
+     * The indexes created, with the most recently used first (each list is synchronized on itself). As there are few
+     * entries in each list, a linear search with an identity check is used (SimpleNode.equals is structural, so, a
+     * map can't be used).
+     */
+    private static final LinkedList<Entry>[] indexes = createStripes();
+
+    @SuppressWarnings("unchecked")
+    private static LinkedList<Entry>[] createStripes() {
+        LinkedList<Entry>[] ret = new LinkedList[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            ret[i] = new LinkedList<Entry>();
+        }
+        return ret;
+    }
+
+    /**
+     * @return the index for the names below the given node.
+     * Has only the first name in attributes if onlyFirstAttribPart is true (otherwise will have all attribute parts)
+     */
+    public static LocalNamesIndex get(SimpleNode node, boolean onlyFirstAttribPart) {
+        LinkedList<Entry> stripe = indexes[System.identityHashCode(node) & (STRIPES - 1)];
+        synchronized (stripe) {
+            for (Iterator<Entry> it = stripe.iterator(); it.hasNext();) {
+                Entry entry = it.next();
+                SimpleNode n = entry.get();
+                if (n == null) {
+                    it.remove();
+
+                } else if (n == node && entry.onlyFirstAttribPart == onlyFirstAttribPart) {
+                    if (stripe.getFirst() != entry) {
+                        it.remove();
+                        stripe.addFirst(entry);
+                    }
+                    return entry.index;
+                }
+            }
+        }
+
+        //Create it without holding the lock (if 2 threads create it at the same time, that's Ok, both will be
+        //equal and only one will remain in the cache).
+        LocalNamesIndex index = new LocalNamesIndex(ScopeAnalysis.getLocalNames(node, onlyFirstAttribPart));
+
+        int maxInStripe = Math.max(1, MAX_INDEXES / STRIPES);
+        synchronized (stripe) {
+            stripe.addFirst(new Entry(node, onlyFirstAttribPart, index));
+            while (stripe.size() > maxInStripe) {
+                stripe.removeLast();
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Clears all the indexes created.
+     */
+    public static void clear() {
+        for (LinkedList<Entry> stripe : indexes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    /**
+     * name -> entries with that name. Not changed after the construction.
+     */
+    private final Map<String, List<ASTEntry>> names = new HashMap<String, List<ASTEntry>>();
+
+    private LocalNamesIndex(Iterator<ASTEntry> iterator) {
+        while (iterator.hasNext()) {
+            ASTEntry entry = iterator.next();
+            String name = entry.getName();
+            List<ASTEntry> entries = names.get(name);
+            if (entries == null) {
+                entries = new ArrayList<ASTEntry>(2);
+                names.put(name, entries);
+            }
+            entries.add(entry);
+        }
+    }
+
+    /**
+     * @return a new list with copies of the entries that have the given name (clients may change the list and the
+     * entries -- i.e.: add additional info to them -- without affecting the index).
+     */
+    public List<ASTEntry> getOccurrences(String name) {
+        List<ASTEntry> entries = names.get(name);
+        if (entries == null) {
+            return new ArrayList<ASTEntry>();
+        }
+        ArrayList<ASTEntry> ret = new ArrayList<ASTEntry>(entries.size());
+        for (ASTEntry entry : entries) {
+            ASTEntry copy = new ASTEntry(entry.parent, entry.node);
+            copy.endLine = entry.endLine;
+            copy.endCol = entry.endCol;
+            ret.add(copy);
+        }
+        return ret;
+    }
+}
@@ -181,8 +181,14 @@ public class ScopeAnalysis {
      */
     public static List<ASTEntry> getLocalOccurrences(final String occurencesFor, SimpleNode simpleNode,
             final boolean onlyFirstAttribPart) {
-        List<ASTEntry> ret = new ArrayList<ASTEntry>();
+        return LocalNamesIndex.get(simpleNode, onlyFirstAttribPart).getOccurrences(occurencesFor);
+    }
 
+    /**
+     * @return an iterator with all the names found below the given node (used to create the LocalNamesIndex).
+     * Does only return the first name in attributes if onlyFirstAttribPart is true (otherwise will return all attribute parts)
+     */
+    /*default*/static Iterator<ASTEntry> getLocalNames(SimpleNode simpleNode, final boolean onlyFirstAttribPart) {
         SequencialASTIteratorVisitor visitor = new SequencialASTIteratorVisitor() {
 
             @Override
@@ -255,23 +261,7 @@ public class ScopeAnalysis {
             }
         }
 
-        Iterator<ASTEntry> iterator = visitor.getNamesIterator();
-        while (iterator.hasNext()) {
-            ASTEntry entry = iterator.next();
-            //SimpleNode nameNode = entry.getNameNode();
-            //if(!occurencesFor.isParamRename){
-            //    if(nameNode instanceof NameTok){
-            //        NameTok name = (NameTok) nameNode;
-            //        if(name.ctx == NameTok.KeywordName){
-            //            continue;
-            //        }
-            //   }
-            //}
-            if (occurencesFor.equals(entry.getName())) {
-                ret.add(entry);
-            }
-        }
-        return ret;
+        return visitor.getNamesIterator();
     }
 
     /**
@@ -1,11 +1,15 @@
 package com.python.pydev.analysis.system_info_builder;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 import org.python.pydev.core.IInterpreterManager;
@@ -15,6 +19,8 @@ import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.codecompletion.revisited.ModulesFoundStructure;
 import org.python.pydev.editor.codecompletion.revisited.PyPublicTreeMap;
 import org.python.pydev.editor.codecompletion.revisited.PythonPathHelper;
+import org.python.pydev.editor.codecompletion.revisited.PythonPathWatcher;
+import org.python.pydev.editor.codecompletion.revisited.PythonPathWatcher.IPythonPathChangesListener;
 import org.python.pydev.editor.codecompletion.revisited.SystemModulesManager;
 import org.python.pydev.logging.DebugSettings;
 import org.python.pydev.ui.pythonpathconf.IInterpreterInfoBuilder;
@@ -27,7 +33,7 @@ import com.python.pydev.analysis.additionalinfo.AdditionalSystemInterpreterInfo;
 /**
  * @author fabioz
  */
-public class InterpreterInfoBuilder implements IInterpreterInfoBuilder {
+public class InterpreterInfoBuilder implements IInterpreterInfoBuilder, IPythonPathChangesListener {
 
     static class InterpreterBuilderJob extends Job {
 
@@ -130,7 +136,12 @@ public class InterpreterInfoBuilder implements IInterpreterInfoBuilder {
 
     private InterpreterInfo info;
 
-    private boolean disposed;
+    private volatile boolean disposed;
+
+    /**
+     * Listens to changes in the pythonpath folders so that only what changed is updated (i.e.: pip install).
+     */
+    private PythonPathWatcher pythonPathWatcher;
 
     private static final InterpreterBuilderJob builderJob = new InterpreterBuilderJob();
 
@@ -138,8 +149,12 @@ public class InterpreterInfoBuilder implements IInterpreterInfoBuilder {
         return this.disposed;
     }
 
-    public void dispose() {
+    public synchronized void dispose() {
         disposed = true;
+        if (pythonPathWatcher != null) {
+            pythonPathWatcher.dispose();
+            pythonPathWatcher = null;
+        }
     }
 
     public void setInfo(InterpreterInfo info) {
@@ -148,8 +163,58 @@ public class InterpreterInfoBuilder implements IInterpreterInfoBuilder {
 
     public void setInfo(InterpreterInfo info, int schedule) {
         this.info = info;
+        synchronized (this) {
+            if (!disposed && pythonPathWatcher == null) {
+                pythonPathWatcher = new PythonPathWatcher(info.getPythonPath(), this);
+            }
+        }
         builderJob.buildersToCheck.add(this);
         builderJob.schedule(schedule);
     }
 
+    /**
+     * Updates the modules manager and the additional info only with the modules below the changed paths (all the
+     * changes are applied in a single update).
+     */
+    public void pythonpathChanged(Map<File, Set<File>> changes, IProgressMonitor monitor) {
+        if (disposed) {
+            return;
+        }
+        if (!info.getLoadFinished()) {
+            //The check done when the load finishes will get the changes.
+            builderJob.buildersToCheck.add(this);
+            builderJob.schedule(20 * 1000);
+            return;
+        }
+
+        SystemModulesManager modulesManager = (SystemModulesManager) info.getModulesManager();
+        List<ModulesKey> added = new ArrayList<ModulesKey>();
+        List<ModulesKey> removed = new ArrayList<ModulesKey>();
+        for (Map.Entry<File, Set<File>> entry : changes.entrySet()) {
+            //Not using the job monitor: a cancelled (partial) listing would remove modules which still exist.
+            Tuple<List<ModulesKey>, List<ModulesKey>> diff = modulesManager.diffModulesBelow(entry.getKey(),
+                    entry.getValue(), new NullProgressMonitor());
+            added.addAll(diff.o1);
+            removed.addAll(diff.o2);
+        }
+        if (disposed || (added.size() == 0 && removed.size() == 0)) {
+            return;
+        }
+        if (DebugSettings.DEBUG_INTERPRETER_AUTO_UPDATE) {
+            Log.toLogFile(this, com.aptana.shared_core.string.StringUtils.format(
+                    "Pythonpath changed: %s. Added: %s Removed: %s", changes.keySet(), added, removed));
+        }
+
+        modulesManager.applyModulesDelta(added, removed);
+
+        IInterpreterManager manager = modulesManager.getInterpreterManager();
+        try {
+            AbstractAdditionalDependencyInfo additionalSystemInfo = AdditionalSystemInterpreterInfo
+                    .getAdditionalSystemInfo(manager, info.getExecutableOrJar());
+            additionalSystemInfo.updateKeysIfNeededAndSave(added, removed);
+        } catch (Exception e) {
+            Log.log(e);
+        }
+    }
+
 }
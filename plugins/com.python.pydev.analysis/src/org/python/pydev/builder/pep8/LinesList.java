@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.builder.pep8;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A read-only list with the lines of a string (with the same lines StringUtils.splitInLines would return, i.e.:
+ * each line with its delimiter), but which only keeps the offsets of the lines (each line is only created
+ * when requested).
+ *
+ * @author Fabio
+ */
+/*default*/final class LinesList extends AbstractList<String> implements RandomAccess {
+
+    private final String string;
+
+    /**
+     * The offsets where each line starts (and at lineStarts[size] the end of the last line).
+     */
+    private int[] lineStarts = new int[64];
+    private int size;
+
+    public LinesList(String string) {
+        this.string = string;
+        int len = string.length();
+        int lineStart = 0;
+        for (int i = 0; i < len; i++) {
+            char c = string.charAt(i);
+            if (c == '\r') {
+                if (i < len - 1 && string.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                addLine(lineStart);
+                lineStart = i + 1;
+
+            } else if (c == '\n') {
+                addLine(lineStart);
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < len) {
+            addLine(lineStart);
+        }
+        ensureCapacity(size + 1);
+        lineStarts[size] = len;
+    }
+
+    private void addLine(int lineStart) {
+        ensureCapacity(size + 1);
+        lineStarts[size] = lineStart;
+        size++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > lineStarts.length) {
+            int[] newLineStarts = new int[Math.max(capacity, lineStarts.length * 2)];
+            System.arraycopy(lineStarts, 0, newLineStarts, 0, size);
+            lineStarts = newLineStarts;
+        }
+    }
+
+    @Override
+    public String get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return string.substring(lineStarts[index], lineStarts[index + 1]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
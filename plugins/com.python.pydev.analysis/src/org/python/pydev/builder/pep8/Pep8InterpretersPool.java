@@ -0,0 +1,217 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.builder.pep8;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.python.pydev.core.NullOutputStream;
+import org.python.pydev.core.concurrency.ParallelRunner;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.jython.IPythonInterpreter;
+import org.python.pydev.jython.JythonPlugin;
+
+/**
+ * A bounded pool of jython interpreters which already have pep8 imported and the function that runs the checker
+ * compiled, so that checking a file only needs a call to that function (instead of creating a new interpreter and
+ * executing the whole bootstrap code for each file).
+ *
+ * Up to getDefaultParallelism() files are checked in parallel (each one in a different interpreter). If all the
+ * interpreters are busy, the caller waits for one to be released.
+ *
+ * @author Fabio
+ */
+public final class Pep8InterpretersPool {
+
+    private static final String INITIALIZE_PEP8 = ""
+            + "import sys\n"
+            + "add_to_pythonpath = r'%s'\n"
+            + "if add_to_pythonpath not in sys.path:\n"
+            + "    sys.path.append(add_to_pythonpath)\n"
+            + "import pep8\n"
+            + "\n"
+            + "options_cache = {}\n"
+            + "\n"
+            + "def check(visitor, filename, lines, argv):\n"
+            + "    argv = list(argv)\n"
+            + "    sys.argv = argv\n"
+            + //It always accesses sys.argv[0] in process_options, so, it must be set.
+            "    key = tuple(argv[2:])\n"
+            + "    options = options_cache.get(key)\n"
+            + "    if options is None:\n"
+            + "        options, args = pep8.process_options(argv[1:])\n"
+            + //don't use sys.argv (it seems it doesn't get updated as it should).
+            "        options_cache[key] = options\n"
+            + "    else:\n"
+            + //The options are reused for the files checked with the same arguments (just reset the counters).
+            "        options.counters = dict.fromkeys(pep8.BENCHMARK_KEYS, 0)\n"
+            + "        options.messages = {}\n"
+            + "\n"
+            + "    checker = pep8.Checker(options, filename, lines)\n"
+            + "    original = checker.report_error\n"
+            + "\n"
+            + "    def report_error(line_number, offset, text, check):\n"
+            + "        code = text[:4]\n"
+            + "        if pep8.ignore_code(checker.options, code) or code in checker.expected:\n"
+            + "            return\n"
+            + "        visitor.reportError(line_number, offset, text, check)\n"
+            + "        return original(line_number, offset, text, check)\n"
+            + "\n"
+            + "    checker.report_error = report_error\n"
+            + "    checker.check_all()\n"
+            + "\n"
+            + "";
+
+    private static final String CHECK = "check(visitor, filename, lines, argv)\n";
+
+    private static final Object lock = new Object();
+
+    /**
+     * The pool for the current configuration (access synchronized on lock).
+     */
+    private static Pep8InterpretersPool current;
+
+    /**
+     * @param useConsole whether the output of the interpreters should go to the console.
+     * @param pep8Dir the directory containing pep8.py
+     * @return the pool for the given configuration (if the configuration changed, the previous pool is disposed).
+     */
+    /*default*/static Pep8InterpretersPool get(boolean useConsole, String pep8Dir) {
+        synchronized (lock) {
+            Pep8InterpretersPool pool = current;
+            if (pool != null && pool.useConsole == useConsole && pool.pep8Dir.equals(pep8Dir)) {
+                return pool;
+            }
+            if (pool != null) {
+                pool.dispose();
+            }
+            current = new Pep8InterpretersPool(useConsole, pep8Dir, ParallelRunner.getDefaultParallelism());
+            return current;
+        }
+    }
+
+    /**
+     * Disposes the current pool (the interpreters being used are disposed when released).
+     */
+    public static void disposeCurrent() {
+        synchronized (lock) {
+            if (current != null) {
+                current.dispose();
+                current = null;
+            }
+        }
+    }
+
+    private final boolean useConsole;
+    private final String pep8Dir;
+    private final int maxInterpreters;
+
+    //All the fields below are synchronized on this.
+    private final LinkedList<IPythonInterpreter> idle = new LinkedList<IPythonInterpreter>();
+    private int created;
+    private boolean disposed;
+
+    private Pep8InterpretersPool(boolean useConsole, String pep8Dir, int maxInterpreters) {
+        this.useConsole = useConsole;
+        this.pep8Dir = pep8Dir;
+        this.maxInterpreters = maxInterpreters;
+    }
+
+    /**
+     * Checks the given lines with pep8 (reporting the errors found to visitor.reportError).
+     *
+     * @param argv the arguments for pep8 (the 1st is the program name, the 2nd the file checked and the others
+     * are the additional arguments from the preferences).
+     */
+    /*default*/void check(Pep8Visitor visitor, String file, List<String> lines, String[] argv) throws InterruptedException {
+        IPythonInterpreter interpreter = acquire();
+        boolean ok = false;
+        try {
+            interpreter.set("visitor", visitor);
+            interpreter.set("filename", file);
+            interpreter.set("lines", lines);
+            interpreter.set("argv", argv);
+            interpreter.exec(CHECK);
+
+            //Don't keep references to the objects of this check in the pooled interpreter.
+            interpreter.set("visitor", null);
+            interpreter.set("lines", null);
+            ok = true;
+        } finally {
+            release(interpreter, ok);
+        }
+    }
+
+    private IPythonInterpreter acquire() throws InterruptedException {
+        synchronized (this) {
+            while (idle.size() == 0 && created >= maxInterpreters) {
+                this.wait();
+            }
+            if (idle.size() > 0) {
+                return idle.removeFirst();
+            }
+            created++;
+        }
+
+        //Create it outside of the lock (importing pep8 is slow).
+        boolean ok = false;
+        try {
+            IPythonInterpreter interpreter = JythonPlugin.newPythonInterpreter(useConsole, false);
+            if (!useConsole) {
+                interpreter.setErr(NullOutputStream.singleton);
+                interpreter.setOut(NullOutputStream.singleton);
+            }
+            interpreter.exec(com.aptana.shared_core.string.StringUtils.format(INITIALIZE_PEP8, pep8Dir));
+            ok = true;
+            return interpreter;
+        } finally {
+            if (!ok) {
+                synchronized (this) {
+                    created--;
+                    this.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param ok if false, the interpreter is not reused (as it may be in an inconsistent state).
+     */
+    private void release(IPythonInterpreter interpreter, boolean ok) {
+        synchronized (this) {
+            if (ok && !disposed) {
+                idle.addFirst(interpreter);
+                this.notifyAll();
+                return;
+            }
+            created--;
+            this.notifyAll();
+        }
+        cleanup(interpreter);
+    }
+
+    private void dispose() {
+        LinkedList<IPythonInterpreter> toCleanup;
+        synchronized (this) {
+            disposed = true;
+            toCleanup = new LinkedList<IPythonInterpreter>(idle);
+            created -= idle.size();
+            idle.clear();
+        }
+        for (IPythonInterpreter interpreter : toCleanup) {
+            cleanup(interpreter);
+        }
+    }
+
+    private static void cleanup(IPythonInterpreter interpreter) {
+        try {
+            interpreter.cleanup();
+        } catch (Throwable e) {
+            Log.log(e);
+        }
+    }
+}
@@ -10,6 +10,7 @@
 package com.python.pydev.analysis.additionalinfo;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -116,6 +117,55 @@ public class AdditionalInterpreterInfoTest extends AdditionalInfoTestsBase {
         assertEquals(1, tokensStartingWith.size());
     }
 
+    public void testStartingWithShortQualifier() {
+        String[] names = new String[] { "a", "ab", "Abc", "abcd", "b", "B2" };
+        for (String name : names) {
+            info.add(new FuncInfo(name, "mod1", null), AbstractAdditionalTokensInfo.TOP_LEVEL);
+        }
+        assertEquals(4, info.getTokensStartingWith("a", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+        assertEquals(3, info.getTokensStartingWith("AB", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+        assertEquals(2, info.getTokensStartingWith("b", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+        assertEquals(6, info.getTokensStartingWith("", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+        assertEquals(2,
+                info.getTokensStartingWith("a", AbstractAdditionalTokensInfo.TOP_LEVEL, new ArrayList<IInfo>(), 2)
+                        .size());
+
+        Collection<IInfo> tokensEqualTo = info.getTokensEqualTo("abc", AbstractAdditionalTokensInfo.TOP_LEVEL);
+        assertEquals(0, tokensEqualTo.size());
+        tokensEqualTo = info.getTokensEqualTo("Abc", AbstractAdditionalTokensInfo.TOP_LEVEL);
+        assertEquals(1, tokensEqualTo.size());
+
+        info.removeInfoFromModule("mod1", false);
+        assertEquals(0, info.getTokensStartingWith("", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+    }
+
+    public void testCamelCase() {
+        assertEquals("ose", AbstractAdditionalTokensInfo.getCamelCaseInitials("OrderedSetEntry"));
+        assertEquals("ose", AbstractAdditionalTokensInfo.getCamelCaseInitials("ordered_set_entry"));
+        assertEquals("hs", AbstractAdditionalTokensInfo.getCamelCaseInitials("HTTPServer"));
+        assertEquals(null, AbstractAdditionalTokensInfo.getCamelCaseInitials("__init__"));
+        assertEquals(null, AbstractAdditionalTokensInfo.getCamelCaseInitials("Entry"));
+
+        info.add(new ClassInfo("OrderedSetEntry", "mod1", null), AbstractAdditionalTokensInfo.TOP_LEVEL);
+        info.add(new FuncInfo("ordered_set_entry", "mod2", null), AbstractAdditionalTokensInfo.TOP_LEVEL);
+        info.add(new FuncInfo("OrderedDict", "mod2", null), AbstractAdditionalTokensInfo.TOP_LEVEL);
+
+        Collection<IInfo> found = info.getTokensWithCamelCaseInitials("OSE", AbstractAdditionalTokensInfo.TOP_LEVEL,
+                null, Integer.MAX_VALUE);
+        assertEquals(2, found.size());
+        assertIsIn("OrderedSetEntry", found);
+        assertIsIn("ordered_set_entry", found);
+
+        found = info.getTokensWithCamelCaseInitials("O", AbstractAdditionalTokensInfo.TOP_LEVEL, null,
+                Integer.MAX_VALUE);
+        assertEquals(3, found.size());
+
+        info.removeInfoFromModule("mod2", false);
+        found = info.getTokensWithCamelCaseInitials("OSE", AbstractAdditionalTokensInfo.TOP_LEVEL, null,
+                Integer.MAX_VALUE);
+        assertEquals(1, found.size());
+    }
+
     public void testAddFunc() {
         FuncInfo info2 = new FuncInfo(((NameTok) createFuncDef("met1").name).id, "mod1", null);
         info.add(info2, AbstractAdditionalTokensInfo.TOP_LEVEL);
@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.aptana.shared_core.io.FileUtils;
+
+public class InvertedTokensIndexTest extends TestCase {
+
+    private File baseDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDir = FileUtils.getTempFileAt(new File("."), "data_temp_inverted_tokens_index_test");
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        baseDir.mkdir();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        super.tearDown();
+    }
+
+    public void testIndex() throws Exception {
+        InvertedTokensIndex index = new InvertedTokensIndex();
+        index.addModule("mod1", 10, createSet("a", "b"));
+        index.addModule("mod2", 20, createSet("b", "c"));
+
+        assertEquals(Arrays.asList("mod1", "mod2"), getModulesWithToken(index, "b"));
+        assertEquals(Arrays.asList("mod2"), getModulesWithToken(index, "c"));
+        assertEquals(0, getModulesWithToken(index, "d").size());
+        assertEquals(10, index.getIndexedTime("mod1"));
+        assertEquals(-1, index.getIndexedTime("mod3"));
+
+        //Re-indexing replaces the previous tokens.
+        index.addModule("mod1", 30, createSet("c"));
+        assertEquals(Arrays.asList("mod2"), getModulesWithToken(index, "b"));
+        assertEquals(Arrays.asList("mod2", "mod1"), getModulesWithToken(index, "c"));
+        assertEquals(30, index.getIndexedTime("mod1"));
+
+        index.removeModule("mod2");
+        assertEquals(0, getModulesWithToken(index, "b").size());
+        assertEquals(Arrays.asList("mod1"), getModulesWithToken(index, "c"));
+        assertEquals(1, index.getModulesCount());
+    }
+
+    public void testSaveAndLoad() throws Exception {
+        InvertedTokensIndex index = new InvertedTokensIndex();
+        for (int i = 0; i < 500; i++) {
+            index.addModule("mod" + i, i, createSet("all", "tok" + (i % 10)));
+        }
+        index.removeModule("mod3");
+        index.addModule("mod4", 1000, createSet("other"));
+
+        File file = new File(baseDir, "index.tokens");
+        index.saveTo(file);
+        InvertedTokensIndex loaded = InvertedTokensIndex.loadFrom(file);
+
+        assertEquals(499, loaded.getModulesCount());
+        assertEquals(498, getModulesWithToken(loaded, "all").size());
+        assertEquals(getModulesWithToken(index, "tok5"), getModulesWithToken(loaded, "tok5"));
+        assertEquals(Arrays.asList("mod4"), getModulesWithToken(loaded, "other"));
+        assertEquals(1000, loaded.getIndexedTime("mod4"));
+        assertEquals(-1, loaded.getIndexedTime("mod3"));
+
+        //saving over an existing file replaces it (and the temporary file isn't left behind)
+        loaded.addModule("mod5", 2000, createSet("other"));
+        loaded.saveTo(file);
+        assertFalse(new File(baseDir, "index.tokens.tmp").exists());
+        loaded = InvertedTokensIndex.loadFrom(file);
+        assertEquals(Arrays.asList("mod4", "mod5"), getModulesWithToken(loaded, "other"));
+    }
+
+    private List<String> getModulesWithToken(InvertedTokensIndex index, String token) {
+        ArrayList<String> ret = new ArrayList<String>();
+        index.getModulesWithToken(token, ret);
+        return ret;
+    }
+
+    private HashSet<String> createSet(String... tokens) {
+        return new HashSet<String>(Arrays.asList(tokens));
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+
+import junit.framework.TestCase;
+
+import org.python.pydev.core.FastBufferedReader;
+import org.python.pydev.core.ObjectsPool.ObjectsPoolMap;
+import org.python.pydev.editor.codecompletion.revisited.PyPublicTreeMap;
+
+import com.aptana.shared_core.io.FileUtils;
+import com.aptana.shared_core.string.FastStringBuffer;
+import com.aptana.shared_core.structure.Tuple;
+
+public class TreeIOTest extends TestCase {
+
+    private File baseDir;
+
+    /**
+     * Benchmark comparing the text format with the binary format (load time and heap used).
+     */
+    public static void main(String[] args) {
+        try {
+            TreeIOTest test = new TreeIOTest();
+            test.setUp();
+            test.benchmarkLoad(40000);
+            test.tearDown();
+
+            junit.textui.TestRunner.run(TreeIOTest.class);
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDir = FileUtils.getTempFileAt(new File("."), "data_temp_tree_io_test");
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        baseDir.mkdir();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        super.tearDown();
+    }
+
+    public void testBinaryRoundTrip() throws Exception {
+        SortedMap<String, Set<IInfo>> topLevel = createTree(50, null);
+        SortedMap<String, Set<IInfo>> inner = createTree(50, "MyClass");
+
+        File file = new File(baseDir, "info.trees");
+        TreeIO.dumpTreesToBinaryFile(file, topLevel, inner);
+        Tuple<PyPublicTreeMap<String, Set<IInfo>>, PyPublicTreeMap<String, Set<IInfo>>> loaded = TreeIO
+                .loadTreesFromBinaryFile(file, new ObjectsPoolMap());
+
+        assertEquals(topLevel, loaded.o1);
+        assertEquals(inner, loaded.o2);
+
+        //Rewriting must work (the previous file is replaced).
+        TreeIO.dumpTreesToBinaryFile(file, inner, topLevel);
+        loaded = TreeIO.loadTreesFromBinaryFile(file, new ObjectsPoolMap());
+        assertEquals(inner, loaded.o1);
+        assertEquals(topLevel, loaded.o2);
+    }
+
+    public void testBinaryEmpty() throws Exception {
+        File file = new File(baseDir, "empty.trees");
+        TreeIO.dumpTreesToBinaryFile(file, new PyPublicTreeMap<String, Set<IInfo>>(),
+                new PyPublicTreeMap<String, Set<IInfo>>());
+        Tuple<PyPublicTreeMap<String, Set<IInfo>>, PyPublicTreeMap<String, Set<IInfo>>> loaded = TreeIO
+                .loadTreesFromBinaryFile(file, new ObjectsPoolMap());
+        assertEquals(0, loaded.o1.size());
+        assertEquals(0, loaded.o2.size());
+    }
+
+    private SortedMap<String, Set<IInfo>> createTree(int modules, String path) {
+        PyPublicTreeMap<String, Set<IInfo>> tree = new PyPublicTreeMap<String, Set<IInfo>>();
+        for (int i = 0; i < modules; i++) {
+            String modName = "pack.mod" + i;
+            addToTree(tree, new ClassInfo("Class" + i, modName, path));
+            addToTree(tree, new FuncInfo("func" + i, modName, path));
+            addToTree(tree, new AttrInfo("attr" + i, modName, path));
+            if (path == null) {
+                addToTree(tree, new NameInfo("name" + i, modName, path));
+            }
+        }
+        return tree;
+    }
+
+    private void addToTree(SortedMap<String, Set<IInfo>> tree, IInfo info) {
+        String key = info.getName().toLowerCase();
+        Set<IInfo> set = tree.get(key);
+        if (set == null) {
+            set = new HashSet<IInfo>();
+            tree.put(key, set);
+        }
+        set.add(info);
+    }
+
+    private void benchmarkLoad(int modules) throws Exception {
+        SortedMap<String, Set<IInfo>> topLevel = createTree(modules, null);
+        SortedMap<String, Set<IInfo>> inner = createTree(modules, "MyClass");
+
+        //Text format
+        Map<String, Integer> dictionary = new HashMap<String, Integer>();
+        FastStringBuffer treesBuf = new FastStringBuffer();
+        TreeIO.dumpTreeToBuffer(topLevel, treesBuf, dictionary);
+        TreeIO.dumpTreeToBuffer(inner, treesBuf, dictionary);
+        FastStringBuffer dictBuf = new FastStringBuffer();
+        TreeIO.dumpDictToBuffer(dictionary, dictBuf);
+        String text = dictBuf.toString() + treesBuf.toString();
+
+        //Binary format
+        File file = new File(baseDir, "benchmark.trees");
+        TreeIO.dumpTreesToBinaryFile(file, topLevel, inner);
+        topLevel = null;
+        inner = null;
+
+        for (int i = 0; i < 5; i++) {
+            long heapBefore = usedHeap();
+            long start = System.nanoTime();
+            FastBufferedReader reader = new FastBufferedReader(new StringReader(text));
+            ObjectsPoolMap pool = new ObjectsPoolMap();
+            FastStringBuffer buf = new FastStringBuffer();
+            reader.readLine(); //-- START DICTIONARY
+            Map<Integer, String> dict = TreeIO.loadDictFrom(reader, buf, pool);
+            Object t1 = TreeIO.loadTreeFrom(reader, dict, buf.clear(), pool);
+            reader.readLine(); //-- END TREE
+            Object t2 = TreeIO.loadTreeFrom(reader, dict, buf.clear(), pool);
+            long textTime = System.nanoTime() - start;
+            long textHeap = usedHeap() - heapBefore;
+            assertNotNull(t1);
+            assertNotNull(t2);
+            t1 = null;
+            t2 = null;
+
+            heapBefore = usedHeap();
+            start = System.nanoTime();
+            Object loaded = TreeIO.loadTreesFromBinaryFile(file, new ObjectsPoolMap());
+            long binaryTime = System.nanoTime() - start;
+            long binaryHeap = usedHeap() - heapBefore;
+            assertNotNull(loaded);
+            loaded = null;
+
+            System.out.println("Text: " + (textTime / 1000000) + "ms (" + (textHeap / 1024) + "KB) Binary: "
+                    + (binaryTime / 1000000) + "ms (" + (binaryHeap / 1024) + "KB)");
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
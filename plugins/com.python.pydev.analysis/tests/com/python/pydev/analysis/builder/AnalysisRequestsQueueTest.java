@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.builder;
+
+import junit.framework.TestCase;
+
+public class AnalysisRequestsQueueTest extends TestCase {
+
+    public static void main(String[] args) {
+        try {
+            junit.textui.TestRunner.run(AnalysisRequestsQueueTest.class);
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static class RunnableStub extends AbstractAnalysisBuilderRunnable {
+
+        public RunnableStub(String moduleName, int analysisCause) {
+            this(moduleName, analysisCause, 0);
+        }
+
+        public RunnableStub(String moduleName, int analysisCause, long documentTime) {
+            super(false, moduleName, false, analysisCause, null, documentTime, new KeyForAnalysisRunnable("project",
+                    moduleName), 0);
+        }
+
+        @Override
+        protected void doAnalysis() {
+        }
+    }
+
+    private static final int BUILDER = IAnalysisBuilderRunnable.ANALYSIS_CAUSE_BUILDER;
+    private static final int PARSER = IAnalysisBuilderRunnable.ANALYSIS_CAUSE_PARSER;
+
+    public void testPriorityAndOrder() throws Exception {
+        AnalysisRequestsQueue queue = new AnalysisRequestsQueue();
+        RunnableStub b1 = new RunnableStub("b1", BUILDER);
+        RunnableStub b2 = new RunnableStub("b2", BUILDER);
+        RunnableStub p1 = new RunnableStub("p1", PARSER);
+        assertNull(queue.add(b1));
+        assertNull(queue.add(b2));
+        assertNull(queue.add(p1));
+        assertEquals(3, queue.size());
+
+        assertSame(p1, queue.takeNext());
+        assertSame(b1, queue.takeNext());
+        assertSame(b2, queue.takeNext());
+        assertNull(queue.takeNext());
+        assertEquals(0, queue.size());
+        assertEquals(3, queue.getRunningCount());
+    }
+
+    public void testCoalesce() throws Exception {
+        AnalysisRequestsQueue queue = new AnalysisRequestsQueue();
+        RunnableStub a1 = new RunnableStub("a", BUILDER);
+        RunnableStub b1 = new RunnableStub("b", BUILDER);
+        RunnableStub a2 = new RunnableStub("a", BUILDER);
+        assertNull(queue.add(a1));
+        assertNull(queue.add(b1));
+        assertSame(a1, queue.add(a2));
+        assertEquals(2, queue.size());
+
+        //keeps the place of the one replaced
+        assertSame(a2, queue.takeNext());
+        assertSame(b1, queue.takeNext());
+    }
+
+    public void testCoalesceFromParserGetsPriority() throws Exception {
+        AnalysisRequestsQueue queue = new AnalysisRequestsQueue();
+        RunnableStub b1 = new RunnableStub("b", BUILDER);
+        RunnableStub a1 = new RunnableStub("a", BUILDER);
+        RunnableStub a2 = new RunnableStub("a", PARSER);
+        RunnableStub a3 = new RunnableStub("a", BUILDER);
+        assertNull(queue.add(b1));
+        assertNull(queue.add(a1));
+        assertSame(a1, queue.add(a2));
+        //a request from the builder still keeps the priority of the one from the parser it replaces
+        assertSame(a2, queue.add(a3));
+        assertEquals(2, queue.size());
+
+        assertSame(a3, queue.takeNext());
+        assertSame(b1, queue.takeNext());
+    }
+
+    public void testStoppedIsNotAdded() throws Exception {
+        AnalysisRequestsQueue queue = new AnalysisRequestsQueue();
+        RunnableStub a1 = new RunnableStub("a", BUILDER);
+        RunnableStub a2 = new RunnableStub("a", BUILDER);
+        //the factory stops the previous runnable when a new one is created, so, if a1 is only added after a2,
+        //it must not replace a2.
+        a1.stopAnalysis();
+        assertNull(queue.add(a2));
+        assertSame(a1, queue.add(a1));
+        assertEquals(1, queue.size());
+        assertSame(a2, queue.takeNext());
+    }
+
+    public void testSameModuleIsNotRunConcurrently() throws Exception {
+        AnalysisRequestsQueue queue = new AnalysisRequestsQueue();
+        RunnableStub a1 = new RunnableStub("a", BUILDER);
+        RunnableStub a2 = new RunnableStub("a", BUILDER);
+        RunnableStub b1 = new RunnableStub("b", BUILDER);
+        queue.add(a1);
+        assertSame(a1, queue.takeNext());
+
+        queue.add(a2);
+        queue.add(b1);
+        //a2 must wait for a1 to finish
+        assertSame(b1, queue.takeNext());
+        assertNull(queue.takeNext());
+        assertEquals(1, queue.size());
+
+        queue.finished(a1);
+        assertSame(a2, queue.takeNext());
+        assertEquals(0, queue.size());
+    }
+
+    public void testOlderDocumentAcceptedByFactoryReplacesPending() throws Exception {
+        AnalysisRequestsQueue queue = new AnalysisRequestsQueue();
+        RunnableStub a1 = new RunnableStub("a", BUILDER, 20);
+        //i.e.: the factory accepted it because the resource stamp changed (and stopped a1 when creating a2), so, the
+        //queue must not reject it (otherwise both would be discarded).
+        RunnableStub a2 = new RunnableStub("a", BUILDER, 10);
+        assertNull(queue.add(a1));
+        a1.stopAnalysis();
+        assertSame(a1, queue.add(a2));
+        assertSame(a2, queue.getCurrent(a1.getKey()));
+        assertSame(a2, queue.takeNext());
+    }
+
+    public void testStartRunning() throws Exception {
+        AnalysisRequestsQueue queue = new AnalysisRequestsQueue();
+        RunnableStub a1 = new RunnableStub("a", BUILDER);
+        RunnableStub a2 = new RunnableStub("a", BUILDER);
+        queue.add(a1);
+        assertTrue(queue.isPending(a1.getKey()));
+        assertFalse(queue.isRunning(a1.getKey()));
+
+        //a runnable run directly supersedes the pending one
+        assertSame(a1, queue.startRunning(a2));
+        assertFalse(queue.isPending(a1.getKey()));
+        assertTrue(queue.isRunning(a1.getKey()));
+        assertSame(a2, queue.getCurrent(a1.getKey()));
+
+        queue.finished(a2);
+        assertFalse(queue.isRunning(a1.getKey()));
+        assertNull(queue.getCurrent(a1.getKey()));
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.builder;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+public class AnalysisSchedulerTest extends TestCase {
+
+    public static void main(String[] args) {
+        try {
+            junit.textui.TestRunner.run(AnalysisSchedulerTest.class);
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static class RunnableStub extends AbstractAnalysisBuilderRunnable {
+
+        private int analyzed;
+
+        public RunnableStub(String moduleName, int analysisCause) {
+            super(false, moduleName, false, analysisCause, null, 0, new KeyForAnalysisRunnable("project",
+                    moduleName), 0);
+        }
+
+        @Override
+        protected void doAnalysis() {
+            analyzed++;
+        }
+    }
+
+    /**
+     * A scheduler which doesn't start any job (the test runs the workers).
+     */
+    private static class SchedulerStub extends AnalysisScheduler {
+
+        private int started;
+
+        public SchedulerStub(int maxWorkers, int maxPending, long maxWaitWhenFullMillis) {
+            super(maxWorkers, maxPending, maxWaitWhenFullMillis);
+        }
+
+        @Override
+        void startWorker() {
+            started++;
+        }
+    }
+
+    private static final int BUILDER = IAnalysisBuilderRunnable.ANALYSIS_CAUSE_BUILDER;
+    private static final int PARSER = IAnalysisBuilderRunnable.ANALYSIS_CAUSE_PARSER;
+
+    public void testWorkersCap() throws Exception {
+        SchedulerStub scheduler = new SchedulerStub(2, 100, 0);
+        RunnableStub[] runnables = new RunnableStub[5];
+        for (int i = 0; i < runnables.length; i++) {
+            runnables[i] = new RunnableStub("mod" + i, BUILDER);
+            scheduler.schedule(runnables[i]);
+        }
+        assertEquals(2, scheduler.started);
+        assertEquals(2, scheduler.getActiveWorkers());
+        assertEquals(5, scheduler.getQueueDepth());
+
+        //the 1st worker drains the queue and the 2nd has nothing to do
+        scheduler.runWorker(new NullProgressMonitor(), null);
+        scheduler.runWorker(new NullProgressMonitor(), null);
+        for (RunnableStub runnable : runnables) {
+            assertEquals(1, runnable.analyzed);
+        }
+        assertEquals(0, scheduler.getActiveWorkers());
+        assertEquals(0, scheduler.getQueueDepth());
+        assertEquals(5, scheduler.getCompletedCount());
+    }
+
+    public void testCancelledWorkerIsNotRestarted() throws Exception {
+        SchedulerStub scheduler = new SchedulerStub(1, 100, 0);
+        scheduler.schedule(new RunnableStub("mod1", BUILDER));
+        scheduler.schedule(new RunnableStub("mod2", BUILDER));
+        assertEquals(1, scheduler.started);
+
+        NullProgressMonitor monitor = new NullProgressMonitor();
+        monitor.setCanceled(true);
+        scheduler.runWorker(monitor, null);
+        assertEquals(1, scheduler.getCompletedCount());
+        assertEquals(1, scheduler.getQueueDepth());
+        assertEquals(0, scheduler.getActiveWorkers());
+        assertEquals(1, scheduler.started);
+
+        //a new request starts a new worker
+        scheduler.schedule(new RunnableStub("mod3", BUILDER));
+        assertEquals(2, scheduler.started);
+    }
+
+    public void testScheduleWhileWorkerExits() throws Exception {
+        final Thread[] scheduling = new Thread[1];
+        SchedulerStub scheduler = new SchedulerStub(1, 100, 0) {
+            @Override
+            void workerExiting() {
+                if (scheduling[0] != null) {
+                    return;
+                }
+                //A request arrives while the worker is exiting (it'll get the lock right after the worker releases it).
+                final SchedulerStub self = this;
+                scheduling[0] = new Thread() {
+                    @Override
+                    public void run() {
+                        self.schedule(new RunnableStub("b", PARSER));
+                    }
+                };
+                scheduling[0].start();
+                while (scheduling[0].getState() != Thread.State.BLOCKED
+                        && scheduling[0].getState() != Thread.State.TERMINATED) {
+                    Thread.yield();
+                }
+            }
+        };
+        scheduler.schedule(new RunnableStub("a", PARSER));
+        assertEquals(1, scheduler.started);
+
+        scheduler.runWorker(new NullProgressMonitor(), null);
+        scheduling[0].join(5000);
+
+        //the exiting worker is not counted, so, a new one must be started for the new request
+        assertEquals(2, scheduler.started);
+        assertEquals(1, scheduler.getActiveWorkers());
+        assertEquals(1, scheduler.getQueueDepth());
+    }
+
+    public void testBackpressure() throws Exception {
+        SchedulerStub scheduler = new SchedulerStub(1, 2, 200);
+        scheduler.schedule(new RunnableStub("a", BUILDER));
+        scheduler.schedule(new RunnableStub("b", BUILDER));
+
+        //replacing a pending request doesn't make the queue grow, so, it doesn't wait
+        long initial = System.currentTimeMillis();
+        scheduler.schedule(new RunnableStub("a", BUILDER));
+        //requests from the parser never wait
+        scheduler.schedule(new RunnableStub("c", PARSER));
+        assertEquals(0, scheduler.getThrottledCount());
+        assertEquals(1, scheduler.getCoalescedCount());
+        assertEquals(3, scheduler.getQueueDepth());
+
+        //a new module from the builder waits (but not forever, as nothing is draining the queue)
+        scheduler.schedule(new RunnableStub("d", BUILDER));
+        assertTrue(System.currentTimeMillis() - initial >= 150);
+        assertEquals(1, scheduler.getThrottledCount());
+        assertEquals(4, scheduler.getQueueDepth());
+    }
+
+    public void testMetrics() throws Exception {
+        SchedulerStub scheduler = new SchedulerStub(1, 100, 0);
+        RunnableStub a1 = new RunnableStub("a", BUILDER);
+        RunnableStub a2 = new RunnableStub("a", PARSER);
+        scheduler.schedule(a1);
+        scheduler.schedule(a2);
+        scheduler.requestDropped();
+        scheduler.addStageTime(AnalysisScheduler.STAGE_ANALYZE, 2000000);
+        scheduler.addStageTime(AnalysisScheduler.STAGE_ANALYZE, 4000000);
+
+        assertTrue(a1.isAnalysisStopped()); //discarded
+        assertEquals(2, scheduler.getScheduledCount());
+        assertEquals(1, scheduler.getCoalescedCount());
+        assertEquals(1, scheduler.getDroppedCount());
+        assertEquals(3.0, scheduler.getAverageStageTimeMillis(AnalysisScheduler.STAGE_ANALYZE), 0.001);
+        assertEquals(0.0, scheduler.getAverageStageTimeMillis(AnalysisScheduler.STAGE_SET_MARKERS), 0.001);
+
+        scheduler.runWorker(new NullProgressMonitor(), null);
+        assertEquals(0, a1.analyzed);
+        assertEquals(1, a2.analyzed);
+        assertEquals(1, scheduler.getCompletedCount());
+    }
+
+    public void testRunInline() throws Exception {
+        SchedulerStub scheduler = new SchedulerStub(1, 100, 0);
+        RunnableStub a1 = new RunnableStub("a", BUILDER);
+        RunnableStub a2 = new RunnableStub("a", BUILDER);
+        scheduler.schedule(a1);
+
+        scheduler.runInline(a2);
+        assertEquals(1, a2.analyzed);
+        assertTrue(a1.isAnalysisStopped()); //the pending one was superseded
+        assertEquals(0, scheduler.getQueueDepth());
+        assertNull(scheduler.getCurrent(a2.getKey()));
+    }
+}
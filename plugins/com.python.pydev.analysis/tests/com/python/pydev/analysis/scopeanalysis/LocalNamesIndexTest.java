@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.scopeanalysis;
+
+import java.util.List;
+
+import org.python.pydev.parser.PyParserTestBase;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.ast.FunctionDef;
+import org.python.pydev.parser.jython.ast.Module;
+import org.python.pydev.parser.visitors.scope.ASTEntry;
+
+public class LocalNamesIndexTest extends PyParserTestBase {
+
+    public static void main(String[] args) {
+        try {
+            junit.textui.TestRunner.run(LocalNamesIndexTest.class);
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        LocalNamesIndex.clear();
+    }
+
+    public void testLocalOccurrences() throws Exception {
+        String s = "" +
+                "a = 10\n" +
+                "def m(b):\n" +
+                "    a = b\n" +
+                "    print(a.b)\n" +
+                "print(a)\n" +
+                "";
+        Module root = (Module) parseLegalDocStr(s);
+        FunctionDef funcDef = (FunctionDef) root.body[1];
+
+        assertEquals(4, ScopeAnalysis.getLocalOccurrences("a", root).size());
+        assertEquals(2, ScopeAnalysis.getLocalOccurrences("b", root).size());
+        assertEquals(3, ScopeAnalysis.getLocalOccurrences("b", root, false).size());
+        assertEquals(0, ScopeAnalysis.getLocalOccurrences("c", root).size());
+
+        List<ASTEntry> inFunc = ScopeAnalysis.getLocalOccurrences("a", funcDef);
+        assertEquals(2, inFunc.size());
+        for (ASTEntry entry : inFunc) {
+            SimpleNode nameNode = entry.getNameNode();
+            assertTrue(nameNode.beginLine == 3 || nameNode.beginLine == 4);
+        }
+    }
+
+    public void testIndexReused() throws Exception {
+        String s = "" +
+                "a = 10\n" +
+                "print(a)\n" +
+                "";
+        SimpleNode root = parseLegalDocStr(s);
+        LocalNamesIndex index = LocalNamesIndex.get(root, true);
+        assertSame(index, LocalNamesIndex.get(root, true));
+        assertNotSame(index, LocalNamesIndex.get(root, false));
+
+        //clients may change the list returned
+        List<ASTEntry> occurrences = index.getOccurrences("a");
+        assertEquals(2, occurrences.size());
+        occurrences.clear();
+        assertEquals(2, index.getOccurrences("a").size());
+
+        //and the entries too (the ones in the index are not shared)
+        ASTEntry entry = index.getOccurrences("a").get(0);
+        entry.setAdditionalInfo("key", "value");
+        ASTEntry entry2 = index.getOccurrences("a").get(0);
+        assertNotSame(entry, entry2);
+        assertSame(entry.node, entry2.node);
+        assertNull(entry2.getAdditionalInfo("key", null));
+
+        //another AST has its own index
+        SimpleNode root2 = parseLegalDocStr(s + "b = a\n");
+        assertNotSame(index, LocalNamesIndex.get(root2, true));
+        assertEquals(3, ScopeAnalysis.getLocalOccurrences("a", root2).size());
+    }
+}
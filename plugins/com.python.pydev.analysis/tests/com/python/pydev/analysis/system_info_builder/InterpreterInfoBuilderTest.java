@@ -137,6 +137,61 @@ public class InterpreterInfoBuilderTest extends TestCase {
 
     }
 
+    public void testInterpreterInfoBuilderIncrementalUpdates() throws Exception {
+        Collection<String> pythonpath = new ArrayList<String>();
+        pythonpath.add(libDir.toString());
+
+        final InterpreterInfo info = new InterpreterInfo("2.6", TestDependent.PYTHON_EXE, pythonpath);
+
+        IPreferenceStore preferences = new PreferenceStore();
+        final PythonInterpreterManager manager = new PythonInterpreterManager(preferences);
+        PydevPlugin.setPythonInterpreterManager(manager);
+        manager.setInfos(new IInterpreterInfo[] { info }, new HashSet<String>(), null);
+
+        final AdditionalSystemInterpreterInfo additionalInfo = new AdditionalSystemInterpreterInfo(manager,
+                info.getExecutableOrJar());
+        AdditionalSystemInterpreterInfo.setAdditionalSystemInfo(manager, info.getExecutableOrJar(), additionalInfo);
+
+        final ISystemModulesManager modulesManager = info.getModulesManager();
+        modulesManager.changePythonPath(libDir.toString(), null, null);
+
+        InterpreterInfoBuilder builder = new InterpreterInfoBuilder();
+        builder.setInfo(info, 0);
+        try {
+            waitUntilSizes(modulesManager, additionalInfo, 3);
+
+            //'Install' a package: only its modules should be added.
+            File pack = new File(libDir, "pack");
+            pack.mkdirs();
+            FileUtils.writeStrToFile("", new File(pack, "__init__.py"));
+            FileUtils.writeStrToFile("class Mod1:pass", new File(pack, "mod1.py"));
+            FileUtils.writeStrToFile("class Mod2:pass", new File(pack, "mod2.py"));
+            waitUntilSizes(modulesManager, additionalInfo, 5);
+            assertTrue(modulesManager.getAllModuleNames(false, "pack").contains("pack.mod1"));
+
+            //And 'uninstall' it.
+            FileUtils.deleteDirectoryTree(pack);
+            waitUntilSizes(modulesManager, additionalInfo, 3);
+        } finally {
+            builder.dispose();
+        }
+    }
+
+    private void waitUntilSizes(final ISystemModulesManager modulesManager,
+            final AdditionalSystemInterpreterInfo additionalInfo, final int expectedTokens) {
+        waitUntilCondition(new ICallback<String, Object>() {
+
+            public String call(Object arg) {
+                int tokens = additionalInfo.getAllTokens().size();
+                if (tokens == expectedTokens) {
+                    return null;
+                }
+                return "Expected tokens = " + expectedTokens + ", found: " + tokens + " (modules: "
+                        + modulesManager.getSize(false) + ")";
+            }
+        });
+    }
+
     private void waitUntilCondition(ICallback<String, Object> call) {
         long currentTimeMillis = System.currentTimeMillis();
         String msg = null;
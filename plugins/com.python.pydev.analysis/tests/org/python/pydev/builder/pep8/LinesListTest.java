@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.builder.pep8;
+
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+import org.python.pydev.core.docutils.StringUtils;
+
+public class LinesListTest extends TestCase {
+
+    public static void main(String[] args) {
+        try {
+            junit.textui.TestRunner.run(LinesListTest.class);
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void testLinesList() throws Exception {
+        String[] strings = new String[] { "", "a", "a\n", "a\nb", "a\r\nb\r\n", "a\rb\r", "\n\n\r\r\n", "a\n\rb",
+                "line1\nline2\r\nline3\rline4", };
+        for (String s : strings) {
+            assertEquals(StringUtils.splitInLines(s), new ArrayList<String>(new LinesList(s)));
+        }
+    }
+
+    public void testManyLines() throws Exception {
+        StringBuffer buf = new StringBuffer();
+        for (int i = 0; i < 1000; i++) {
+            buf.append("line").append(i).append('\n');
+        }
+        LinesList lines = new LinesList(buf.toString());
+        assertEquals(1000, lines.size());
+        assertEquals("line999\n", lines.get(999));
+        try {
+            lines.get(1000);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            //expected
+        }
+    }
+}
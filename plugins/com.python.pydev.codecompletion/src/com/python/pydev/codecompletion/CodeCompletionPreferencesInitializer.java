@@ -40,6 +40,9 @@ public class CodeCompletionPreferencesInitializer extends AbstractPreferenceInit
     public static final String CHARS_FOR_CTX_INSENSITIVE_TOKENS_COMPLETION = "CHARS_FOR_CTX_INSENSITIVE_TOKENS_COMPLETION";
     public static final int DEFAULT_CHARS_FOR_CTX_INSENSITIVE_TOKENS_COMPLETION = 2;
 
+    public static final String MAX_CTX_INSENSITIVE_TOKENS_COMPLETIONS = "MAX_CTX_INSENSITIVE_TOKENS_COMPLETIONS";
+    public static final int DEFAULT_MAX_CTX_INSENSITIVE_TOKENS_COMPLETIONS = 500;
+
     @Override
     public void initializeDefaultPreferences() {
         Preferences node = new DefaultScope().getNode(DEFAULT_SCOPE);
@@ -51,6 +54,7 @@ public class CodeCompletionPreferencesInitializer extends AbstractPreferenceInit
         node.put(KEYWORDS_CODE_COMPLETION, DEFAULT_KEYWORDS_CODE_COMPLETION);
         node.putInt(CHARS_FOR_CTX_INSENSITIVE_MODULES_COMPLETION, DEFAULT_CHARS_FOR_CTX_INSENSITIVE_MODULES_COMPLETION);
         node.putInt(CHARS_FOR_CTX_INSENSITIVE_TOKENS_COMPLETION, DEFAULT_CHARS_FOR_CTX_INSENSITIVE_TOKENS_COMPLETION);
+        node.putInt(MAX_CTX_INSENSITIVE_TOKENS_COMPLETIONS, DEFAULT_MAX_CTX_INSENSITIVE_TOKENS_COMPLETIONS);
     }
 
 }
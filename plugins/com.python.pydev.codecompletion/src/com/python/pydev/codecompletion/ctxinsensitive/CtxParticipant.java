@@ -104,7 +104,8 @@ public class CtxParticipant implements IPyDevCompletionParticipant, IPyDevComple
         }
 
         Collection<IInfo> tokensStartingWith = additionalInfoForProject.getTokensStartingWith(qual,
-                AbstractAdditionalTokensInfo.TOP_LEVEL);
+                AbstractAdditionalTokensInfo.TOP_LEVEL, null,
+                CodeCompletionPreferencesPage.getMaxContextInsensitiveGlobalTokensCompletions());
 
         FastStringBuffer realImportRep = new FastStringBuffer();
         FastStringBuffer displayString = new FastStringBuffer();
@@ -170,8 +171,19 @@ public class CtxParticipant implements IPyDevCompletionParticipant, IPyDevComple
 
             String initialModule = request.resolveModule();
 
+            int maxResults = CodeCompletionPreferencesPage.getMaxContextInsensitiveGlobalTokensCompletions();
             List<IInfo> tokensStartingWith = AdditionalProjectInterpreterInfo.getTokensStartingWith(qual,
-                    request.nature, AbstractAdditionalTokensInfo.TOP_LEVEL);
+                    request.nature, AbstractAdditionalTokensInfo.TOP_LEVEL, maxResults);
+
+            //i.e.: OSE should also bring OrderedSetEntry
+            HashSet<IInfo> camelCaseMatches = new HashSet<IInfo>(
+                    AdditionalProjectInterpreterInfo.getTokensWithCamelCaseInitials(qual, request.nature,
+                            AbstractAdditionalTokensInfo.TOP_LEVEL, maxResults));
+            for (IInfo info : camelCaseMatches) {
+                if (!info.getName().toLowerCase().startsWith(lowerQual)) {
+                    tokensStartingWith.add(info);
+                }
+            }
 
             FastStringBuffer realImportRep = new FastStringBuffer();
             FastStringBuffer displayString = new FastStringBuffer();
@@ -195,7 +207,8 @@ public class CtxParticipant implements IPyDevCompletionParticipant, IPyDevComple
 
                 String rep = info.getName();
                 String lowerRep = rep.toLowerCase();
-                if (!lowerRep.startsWith(lowerQual) || importedNames.contains(rep)) {
+                if ((!lowerRep.startsWith(lowerQual) && !camelCaseMatches.contains(info))
+                        || importedNames.contains(rep)) {
                     continue;
                 }
 
@@ -263,7 +276,8 @@ public class CtxParticipant implements IPyDevCompletionParticipant, IPyDevComple
             List<IInfo> tokensStartingWith;
             try {
                 tokensStartingWith = AdditionalProjectInterpreterInfo.getTokensStartingWith(qual, state.getNature(),
-                        AbstractAdditionalTokensInfo.INNER);
+                        AbstractAdditionalTokensInfo.INNER,
+                        CodeCompletionPreferencesPage.getMaxContextInsensitiveGlobalTokensCompletions());
             } catch (MisconfigurationException e) {
                 Log.log(e);
                 return ret;
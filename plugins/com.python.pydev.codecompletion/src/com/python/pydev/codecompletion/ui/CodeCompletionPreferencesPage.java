@@ -52,6 +52,10 @@ public class CodeCompletionPreferencesPage extends FieldEditorPreferencePage imp
                 CodeCompletionPreferencesInitializer.CHARS_FOR_CTX_INSENSITIVE_TOKENS_COMPLETION,
                 "Number of chars for showing global tokens in context-insensitive completions?", p));
 
+        addField(new IntegerFieldEditor(
+                CodeCompletionPreferencesInitializer.MAX_CTX_INSENSITIVE_TOKENS_COMPLETIONS,
+                "Maximum number of global tokens in context-insensitive completions?", p));
+
         addField(new BooleanFieldEditor(CodeCompletionPreferencesInitializer.USE_KEYWORDS_CODE_COMPLETION,
                 "Use common tokens auto code completion?", p));
         addField(new LabelFieldEditor("LabelFieldEditor", "", p));
@@ -131,6 +135,19 @@ public class CodeCompletionPreferencesPage extends FieldEditorPreferencePage imp
         return getIntFromPrefs(prefName);
     }
 
+    /**
+     * @return the maximum number of global tokens gotten for the context-insensitive completions.
+     */
+    public static int getMaxContextInsensitiveGlobalTokensCompletions() {
+        CodecompletionPlugin plugin = CodecompletionPlugin.getDefault();
+        if (plugin == null) { //testing
+            return CodeCompletionPreferencesInitializer.DEFAULT_MAX_CTX_INSENSITIVE_TOKENS_COMPLETIONS;
+        }
+        int max = plugin.getPreferenceStore().getInt(
+                CodeCompletionPreferencesInitializer.MAX_CTX_INSENSITIVE_TOKENS_COMPLETIONS);
+        return max > 0 ? max : Integer.MAX_VALUE;
+    }
+
     public static boolean useKeywordsCodeCompletion() {
         return CodecompletionPlugin.getDefault().getPreferenceStore()
                 .getBoolean(CodeCompletionPreferencesInitializer.USE_KEYWORDS_CODE_COMPLETION);
@@ -0,0 +1,275 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.refactoring.markoccurrences;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.python.pydev.core.log.Log;
+import org.python.pydev.core.structure.FastStack;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.ast.ClassDef;
+import org.python.pydev.parser.jython.ast.DictComp;
+import org.python.pydev.parser.jython.ast.FunctionDef;
+import org.python.pydev.parser.jython.ast.GeneratorExp;
+import org.python.pydev.parser.jython.ast.Global;
+import org.python.pydev.parser.jython.ast.Lambda;
+import org.python.pydev.parser.jython.ast.ListComp;
+import org.python.pydev.parser.jython.ast.Name;
+import org.python.pydev.parser.jython.ast.NonLocal;
+import org.python.pydev.parser.jython.ast.SetComp;
+import org.python.pydev.parser.jython.ast.VisitorBase;
+import org.python.pydev.parser.jython.ast.decoratorsType;
+import org.python.pydev.parser.visitors.scope.ASTEntry;
+
+import com.aptana.shared_core.structure.Tuple;
+import com.python.pydev.analysis.scopeanalysis.ScopeAnalysis;
+
+/**
+ * Finds the occurrences of a local variable (or parameter) directly from the names indexed for the AST (see
+ * LocalNamesIndex), so that mark occurrences doesn't need to go through the whole rename analysis (which has to find
+ * the definition with the code completion engine) for the common case of a local in a function.
+ *
+ * It only handles names bound in a function which doesn't have any inner scope nor global/nonlocal declarations
+ * (in which case all the occurrences of the name in the function refer to the same variable). For anything else
+ * the full analysis must be used.
+ *
+ * Only the parameters and the body of the function are considered (its decorators and the defaults of its
+ * parameters are evaluated in the enclosing scope).
+ *
+ * @author Fabio
+ */
+/*default*/final class LocalOccurrencesFinder extends VisitorBase {
+
+    private final int line;
+    private final int col;
+
+    /**
+     * The functions we're in while visiting.
+     */
+    private final FastStack<FunctionDef> functions = new FastStack<FunctionDef>(5);
+
+    private Name found;
+    private FunctionDef foundIn;
+
+    /**
+     * @param line the line of the cursor (starting at 0)
+     * @param col the column of the cursor (starting at 0)
+     */
+    private LocalOccurrencesFinder(int line, int col) {
+        this.line = line;
+        this.col = col;
+    }
+
+    /**
+     * @param ast the AST of the editor (which must be in sync with the document).
+     * @param line the line of the cursor (starting at 0)
+     * @param col the column of the cursor (starting at 0)
+     * @return a tuple with the name and its occurrences (including the ones in comments and strings in the function)
+     * or null if the cursor is not in a local variable this class can handle.
+     */
+    public static Tuple<String, HashSet<ASTEntry>> find(SimpleNode ast, int line, int col) {
+        LocalOccurrencesFinder finder = new LocalOccurrencesFinder(line, col);
+        try {
+            ast.accept(finder);
+        } catch (Exception e) {
+            Log.log(e);
+            return null;
+        }
+        if (finder.found == null || finder.foundIn == null || hasInnerScopeOrGlobal(finder.foundIn)) {
+            return null;
+        }
+
+        String name = finder.found.id;
+        //the index for the function doesn't have the defaults, but it still has the decorators
+        List<ASTEntry> occurrences = ScopeAnalysis.getLocalOccurrences(name, finder.foundIn);
+        Map<SimpleNode, Object> inDecorators = getDecoratorNodes(finder.foundIn);
+        if (inDecorators.size() > 0) {
+            for (Iterator<ASTEntry> it = occurrences.iterator(); it.hasNext();) {
+                if (inDecorators.containsKey(it.next().node)) {
+                    it.remove();
+                }
+            }
+        }
+        boolean bound = false;
+        boolean atCursor = false;
+        for (ASTEntry entry : occurrences) {
+            if (!(entry.node instanceof Name)) {
+                return null; //i.e.: a NameTok in an import or in varargs: let the full analysis handle it
+            }
+            int ctx = ((Name) entry.node).ctx;
+            if (ctx == Name.Store || ctx == Name.Param || ctx == Name.KwOnlyParam || ctx == Name.AugStore) {
+                bound = true;
+            }
+            if (entry.node == finder.found) {
+                atCursor = true;
+            }
+        }
+        if (!bound || !atCursor) {
+            //not a local (or the cursor is in the decorators/defaults of the function, which are in the outer scope)
+            return null;
+        }
+
+        //same as the local rename process (there's at least the occurrence at the cursor)
+        for (SimpleNode node : getParametersAndBody(finder.foundIn)) {
+            occurrences.addAll(ScopeAnalysis.getCommentOccurrences(name, node));
+            occurrences.addAll(ScopeAnalysis.getStringOccurrences(name, node));
+        }
+        return new Tuple<String, HashSet<ASTEntry>>(name, new HashSet<ASTEntry>(occurrences));
+    }
+
+    /**
+     * @return the parameters (without their defaults and annotations) and the statements of the given function.
+     */
+    private static List<SimpleNode> getParametersAndBody(FunctionDef functionDef) {
+        List<SimpleNode> ret = new ArrayList<SimpleNode>();
+        if (functionDef.args != null) {
+            addAll(ret, functionDef.args.args);
+            if (functionDef.args.vararg != null) {
+                ret.add(functionDef.args.vararg);
+            }
+            if (functionDef.args.kwarg != null) {
+                ret.add(functionDef.args.kwarg);
+            }
+            addAll(ret, functionDef.args.kwonlyargs);
+        }
+        addAll(ret, functionDef.body);
+        return ret;
+    }
+
+    private static void addAll(List<SimpleNode> ret, SimpleNode[] nodes) {
+        if (nodes != null) {
+            for (SimpleNode node : nodes) {
+                if (node != null) {
+                    ret.add(node);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the nodes in the decorators of the given function (as the keys of an identity map).
+     */
+    private static Map<SimpleNode, Object> getDecoratorNodes(FunctionDef functionDef) {
+        final Map<SimpleNode, Object> ret = new IdentityHashMap<SimpleNode, Object>();
+        if (functionDef.decs == null) {
+            return ret;
+        }
+        VisitorBase visitor = new VisitorBase() {
+
+            @Override
+            protected Object unhandled_node(SimpleNode node) throws Exception {
+                ret.put(node, node);
+                return null;
+            }
+
+            @Override
+            public void traverse(SimpleNode node) throws Exception {
+                node.traverse(this);
+            }
+        };
+        try {
+            for (decoratorsType dec : functionDef.decs) {
+                if (dec != null) {
+                    dec.accept(visitor);
+                }
+            }
+        } catch (Exception e) {
+            Log.log(e);
+        }
+        return ret;
+    }
+
+    /**
+     * @return whether the given function has some scope inside it (where a name could be shadowed or used from the
+     * function) or global/nonlocal declarations.
+     */
+    private static boolean hasInnerScopeOrGlobal(FunctionDef functionDef) {
+        final boolean[] found = new boolean[] { false };
+        VisitorBase visitor = new VisitorBase() {
+
+            @Override
+            protected Object unhandled_node(SimpleNode node) throws Exception {
+                if (node instanceof FunctionDef || node instanceof ClassDef || node instanceof Lambda
+                        || node instanceof ListComp || node instanceof GeneratorExp || node instanceof DictComp
+                        || node instanceof SetComp || node instanceof Global || node instanceof NonLocal) {
+                    found[0] = true;
+                }
+                return null;
+            }
+
+            @Override
+            public void traverse(SimpleNode node) throws Exception {
+                if (!found[0]) {
+                    node.traverse(this);
+                }
+            }
+        };
+        try {
+            if (functionDef.body != null) {
+                for (SimpleNode stmt : functionDef.body) {
+                    if (stmt != null) {
+                        stmt.accept(visitor);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Log.log(e);
+            return true;
+        }
+        return found[0];
+    }
+
+    @Override
+    public Object visitFunctionDef(FunctionDef node) throws Exception {
+        functions.push(node);
+        try {
+            node.traverse(this);
+        } finally {
+            functions.pop();
+        }
+        return null;
+    }
+
+    @Override
+    public Object visitClassDef(ClassDef node) throws Exception {
+        //a class body is not a function scope
+        functions.push(null);
+        try {
+            node.traverse(this);
+        } finally {
+            functions.pop();
+        }
+        return null;
+    }
+
+    @Override
+    public Object visitName(Name node) throws Exception {
+        int beginCol = node.beginColumn - 1;
+        if (found == null && node.beginLine - 1 == line && col >= beginCol && col <= beginCol + node.id.length()) {
+            found = node;
+            foundIn = functions.size() > 0 ? functions.peek() : null;
+        }
+        return null;
+    }
+
+    @Override
+    protected Object unhandled_node(SimpleNode node) throws Exception {
+        return null;
+    }
+
+    @Override
+    public void traverse(SimpleNode node) throws Exception {
+        if (found == null) {
+            node.traverse(this);
+        }
+    }
+}
@@ -27,6 +27,7 @@ import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.action.IAction;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ISynchronizable;
 import org.eclipse.jface.text.Position;
@@ -47,6 +48,7 @@ import org.python.pydev.parser.jython.SimpleNode;
 import org.python.pydev.parser.jython.ast.Name;
 import org.python.pydev.parser.visitors.scope.ASTEntry;
 
+import com.aptana.shared_core.structure.Tuple;
 import com.python.pydev.PydevPlugin;
 import com.python.pydev.refactoring.refactorer.AstEntryRefactorerRequestConstants;
 import com.python.pydev.refactoring.ui.MarkOccurrencesPreferencesPage;
@@ -123,8 +125,7 @@ public class MarkOccurrencesJob extends Job {
                     return Status.OK_STATUS;
                 }
 
-                Tuple3<RefactoringRequest, PyRenameEntryPoint, Boolean> ret = checkAnnotations(pyEdit,
-                        documentProvider, monitor);
+                Tuple3<String, HashSet<ASTEntry>, Boolean> ret = checkAnnotations(pyEdit, documentProvider, monitor);
                 if (pyEdit.cache == null || monitor.isCanceled()) { //disposed (cannot add or remove annotations)
                     return Status.OK_STATUS;
                 }
@@ -178,28 +179,47 @@ public class MarkOccurrencesJob extends Job {
     }
 
     /**
-     * @return a tuple with the refactoring request, the processor and a boolean indicating if all pre-conditions succedded.
+     * @return a tuple with the initial name, the occurrences found in the document and a boolean indicating if all 
+     * pre-conditions succedded.
      * @throws MisconfigurationException 
      */
-    private Tuple3<RefactoringRequest, PyRenameEntryPoint, Boolean> checkAnnotations(PyEdit pyEdit,
+    private Tuple3<String, HashSet<ASTEntry>, Boolean> checkAnnotations(PyEdit pyEdit,
             IDocumentProvider documentProvider, IProgressMonitor monitor) throws BadLocationException,
             OperationCanceledException, CoreException, MisconfigurationException {
         if (!MarkOccurrencesPreferencesPage.useMarkOccurrences()) {
-            return new Tuple3<RefactoringRequest, PyRenameEntryPoint, Boolean>(null, null, false);
+            return new Tuple3<String, HashSet<ASTEntry>, Boolean>(null, null, false);
         }
 
         //now, let's see if the editor still has a document (so that we still can add stuff to it)
         IEditorInput editorInput = pyEdit.getEditorInput();
         if (editorInput == null) {
-            return new Tuple3<RefactoringRequest, PyRenameEntryPoint, Boolean>(null, null, false);
+            return new Tuple3<String, HashSet<ASTEntry>, Boolean>(null, null, false);
         }
 
         if (documentProvider.getDocument(editorInput) == null) {
-            return new Tuple3<RefactoringRequest, PyRenameEntryPoint, Boolean>(null, null, false);
+            return new Tuple3<String, HashSet<ASTEntry>, Boolean>(null, null, false);
         }
 
         if (pyEdit.getSelectionProvider() == null) {
-            return new Tuple3<RefactoringRequest, PyRenameEntryPoint, Boolean>(null, null, false);
+            return new Tuple3<String, HashSet<ASTEntry>, Boolean>(null, null, false);
+        }
+
+        //if the cursor is in an occurrence already found for the current ast, there's no need to analyze it again
+        OccurrencesCache occurrencesCache = getOccurrencesCache(pyEdit);
+        SimpleNode ast = getAstInSync(pyEdit, this.ps.getDoc());
+        if (ast != null) {
+            Tuple<String, HashSet<ASTEntry>> found = occurrencesCache.get(ast, this.ps.getCursorLine(),
+                    this.ps.getCursorColumn());
+            if (found != null) {
+                return new Tuple3<String, HashSet<ASTEntry>, Boolean>(found.o1, found.o2, true);
+            }
+
+            //a local in a function can be gotten from the names indexed for the ast (no need for the rename analysis)
+            found = LocalOccurrencesFinder.find(ast, this.ps.getCursorLine(), this.ps.getCursorColumn());
+            if (found != null) {
+                occurrencesCache.put(ast, found.o1, found.o2);
+                return new Tuple3<String, HashSet<ASTEntry>, Boolean>(found.o1, found.o2, true);
+            }
         }
 
         //ok, the editor is still there wit ha document... move on
@@ -208,40 +228,74 @@ public class MarkOccurrencesJob extends Job {
         final RefactoringRequest req = getRefactoringRequest(pyEdit, pyRefactorAction, this.ps);
 
         if (req == null || !req.nature.getRelatedInterpreterManager().isConfigured()) { //we check if it's configured because it may still be a stub...
-            return new Tuple3<RefactoringRequest, PyRenameEntryPoint, Boolean>(null, null, false);
+            return new Tuple3<String, HashSet<ASTEntry>, Boolean>(null, null, false);
         }
 
         PyRenameEntryPoint processor = new PyRenameEntryPoint(req);
         //to see if a new request was not created in the meantime (in which case this one will be cancelled)
         if (currRequestTime != lastRequestTime || monitor.isCanceled()) {
-            return new Tuple3<RefactoringRequest, PyRenameEntryPoint, Boolean>(null, null, false);
+            return new Tuple3<String, HashSet<ASTEntry>, Boolean>(null, null, false);
         }
 
         try {
             processor.checkInitialConditions(monitor);
             if (currRequestTime != lastRequestTime || monitor.isCanceled()) {
-                return new Tuple3<RefactoringRequest, PyRenameEntryPoint, Boolean>(null, null, false);
+                return new Tuple3<String, HashSet<ASTEntry>, Boolean>(null, null, false);
             }
 
             processor.checkFinalConditions(monitor, null);
             if (currRequestTime != lastRequestTime || monitor.isCanceled()) {
-                return new Tuple3<RefactoringRequest, PyRenameEntryPoint, Boolean>(null, null, false);
+                return new Tuple3<String, HashSet<ASTEntry>, Boolean>(null, null, false);
             }
 
             //ok, pre-conditions suceeded
-            return new Tuple3<RefactoringRequest, PyRenameEntryPoint, Boolean>(req, processor, true);
+            HashSet<ASTEntry> occurrences = processor.getOccurrences();
+            if (occurrences != null && ast != null && req.getAST() == ast) {
+                occurrencesCache.put(ast, req.initialName, occurrences);
+            }
+            return new Tuple3<String, HashSet<ASTEntry>, Boolean>(req.initialName, occurrences, true);
         } catch (Throwable e) {
             throw new RuntimeException("Error in occurrences while analyzing modName:" + req.moduleName
                     + " initialName:" + req.initialName + " line (start at 0):" + req.ps.getCursorLine(), e);
         }
     }
 
+    /**
+     * @return the ast of the editor if it's in sync with the given document (and null otherwise).
+     */
+    private static SimpleNode getAstInSync(PyEdit pyEdit, IDocument doc) {
+        SimpleNode ast = pyEdit.getAST();
+        long astModificationTimeStamp = pyEdit.getAstModificationTimeStamp();
+        if (ast != null && astModificationTimeStamp != -1 && doc instanceof IDocumentExtension4
+                && astModificationTimeStamp == ((IDocumentExtension4) doc).getModificationStamp()) {
+            return ast;
+        }
+        return null;
+    }
+
+    /**
+     * @return the cache with the occurrences already found in the given editor.
+     */
+    private static OccurrencesCache getOccurrencesCache(PyEdit pyEdit) {
+        Map<String, Object> cache = pyEdit.cache;
+        if (cache == null) {
+            return new OccurrencesCache(); //disposed (just don't keep it)
+        }
+        synchronized (cache) {
+            Object occurrencesCache = cache.get(OccurrencesCache.CACHE_KEY);
+            if (!(occurrencesCache instanceof OccurrencesCache)) {
+                occurrencesCache = new OccurrencesCache();
+                cache.put(OccurrencesCache.CACHE_KEY, occurrencesCache);
+            }
+            return (OccurrencesCache) occurrencesCache;
+        }
+    }
+
     /**
      * @return true if the annotations were removed and added without any problems and false otherwise
      */
     private synchronized boolean addAnnotations(final PyEdit pyEdit, IAnnotationModel annotationModel,
-            final RefactoringRequest req, PyRenameEntryPoint processor) throws BadLocationException {
-        HashSet<ASTEntry> occurrences = processor.getOccurrences();
+            String initialName, HashSet<ASTEntry> occurrences) throws BadLocationException {
         if (occurrences == null) {
             if (DEBUG) {
                 System.out.println("Occurrences == null");
@@ -276,7 +330,7 @@ public class MarkOccurrencesJob extends Job {
             try {
                 Annotation annotation = new Annotation(PydevPlugin.OCCURRENCE_ANNOTATION_TYPE, false, "occurrence");
                 Position position = new Position(lineInformation.getOffset() + node.beginColumn - 1,
-                        req.initialName.length());
+                        initialName.length());
                 toAddAsMap.put(annotation, position);
                 annotations.add(annotation);
 
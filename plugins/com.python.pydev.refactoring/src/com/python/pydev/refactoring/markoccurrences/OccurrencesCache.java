@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.refactoring.markoccurrences;
+
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.visitors.scope.ASTEntry;
+
+import com.aptana.shared_core.structure.Tuple;
+import com.python.pydev.analysis.scopeanalysis.AstEntryScopeAnalysisConstants;
+
+/**
+ * Keeps the occurrences already found for an AST of the editor (the name and the occurrences found in the document
+ * for it), so that when the cursor is moved to some other occurrence of a name already analyzed, the occurrences
+ * may be gotten without doing the whole refactoring analysis again.
+ *
+ * It's bounded to a given AST (the AST is weakly referenced and a new AST invalidates the occurrences found).
+ *
+ * Synchronized because a cancelled MarkOccurrencesJob may still be running when a new one starts.
+ *
+ * @author Fabio
+ */
+/*default*/final class OccurrencesCache {
+
+    /**
+     * Key for this cache in PyEdit.cache.
+     */
+    /*default*/static final String CACHE_KEY = "MarkOccurrencesJob OccurrencesCache";
+
+    /**
+     * The maximum number of names kept for an AST (the most recently used are kept).
+     */
+    private static final int MAX_NAMES = 20;
+
+    private WeakReference<SimpleNode> ast = new WeakReference<SimpleNode>(null);
+
+    /**
+     * The occurrences found for the AST (initial name -> occurrences), with the most recently used first.
+     */
+    private final LinkedList<Tuple<String, HashSet<ASTEntry>>> found = new LinkedList<Tuple<String, HashSet<ASTEntry>>>();
+
+    /**
+     * @param ast the AST that generated the occurrences.
+     * @param initialName the name for which the occurrences were found.
+     * @param occurrences the occurrences found in the document.
+     */
+    public synchronized void put(SimpleNode ast, String initialName, HashSet<ASTEntry> occurrences) {
+        if (this.ast.get() != ast) {
+            this.ast = new WeakReference<SimpleNode>(ast);
+            found.clear();
+        }
+        found.addFirst(new Tuple<String, HashSet<ASTEntry>>(initialName, occurrences));
+        while (found.size() > MAX_NAMES) {
+            found.removeLast();
+        }
+    }
+
+    /**
+     * @param ast the current AST of the editor (which must be in sync with the document).
+     * @param line the line of the cursor (starting at 0)
+     * @param col the column of the cursor (starting at 0)
+     * @return a tuple with the initial name and the occurrences for the given position or null if the position is
+     * not in any of the occurrences already found for the given AST.
+     */
+    public synchronized Tuple<String, HashSet<ASTEntry>> get(SimpleNode ast, int line, int col) {
+        if (ast == null || this.ast.get() != ast) {
+            return null;
+        }
+        for (Iterator<Tuple<String, HashSet<ASTEntry>>> it = found.iterator(); it.hasNext();) {
+            Tuple<String, HashSet<ASTEntry>> tup = it.next();
+            int len = tup.o1.length();
+
+            for (ASTEntry entry : tup.o2) {
+                //only match the occurrences in the code (not the ones in strings or comments)
+                int foundLocation = (Integer) entry.getAdditionalInfo(
+                        AstEntryScopeAnalysisConstants.AST_ENTRY_FOUND_LOCATION,
+                        AstEntryScopeAnalysisConstants.AST_ENTRY_FOUND_IN_DEFAULT);
+                if (foundLocation != AstEntryScopeAnalysisConstants.AST_ENTRY_FOUND_IN_DEFAULT) {
+                    continue;
+                }
+                SimpleNode node = entry.getNameNode();
+                int beginCol = node.beginColumn - 1;
+                if (node.beginLine - 1 == line && col >= beginCol && col <= beginCol + len) {
+                    if (found.getFirst() != tup) {
+                        it.remove();
+                        found.addFirst(tup);
+                    }
+                    return tup;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -20,6 +20,7 @@ import org.python.pydev.core.IModule;
 import org.python.pydev.core.IProjectModulesManager;
 import org.python.pydev.core.IPythonNature;
 import org.python.pydev.core.ModulesKey;
+import org.python.pydev.core.concurrency.ParallelRunner;
 import org.python.pydev.core.docutils.StringUtils;
 import org.python.pydev.editor.codecompletion.revisited.CompletionCache;
 import org.python.pydev.editor.codecompletion.revisited.modules.SourceModule;
@@ -28,6 +29,7 @@ import org.python.pydev.editor.refactoring.RefactoringRequest;
 import org.python.pydev.parser.visitors.scope.ASTEntry;
 import org.python.pydev.plugin.nature.PythonNature;
 
+import com.aptana.shared_core.callbacks.ICallback;
 import com.aptana.shared_core.structure.Tuple;
 import com.python.pydev.refactoring.actions.PyFindAllOccurrences;
 import com.python.pydev.refactoring.refactorer.AstEntryRefactorerRequestConstants;
@@ -44,6 +46,11 @@ public abstract class AbstractRenameWorkspaceRefactorProcess extends AbstractRen
 
     public static final boolean DEBUG_FILTERED_MODULES = false || PyFindAllOccurrences.DEBUG_FIND_REFERENCES;
 
+    /**
+     * The number of threads used to analyze the modules with possible references.
+     */
+    public static int ANALYSIS_THREADS = ParallelRunner.getDefaultParallelism();
+
     /**
      * May be used by subclasses
      */
@@ -149,7 +156,7 @@ public abstract class AbstractRenameWorkspaceRefactorProcess extends AbstractRen
      * 
      * It will find files with possible references in the workspace (from the token
      * name we're searching) and for each file that maps to a module it will 
-     * call getOccurrencesInOtherModule, and will add those occurrences to
+     * call getOccurrencesInOtherModule (in parallel), and will add those occurrences to
      * the map with the file pointing to the entries.
      * 
      * @param status used to add some error status to the refactoring
@@ -168,56 +175,57 @@ public abstract class AbstractRenameWorkspaceRefactorProcess extends AbstractRen
                 request.popMonitor().done();
             }
 
-            int total = references.size();
+            //Each module is analyzed in a worker thread (the results are only added later on, in this thread, in the
+            //same order of the references found).
+            ArrayList<Tuple<ModulesKey, PythonNature>> modulesToAnalyze = new ArrayList<Tuple<ModulesKey, PythonNature>>();
+            List<PythonNature> naturesInRequest = new ArrayList<PythonNature>();
             try {
-                request.pushMonitor(new SubProgressMonitor(request.getMonitor(), 10));
-                request.getMonitor().beginTask("Analyzing references found", total);
-                int i = 0;
                 for (Tuple<List<ModulesKey>, IPythonNature> file : references) {
-                    i++;
-                    request.communicateWork(com.aptana.shared_core.string.StringUtils.format("Analyzing %s (%s of %s)", file.o2.getProject(), i,
-                            total));
                     PythonNature nature = (PythonNature) file.o2;
                     if (nature != null) {
                         if (!nature.startRequests()) {
                             continue;
                         }
-                        try {
-                            for (ModulesKey key : file.o1) {
-                                IProjectModulesManager modulesManager = (IProjectModulesManager) nature.getAstManager()
-                                        .getModulesManager();
-
-                                request.checkCancelled();
-                                String modName = key.name;
-
-                                if (modName != null) {
-                                    if (!request.moduleName.equals(modName)) {
-                                        //we've already checked the module from the request...
-
-                                        request.checkCancelled();
-                                        IModule module = modulesManager
-                                                .getModuleInDirectManager(modName, nature, false);
-
-                                        if (module instanceof SourceModule) {
-
-                                            request.checkCancelled();
-                                            List<ASTEntry> entryOccurrences = getOccurrencesInOtherModule(status,
-                                                    request.initialName, (SourceModule) module, nature);
-
-                                            if (entryOccurrences.size() > 0) {
-                                                addOccurrences(entryOccurrences, key.file, modName);
-                                            }
-                                        }
-                                    }
-                                }
+                        naturesInRequest.add(nature);
+                        for (ModulesKey key : file.o1) {
+                            String modName = key.name;
+                            //we've already checked the module from the request...
+                            if (modName != null && !request.moduleName.equals(modName)) {
+                                modulesToAnalyze.add(new Tuple<ModulesKey, PythonNature>(key, nature));
+                            }
+                        }
+                    }
+                }
+
+                int total = modulesToAnalyze.size();
+                request.pushMonitor(new SubProgressMonitor(request.getMonitor(), 10));
+                try {
+                    request.getMonitor().beginTask("Analyzing references found", total);
+                    request.getMonitor().setTaskName(
+                            com.aptana.shared_core.string.StringUtils.format("Analyzing %s modules", total));
+
+                    List<Tuple<List<ASTEntry>, RefactoringStatus>> results = ParallelRunner.run(modulesToAnalyze,
+                            createAnalyzeModuleCallback(request), ANALYSIS_THREADS, request.getMonitor(),
+                            "Rename: analyzing references");
+                    request.checkCancelled();
+
+                    for (int i = 0; i < total; i++) {
+                        Tuple<List<ASTEntry>, RefactoringStatus> result = results.get(i);
+                        if (result != null) {
+                            ModulesKey key = modulesToAnalyze.get(i).o1;
+                            if (result.o1.size() > 0) {
+                                addOccurrences(result.o1, key.file, key.name);
                             }
-                        } finally {
-                            nature.endRequests();
+                            status.merge(result.o2);
                         }
                     }
+                } finally {
+                    request.popMonitor().done();
                 }
             } finally {
-                request.popMonitor().done();
+                for (PythonNature nature : naturesInRequest) {
+                    nature.endRequests();
+                }
             }
         } catch (OperationCanceledException e) {
             //that's ok
@@ -229,6 +237,34 @@ public abstract class AbstractRenameWorkspaceRefactorProcess extends AbstractRen
 
     }
 
+    /**
+     * @return a callback which loads a module and gets the occurrences in it (it's called from many threads at
+     * once, so, each call gets its own RefactoringStatus, which is merged later on).
+     */
+    private ICallback<Tuple<List<ASTEntry>, RefactoringStatus>, Tuple<ModulesKey, PythonNature>> createAnalyzeModuleCallback(
+            final RefactoringRequest request) {
+        return new ICallback<Tuple<List<ASTEntry>, RefactoringStatus>, Tuple<ModulesKey, PythonNature>>() {
+
+            public Tuple<List<ASTEntry>, RefactoringStatus> call(Tuple<ModulesKey, PythonNature> arg) {
+                PythonNature nature = arg.o2;
+                IProjectModulesManager modulesManager = (IProjectModulesManager) nature.getAstManager()
+                        .getModulesManager();
+
+                request.checkCancelled();
+                IModule module = modulesManager.getModuleInDirectManager(arg.o1.name, nature, false);
+
+                if (module instanceof SourceModule) {
+                    request.checkCancelled();
+                    RefactoringStatus moduleStatus = new RefactoringStatus();
+                    List<ASTEntry> entryOccurrences = getOccurrencesInOtherModule(moduleStatus, request.initialName,
+                            (SourceModule) module, nature);
+                    return new Tuple<List<ASTEntry>, RefactoringStatus>(entryOccurrences, moduleStatus);
+                }
+                return null;
+            }
+        };
+    }
+
     /**
      * This method is called for each module that may have some reference to the definition
      * we're looking for. 
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.refactoring.markoccurrences;
+
+import java.util.HashSet;
+
+import org.python.pydev.parser.PyParserTestBase;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.visitors.scope.ASTEntry;
+
+import com.aptana.shared_core.structure.Tuple;
+
+public class LocalOccurrencesFinderTest extends PyParserTestBase {
+
+    public static void main(String[] args) {
+        try {
+            junit.textui.TestRunner.run(LocalOccurrencesFinderTest.class);
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void testLocal() throws Exception {
+        String s = "" +
+                "a = 10\n" +
+                "def m(b):\n" +
+                "    a = b #comment a\n" +
+                "    print(a.b, 'a')\n" +
+                "print(a)\n" +
+                "";
+        SimpleNode root = parseLegalDocStr(s);
+
+        //the local 'a' in the function (2 in the code, 1 in the comment and 1 in the string)
+        Tuple<String, HashSet<ASTEntry>> found = LocalOccurrencesFinder.find(root, 3, 10);
+        assertEquals("a", found.o1);
+        assertEquals(4, found.o2.size());
+
+        //a parameter
+        found = LocalOccurrencesFinder.find(root, 1, 6);
+        assertEquals("b", found.o1);
+        assertEquals(2, found.o2.size());
+
+        //attribute part and global scope are not handled
+        assertNull(LocalOccurrencesFinder.find(root, 3, 12));
+        assertNull(LocalOccurrencesFinder.find(root, 4, 6));
+    }
+
+    public void testDecoratorsAndDefaultsAreNotInTheFunctionScope() throws Exception {
+        String s = "" +
+                "a = 1\n" +
+                "@deco(a, 'a')\n" +
+                "def m(b=a):\n" +
+                "    a = b\n" +
+                "    print(a, 'a')\n" +
+                "";
+        SimpleNode root = parseLegalDocStr(s);
+
+        //only the ones in the body (2 in the code and 1 in the string)
+        Tuple<String, HashSet<ASTEntry>> found = LocalOccurrencesFinder.find(root, 3, 4);
+        assertEquals("a", found.o1);
+        assertEquals(3, found.o2.size());
+        for (ASTEntry entry : found.o2) {
+            assertTrue(entry.node.beginLine > 3);
+        }
+
+        found = LocalOccurrencesFinder.find(root, 2, 6);
+        assertEquals("b", found.o1);
+        assertEquals(2, found.o2.size());
+
+        //the decorator and the default are in the global scope
+        assertNull(LocalOccurrencesFinder.find(root, 1, 6));
+        assertNull(LocalOccurrencesFinder.find(root, 2, 8));
+    }
+
+    public void testNotHandled() throws Exception {
+        String s = "" +
+                "def m():\n" +
+                "    global a\n" +
+                "    a = 10\n" +
+                "def m2():\n" +
+                "    a = 10\n" +
+                "    def inner():\n" +
+                "        print(a)\n" +
+                "def m3():\n" +
+                "    print(a)\n" +
+                "";
+        SimpleNode root = parseLegalDocStr(s);
+        assertNull(LocalOccurrencesFinder.find(root, 2, 4)); //global declaration
+        assertNull(LocalOccurrencesFinder.find(root, 4, 4)); //inner scope
+        assertNull(LocalOccurrencesFinder.find(root, 8, 10)); //not bound in the function
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.core.concurrency;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import com.aptana.shared_core.callbacks.ICallback;
+
+/**
+ * Helper to process a list of items in parallel (each item is passed to a callback in one of the worker threads).
+ *
+ * The thread that calls run() waits for the workers to finish and is the only one that touches the progress
+ * monitor: it reports the work done and, when the monitor is canceled, the items still not started are skipped.
+ */
+public final class ParallelRunner<Ret, Arg> {
+
+    private final List<Arg> args;
+    private final ICallback<Ret, Arg> callback;
+    private final Object[] results;
+    private final Object lock = new Object();
+
+    /**
+     * The next item to be processed (access synchronized on lock).
+     */
+    private int next;
+
+    /**
+     * The number of items already processed (access synchronized on lock).
+     */
+    private int finished;
+
+    /**
+     * The number of workers still running (access synchronized on lock).
+     */
+    private int running;
+
+    private boolean canceled;
+
+    private Throwable error;
+
+    private ParallelRunner(List<Arg> args, ICallback<Ret, Arg> callback) {
+        this.args = args;
+        this.callback = callback;
+        this.results = new Object[args.size()];
+    }
+
+    /**
+     * @return the number of threads that should be used by default to do cpu-bound work.
+     */
+    public static int getDefaultParallelism() {
+        int availableProcessors = Runtime.getRuntime().availableProcessors();
+        return availableProcessors < 1 ? 1 : availableProcessors;
+    }
+
+    /**
+     * Passes each one of the args to the callback using up to nThreads threads.
+     *
+     * @param monitor monitor.worked(1) is called for each item processed. If it's canceled, no new items are
+     * processed (and their results are null).
+     * @param threadName the name for the worker threads.
+     *
+     * @return the results of the callback (in the same order of the args).
+     *
+     * @throws RuntimeException if some callback throws an exception (the other items are still processed).
+     */
+    public static <Ret, Arg> List<Ret> run(List<Arg> args, ICallback<Ret, Arg> callback, int nThreads,
+            IProgressMonitor monitor, String threadName) {
+        if (monitor == null) {
+            monitor = new NullProgressMonitor();
+        }
+        ParallelRunner<Ret, Arg> runner = new ParallelRunner<Ret, Arg>(args, callback);
+        nThreads = Math.min(nThreads, args.size());
+        if (nThreads <= 1) {
+            runner.runSequential(monitor);
+        } else {
+            runner.runParallel(nThreads, monitor, threadName);
+        }
+        return runner.getResults();
+    }
+
+    private void runSequential(IProgressMonitor monitor) {
+        int size = args.size();
+        for (int i = 0; i < size; i++) {
+            if (monitor.isCanceled()) {
+                return;
+            }
+            try {
+                results[i] = callback.call(args.get(i));
+            } catch (Throwable e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+            monitor.worked(1);
+        }
+    }
+
+    private void runParallel(int nThreads, IProgressMonitor monitor, String threadName) {
+        synchronized (lock) {
+            running = nThreads;
+        }
+        for (int i = 0; i < nThreads; i++) {
+            Thread thread = new Thread(threadName) {
+                @Override
+                public void run() {
+                    processItems();
+                }
+            };
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int reported = 0;
+        while (true) {
+            int finishedNow;
+            boolean done;
+            synchronized (lock) {
+                if (running > 0 && finished == reported) {
+                    try {
+                        lock.wait(100);
+                    } catch (InterruptedException e) {
+                        //Just go on.
+                    }
+                }
+                finishedNow = finished;
+                done = running == 0;
+            }
+            if (finishedNow > reported) {
+                monitor.worked(finishedNow - reported);
+                reported = finishedNow;
+            }
+            if (done) {
+                return;
+            }
+            if (monitor.isCanceled()) {
+                synchronized (lock) {
+                    canceled = true;
+                }
+            }
+        }
+    }
+
+    private void processItems() {
+        try {
+            int size = args.size();
+            while (true) {
+                int i;
+                synchronized (lock) {
+                    if (canceled || next >= size) {
+                        return;
+                    }
+                    i = next;
+                    next++;
+                }
+
+                Object result = null;
+                try {
+                    result = callback.call(args.get(i));
+                } catch (Throwable e) {
+                    synchronized (lock) {
+                        if (error == null) {
+                            error = e;
+                        }
+                    }
+                }
+
+                synchronized (lock) {
+                    results[i] = result;
+                    finished++;
+                    lock.notifyAll();
+                }
+            }
+        } finally {
+            synchronized (lock) {
+                running--;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Ret> getResults() {
+        synchronized (lock) {
+            if (error != null) {
+                if (error instanceof RuntimeException) {
+                    throw (RuntimeException) error;
+                }
+                if (error instanceof Error) {
+                    throw (Error) error;
+                }
+                throw new RuntimeException(error);
+            }
+            ArrayList<Ret> ret = new ArrayList<Ret>(results.length);
+            for (Object o : results) {
+                ret.add((Ret) o);
+            }
+            return ret;
+        }
+    }
+}
@@ -139,47 +139,54 @@ public class RunnableAsJobsPoolThread extends Thread {
      */
     public synchronized static RunnableAsJobsPoolThread getSingleton() {
         if (singleton == null) {
-            //if a problem happens getting the number of processors (although it shouldn't happen), use 6
-            int maxSize = 6;
-
-            try {
-                int availableProcessors = Runtime.getRuntime().availableProcessors();
-                if (availableProcessors <= 1) {
-                    maxSize = 3;
-
-                } else {
-                    //note that we create more threads than processes because some are very likely to 
-                    //be disk-bound processes (but with a logarithmic function, because we don't want 
-                    //to add up too fast as the number of processors increase because of the amount of memory
-                    //it'd consume).
-                    //
-                    //The progression we get with this formula is below.
-                    //
-                    //2: 4
-                    //3: 6
-                    //4: 8
-                    //5: 10
-                    //6: 11
-                    //7: 13
-                    //8: 14
-                    //9: 16
-                    //10: 17
-                    //11: 18
-                    //12: 19
-                    //13: 21
-                    //14: 22
-                    //15: 23
-                    //16: 24
-                    //17: 25
-                    //18: 27
-                    //19: 28
-                    maxSize = (int) (availableProcessors + Math.round(MathUtils.log(availableProcessors, 1.4)));
-                }
-            } catch (Throwable e) {
-            }
-
-            singleton = new RunnableAsJobsPoolThread(maxSize);
+            singleton = new RunnableAsJobsPoolThread(getDefaultPoolSize());
         }
         return singleton;
     }
+
+    /**
+     * @return the number of runnables which may run at the same time (based on the number of available processors).
+     */
+    public static int getDefaultPoolSize() {
+        //if a problem happens getting the number of processors (although it shouldn't happen), use 6
+        int maxSize = 6;
+
+        try {
+            int availableProcessors = Runtime.getRuntime().availableProcessors();
+            if (availableProcessors <= 1) {
+                maxSize = 3;
+
+            } else {
+                //note that we create more threads than processes because some are very likely to 
+                //be disk-bound processes (but with a logarithmic function, because we don't want 
+                //to add up too fast as the number of processors increase because of the amount of memory
+                //it'd consume).
+                //
+                //The progression we get with this formula is below.
+                //
+                //2: 4
+                //3: 6
+                //4: 8
+                //5: 10
+                //6: 11
+                //7: 13
+                //8: 14
+                //9: 16
+                //10: 17
+                //11: 18
+                //12: 19
+                //13: 21
+                //14: 22
+                //15: 23
+                //16: 24
+                //17: 25
+                //18: 27
+                //19: 28
+                maxSize = (int) (availableProcessors + Math.round(MathUtils.log(availableProcessors, 1.4)));
+            }
+        } catch (Throwable e) {
+        }
+
+        return maxSize;
+    }
 }
@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.core.concurrency;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import com.aptana.shared_core.callbacks.ICallback;
+
+public class ParallelRunnerTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ParallelRunnerTest.class);
+    }
+
+    private List<Integer> createArgs(int size) {
+        List<Integer> args = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) {
+            args.add(i);
+        }
+        return args;
+    }
+
+    public void testResultsInOrder() throws Exception {
+        final int[] worked = new int[1];
+        NullProgressMonitor monitor = new NullProgressMonitor() {
+            @Override
+            public void worked(int work) {
+                worked[0] += work;
+            }
+        };
+        List<Integer> results = ParallelRunner.run(createArgs(1000), new ICallback<Integer, Integer>() {
+
+            public Integer call(Integer arg) {
+                return arg * 2;
+            }
+        }, 4, monitor, "ParallelRunnerTest");
+
+        assertEquals(1000, results.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i * 2, results.get(i).intValue());
+        }
+        assertEquals(1000, worked[0]);
+    }
+
+    public void testCancel() throws Exception {
+        final NullProgressMonitor monitor = new NullProgressMonitor();
+        List<Integer> results = ParallelRunner.run(createArgs(1000), new ICallback<Integer, Integer>() {
+
+            public Integer call(Integer arg) {
+                if (arg == 10) {
+                    monitor.setCanceled(true);
+                }
+                synchronized (this) {
+                    try {
+                        wait(1);
+                    } catch (InterruptedException e) {
+                    }
+                }
+                return arg;
+            }
+        }, 4, monitor, "ParallelRunnerTest");
+
+        int processed = 0;
+        for (Integer i : results) {
+            if (i != null) {
+                processed++;
+            }
+        }
+        assertTrue("Processed: " + processed, processed < 1000);
+    }
+
+    public void testError() throws Exception {
+        try {
+            ParallelRunner.run(createArgs(100), new ICallback<Integer, Integer>() {
+
+                public Integer call(Integer arg) {
+                    if (arg == 5) {
+                        throw new IllegalStateException("Error at 5");
+                    }
+                    return arg;
+                }
+            }, 3, null, "ParallelRunnerTest");
+            fail("Expected exception.");
+        } catch (IllegalStateException e) {
+            assertEquals("Error at 5", e.getMessage());
+        }
+    }
+}
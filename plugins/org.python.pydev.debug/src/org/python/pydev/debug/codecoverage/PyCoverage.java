@@ -11,8 +11,12 @@
  */
 package org.python.pydev.debug.codecoverage;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.OutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.Iterator;
 import java.util.List;
 
@@ -142,25 +146,22 @@ public class PyCoverage {
                     //that's ok
                 }
 
-                String files = "";
-
-                for (Iterator<PyFileInfo> iter = pyFilesBelow.getFoundPyFileInfos().iterator(); iter.hasNext();) {
-                    String fStr = iter.next().getFile().toString();
-                    files += fStr + "|";
-                }
-                files += "\r";
-                monitor.setTaskName("Writing to shell...");
-
-                //No need to synchronize as we'll waitFor() the process before getting the contents.
-                ThreadStreamReader inputStream = new ThreadStreamReader(p.getInputStream(), false);
-                inputStream.start();
                 ThreadStreamReader errorStream = new ThreadStreamReader(p.getErrorStream(), false);
                 errorStream.start();
 
+                //The files are written directly to the process (separated by '|' and finished by '\r').
+                monitor.setTaskName("Writing to shell...");
                 monitor.worked(1);
-                OutputStream outputStream = p.getOutputStream();
-                outputStream.write(files.getBytes());
-                outputStream.close();
+                Writer outputStream = new BufferedWriter(new OutputStreamWriter(p.getOutputStream()));
+                try {
+                    for (Iterator<PyFileInfo> iter = pyFilesBelow.getFoundPyFileInfos().iterator(); iter.hasNext();) {
+                        outputStream.write(iter.next().getFile().toString());
+                        outputStream.write('|');
+                    }
+                    outputStream.write('\r');
+                } finally {
+                    outputStream.close();
+                }
 
                 //We'll read something in the format below:
                 //Name                                                                      Stmts   Miss  Cover   Missing
@@ -172,46 +173,37 @@ public class PyCoverage {
                 //D:\workspaces\temp\test_workspace\pytesting1\src\mod1\mod2\hello2            33     33     0%   1-43
                 //-------------------------------------------------------------------------------------------------------
                 //TOTAL                                                                        57     50    12% 
-
-                monitor.setTaskName("Waiting for process to finish...");
+                //
+                //Each line is added to the cache as it's read (coverage.py writes it as each file is analyzed).
+                monitor.setTaskName("Getting coverage info...(please wait, this could take a while)");
                 monitor.worked(1);
-
-                while (true) {
-                    try {
-                        p.exitValue();
-                        break; //process finished
-                    } catch (IllegalThreadStateException e) {
-                        //not finished
-                    }
-                    try {
-                        Thread.sleep(50);
-                    } catch (InterruptedException e) {
-                        //ignore
-                    }
-                    monitor.worked(1);
-                    if (monitor.isCanceled()) {
-                        try {
-                            p.destroy();
-                        } catch (Exception e) {
-                            Log.log(e);
+                FastStringBuffer tempBuf = new FastStringBuffer();
+                String[] dottedValidSourceFiles = FileTypesPreferencesPage.getDottedValidSourceFiles();
+                BufferedReader inputStream = new BufferedReader(new InputStreamReader(p.getInputStream()));
+                try {
+                    String line;
+                    while ((line = inputStream.readLine()) != null) {
+                        if (monitor.isCanceled()) {
+                            break;
                         }
-                        break;
+                        analyzeReadLine(monitor, line.trim(), tempBuf, dottedValidSourceFiles);
                     }
+                } finally {
+                    inputStream.close();
+                }
+
+                if (monitor.isCanceled()) {
+                    p.destroy();
+                } else {
+                    monitor.setTaskName("Waiting for process to finish...");
+                    p.waitFor();
                 }
 
-                String stdOut = inputStream.getAndClearContents();
                 String stdErr = errorStream.getAndClearContents().trim();
                 if (stdErr.length() > 0) {
                     Log.log(stdErr);
                 }
 
-                monitor.setTaskName("Getting coverage info...(please wait, this could take a while)");
-                monitor.worked(1);
-                FastStringBuffer tempBuf = new FastStringBuffer();
-                for (String str : StringUtils.splitInLines(stdOut)) {
-                    analyzeReadLine(monitor, str.trim(), tempBuf);
-                }
-
                 monitor.setTaskName("Finished");
             } catch (Exception e) {
                 if (p != null) {
@@ -230,15 +222,16 @@ public class PyCoverage {
      * @param monitor
      * @param str
      * @param tempBuf 
+     * @param dottedValidSourceFiles the extensions of the source files (i.e.: .py, .pyw)
      */
-    private void analyzeReadLine(IProgressMonitor monitor, String str, FastStringBuffer tempBuf) {
+    private void analyzeReadLine(IProgressMonitor monitor, String str, FastStringBuffer tempBuf,
+            String[] dottedValidSourceFiles) {
         //The line we're interested in is something as 
         //D:\workspaces\temp\test_workspace\pytesting1\src\mod1\a   10      3    70%   4-6, 18, 19
         //with the last part (missing) optional.
 
         boolean added = false;
         List<String> strings = StringUtils.split(str, ' ', 5);
-        String[] dottedValidSourceFiles = FileTypesPreferencesPage.getDottedValidSourceFiles();
 
         File f = null;
         int nTokens = strings.size();
@@ -283,12 +276,7 @@ public class PyCoverage {
                         cache.addFile(f, f.getParentFile(), stmts, miss, missing);
                         added = true;
                     }
-                    String[] strs = f.toString().replaceAll("/", " ").replaceAll("\\\\", " ").split(" ");
-                    if (strs.length > 1) {
-                        monitor.setTaskName("Getting coverage info..." + strs[strs.length - 1]);
-                    } else {
-                        monitor.setTaskName("Getting coverage info..." + f.toString());
-                    }
+                    monitor.setTaskName("Getting coverage info..." + f.getName());
                     monitor.worked(1);
                 }
             } catch (RuntimeException e2) {
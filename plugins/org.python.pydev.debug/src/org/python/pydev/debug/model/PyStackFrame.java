@@ -184,6 +184,20 @@ public class PyStackFrame extends PlatformObject implements IStackFrame, IVariab
         return this.variables;
     }
 
+    /**
+     * Discards the pages of children already fetched for the variables of this frame.
+     */
+    public void clearVariablePages() {
+        IVariable[] vars = this.variables;
+        if (vars != null) {
+            for (IVariable var : vars) {
+                if (var instanceof PyVariableCollection) {
+                    ((PyVariableCollection) var).clearPages();
+                }
+            }
+        }
+    }
+
     public void forceGetNewVariables() {
         this.onAskGetNewVars = true;
         AbstractDebugTarget target = getTarget();
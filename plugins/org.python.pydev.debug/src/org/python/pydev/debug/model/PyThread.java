@@ -57,6 +57,14 @@ public class PyThread extends PlatformObject implements IThread {
      * If a thread is entering a suspended state, pass in the stack
      */
     public void setSuspended(boolean state, IStackFrame[] stack) {
+        if (!state && this.stack != null) {
+            //The contents of the variables may change after resuming.
+            for (IStackFrame frame : this.stack) {
+                if (frame instanceof PyStackFrame) {
+                    ((PyStackFrame) frame).clearVariablePages();
+                }
+            }
+        }
         isSuspended = state;
         this.stack = stack;
     }
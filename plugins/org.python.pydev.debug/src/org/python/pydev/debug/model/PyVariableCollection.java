@@ -10,25 +10,47 @@
  */
 package org.python.pydev.debug.model;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.debug.core.DebugEvent;
 import org.eclipse.debug.core.DebugException;
+import org.eclipse.debug.core.model.IIndexedValue;
 import org.eclipse.debug.core.model.IVariable;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.debug.core.PydevDebugPlugin;
 import org.python.pydev.debug.model.remote.AbstractDebuggerCommand;
 import org.python.pydev.debug.model.remote.GetVariableCommand;
+import org.python.pydev.debug.model.remote.GetVariablePageCommand;
 import org.python.pydev.debug.model.remote.ICommandResponseListener;
 
+import com.aptana.shared_core.structure.Tuple;
+
 
 /**
  * PyVariableCollection represents container variables.
  * 
  * It knows how to fetch its contents over the network.
  * 
+ * The children are fetched in pages of PAGE_SIZE: if a container has more children than that, it's shown as an
+ * IIndexedValue (so, the view shows partitions and each page is only fetched when its partition is expanded). The
+ * pages fetched are kept until the thread is resumed.
  */
-public class PyVariableCollection extends PyVariable implements ICommandResponseListener, IVariableLocator {
+public class PyVariableCollection extends PyVariable implements ICommandResponseListener, IVariableLocator,
+        IIndexedValue {
+
+    /**
+     * The number of children fetched in each request.
+     */
+    public static int PAGE_SIZE = 100;
+
+    /**
+     * Time to wait for a page requested from getVariables(offset, length) (it's called in a background thread in
+     * the view).
+     */
+    private static final int PAGE_TIMEOUT_MILLIS = 5000;
 
     PyVariable[] variables = new PyVariable[0];
     IVariable[] waitVariables = null;
@@ -49,6 +71,16 @@ public class PyVariableCollection extends PyVariable implements ICommandResponse
 
     private boolean fireChangeEvent = true;
 
+    /**
+     * The number of children (-1 while still unknown).
+     */
+    private volatile int total = -1;
+
+    /**
+     * The pages already fetched (page index -> variables in the page). Synchronized on itself.
+     */
+    private final Map<Integer, PyVariable[]> pages = new HashMap<Integer, PyVariable[]>();
+
     public PyVariableCollection(AbstractDebugTarget target, String name, String type, String value,
             IVariableLocator locator) {
         super(target, name, type, value, locator);
@@ -75,7 +107,11 @@ public class PyVariableCollection extends PyVariable implements ICommandResponse
      * Received when the command has been completed.
      */
     public void commandComplete(AbstractDebuggerCommand cmd) {
-        variables = getCommandVariables(cmd);
+        if (cmd instanceof GetVariablePageCommand) {
+            variables = onPageArrived((GetVariablePageCommand) cmd);
+        } else {
+            variables = getCommandVariables(cmd);
+        }
 
         networkState = NETWORK_REQUEST_ARRIVED;
         if (fireChangeEvent) {
@@ -116,7 +152,7 @@ public class PyVariableCollection extends PyVariable implements ICommandResponse
         }
 
         // send the command, and then busy-wait
-        GetVariableCommand cmd = getVariableCommand(target);
+        GetVariableCommand cmd = getVariablePageCommand(target, 0);
         cmd.setCompletionListener(this);
         networkState = NETWORK_REQUEST_NOT_ARRIVED;
         fireChangeEvent = false; // do not fire change event while we are waiting on response
@@ -147,6 +183,151 @@ public class PyVariableCollection extends PyVariable implements ICommandResponse
         return new GetVariableCommand(dbg, getPyDBLocation());
     }
 
+    public GetVariablePageCommand getVariablePageCommand(AbstractDebugTarget dbg, int pageIndex) {
+        return new GetVariablePageCommand(dbg, getPyDBLocation(), pageIndex * PAGE_SIZE, PAGE_SIZE);
+    }
+
+    /**
+     * Caches the variables of a page that arrived.
+     * 
+     * @return the variables in the page.
+     */
+    private PyVariable[] onPageArrived(GetVariablePageCommand cmd) {
+        PyVariable[] pageVariables;
+        try {
+            Tuple<PyVariable[], Integer> page = XMLUtils.XMLToVariablesPage(target, this, cmd.getResponse());
+            pageVariables = page.o1;
+            if (page.o2 >= 0) {
+                total = page.o2;
+            }
+            synchronized (pages) {
+                pages.put(cmd.getOffset() / PAGE_SIZE, pageVariables);
+            }
+        } catch (CoreException e) {
+            //Same handling done for the errors when getting all the variables.
+            pageVariables = getCommandVariables(cmd);
+        }
+        return pageVariables;
+    }
+
+    /**
+     * @return whether the children must be shown in partitions (i.e.: more than one page).
+     */
+    public boolean isPaged() {
+        return total > PAGE_SIZE;
+    }
+
+    /**
+     * Discards the pages fetched (called when the thread is resumed, as the contents may change).
+     * 
+     * The variables of the first page are kept (as it's also what's returned from getVariables()), so, their pages
+     * are discarded too.
+     */
+    public void clearPages() {
+        synchronized (pages) {
+            pages.clear();
+        }
+        IVariable[] vars = variables;
+        for (IVariable var : vars) {
+            if (var instanceof PyVariableCollection) {
+                ((PyVariableCollection) var).clearPages();
+            }
+        }
+    }
+
+    private static final class PageRequest implements ICommandResponseListener {
+
+        private final PyVariableCollection collection;
+        private PyVariable[] variables;
+
+        private PageRequest(PyVariableCollection collection) {
+            this.collection = collection;
+        }
+
+        public synchronized void commandComplete(AbstractDebuggerCommand cmd) {
+            variables = collection.onPageArrived((GetVariablePageCommand) cmd);
+            notifyAll();
+        }
+
+        private synchronized PyVariable[] waitForVariables() throws InterruptedException {
+            long timeout = System.currentTimeMillis() + PAGE_TIMEOUT_MILLIS;
+            while (variables == null) {
+                long wait = timeout - System.currentTimeMillis();
+                if (wait <= 0) {
+                    break;
+                }
+                wait(wait);
+            }
+            return variables;
+        }
+    }
+
+    /**
+     * @return the variables in the given page (fetching it if needed) or null if it didn't arrive in time.
+     */
+    private PyVariable[] getPage(int pageIndex) {
+        synchronized (pages) {
+            PyVariable[] page = pages.get(pageIndex);
+            if (page != null) {
+                return page;
+            }
+        }
+        GetVariablePageCommand cmd = getVariablePageCommand(target, pageIndex);
+        PageRequest request = new PageRequest(this);
+        cmd.setCompletionListener(request);
+        target.postCommand(cmd);
+        try {
+            return request.waitForVariables();
+        } catch (InterruptedException e) {
+            Log.log(e);
+            return null;
+        }
+    }
+
+    public IVariable[] getVariables(int offset, int length) throws DebugException {
+        PyVariable[] ret = new PyVariable[length];
+        int found = 0;
+        while (found < length) {
+            int pos = offset + found;
+            int pageIndex = pos / PAGE_SIZE;
+            PyVariable[] page = getPage(pageIndex);
+            if (page == null) {
+                return getTimedoutVariables();
+            }
+            int inPage = pos - (pageIndex * PAGE_SIZE);
+            if (inPage >= page.length) {
+                break; //the container has less items than expected
+            }
+            int len = Math.min(page.length - inPage, length - found);
+            System.arraycopy(page, inPage, ret, found, len);
+            found += len;
+        }
+        if (found < length) {
+            PyVariable[] newRet = new PyVariable[found];
+            System.arraycopy(ret, 0, newRet, 0, found);
+            ret = newRet;
+        }
+        return ret;
+    }
+
+    public IVariable getVariable(int offset) throws DebugException {
+        IVariable[] found = getVariables(offset, 1);
+        if (found.length == 0) {
+            throw new DebugException(PydevDebugPlugin.makeStatus(IStatus.ERROR, "Unable to get variable at: "
+                    + offset, null));
+        }
+        return found[0];
+    }
+
+    public int getSize() throws DebugException {
+        int t = total;
+        return t >= 0 ? t : 0;
+    }
+
+    public int getInitialOffset() {
+        return 0;
+    }
+
     public boolean hasVariables() throws DebugException {
         return true;
     }
@@ -7,6 +7,7 @@
 package org.python.pydev.debug.model;
 
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.debug.core.model.IVariable;
 import org.eclipse.debug.core.model.IWatchExpression;
 import org.eclipse.debug.internal.ui.model.elements.VariableContentProvider;
 import org.eclipse.debug.internal.ui.viewers.model.provisional.IPresentationContext;
@@ -41,7 +42,12 @@ public class PyVariableContentProviderHack extends VariableContentProvider {
         }
         if (parent instanceof PyVariableCollection) {
             PyVariableCollection pyVariableCollection = (PyVariableCollection) parent;
-            return pyVariableCollection.getVariables();
+            IVariable[] variables = pyVariableCollection.getVariables();
+            if (pyVariableCollection.isPaged()) {
+                //Big containers are shown as partitions (as an IIndexedValue), which get their pages when expanded.
+                return super.getAllChildren(parent, context);
+            }
+            return variables;
         }
         return super.getAllChildren(parent, context);
     }
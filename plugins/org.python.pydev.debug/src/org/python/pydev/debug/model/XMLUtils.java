@@ -10,9 +10,9 @@
  */
 package org.python.pydev.debug.model;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.util.ArrayList;
@@ -30,10 +30,12 @@ import org.eclipse.debug.core.model.IStackFrame;
 import org.python.pydev.debug.core.PydevDebugPlugin;
 import org.python.pydev.debug.newconsole.EvaluateDebugConsoleExpression;
 import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
 import com.aptana.shared_core.io.FileUtils;
+import com.aptana.shared_core.structure.Tuple;
 
 /**
  * Translate XML protocol responses into Py structures.
@@ -44,6 +46,12 @@ public class XMLUtils {
 
     static SAXParserFactory parserFactory = SAXParserFactory.newInstance();
 
+    /**
+     * Creating a parser is expensive (and parsing is done for each suspend/variable request), so, each thread keeps
+     * its own parser (a parser can't be used by more than one thread at a time).
+     */
+    /*default*/static final ThreadLocal<SAXParser> threadParser = new ThreadLocal<SAXParser>();
+
     static SAXParser getSAXParser() throws CoreException {
         SAXParser parser = null;
         try {
@@ -58,8 +66,32 @@ public class XMLUtils {
         return parser;
     }
 
+    /**
+     * Parses the payload with the parser of the current thread (reading the string directly, without copying it
+     * to a byte[]).
+     */
+    static void parse(String payload, DefaultHandler handler) throws CoreException, SAXException, IOException {
+        SAXParser parser = threadParser.get();
+        if (parser == null) {
+            parser = getSAXParser();
+        } else {
+            threadParser.set(null); //if the handler parses something else (re-entrant), it gets a new parser.
+        }
+        parser.parse(new InputSource(new StringReader(payload)), handler);
+
+        //Only reused if the parse succeeded (otherwise its state is not known).
+        parser.reset();
+        threadParser.set(parser);
+    }
+
+    /**
+     * Most values don't have quoted chars, so, the decoding is skipped for those.
+     */
     private static String decode(String value) {
         if (value != null) {
+            if (value.indexOf('%') == -1 && value.indexOf('+') == -1) {
+                return value;
+            }
             try {
                 return URLDecoder.decode(value, "UTF-8");
             } catch (UnsupportedEncodingException e) {
@@ -97,9 +129,8 @@ public class XMLUtils {
      */
     static public PyThread[] ThreadsFromXML(AbstractDebugTarget target, String payload) throws CoreException {
         try {
-            SAXParser parser = getSAXParser();
             XMLToThreadInfo info = new XMLToThreadInfo(target);
-            parser.parse(new ByteArrayInputStream(payload.getBytes()), info);
+            parse(payload, info);
             return (PyThread[]) info.threads.toArray(new PyThread[0]);
 
         } catch (CoreException e) {
@@ -119,15 +150,7 @@ public class XMLUtils {
         PyVariable var;
         String name = attributes.getValue("name");
         String type = attributes.getValue("type");
-        String value = attributes.getValue("value");
-        try {
-            if (value != null) {
-                value = URLDecoder.decode(value, "UTF-8");
-            }
-
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        String value = decode(attributes.getValue("value"));
         String isContainer = attributes.getValue("isContainer");
         if ("True".equals(isContainer)) {
             var = new PyVariableCollection(target, name, type, value, locator);
@@ -168,7 +191,7 @@ public class XMLUtils {
             String file = attributes.getValue("file");
             try {
                 if (file != null) {
-                    file = URLDecoder.decode(file, "UTF-8");
+                    file = decode(file);
                     File tempFile = new File(file);
                     if (tempFile.exists()) {
                         file = FileUtils.getFileAbsolutePath(tempFile);
@@ -231,9 +254,8 @@ public class XMLUtils {
         IStackFrame[] stack;
         Object[] retVal = new Object[3];
         try {
-            SAXParser parser = getSAXParser();
             XMLToStackInfo info = new XMLToStackInfo(target);
-            parser.parse(new ByteArrayInputStream(payload.getBytes()), info);
+            parse(payload, info);
 
             stack = info.stack.toArray(new IStackFrame[0]);
 
@@ -261,6 +283,11 @@ public class XMLUtils {
         private IVariableLocator locator;
         public List<PyVariable> vars;
 
+        /**
+         * Total number of children (only available in the response of a GetVariablePageCommand -- -1 otherwise).
+         */
+        public int total = -1;
+
         public XMLToVariableInfo(AbstractDebugTarget target, IVariableLocator locator) {
             this.target = target;
             this.locator = locator;
@@ -270,17 +297,23 @@ public class XMLUtils {
         public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
             // <var name="self" type="ObjectType" value="<DeepThread>"/>
             // create a local variable, and add it to locals
-            if (qName.equals("var"))
+            if (qName.equals("var")) {
                 vars.add(createVariable(target, locator, attributes));
+
+            } else if (qName.equals("xml")) {
+                String t = attributes.getValue("total");
+                if (t != null) {
+                    total = Integer.parseInt(t);
+                }
+            }
         }
     }
 
     public static PyVariable[] XMLToVariables(AbstractDebugTarget target, IVariableLocator locator, String payload)
             throws CoreException {
         try {
-            SAXParser parser = getSAXParser();
             XMLToVariableInfo info = new XMLToVariableInfo(target, locator);
-            parser.parse(new ByteArrayInputStream(payload.getBytes()), info);
+            parse(payload, info);
             PyVariable[] vars = new PyVariable[info.vars.size()];
             for (int i = 0; i < info.vars.size(); i++)
                 vars[i] = (PyVariable) info.vars.get(i);
@@ -294,6 +327,26 @@ public class XMLUtils {
         }
     }
 
+    /**
+     * @return the variables in a page and the total number of children (-1 if not available).
+     */
+    public static Tuple<PyVariable[], Integer> XMLToVariablesPage(AbstractDebugTarget target,
+            IVariableLocator locator, String payload) throws CoreException {
+        try {
+            XMLToVariableInfo info = new XMLToVariableInfo(target, locator);
+            parse(payload, info);
+            return new Tuple<PyVariable[], Integer>(info.vars.toArray(new PyVariable[info.vars.size()]), info.total);
+        } catch (CoreException e) {
+            throw e;
+        } catch (SAXException e) {
+            throw new CoreException(PydevDebugPlugin.makeStatus(IStatus.ERROR, "Unexpected XML error", e));
+        } catch (IOException e) {
+            throw new CoreException(PydevDebugPlugin.makeStatus(IStatus.ERROR, "Unexpected XML error", e));
+        } catch (NumberFormatException e) {
+            throw new CoreException(PydevDebugPlugin.makeStatus(IStatus.ERROR, "Unexpected XML error", e));
+        }
+    }
+
     /**
      * Processes CMD_GET_COMPLETIONS return
      *
@@ -320,9 +373,8 @@ public class XMLUtils {
 
     public static List<Object[]> convertXMLcompletionsFromConsole(String payload) throws CoreException {
         try {
-            SAXParser parser = getSAXParser();
             XMLToCompletionsInfo info = new XMLToCompletionsInfo();
-            parser.parse(new ByteArrayInputStream(payload.getBytes()), info);
+            parse(payload, info);
             return info.completions;
         } catch (CoreException e) {
             throw e;
@@ -401,10 +453,8 @@ public class XMLUtils {
             throws CoreException {
         EvaluateDebugConsoleExpression.PydevDebugConsoleMessage debugConsoleMessage = new EvaluateDebugConsoleExpression.PydevDebugConsoleMessage();
         try {
-            SAXParser parser = getSAXParser();
-
             DebugConsoleMessageInfo info = new DebugConsoleMessageInfo();
-            parser.parse(new ByteArrayInputStream(payload.getBytes()), info);
+            parse(payload, info);
             debugConsoleMessage = info.debugConsoleMessage;
 
         } catch (SAXException e) {
@@ -8,6 +8,8 @@ package org.python.pydev.debug.model;
 
 import java.util.List;
 
+import javax.xml.parsers.SAXParser;
+
 import junit.framework.TestCase;
 
 /**
@@ -23,4 +25,38 @@ public class XMLUtilsTest extends TestCase {
             assertEquals("%", objects[1]);
         }
     }
+
+    public void testXmlUtilsParserReused() throws Exception {
+        //The parser of the thread is reset and kept after a successful parse (and reused in the next one).
+        checkParse(0);
+        SAXParser parser = XMLUtils.threadParser.get();
+        assertNotNull(parser);
+        checkParse(1);
+        assertSame(parser, XMLUtils.threadParser.get());
+
+        //After an error it's discarded (and a new one is created and kept in the next successful parse).
+        try {
+            XMLUtils.convertXMLcompletionsFromConsole("<xml><comp");
+            fail("Expected error");
+        } catch (Exception e) {
+            //expected
+        }
+        assertNull(XMLUtils.threadParser.get());
+
+        checkParse(2);
+        SAXParser newParser = XMLUtils.threadParser.get();
+        assertNotNull(newParser);
+        assertNotSame(parser, newParser);
+        checkParse(3);
+        assertSame(newParser, XMLUtils.threadParser.get());
+    }
+
+    private void checkParse(int i) throws Exception {
+        String payload = "<xml><comp p0=\"a%C3%A7%C3%A3o\" p1=\"b\" p2=\"c\" p3=\"" + i + "\"/></xml>";
+        List<Object[]> xmlToCompletions = XMLUtils.convertXMLcompletionsFromConsole(payload);
+        assertEquals(1, xmlToCompletions.size());
+        assertEquals("a\u00e7\u00e3o", xmlToCompletions.get(0)[0]);
+        assertEquals("b", xmlToCompletions.get(0)[1]);
+        assertEquals("" + i, xmlToCompletions.get(0)[3]);
+    }
 }
@@ -9,10 +9,10 @@ package org.python.pydev.debug.model.remote;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
 import java.net.Socket;
 import java.net.URLDecoder;
-import java.util.Dictionary;
-import java.util.Hashtable;
+import java.util.HashMap;
 
 import org.eclipse.core.runtime.IStatus;
 import org.python.pydev.core.log.Log;
@@ -20,9 +20,12 @@ import org.python.pydev.debug.core.PydevDebugPlugin;
 import org.python.pydev.debug.model.AbstractDebugTarget;
 import org.python.pydev.debug.model.AbstractDebugTargetWithTransmission;
 
+import com.aptana.shared_core.string.FastStringBuffer;
 
 /**
  * Reads and dispatches commands
+ * 
+ * The reading thread blocks on the socket and each command is dispatched as soon as its line arrives.
  */
 public class DebuggerReader implements Runnable {
     /**
@@ -41,19 +44,26 @@ public class DebuggerReader implements Runnable {
     private volatile boolean done = false;
 
     /**
-     * Lock object for sleeping.
+     * commands waiting for response. Their keys are the sequence ids (synchronized on itself)
      */
-    private Object lock = new Object();
+    private final HashMap<Integer, AbstractDebuggerCommand> responseQueue = new HashMap<Integer, AbstractDebuggerCommand>();
 
     /**
-     * commands waiting for response. Their keys are the sequence ids
+     * we read from this
      */
-    private Dictionary<Integer, AbstractDebuggerCommand> responseQueue = new Hashtable<Integer, AbstractDebuggerCommand>();
+    private InputStreamReader in;
 
     /**
-     * we read from this
+     * Chars read from the socket and not consumed yet (from inPos to inLen).
      */
-    private InputStreamReader in;
+    private final char[] inBuf = new char[8192];
+    private int inPos;
+    private int inLen;
+
+    /**
+     * Used to build the lines read (only accessed from the reading thread).
+     */
+    private final FastStringBuffer contents = new FastStringBuffer(200);
 
     /**
      * that's the debugger that made us... we have to finish it when we are done
@@ -88,7 +98,7 @@ public class DebuggerReader implements Runnable {
     public void addToResponseQueue(AbstractDebuggerCommand cmd) {
         int sequence = cmd.getSequence();
         synchronized (responseQueue) {
-            responseQueue.put(new Integer(sequence), cmd);
+            responseQueue.put(sequence, cmd);
         }
     }
 
@@ -97,20 +107,27 @@ public class DebuggerReader implements Runnable {
      */
     private void processCommand(String cmdLine) {
         try {
-            String[] cmdParsed = cmdLine.split("\t", 3);
-            int cmdCode = Integer.parseInt(cmdParsed[0]);
-            int seqCode = Integer.parseInt(cmdParsed[1]);
-            String payload = URLDecoder.decode(cmdParsed[2], "UTF-8");
+            //Format: cmdCode\tseqCode\tpayload (the payload may have tabs)
+            int firstTab = cmdLine.indexOf('\t');
+            int secondTab = cmdLine.indexOf('\t', firstTab + 1);
+            if (firstTab == -1 || secondTab == -1) {
+                throw new RuntimeException("Unexpected command format: " + cmdLine);
+            }
+            String sCmdCode = cmdLine.substring(0, firstTab);
+            String sSeqCode = cmdLine.substring(firstTab + 1, secondTab);
+            int cmdCode = Integer.parseInt(sCmdCode);
+            int seqCode = Integer.parseInt(sSeqCode);
+            String payload = decode(cmdLine.substring(secondTab + 1));
 
             // is there a response waiting
             AbstractDebuggerCommand cmd;
             synchronized (responseQueue) {
-                cmd = (AbstractDebuggerCommand) responseQueue.remove(new Integer(seqCode));
+                cmd = responseQueue.remove(seqCode);
             }
 
             if (cmd == null) {
                 if (remote != null) {
-                    remote.processCommand(cmdParsed[0], cmdParsed[1], payload);
+                    remote.processCommand(sCmdCode, sSeqCode, payload);
                 } else {
                     PydevDebugPlugin.log(IStatus.ERROR, "internal error, command received no target", null);
                 }
@@ -123,6 +140,16 @@ public class DebuggerReader implements Runnable {
         }
     }
 
+    /**
+     * Most payloads (i.e.: step/suspend notifications) have no quoted chars, so, the decoding is skipped for those.
+     */
+    private static String decode(String payload) throws UnsupportedEncodingException {
+        if (payload.indexOf('%') == -1 && payload.indexOf('+') == -1) {
+            return payload;
+        }
+        return URLDecoder.decode(payload, "UTF-8");
+    }
+
     /**
      * keep reading until we finish (that should happen when an exception is thrown, or if it is set as
      * done from outside)
@@ -133,12 +160,9 @@ public class DebuggerReader implements Runnable {
         while (!done) {
             try {
                 String cmdLine = readLine();
-                if (cmdLine != null && cmdLine.trim().length() > 0) {
+                if (cmdLine.trim().length() > 0) {
                     processCommand(cmdLine);
                 }
-                synchronized (lock) {
-                    Thread.sleep(50);
-                }
             } catch (Exception e1) {
                 done = true;
                 //that's ok, it means that the client finished
@@ -161,19 +185,32 @@ public class DebuggerReader implements Runnable {
     /**
      * Implemented our own: with the BufferedReader, when the socket was closed, it still appeared stuck in the method.
      * 
+     * The chars are read in blocks (a read returns what's available in the socket, so, it doesn't wait for a full
+     * block).
+     * 
      * @return a line that was read from the debugger.
      * @throws IOException
      */
     private String readLine() throws IOException {
-        StringBuffer contents = new StringBuffer();
-        int i;
-        while ((i = in.read()) != -1) {
-            char c = (char) i;
-            if (c == '\n' || c == '\r') {
-                return contents.toString();
+        contents.clear();
+        while (true) {
+            if (inPos == inLen) {
+                inLen = in.read(inBuf, 0, inBuf.length);
+                inPos = 0;
+                if (inLen == -1) {
+                    inLen = 0;
+                    throw new IOException("Done");
+                }
+            }
+            int start = inPos;
+            while (inPos < inLen) {
+                char c = inBuf[inPos++];
+                if (c == '\n' || c == '\r') {
+                    contents.append(inBuf, start, inPos - 1 - start);
+                    return contents.toString();
+                }
             }
-            contents.append(c);
+            contents.append(inBuf, start, inLen - start);
         }
-        throw new IOException("Done");
     }
 }
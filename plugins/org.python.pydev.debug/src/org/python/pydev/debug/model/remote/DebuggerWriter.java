@@ -6,56 +6,58 @@
  */
 package org.python.pydev.debug.model.remote;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.net.Socket;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Writer writes debugger commands to the network. Use postCommand to put new
  * ones in queue.
+ * 
+ * The writing thread blocks until a command is posted (so, a command is sent as soon as it's posted and no cpu is
+ * used while there's nothing to write).
  */
 public class DebuggerWriter implements Runnable {
 
+    /**
+     * Posted by done() so that the writing thread wakes up to finish.
+     */
+    private static final Object DONE_MARKER = new Object();
+
     /**
      * connection socket
      */
     private Socket socket;
 
     /**
-     * a list of RemoteDebuggerCommands
+     * a queue of RemoteDebuggerCommands (or DONE_MARKER)
      */
-    private List<AbstractDebuggerCommand> cmdQueue = new ArrayList<AbstractDebuggerCommand>();
+    private final LinkedBlockingQueue<Object> cmdQueue = new LinkedBlockingQueue<Object>();
 
-    private OutputStreamWriter out;
+    private BufferedWriter out;
 
     /**
      * Volatile, as multiple threads may ask it to be 'done'
      */
     private volatile boolean done = false;
 
-    /**
-     * Lock object for sleeping.
-     */
-    private Object lock = new Object();
-
     public DebuggerWriter(Socket s) throws IOException {
         socket = s;
-        out = new OutputStreamWriter(s.getOutputStream());
+        out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream()));
     }
 
     /**
      * Add command for processing
      */
     public void postCommand(AbstractDebuggerCommand cmd) {
-        synchronized (cmdQueue) {
-            cmdQueue.add(cmd);
-        }
+        cmdQueue.add(cmd);
     }
 
     public void done() {
         this.done = true;
+        cmdQueue.add(DONE_MARKER);
     }
 
     /**
@@ -63,21 +65,19 @@ public class DebuggerWriter implements Runnable {
      */
     public void run() {
         while (!done) {
-            AbstractDebuggerCommand cmd = null;
-            synchronized (cmdQueue) {
-                if (cmdQueue.size() > 0) {
-                    cmd = (AbstractDebuggerCommand) cmdQueue.remove(0);
-                }
-            }
             try {
-                if (cmd != null) {
-                    cmd.aboutToSend();
-                    out.write(cmd.getOutgoing());
-                    out.write("\n");
-                    out.flush();
+                Object next = cmdQueue.take();
+                if (next == DONE_MARKER) {
+                    break;
                 }
-                synchronized (lock) {
-                    Thread.sleep(100);
+                AbstractDebuggerCommand cmd = (AbstractDebuggerCommand) next;
+                cmd.aboutToSend();
+                out.write(cmd.getOutgoing());
+                out.write("\n");
+
+                //Commands posted together are sent together (but we never wait for more commands to flush).
+                if (cmdQueue.isEmpty()) {
+                    out.flush();
                 }
             } catch (InterruptedException e) {
                 done = true;
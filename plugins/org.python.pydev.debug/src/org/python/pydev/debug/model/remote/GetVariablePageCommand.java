@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model.remote;
+
+import org.python.pydev.debug.model.AbstractDebugTarget;
+
+/**
+ * Gets only the children of a variable in the range [offset, offset+limit) (big containers are gotten in pages).
+ * 
+ * The response is the same XML of GetVariableCommand, with the total number of children in the 'total' attribute
+ * of the xml element.
+ */
+public class GetVariablePageCommand extends GetVariableCommand {
+
+    private final int offset;
+    private final int limit;
+
+    public GetVariablePageCommand(AbstractDebugTarget debugger, String locator, int offset, int limit) {
+        super(debugger, locator);
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    @Override
+    public String getOutgoing() {
+        return makeCommand(getCommandId(), sequence, offset + "\t" + limit + "\t" + locator);
+    }
+
+    @Override
+    protected int getCommandId() {
+        return CMD_GET_VARIABLE_PAGE;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.debug.core.ILaunch;
+import org.eclipse.debug.core.model.IProcess;
+import org.eclipse.debug.core.model.IVariable;
+import org.python.pydev.debug.model.remote.AbstractDebuggerCommand;
+import org.python.pydev.debug.model.remote.GetVariablePageCommand;
+
+import com.aptana.shared_core.structure.Tuple;
+
+public class PyVariableCollectionTest extends TestCase {
+
+    public static void main(String[] args) {
+        try {
+            junit.textui.TestRunner.run(PyVariableCollectionTest.class);
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Answers the page requests right away as pydevd would for a list with the given number of items (without the
+     * __len__ entry).
+     */
+    private static class DummyDebugTarget extends AbstractDebugTarget {
+
+        private final int items;
+        private final List<String> requests = new ArrayList<String>();
+
+        public DummyDebugTarget(int items) {
+            this.items = items;
+        }
+
+        @Override
+        public void postCommand(AbstractDebuggerCommand cmd) {
+            String outgoing = cmd.getOutgoing();
+            requests.add(outgoing);
+            String[] parts = outgoing.split("\t");
+            int offset = Integer.parseInt(parts[2]);
+            int limit = Integer.parseInt(parts[3]);
+
+            StringBuffer xml = new StringBuffer("<xml total=\"" + items + "\">");
+            for (int i = offset; i < Math.min(offset + limit, items); i++) {
+                xml.append("<var name=\"" + i + "\" type=\"int\" value=\"int%3A " + i + "\" />");
+            }
+            xml.append("</xml>");
+            cmd.processResponse(AbstractDebuggerCommand.CMD_GET_VARIABLE_PAGE, xml.toString());
+        }
+
+        @Override
+        public void processCommand(String sCmdCode, String sSeqCode, String payload) {
+        }
+
+        public IProcess getProcess() {
+            return null;
+        }
+
+        public void launchRemoved(ILaunch launch) {
+        }
+
+        @Override
+        public boolean canTerminate() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+    }
+
+    private static final IVariableLocator LOCATOR = new IVariableLocator() {
+        public String getPyDBLocation() {
+            return "thread1\t22\tFRAME";
+        }
+    };
+
+    private int initialPageSize;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        initialPageSize = PyVariableCollection.PAGE_SIZE;
+        PyVariableCollection.PAGE_SIZE = 10;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        PyVariableCollection.PAGE_SIZE = initialPageSize;
+        super.tearDown();
+    }
+
+    public void testPageCommand() throws Exception {
+        DummyDebugTarget target = new DummyDebugTarget(0);
+        GetVariablePageCommand cmd = new GetVariablePageCommand(target, "thread1\t22\tFRAME\tlst", 200, 100);
+        assertEquals(AbstractDebuggerCommand.CMD_GET_VARIABLE_PAGE + "\t" + cmd.getSequence()
+                + "\t200\t100\tthread1\t22\tFRAME\tlst", cmd.getOutgoing());
+        assertEquals(200, cmd.getOffset());
+        assertTrue(cmd.needResponse());
+    }
+
+    public void testXMLToVariablesPage() throws Exception {
+        String payload = "<xml total=\"1001\">" +
+                "<var name=\"0998\" type=\"int\" value=\"int%3A 1\" />" +
+                "<var name=\"lst\" type=\"list\" value=\"list%3A %5B%5D\" isContainer=\"True\" />" +
+                "</xml>";
+        Tuple<PyVariable[], Integer> page = XMLUtils.XMLToVariablesPage(null, LOCATOR, payload);
+        assertEquals(1001, page.o2.intValue());
+        assertEquals(2, page.o1.length);
+        assertEquals("0998", page.o1[0].getName());
+        assertEquals("int: 1", page.o1[0].getValueString());
+        assertFalse(page.o1[0] instanceof PyVariableCollection);
+        assertTrue(page.o1[1] instanceof PyVariableCollection);
+
+        //the response of a GetVariableCommand doesn't have the total
+        page = XMLUtils.XMLToVariablesPage(null, LOCATOR, "<xml><var name=\"a\" type=\"int\" value=\"1\" /></xml>");
+        assertEquals(-1, page.o2.intValue());
+        assertEquals(1, page.o1.length);
+    }
+
+    public void testOffsets() throws Exception {
+        DummyDebugTarget target = new DummyDebugTarget(25);
+        PyVariableCollection collection = new PyVariableCollection(target, "lst", "list", "", LOCATOR);
+
+        //crosses the 1st and 2nd pages
+        IVariable[] variables = collection.getVariables(8, 4);
+        assertEquals(4, variables.length);
+        for (int i = 0; i < variables.length; i++) {
+            assertEquals("" + (8 + i), variables[i].getName());
+        }
+        assertEquals(2, target.requests.size());
+        assertEquals(25, collection.getSize());
+        assertTrue(collection.isPaged());
+
+        //the pages fetched are cached
+        assertEquals("15", collection.getVariable(15).getName());
+        assertEquals(2, target.requests.size());
+
+        //the last page has less items than the limit
+        variables = collection.getVariables(20, 10);
+        assertEquals(5, variables.length);
+        assertEquals("24", variables[4].getName());
+        assertEquals(3, target.requests.size());
+
+        //the pages are fetched again after a resume
+        collection.clearPages();
+        collection.getVariables(0, 1);
+        assertEquals(4, target.requests.size());
+        assertTrue(target.requests.get(3).contains("\t0\t10\tthread1\t22\tFRAME\tlst"));
+    }
+
+    public void testNotPaged() throws Exception {
+        DummyDebugTarget target = new DummyDebugTarget(10);
+        PyVariableCollection collection = new PyVariableCollection(target, "lst", "list", "", LOCATOR);
+        assertEquals(0, collection.getSize()); //unknown until the first page arrives
+        assertEquals(10, collection.getVariables(0, 20).length);
+        assertEquals(10, collection.getSize());
+        assertFalse(collection.isPaged());
+    }
+}
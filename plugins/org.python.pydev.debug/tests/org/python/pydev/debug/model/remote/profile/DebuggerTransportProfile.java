@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model.remote.profile;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.eclipse.debug.core.ILaunch;
+import org.eclipse.debug.core.model.IProcess;
+import org.python.pydev.debug.model.AbstractDebugTarget;
+import org.python.pydev.debug.model.remote.AbstractDebuggerCommand;
+import org.python.pydev.debug.model.remote.StepCommand;
+
+/**
+ * Measures the round-trip of a step (the step command is sent and the suspend notification is received) against a
+ * local stand-in for pydevd (which answers each step with a suspend right away).
+ * 
+ * Before the reader/writer stopped polling, each step had 50-150 millis of latency added by the sleeps in the
+ * transport. The time depends on the machine, so, it's just printed (nothing is asserted on it).
+ */
+public class DebuggerTransportProfile extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(DebuggerTransportProfile.class);
+    }
+
+    private static final int STEPS = 500;
+
+    private ServerSocket serverSocket;
+    private Socket serverSide;
+    private DummyDebugTarget target;
+
+    private class DummyDebugTarget extends AbstractDebugTarget {
+
+        private final Semaphore suspended = new Semaphore(0);
+
+        @Override
+        public void processCommand(String sCmdCode, String sSeqCode, String payload) {
+            if (Integer.parseInt(sCmdCode) == AbstractDebuggerCommand.CMD_THREAD_SUSPEND) {
+                suspended.release();
+            }
+        }
+
+        public IProcess getProcess() {
+            return null;
+        }
+
+        public void launchRemoved(ILaunch launch) {
+        }
+
+        @Override
+        public boolean canTerminate() {
+            return true;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        serverSocket = new ServerSocket(0);
+        Socket clientSide = new Socket("127.0.0.1", serverSocket.getLocalPort());
+        serverSide = serverSocket.accept();
+
+        Thread server = new Thread("DebuggerTransportProfile.server") {
+            @Override
+            public void run() {
+                try {
+                    BufferedReader in = new BufferedReader(new InputStreamReader(serverSide.getInputStream()));
+                    Writer out = new OutputStreamWriter(serverSide.getOutputStream());
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        //Answers each step with a suspend of the thread (as pydevd would).
+                        String[] parts = line.split("\t");
+                        out.write(AbstractDebuggerCommand.makeCommand(AbstractDebuggerCommand.CMD_THREAD_SUSPEND, 2,
+                                parts[2] + "\t" + parts[0]));
+                        out.write("\n");
+                        out.flush();
+                    }
+                } catch (Exception e) {
+                    //finished
+                }
+            }
+        };
+        server.setDaemon(true);
+        server.start();
+
+        target = new DummyDebugTarget();
+        target.startTransmission(clientSide);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        target.terminate();
+        serverSide.close();
+        serverSocket.close();
+        super.tearDown();
+    }
+
+    public void testStepLatency() throws Exception {
+        //warm up
+        for (int i = 0; i < 20; i++) {
+            step();
+        }
+
+        long curr = System.nanoTime();
+        for (int i = 0; i < STEPS; i++) {
+            step();
+        }
+        double averageMillis = (System.nanoTime() - curr) / 1000000.0 / STEPS;
+        System.out.println("Step round-trip: " + averageMillis + " millis (average of " + STEPS + " steps)");
+    }
+
+    private void step() throws InterruptedException {
+        target.postCommand(new StepCommand(target, AbstractDebuggerCommand.CMD_STEP_OVER, "thread1"));
+        assertTrue(target.suspended.tryAcquire(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,554 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import org.python.pydev.core.structure.LowMemoryArrayList;
+import org.python.pydev.parser.jython.ISpecialStr;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.SpecialStr;
+import org.python.pydev.parser.jython.ast.Call;
+import org.python.pydev.parser.jython.ast.ClassDef;
+import org.python.pydev.parser.jython.ast.FunctionDef;
+import org.python.pydev.parser.jython.ast.Import;
+import org.python.pydev.parser.jython.ast.ImportFrom;
+import org.python.pydev.parser.jython.ast.Lambda;
+import org.python.pydev.parser.jython.ast.Module;
+import org.python.pydev.parser.jython.ast.TryExcept;
+import org.python.pydev.parser.jython.ast.VisitorBase;
+import org.python.pydev.parser.jython.ast.commentType;
+import org.python.pydev.parser.jython.ast.decoratorsType;
+import org.python.pydev.parser.jython.ast.stmtType;
+
+/**
+ * Keeps the contents and the AST of the last successful parse of a document so that the next parse can reparse
+ * only the top-level statements that were changed.
+ *
+ * The changed region is found by comparing the new contents with the previous ones. It's then extended to the
+ * top-level statements of the previous AST that contain it (the lines of a statement include the comments attached
+ * to any of its nodes) and only those lines are parsed with the grammar (the lines before it are passed as empty
+ * lines, so, the lines/columns of the new nodes are already correct).
+ * The new nodes are spliced between the previous statements (the statements after the region are copied with their
+ * lines fixed if the number of lines changed -- the previous AST is never changed, as it may still be in use).
+ *
+ * A full parse must be done when null is returned, which happens whenever it's not safe to reparse only the region
+ * (i.e.: the region has a syntax error, it doesn't start/end at column 0, the previous parse had errors,
+ * __future__ imports are used, etc).
+ *
+ * @author Fabio
+ */
+public final class IncrementalReparser {
+
+    /**
+     * Collects the nodes in the same order for a node and its copy (note that some nodes are not passed to the
+     * visitor by accept(), so, those are added by their parent).
+     */
+    private static final class NodesCollector extends VisitorBase {
+
+        private final List<SimpleNode> nodes = new ArrayList<SimpleNode>();
+
+        @Override
+        protected Object unhandled_node(SimpleNode node) throws Exception {
+            nodes.add(node);
+            return null;
+        }
+
+        @Override
+        public void traverse(SimpleNode node) throws Exception {
+            if (node instanceof FunctionDef) {
+                FunctionDef functionDef = (FunctionDef) node;
+                add(functionDef.args);
+                addDecorators(functionDef.decs);
+
+            } else if (node instanceof ClassDef) {
+                ClassDef classDef = (ClassDef) node;
+                addDecorators(classDef.decs);
+                addAll(classDef.keywords);
+
+            } else if (node instanceof Lambda) {
+                add(((Lambda) node).args);
+
+            } else if (node instanceof Call) {
+                addAll(((Call) node).keywords);
+
+            } else if (node instanceof Import) {
+                addAll(((Import) node).names);
+
+            } else if (node instanceof ImportFrom) {
+                addAll(((ImportFrom) node).names);
+
+            } else if (node instanceof TryExcept) {
+                addAll(((TryExcept) node).handlers);
+            }
+            node.traverse(this);
+        }
+
+        private void addDecorators(decoratorsType[] decs) {
+            if (decs != null) {
+                for (decoratorsType dec : decs) {
+                    if (dec != null) {
+                        nodes.add(dec);
+                        addAll(dec.keywords);
+                    }
+                }
+            }
+        }
+
+        private void addAll(SimpleNode[] nodes) {
+            if (nodes != null) {
+                for (SimpleNode node : nodes) {
+                    add(node);
+                }
+            }
+        }
+
+        private void add(SimpleNode node) {
+            if (node != null) {
+                nodes.add(node);
+            }
+        }
+    }
+
+    //All the fields below are synchronized on this.
+    private char[] lastContents;
+    private int[] lastLineStarts;
+    private Module lastModule;
+    private int lastGrammarVersion;
+
+    /**
+     * The first and last lines of each top-level statement in the last module (considering all its nodes and
+     * comments).
+     */
+    private int[] lastFirstLines;
+    private int[] lastLastLines;
+
+    private int incrementalParses;
+    private int fullParses;
+
+    /**
+     * Sets the result of a full parse (only successful parses are kept as the base for the next incremental parse).
+     */
+    public synchronized void setLastParse(char[] contents, int grammarVersion, SimpleNode root, Throwable error) {
+        fullParses++;
+        if (contents == null || error != null || !(root instanceof Module) || hasFutureImport(contents)) {
+            clear();
+            return;
+        }
+        Module module = (Module) root;
+        int len = module.body.length;
+        int[] firstLines = new int[len];
+        int[] lastLines = new int[len];
+        for (int i = 0; i < len; i++) {
+            if (!computeLines(module.body[i], firstLines, lastLines, i)) {
+                clear();
+                return;
+            }
+        }
+        lastContents = contents;
+        lastLineStarts = computeLineStarts(contents);
+        lastModule = module;
+        lastGrammarVersion = grammarVersion;
+        lastFirstLines = firstLines;
+        lastLastLines = lastLines;
+    }
+
+    public synchronized void clear() {
+        lastContents = null;
+        lastLineStarts = null;
+        lastModule = null;
+        lastFirstLines = null;
+        lastLastLines = null;
+    }
+
+    /**
+     * @return the number of parses which were done reparsing only the changed statements.
+     */
+    public synchronized int getIncrementalParsesCount() {
+        return incrementalParses;
+    }
+
+    /**
+     * @return the number of full parses set in this object.
+     */
+    public synchronized int getFullParsesCount() {
+        return fullParses;
+    }
+
+    /**
+     * @param contents the contents to be parsed (as created by PyParser.createCharArrayToParse).
+     *
+     * @return the module for the new contents or null if a full parse must be done.
+     */
+    public synchronized Module reparse(char[] contents, int grammarVersion) {
+        if (lastModule == null || lastGrammarVersion != grammarVersion) {
+            return null;
+        }
+        if (hasSpecials(lastModule)) {
+            return null;
+        }
+        char[] old = lastContents;
+        int oldLen = old.length;
+        int newLen = contents.length;
+        int minLen = Math.min(oldLen, newLen);
+
+        int prefix = 0;
+        while (prefix < minLen && old[prefix] == contents[prefix]) {
+            prefix++;
+        }
+        if (prefix == oldLen && prefix == newLen) {
+            lastContents = contents;
+            return lastModule; //Nothing changed (and the module is never changed, so, it can be shared).
+        }
+        int suffix = 0;
+        while (suffix < minLen - prefix && old[oldLen - 1 - suffix] == contents[newLen - 1 - suffix]) {
+            suffix++;
+        }
+        if (hasFutureImport(contents)) {
+            return null;
+        }
+
+        //The changed chars are old[prefix:oldLen-suffix] / contents[prefix:newLen-suffix].
+        int oldChangedEnd = oldLen - suffix;
+        int firstChangedLine = getLine(lastLineStarts, prefix);
+        int lastChangedLine = getLine(lastLineStarts, oldChangedEnd > prefix ? oldChangedEnd - 1 : prefix);
+
+        stmtType[] body = lastModule.body;
+        int len = body.length;
+        int[] firstLines = lastFirstLines;
+        int[] lastLines = lastLastLines;
+
+        //First statement to be reparsed (statements sharing lines are reparsed together).
+        int first = 0;
+        while (first + 1 < len && firstLines[first + 1] <= firstChangedLine) {
+            first++;
+        }
+        if (first > 0
+                && (contains(old, prefix, oldChangedEnd, '#') || contains(contents, prefix, newLen - suffix, '#'))) {
+            //Comments after a statement are added to it, so, the previous statement must be reparsed too.
+            first--;
+        }
+        while (first > 0 && firstLines[first] <= lastLines[first - 1]) {
+            first--;
+        }
+        int startLine = (len > 0 && firstLines[first] <= firstChangedLine) ? firstLines[first] : 1;
+
+        //First statement to be kept after the reparsed region (the line break before it must not be changed).
+        int end = first;
+        while (end < len
+                && (firstLines[end] <= lastChangedLine || lastLineStarts[firstLines[end] - 1] - 1 < oldChangedEnd
+                        || (end > 0 && firstLines[end] <= lastLines[end - 1]))) {
+            end++;
+        }
+
+        int[] newLineStarts = computeLineStarts(contents);
+        if (startLine > newLineStarts.length || newLineStarts[startLine - 1] != lastLineStarts[startLine - 1]) {
+            return null;
+        }
+        int regionStart = lastLineStarts[startLine - 1];
+        int regionEnd = newLen;
+        int delta = 0;
+        if (end < len) {
+            int oldEndOffset = lastLineStarts[firstLines[end] - 1];
+            regionEnd = oldEndOffset + (newLen - oldLen);
+            int newEndLine = getLine(newLineStarts, regionEnd);
+            if (newLineStarts[newEndLine - 1] != regionEnd) {
+                return null;
+            }
+            delta = newEndLine - firstLines[end];
+            if (!startsStatement(old, oldEndOffset)) {
+                return null;
+            }
+        }
+        if (startLine > 1 && !startsStatement(contents, regionStart)) {
+            return null;
+        }
+        if ((regionEnd - regionStart) * 2 > newLen) {
+            return null; //Reparsing most of the document: just go for a full parse.
+        }
+
+        Module regionModule = parseRegion(contents, regionStart, regionEnd, startLine, grammarVersion);
+        if (regionModule == null) {
+            return null;
+        }
+
+        stmtType[] regionBody = regionModule.body;
+        int newBodyLen = first + regionBody.length + (len - end);
+        stmtType[] newBody = new stmtType[newBodyLen];
+        int[] newFirstLines = new int[newBodyLen];
+        int[] newLastLines = new int[newBodyLen];
+        int j = 0;
+        for (int i = 0; i < first; i++, j++) {
+            newBody[j] = body[i];
+            newFirstLines[j] = firstLines[i];
+            newLastLines[j] = lastLines[i];
+        }
+        for (int i = 0; i < regionBody.length; i++, j++) {
+            newBody[j] = regionBody[i];
+            if (!computeLines(regionBody[i], newFirstLines, newLastLines, j)) {
+                return null;
+            }
+        }
+        for (int i = end; i < len; i++, j++) {
+            if (delta == 0) {
+                newBody[j] = body[i];
+            } else {
+                newBody[j] = createShiftedCopy(body[i], delta);
+                if (newBody[j] == null) {
+                    return null;
+                }
+            }
+            newFirstLines[j] = firstLines[i] + delta;
+            newLastLines[j] = lastLines[i] + delta;
+        }
+
+        Module module = new Module(newBody);
+        module.beginLine = lastModule.beginLine;
+        module.beginColumn = lastModule.beginColumn;
+
+        lastContents = contents;
+        lastLineStarts = newLineStarts;
+        lastModule = module;
+        lastFirstLines = newFirstLines;
+        lastLastLines = newLastLines;
+        incrementalParses++;
+        return module;
+    }
+
+    /**
+     * Parses contents[regionStart:regionEnd] (with empty lines before it so that the lines are correct).
+     *
+     * @return the module parsed or null if it had errors.
+     */
+    private static Module parseRegion(char[] contents, int regionStart, int regionEnd, int startLine,
+            int grammarVersion) {
+        int emptyLines = startLine - 1;
+        char[] chars = new char[emptyLines + (regionEnd - regionStart)];
+        for (int i = 0; i < emptyLines; i++) {
+            chars[i] = '\n';
+        }
+        System.arraycopy(contents, regionStart, chars, emptyLines, regionEnd - regionStart);
+
+        SimpleNode node;
+        IGrammar grammar = PyParser.createGrammar(true, grammarVersion, chars);
+        try {
+            node = grammar.file_input();
+        } catch (Throwable e) {
+            return null; //a full parse will report it.
+        }
+        if (grammar.getErrorOnParsing() != null || !(node instanceof Module)) {
+            return null;
+        }
+        Module module = (Module) node;
+        if (hasSpecials(module)) {
+            return null; //i.e.: comments not related to any statement.
+        }
+        return module;
+    }
+
+    /**
+     * @return a copy of the statement with all the lines moved by the given delta (null if it wasn't possible).
+     */
+    private static stmtType createShiftedCopy(stmtType stmt, int delta) {
+        stmtType copy = (stmtType) stmt.createCopy(false);
+        NodesCollector original = new NodesCollector();
+        NodesCollector copied = new NodesCollector();
+        try {
+            stmt.accept(original);
+            copy.accept(copied);
+        } catch (Exception e) {
+            return null;
+        }
+        int size = original.nodes.size();
+        if (size != copied.nodes.size()) {
+            return null;
+        }
+
+        IdentityHashMap<SimpleNode, SimpleNode> originalToCopy = new IdentityHashMap<SimpleNode, SimpleNode>(size);
+        for (int i = 0; i < size; i++) {
+            originalToCopy.put(original.nodes.get(i), copied.nodes.get(i));
+        }
+        for (int i = 0; i < size; i++) {
+            SimpleNode o = original.nodes.get(i);
+            SimpleNode c = copied.nodes.get(i);
+            if (o.getClass() != c.getClass()) {
+                return null;
+            }
+            c.beginLine = shift(o.beginLine, delta);
+            c.beginColumn = o.beginColumn;
+            c.specialsBefore = createShiftedSpecials(o.specialsBefore, delta);
+            c.specialsAfter = createShiftedSpecials(o.specialsAfter, delta);
+            if (o.parent != null) {
+                c.parent = originalToCopy.get(o.parent);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * @return the line moved by the given delta (lines not set -- i.e.: 0 -- are kept as is).
+     */
+    private static int shift(int line, int delta) {
+        return line > 0 ? line + delta : line;
+    }
+
+    private static List<Object> createShiftedSpecials(List<Object> specials, int delta) {
+        if (specials == null) {
+            return null;
+        }
+        List<Object> ret = new LowMemoryArrayList<Object>();
+        for (Object o : specials) {
+            if (o instanceof commentType) {
+                commentType comment = ((commentType) o).createCopy(false);
+                comment.beginLine = shift(comment.beginLine, delta);
+                ret.add(comment);
+
+            } else if (o instanceof SpecialStr) {
+                SpecialStr specialStr = (SpecialStr) o;
+                ret.add(new SpecialStr(specialStr.str, shift(specialStr.beginLine, delta), specialStr.beginCol));
+
+            } else {
+                ret.add(o);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Sets in firstLines[i] and lastLines[i] the first and last lines of the statement (considering all its nodes
+     * and the comments/special strings that belong to it).
+     *
+     * @return false if it was not possible to get the lines.
+     */
+    private static boolean computeLines(stmtType stmt, int[] firstLines, int[] lastLines, int i) {
+        NodesCollector collector = new NodesCollector();
+        try {
+            stmt.accept(collector);
+        } catch (Exception e) {
+            return false;
+        }
+        int first = Integer.MAX_VALUE;
+        int last = 0;
+        for (SimpleNode node : collector.nodes) {
+            int line = node.beginLine;
+            if (line > 0) {
+                first = Math.min(first, line);
+                last = Math.max(last, line);
+            }
+            for (int j = 0; j < 2; j++) {
+                List<Object> specials = j == 0 ? node.specialsBefore : node.specialsAfter;
+                if (specials == null) {
+                    continue;
+                }
+                for (Object o : specials) {
+                    if (o instanceof ISpecialStr) {
+                        line = ((ISpecialStr) o).getBeginLine();
+                    } else if (o instanceof SimpleNode) {
+                        line = ((SimpleNode) o).beginLine;
+                    } else {
+                        continue;
+                    }
+                    if (line > 0) {
+                        first = Math.min(first, line);
+                        last = Math.max(last, line);
+                    }
+                }
+            }
+        }
+        if (last == 0) {
+            return false;
+        }
+        firstLines[i] = first;
+        lastLines[i] = last;
+        return true;
+    }
+
+    private static boolean hasSpecials(SimpleNode node) {
+        return (node.specialsBefore != null && node.specialsBefore.size() > 0)
+                || (node.specialsAfter != null && node.specialsAfter.size() > 0);
+    }
+
+    /**
+     * @return whether the line starting at the given offset starts at column 0 (and is not a blank line).
+     */
+    private static boolean startsStatement(char[] contents, int offset) {
+        if (offset >= contents.length) {
+            return false;
+        }
+        char c = contents[offset];
+        return !Character.isWhitespace(c) && c != '\\';
+    }
+
+    private static boolean contains(char[] contents, int start, int end, char c) {
+        for (int i = start; i < end; i++) {
+            if (contents[i] == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasFutureImport(char[] contents) {
+        char[] future = "__future__".toCharArray();
+        int last = contents.length - future.length;
+        OUT: for (int i = 0; i <= last; i++) {
+            for (int j = 0; j < future.length; j++) {
+                if (contents[i + j] != future[j]) {
+                    continue OUT;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the offsets where each line starts (a new line starts after \n or after \r if not followed by \n).
+     */
+    /*default*/static int[] computeLineStarts(char[] contents) {
+        int[] lineStarts = new int[16];
+        int linesLen = 1; //the first line starts at 0.
+        int len = contents.length;
+        for (int i = 0; i < len; i++) {
+            char c = contents[i];
+            if (c == '\n' || (c == '\r' && (i + 1 >= len || contents[i + 1] != '\n'))) {
+                if (i + 1 >= len) {
+                    break; //no line after the last line break.
+                }
+                if (linesLen == lineStarts.length) {
+                    int[] newLineStarts = new int[linesLen * 2];
+                    System.arraycopy(lineStarts, 0, newLineStarts, 0, linesLen);
+                    lineStarts = newLineStarts;
+                }
+                lineStarts[linesLen] = i + 1;
+                linesLen++;
+            }
+        }
+        int[] ret = new int[linesLen];
+        System.arraycopy(lineStarts, 0, ret, 0, linesLen);
+        return ret;
+    }
+
+    /**
+     * @return the line (1-based) of the given offset.
+     */
+    /*default*/static int getLine(int[] lineStarts, int offset) {
+        int low = 0;
+        int high = lineStarts.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (lineStarts[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low + 1;
+    }
+}
@@ -0,0 +1,215 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.python.pydev.parser.jython.SimpleNode;
+
+import com.aptana.shared_core.structure.Tuple;
+
+/**
+ * A process-wide cache for the results of PyParser.reparseDocument (so that the same contents are not parsed
+ * over and over again by the editor, the builders and the code analysis).
+ *
+ * The results are keyed by a hash of the contents parsed (along with the grammar version and whether the tree was
+ * generated). Entries are kept in LRU order with soft references, and the least recently used entries are removed
+ * when the estimated memory used exceeds the budget.
+ *
+ * Note that the same AST is returned to all the clients that parse the same contents, so, the AST returned by
+ * the parser must not be changed.
+ *
+ * @author Fabio
+ */
+public final class ParseResultCache {
+
+    /**
+     * Rough estimate of the memory used by the AST for each char of the source parsed.
+     */
+    private static final int ESTIMATED_BYTES_PER_CHAR = 20;
+
+    public static final int DEFAULT_MAX_MEMORY_IN_MB = 32;
+
+    /**
+     * The key for a parse result.
+     */
+    public static final class Key {
+
+        private final long hash;
+        private final int length;
+        private final int grammarVersion;
+        private final boolean generateTree;
+
+        private Key(long hash, int length, int grammarVersion, boolean generateTree) {
+            this.hash = hash;
+            this.length = length;
+            this.grammarVersion = grammarVersion;
+            this.generateTree = generateTree;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash ^ (hash >>> 32)) * 31 + grammarVersion;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && length == other.length && grammarVersion == other.grammarVersion
+                    && generateTree == other.generateTree;
+        }
+    }
+
+    private static final class Entry extends SoftReference<Tuple<SimpleNode, Throwable>> {
+
+        private final Key key;
+        private final long cost;
+
+        private Entry(Key key, Tuple<SimpleNode, Throwable> referent, long cost,
+                ReferenceQueue<Tuple<SimpleNode, Throwable>> queue) {
+            super(referent, queue);
+            this.key = key;
+            this.cost = cost;
+        }
+    }
+
+    private static final ParseResultCache instance = new ParseResultCache(DEFAULT_MAX_MEMORY_IN_MB);
+
+    /**
+     * @return the cache shared in the process.
+     */
+    public static ParseResultCache getDefault() {
+        return instance;
+    }
+
+    //All the fields below are synchronized on this.
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    private final ReferenceQueue<Tuple<SimpleNode, Throwable>> queue = new ReferenceQueue<Tuple<SimpleNode, Throwable>>();
+    private long maxCost;
+    private long currentCost;
+    private int hits;
+    private int misses;
+
+    /*default*/ParseResultCache(int maxMemoryInMB) {
+        setMaxMemoryInMB(maxMemoryInMB);
+    }
+
+    /**
+     * Creates the key for the given contents (a 64 bit FNV-1a hash of the chars is used).
+     */
+    public static Key createKey(char[] contents, int grammarVersion, boolean generateTree) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < contents.length; i++) {
+            char c = contents[i];
+            hash ^= (c & 0xFF);
+            hash *= 0x100000001b3L;
+            hash ^= (c >>> 8);
+            hash *= 0x100000001b3L;
+        }
+        return new Key(hash, contents.length, grammarVersion, generateTree);
+    }
+
+    /**
+     * @param maxMemoryInMB the (estimated) memory the cache may use (if 0, nothing is cached).
+     */
+    public synchronized void setMaxMemoryInMB(int maxMemoryInMB) {
+        this.maxCost = ((long) maxMemoryInMB) * 1024 * 1024;
+        removeExceeding();
+    }
+
+    /**
+     * @return a new tuple with the cached parse result or null if it's not in the cache.
+     */
+    public synchronized Tuple<SimpleNode, Throwable> get(Key key) {
+        removeStaleEntries();
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            Tuple<SimpleNode, Throwable> result = entry.get();
+            if (result != null) {
+                hits++;
+                //A new tuple, as clients may change it.
+                return new Tuple<SimpleNode, Throwable>(result.o1, result.o2);
+            }
+            remove(key);
+        }
+        misses++;
+        return null;
+    }
+
+    public synchronized void put(Key key, Tuple<SimpleNode, Throwable> result) {
+        removeStaleEntries();
+        long cost = ((long) key.length) * ESTIMATED_BYTES_PER_CHAR;
+        if (cost > maxCost) {
+            return;
+        }
+        remove(key);
+        Tuple<SimpleNode, Throwable> copy = new Tuple<SimpleNode, Throwable>(result.o1, result.o2);
+        entries.put(key, new Entry(key, copy, cost, queue));
+        currentCost += cost;
+        removeExceeding();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentCost = 0;
+        while (queue.poll() != null) {
+            //just clear it
+        }
+    }
+
+    public synchronized int size() {
+        removeStaleEntries();
+        return entries.size();
+    }
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    private void remove(Key key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            currentCost -= removed.cost;
+        }
+    }
+
+    /**
+     * Removes the least recently used entries until we're in the budget.
+     */
+    private void removeExceeding() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (currentCost > maxCost && it.hasNext()) {
+            Entry entry = it.next();
+            currentCost -= entry.cost;
+            it.remove();
+        }
+    }
+
+    /**
+     * Removes the entries whose results were garbage-collected.
+     */
+    private void removeStaleEntries() {
+        Object ref;
+        while ((ref = queue.poll()) != null) {
+            Entry entry = (Entry) ref;
+            //Only remove if it's still the same entry (it could've been replaced already).
+            if (entries.get(entry.key) == entry) {
+                remove(entry.key);
+            }
+        }
+    }
+}
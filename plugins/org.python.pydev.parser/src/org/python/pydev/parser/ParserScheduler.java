@@ -11,13 +11,16 @@
  */
 package org.python.pydev.parser;
 
+/**
+ * Keeps the parse requests for a PyParser (the actual parses are done in the ParserWorkerPool, which is shared
+ * by all the editors).
+ * 
+ * Requests which are not forced are only executed after the elapse time configured (and a new request while 
+ * waiting makes it wait again), and only one request is kept for each scheduler (so, many requests while waiting
+ * end up being a single parse).
+ */
 public class ParserScheduler {
 
-    /**
-     * used to do parsings in a thread - is null when not doing parsings
-     */
-    public volatile ParsingThread parsingThread;
-
     /**
      * indicates that currently nothing is happening
      */
@@ -29,12 +32,12 @@ public class ParserScheduler {
     public static final int STATE_PARSE_LATER = 1;
 
     /**
-     * indicates if a thread is currently waiting for an elapse cycle to end
+     * indicates if a request is currently waiting for an elapse cycle to end
      */
     public static final int STATE_WAITING_FOR_ELAPSE = 2;
 
     /**
-     * indicates if a thread is currently doing a parse action
+     * indicates if a parse action is currently being done
      */
     public static final int STATE_DOING_PARSE = 3;
 
@@ -43,21 +46,47 @@ public class ParserScheduler {
      */
     volatile int state = STATE_WAITING;
 
+    private final ParserWorkerPool pool;
+
+    //The fields below are synchronized on pool.lock (and are used by the pool).
+
+    /**
+     * The time when the pending request should be executed.
+     */
+    long dueTime;
+
+    /**
+     * The time of the last request (used to prioritize the editor where the user is working).
+     */
+    long timeLastRequest;
+
+    /**
+     * Whether the pending request is a forced one.
+     */
+    boolean force;
+
     /**
-     * this is the exact time a parse later was requested
+     * The arguments for the pending request.
      */
-    private volatile long timeParseLaterRequested = 0;
+    Object[] argsToReparse;
 
     /**
-     * this is the exact time the last parse was requested
+     * Whether a parse is being done for this scheduler.
      */
-    private volatile long timeLastParse = 0;
+    boolean running;
+
+    private boolean disposed;
 
     private volatile PyParser parser;
 
     public ParserScheduler(PyParser parser) {
+        this(parser, ParserWorkerPool.getDefault());
+    }
+
+    /*default*/ParserScheduler(PyParser parser, ParserWorkerPool pool) {
         super();
         this.parser = parser;
+        this.pool = pool;
     }
 
     public void parseNow() {
@@ -70,79 +99,53 @@ public class ParserScheduler {
      * @return false if we asked a forced reparse and it will not be scheduled because a reparse is already in action.
      */
     public boolean parseNow(boolean force, Object... argsToReparse) {
-        if (!force) {
-            if (state != STATE_WAITING_FOR_ELAPSE && state != STATE_DOING_PARSE) {
-                //waiting or parse later
-                state = STATE_WAITING_FOR_ELAPSE; // the parser will reset it later
-                timeLastParse = System.currentTimeMillis();
-                checkCreateAndStartParsingThread();
-            } else {
-                //another request... we keep waiting until the user stops adding requests
-                boolean created = checkCreateAndStartParsingThread();
-                if (!created) {
-                    parsingThread.okToGo = false;
-                }
+        synchronized (pool.lock) {
+            if (disposed) {
+                return true;
             }
-        } else {
-            ParsingThread parserThreadLocal = parsingThread; //if it dies suddenly, we don't want to get it as null...
-            if (state == ParserScheduler.STATE_DOING_PARSE) {
-                //a parse is already in action
-                return false;
+            long now = System.currentTimeMillis();
+            timeLastRequest = now;
+            if (!force) {
+                //we keep waiting until the user stops adding requests (unless a forced request is pending)
+                if (!this.force) {
+                    dueTime = now + getElapseMillis();
+                }
+                if (!running) {
+                    state = STATE_WAITING_FOR_ELAPSE;
+                }
             } else {
-                if (parserThreadLocal == null) {
-                    parserThreadLocal = new ParsingThread(this, argsToReparse);
-                    parsingThread = parserThreadLocal;
-                    parserThreadLocal.force = true;
-                    parserThreadLocal.setPriority(Thread.NORM_PRIORITY - 1); //parsing is lower than normal priority
-                    parserThreadLocal.start();
-                } else {
-                    //force it to run
-                    parserThreadLocal.force = true;
-                    parserThreadLocal.interrupt();
+                if (running) {
+                    //a parse is already in action
+                    return false;
                 }
+                this.force = true;
+                this.argsToReparse = argsToReparse;
+                dueTime = now;
             }
+            pool.schedule(this);
         }
         return true;
     }
 
-    /**
-     * @return whether we really created the thread (returns false if the thread already exists)
-     */
-    private boolean checkCreateAndStartParsingThread() {
-        ParsingThread p = parsingThread;
-        if (p == null) {
-            p = new ParsingThread(this);
-            p.setPriority(Thread.MIN_PRIORITY); //parsing is low priority
-            p.start();
-            parsingThread = p;
-            return true;
-        }
-        return false;
-    }
-
     public void parseLater() {
-        if (state != STATE_WAITING_FOR_ELAPSE && state != STATE_PARSE_LATER) {
-            state = STATE_PARSE_LATER;
-            //ok, the time for this request is:
-            timeParseLaterRequested = System.currentTimeMillis();
-            Thread thread = new Thread() {
-                @Override
-                public void run() {
-                    try {
-                        sleep(PyParserManager.getPyParserManager(null).getElapseMillisBeforeAnalysis());
-                    } catch (Exception e) {
-                        //that's ok
-                    }
-                    //ok, no parse happened while we were sleeping
-                    if (state == STATE_PARSE_LATER && timeLastParse < timeParseLaterRequested) {
-                        parseNow();
-                    }
-                }
-            };
-            thread.setName("ParserScheduler");
-            thread.start();
+        synchronized (pool.lock) {
+            if (disposed || pool.isPending(this)) {
+                return;
+            }
+            //The parse is only done after waiting for the elapse time twice (and the time is not reset by other
+            //parseLater requests, only by parseNow requests).
+            long now = System.currentTimeMillis();
+            timeLastRequest = now;
+            dueTime = now + (2 * getElapseMillis());
+            if (!running) {
+                state = STATE_PARSE_LATER;
+            }
+            pool.schedule(this);
         }
+    }
 
+    private int getElapseMillis() {
+        return PyParserManager.getPyParserManager(null).getElapseMillisBeforeAnalysis();
     }
 
     /**
@@ -158,9 +161,9 @@ public class ParserScheduler {
     }
 
     public void dispose() {
-        ParsingThread p = this.parsingThread;
-        if (p != null) {
-            p.dispose();
+        synchronized (pool.lock) {
+            disposed = true;
+            pool.remove(this);
         }
         this.parser = null;
     }
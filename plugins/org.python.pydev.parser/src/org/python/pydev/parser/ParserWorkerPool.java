@@ -0,0 +1,236 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.python.pydev.core.concurrency.ParallelRunner;
+import org.python.pydev.core.log.Log;
+
+/**
+ * The threads which do the parses requested by the ParserScheduler of all the editors.
+ *
+ * Each scheduler has at most one pending request (new requests for the same scheduler are coalesced with the
+ * pending one) and a scheduler is never parsed by 2 threads at the same time. When more than one request is
+ * due, forced requests are run first and then the ones requested last (which are usually from the editor the
+ * user is working on).
+ *
+ * The number of threads is capped to the number of processors (threads are created on demand and finish after
+ * some time without any request).
+ *
+ * @author Fabio
+ */
+public final class ParserWorkerPool {
+
+    /**
+     * Time a thread waits for a new request before finishing.
+     */
+    private static final long IDLE_TIMEOUT_MILLIS = 30 * 1000;
+
+    private static final ParserWorkerPool instance = new ParserWorkerPool(ParallelRunner.getDefaultParallelism());
+
+    public static ParserWorkerPool getDefault() {
+        return instance;
+    }
+
+    /**
+     * Lock for the pool and for the request fields in the ParserScheduler.
+     */
+    /*default*/final Object lock = new Object();
+
+    //All the fields below are synchronized on lock.
+    private final List<ParserScheduler> pending = new ArrayList<ParserScheduler>();
+    private final int maxThreads;
+    private int threads;
+    private int waitingThreads;
+    private int threadsCreated;
+
+    private long parses;
+    private long totalParseMillis;
+    private long totalLatencyMillis;
+    private long lastLatencyMillis;
+
+    /*default*/ParserWorkerPool(int maxThreads) {
+        this.maxThreads = Math.max(1, maxThreads);
+    }
+
+    /**
+     * Adds the scheduler to the pending requests (the request info must be already set in the scheduler).
+     *
+     * Must be called with the lock held.
+     */
+    /*default*/void schedule(ParserScheduler scheduler) {
+        if (!pending.contains(scheduler)) {
+            pending.add(scheduler);
+        }
+        if (waitingThreads == 0 && threads < maxThreads) {
+            threads++;
+            threadsCreated++;
+            Thread thread = new Thread("PyDev: Parser " + threadsCreated) {
+                @Override
+                public void run() {
+                    runWorker();
+                }
+            };
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1); //parsing is lower than normal priority
+            thread.start();
+        }
+        lock.notifyAll();
+    }
+
+    /**
+     * Removes the pending request of the given scheduler (if any).
+     *
+     * Must be called with the lock held.
+     */
+    /*default*/void remove(ParserScheduler scheduler) {
+        pending.remove(scheduler);
+    }
+
+    /**
+     * Must be called with the lock held.
+     * 
+     * @return whether the given scheduler has a pending request.
+     */
+    /*default*/boolean isPending(ParserScheduler scheduler) {
+        return pending.contains(scheduler);
+    }
+
+    /**
+     * @return the number of schedulers with requests which are waiting (for the elapse time or for a thread).
+     */
+    public int getQueueLength() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * @return the number of threads currently in the pool.
+     */
+    public int getThreadsCount() {
+        synchronized (lock) {
+            return threads;
+        }
+    }
+
+    public long getParsesCount() {
+        synchronized (lock) {
+            return parses;
+        }
+    }
+
+    /**
+     * @return the average time (in millis) taken to parse (and notify the parser listeners).
+     */
+    public long getAverageParseMillis() {
+        synchronized (lock) {
+            return parses == 0 ? 0 : totalParseMillis / parses;
+        }
+    }
+
+    /**
+     * @return the average latency (in millis): the time from the moment a request should be executed (after its
+     * elapse time) until its parse finishes.
+     */
+    public long getAverageLatencyMillis() {
+        synchronized (lock) {
+            return parses == 0 ? 0 : totalLatencyMillis / parses;
+        }
+    }
+
+    public long getLastLatencyMillis() {
+        synchronized (lock) {
+            return lastLatencyMillis;
+        }
+    }
+
+    /**
+     * @return whether the first scheduler should be executed before the second one.
+     */
+    private static boolean isBefore(ParserScheduler s1, ParserScheduler s2) {
+        if (s1.force != s2.force) {
+            return s1.force;
+        }
+        return s1.timeLastRequest > s2.timeLastRequest;
+    }
+
+    private void runWorker() {
+        while (true) {
+            ParserScheduler scheduler = null;
+            Object[] argsToReparse;
+            long dueTime;
+            synchronized (lock) {
+                while (true) {
+                    long now = System.currentTimeMillis();
+                    long nextDueTime = Long.MAX_VALUE;
+                    for (ParserScheduler s : pending) {
+                        if (s.running) {
+                            continue; //will be checked again when the current parse finishes.
+                        }
+                        if (s.dueTime <= now) {
+                            if (scheduler == null || isBefore(s, scheduler)) {
+                                scheduler = s;
+                            }
+                        } else if (s.dueTime < nextDueTime) {
+                            nextDueTime = s.dueTime;
+                        }
+                    }
+                    if (scheduler != null) {
+                        break;
+                    }
+
+                    long timeout = nextDueTime == Long.MAX_VALUE ? IDLE_TIMEOUT_MILLIS : nextDueTime - now;
+                    waitingThreads++;
+                    try {
+                        lock.wait(timeout);
+                    } catch (InterruptedException e) {
+                        //ignore
+                    } finally {
+                        waitingThreads--;
+                    }
+                    if (pending.size() == 0 && System.currentTimeMillis() - now >= IDLE_TIMEOUT_MILLIS) {
+                        threads--;
+                        return;
+                    }
+                }
+
+                pending.remove(scheduler);
+                argsToReparse = scheduler.argsToReparse;
+                dueTime = scheduler.dueTime;
+                scheduler.argsToReparse = null;
+                scheduler.force = false;
+                scheduler.running = true;
+                scheduler.state = ParserScheduler.STATE_DOING_PARSE;
+            }
+
+            long initialTime = System.currentTimeMillis();
+            try {
+                scheduler.reparseDocument(argsToReparse);
+            } catch (Throwable e) {
+                Log.log(e);
+            } finally {
+                long finalTime = System.currentTimeMillis();
+                synchronized (lock) {
+                    scheduler.running = false;
+                    if (!pending.contains(scheduler)) {
+                        scheduler.state = ParserScheduler.STATE_WAITING;
+                    } else {
+                        scheduler.state = ParserScheduler.STATE_WAITING_FOR_ELAPSE;
+                    }
+                    parses++;
+                    totalParseMillis += finalTime - initialTime;
+                    lastLatencyMillis = finalTime - Math.min(dueTime, initialTime);
+                    totalLatencyMillis += lastLatencyMillis;
+                    lock.notifyAll(); //a request for the same scheduler may be pending.
+                }
+            }
+        }
+    }
+}
@@ -68,7 +68,7 @@ import com.aptana.shared_core.structure.Tuple;
  * PyParser uses org.python.parser to parse the document (lexical analysis) It
  * is attached to PyEdit (a view), and it listens to document changes On every
  * document change, the syntax tree is regenerated The reparsing of the document
- * is done on a ParsingThread
+ * is done on the ParserWorkerPool
  * 
  * Clients that need to know when new parse tree has been generated should
  * register as parseListeners.
@@ -92,6 +92,11 @@ public class PyParser implements IPyParser {
      */
     public static boolean USE_FAST_STREAM = true;
 
+    /**
+     * Defines whether the editor should reparse only the top-level statements changed (when possible)
+     */
+    public static boolean USE_INCREMENTAL_PARSE = true;
+
     /**
      * this is the document we should parse 
      */
@@ -102,6 +107,11 @@ public class PyParser implements IPyParser {
      */
     private SimpleNode root = null;
 
+    /**
+     * keeps the last successful parse of the document so that only the changed statements are reparsed
+     */
+    private final IncrementalReparser incrementalReparser = new IncrementalReparser();
+
     /**
      * listens to changes in the document
      */
@@ -426,7 +436,11 @@ public class PyParser implements IPyParser {
             version = IGrammarVersionProvider.LATEST_GRAMMAR_VERSION;
         }
         long documentTime = System.currentTimeMillis();
-        Tuple<SimpleNode, Throwable> obj = reparseDocument(new ParserInfo(document, version, true));
+        ParserInfo parserInfo = new ParserInfo(document, version, true);
+        if (USE_INCREMENTAL_PARSE) {
+            parserInfo.incrementalReparser = incrementalReparser;
+        }
+        Tuple<SimpleNode, Throwable> obj = reparseDocument(parserInfo);
 
         IFile original = null;
         IAdaptable adaptable = null;
@@ -532,6 +546,12 @@ public class PyParser implements IPyParser {
          */
         public final boolean generateTree;
 
+        /**
+         * If set, only the top-level statements changed since the last parse done with it are reparsed (when
+         * possible), and it's updated with the result of the parse.
+         */
+        public IncrementalReparser incrementalReparser;
+
         /**
          * @param grammarVersion: see IPythonNature.GRAMMAR_XXX constants
          */
@@ -614,7 +634,7 @@ public class PyParser implements IPyParser {
      * Actually creates the grammar.
      * @param generateTree whether we should generate the AST or not.
      */
-    private static IGrammar createGrammar(boolean generateTree, int grammarVersion, char[] charArray) {
+    /*default*/static IGrammar createGrammar(boolean generateTree, int grammarVersion, char[] charArray) {
         IGrammar grammar;
         FastCharStream in = new FastCharStream(charArray);
         switch (grammarVersion) {
@@ -669,13 +689,43 @@ public class PyParser implements IPyParser {
 
         // create a stream with document's data
         String startDoc = info.document.get();
+        IncrementalReparser incrementalReparser = info.generateTree ? info.incrementalReparser : null;
         if (startDoc.trim().length() == 0) {
             //If empty, don't bother to parse!
+            if (incrementalReparser != null) {
+                incrementalReparser.clear();
+            }
             return new Tuple<SimpleNode, Throwable>(new Module(new stmtType[0]), null);
         }
         char[] charArray = createCharArrayToParse(startDoc);
         startDoc = null; //it can be garbage-collected now.
 
+        //The same contents may have been just parsed by someone else (i.e.: editor, builder and analysis).
+        ParseResultCache cache = ParseResultCache.getDefault();
+        ParseResultCache.Key cacheKey = ParseResultCache.createKey(charArray, info.grammarVersion,
+                info.generateTree);
+        Tuple<SimpleNode, Throwable> cached = cache.get(cacheKey);
+        if (cached != null) {
+            if (cached.o1 != null) {
+                notifySuccessfulParseListeners(cached.o1, info);
+            }
+            if (incrementalReparser != null) {
+                incrementalReparser.setLastParse(charArray, info.grammarVersion, cached.o1, cached.o2);
+            }
+            return cached;
+        }
+
+        //Only the changed top-level statements may need to be parsed (if it's not possible, do a full parse).
+        if (incrementalReparser != null) {
+            Module module = incrementalReparser.reparse(charArray, info.grammarVersion);
+            if (module != null) {
+                notifySuccessfulParseListeners(module, info);
+                Tuple<SimpleNode, Throwable> incremental = new Tuple<SimpleNode, Throwable>(module, null);
+                cache.put(cacheKey, incremental);
+                return incremental;
+            }
+        }
+
         Tuple<SimpleNode, Throwable> returnVar = new Tuple<SimpleNode, Throwable>(null, null);
         IGrammar grammar = null;
         try {
@@ -684,14 +734,7 @@ public class PyParser implements IPyParser {
             returnVar.o1 = newRoot;
 
             //only notify successful parses
-            if (successfulParseListeners.size() > 0) {
-                Tuple3<SimpleNode, Throwable, ParserInfo> param = new Tuple3<SimpleNode, Throwable, ParserInfo>(
-                        returnVar.o1, returnVar.o2, info);
-
-                for (ICallback<Object, Tuple3<SimpleNode, Throwable, ParserInfo>> callback : successfulParseListeners) {
-                    callback.call(param);
-                }
-            }
+            notifySuccessfulParseListeners(returnVar.o1, info);
 
             returnVar.o2 = grammar.getErrorOnParsing();
 
@@ -734,10 +777,27 @@ public class PyParser implements IPyParser {
                 System.out.println("Unable to parse " + info);
             }
         }
+        if (returnVar.o1 != null || returnVar.o2 != null) {
+            cache.put(cacheKey, returnVar);
+        }
+        if (incrementalReparser != null) {
+            incrementalReparser.setLastParse(charArray, info.grammarVersion, returnVar.o1, returnVar.o2);
+        }
         //        System.out.println("Output grammar: "+returnVar);
         return returnVar;
     }
 
+    private static void notifySuccessfulParseListeners(SimpleNode root, ParserInfo info) {
+        if (successfulParseListeners.size() > 0) {
+            Tuple3<SimpleNode, Throwable, ParserInfo> param = new Tuple3<SimpleNode, Throwable, ParserInfo>(root,
+                    null, info);
+
+            for (ICallback<Object, Tuple3<SimpleNode, Throwable, ParserInfo>> callback : successfulParseListeners) {
+                callback.call(param);
+            }
+        }
+    }
+
     public static Tuple<SimpleNode, Throwable> createCythonAst(IDocument doc) {
         List<stmtType> classesAndFunctions = FastParser.parseCython(doc);
         return new Tuple<SimpleNode, Throwable>(new Module(classesAndFunctions.toArray(new stmtType[classesAndFunctions
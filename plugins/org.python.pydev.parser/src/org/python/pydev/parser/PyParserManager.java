@@ -48,6 +48,11 @@ public class PyParserManager {
     public static final String USE_PYDEV_ANALYSIS_ONLY_ON_DOC_SAVE = "USE_PYDEV_ONLY_ON_DOC_SAVE";
     public static final String PYDEV_ELAPSE_BEFORE_ANALYSIS = "PYDEV_ELAPSE_BEFORE_ANALYSIS";
 
+    /**
+     * The memory budget (in MB) of the cache with the results of the parser (0 means no cache).
+     */
+    public static final String PARSE_CACHE_MAX_MEMORY_IN_MB = "PARSE_CACHE_MAX_MEMORY_IN_MB";
+
     private IPreferenceStore prefs;
     private int millisBeforeAnalysis;
     private boolean useOnlyOnSave;
@@ -85,13 +90,18 @@ public class PyParserManager {
         this.prefs = prefs;
         this.millisBeforeAnalysis = prefs.getInt(PYDEV_ELAPSE_BEFORE_ANALYSIS);
         this.useOnlyOnSave = prefs.getBoolean(USE_PYDEV_ANALYSIS_ONLY_ON_DOC_SAVE);
+        ParseResultCache.getDefault().setMaxMemoryInMB(prefs.getInt(PARSE_CACHE_MAX_MEMORY_IN_MB));
 
         //singleton: private constructor
         IPropertyChangeListener prefListener = new IPropertyChangeListener() {
 
             public void propertyChange(PropertyChangeEvent event) {
                 String property = event.getProperty();
-                if (property.equals(USE_PYDEV_ANALYSIS_ONLY_ON_DOC_SAVE)
+                if (property.equals(PARSE_CACHE_MAX_MEMORY_IN_MB)) {
+                    ParseResultCache.getDefault().setMaxMemoryInMB(
+                            PyParserManager.this.prefs.getInt(PARSE_CACHE_MAX_MEMORY_IN_MB));
+
+                } else if (property.equals(USE_PYDEV_ANALYSIS_ONLY_ON_DOC_SAVE)
                         || property.equals(PYDEV_ELAPSE_BEFORE_ANALYSIS)) {
                     //reset the caches
                     millisBeforeAnalysis = PyParserManager.this.prefs.getInt(PYDEV_ELAPSE_BEFORE_ANALYSIS);
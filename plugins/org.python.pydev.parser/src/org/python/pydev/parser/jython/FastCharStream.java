@@ -18,31 +18,30 @@ import com.aptana.shared_core.string.FastStringBuffer;
  * initial implementation was highly inefficient when working only with a string (actually, if it was small, there would be no noticeable
  * delays, but if it became big, then the improvement would be HUGE).
  * 
- * It keeps the same semantics for line and column stuff (and shares the previous approach of keeping a buffer for this info).
- * If we wanted we could optimize it for also taking less memory, but as there is usually not so many concurrent parses, this 
- * is probably not worth it -- and it would probably be a little slower)
+ * It keeps the same semantics for line and column stuff, but instead of keeping the line and column for each char
+ * (which took 8 bytes more for each char in the document), it keeps only the offsets where each line starts and
+ * computes the line and column when requested (with a binary search -- which is usually not needed as the
+ * tokens are requested in sequence, so, the line of the last request is checked first).
  */
 
 public final class FastCharStream {
 
     public final char[] buffer;
 
-    public final int bufline[];
-
-    public final int bufcolumn[];
-
-    private boolean prevCharIsCR = false;
-
-    private boolean prevCharIsLF = false;
+    /**
+     * The offset of the first char of each line (the first line starts at 0).
+     */
+    private final int[] lineStarts;
 
-    private int column = 0;
+    private final int linesLen;
 
-    private int line = 1;
+    /**
+     * The index (in lineStarts) of the last line found (used as a hint for the next search).
+     */
+    private int lastLine;
 
     public int bufpos = -1;
 
-    private int updatePos;
-
     public int tokenBegin;
 
     private static IOException ioException;
@@ -51,8 +50,71 @@ public final class FastCharStream {
 
     public FastCharStream(char cs[]) {
         this.buffer = cs;
-        this.bufline = new int[cs.length];
-        this.bufcolumn = new int[cs.length];
+
+        //Same semantics we had when updating the line/col while reading: a new line starts after a \n or after a 
+        //\r which is not followed by a \n.
+        int[] starts = new int[cs.length / 32 + 8];
+        starts[0] = 0;
+        int len = 1;
+        int last = cs.length - 1;
+        for (int i = 0; i <= last; i++) {
+            char c = cs[i];
+            if (c == '\n' || (c == '\r' && (i == last || cs[i + 1] != '\n'))) {
+                if (len == starts.length) {
+                    int[] newStarts = new int[len * 2];
+                    System.arraycopy(starts, 0, newStarts, 0, len);
+                    starts = newStarts;
+                }
+                starts[len] = i + 1;
+                len++;
+            }
+        }
+        this.lineStarts = starts;
+        this.linesLen = len;
+    }
+
+    /**
+     * @return the index of the line (0-based) which contains the given position.
+     */
+    private int getLineIndex(int pos) {
+        int line = lastLine;
+        if (pos >= lineStarts[line]) {
+            //Usually it's in the same line or in the next one.
+            if (line + 1 == linesLen || pos < lineStarts[line + 1]) {
+                return line;
+            }
+            if (line + 2 == linesLen || pos < lineStarts[line + 2]) {
+                lastLine = line + 1;
+                return lastLine;
+            }
+        }
+
+        int low = 0;
+        int high = linesLen - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (lineStarts[mid] <= pos) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        lastLine = low;
+        return low;
+    }
+
+    private int getLine(int pos) {
+        if (pos < 0) {
+            return 1;
+        }
+        return getLineIndex(pos) + 1;
+    }
+
+    private int getColumn(int pos) {
+        if (pos < 0) {
+            return 0;
+        }
+        return pos - lineStarts[getLineIndex(pos)] + 1;
     }
 
     public int getCurrentPos() {
@@ -96,42 +158,7 @@ public final class FastCharStream {
     public final char readChar() throws IOException {
         try {
             bufpos++;
-            char r = this.buffer[bufpos];
-
-            if (bufpos >= updatePos) {
-                updatePos++;
-
-                //start UpdateLineCol
-                column++;
-
-                if (prevCharIsLF) {
-                    prevCharIsLF = false;
-                    line += (column = 1);
-
-                } else if (prevCharIsCR) {
-
-                    prevCharIsCR = false;
-                    if (r == '\n') {
-                        prevCharIsLF = true;
-                    } else {
-                        line += (column = 1);
-                    }
-                }
-
-                if (r == '\r') {
-                    prevCharIsCR = true;
-
-                } else if (r == '\n') {
-                    prevCharIsLF = true;
-
-                }
-
-                bufline[bufpos] = line;
-                bufcolumn[bufpos] = column;
-                //end UpdateLineCol
-            }
-
-            return r;
+            return this.buffer[bufpos];
         } catch (ArrayIndexOutOfBoundsException e) {
             bufpos--;
             if (ioException == null) {
@@ -142,19 +169,19 @@ public final class FastCharStream {
     }
 
     public final int getEndColumn() {
-        return bufcolumn[bufpos];
+        return getColumn(bufpos);
     }
 
     public final int getEndLine() {
-        return bufline[bufpos];
+        return getLine(bufpos);
     }
 
     public final int getBeginColumn() {
-        return bufcolumn[tokenBegin];
+        return getColumn(tokenBegin);
     }
 
     public final int getBeginLine() {
-        return bufline[tokenBegin];
+        return getLine(tokenBegin);
     }
 
     public final void backup(int amount) {
@@ -239,15 +266,15 @@ public final class FastCharStream {
     }
 
     public void setBeginEndCharsEqual(Token t) {
-        t.beginLine = t.endLine = bufline[tokenBegin];
-        t.beginColumn = t.endColumn = bufcolumn[tokenBegin];
+        t.beginLine = t.endLine = getLine(tokenBegin);
+        t.beginColumn = t.endColumn = getColumn(tokenBegin);
     }
 
     public void setBeginEndChars(Token t) {
-        t.beginLine = bufline[tokenBegin];
-        t.beginColumn = bufcolumn[tokenBegin];
-        t.endLine = bufline[bufpos];
-        t.endColumn = bufcolumn[bufpos];
+        t.beginLine = getLine(tokenBegin);
+        t.beginColumn = getColumn(tokenBegin);
+        t.endLine = getLine(bufpos);
+        t.endColumn = getColumn(bufpos);
     }
 
 }
@@ -0,0 +1,193 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.ast.FunctionDef;
+import org.python.pydev.parser.jython.ast.Module;
+import org.python.pydev.parser.jython.ast.VisitorBase;
+import org.python.pydev.parser.jython.ast.commentType;
+
+import com.aptana.shared_core.string.FastStringBuffer;
+
+public class IncrementalReparserTest extends TestCase {
+
+    private static final int VERSION = IPythonNature.GRAMMAR_PYTHON_VERSION_2_7;
+
+    private static final String BASE = "" +
+            "import os\n" +
+            "\n" +
+            "def a(x):\n" +
+            "    return x\n" +
+            "\n" +
+            "def b(y):\n" +
+            "    return y\n" +
+            "\n" +
+            "class C(object):\n" +
+            "    @staticmethod\n" +
+            "    def m(z=1):\n" +
+            "        return z #comment\n" +
+            "\n" +
+            "def d():\n" +
+            "    pass\n" +
+            "\n" +
+            "def e(a, b):\n" +
+            "    return a + b\n" +
+            "\n" +
+            "def f(a, b):\n" +
+            "    return a - b\n" +
+            "\n" +
+            "def g(a, b):\n" +
+            "    return a * b\n" +
+            "\n" +
+            "def h(a, b):\n" +
+            "    return a / b\n" +
+            "";
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(IncrementalReparserTest.class);
+    }
+
+    private IncrementalReparser reparser;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        reparser = new IncrementalReparser();
+        reparser.setLastParse(BASE.toCharArray(), VERSION, fullParse(BASE), null);
+    }
+
+    private static SimpleNode fullParse(String contents) throws Exception {
+        IGrammar grammar = PyParser.createGrammar(true, VERSION, contents.toCharArray());
+        SimpleNode root = grammar.file_input();
+        assertNull(grammar.getErrorOnParsing());
+        return root;
+    }
+
+    /**
+     * @return a string with the nodes (and their lines/cols/comments) to compare with the full parse.
+     */
+    private static String dump(SimpleNode root) throws Exception {
+        final FastStringBuffer buf = new FastStringBuffer();
+        root.accept(new VisitorBase() {
+
+            @Override
+            protected Object unhandled_node(SimpleNode node) throws Exception {
+                buf.append(node.getClass().getSimpleName()).append(' ').append(node.beginLine).append(':')
+                        .append(node.beginColumn).append('\n');
+                dumpComments(node);
+                return null;
+            }
+
+            private void dumpComments(SimpleNode node) {
+                for (int i = 0; i < 2; i++) {
+                    List<Object> specials = i == 0 ? node.specialsBefore : node.specialsAfter;
+                    if (specials != null) {
+                        for (Object o : specials) {
+                            if (o instanceof commentType) {
+                                commentType comment = (commentType) o;
+                                buf.append("  ").append(comment.id).append(' ').append(comment.beginLine)
+                                        .append('\n');
+                            }
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public void traverse(SimpleNode node) throws Exception {
+                node.traverse(this);
+            }
+        });
+        return buf.toString();
+    }
+
+    private Module checkIncremental(String newContents) throws Exception {
+        Module module = reparser.reparse(newContents.toCharArray(), VERSION);
+        assertNotNull("Expected incremental parse to be done.", module);
+        SimpleNode full = fullParse(newContents);
+        assertEquals(full.toString(), module.toString());
+        assertEquals(dump(full), dump(module));
+        return module;
+    }
+
+    public void testChangeInsideStatement() throws Exception {
+        Module last = (Module) fullParse(BASE);
+        reparser.setLastParse(BASE.toCharArray(), VERSION, last, null);
+
+        Module module = checkIncremental(BASE.replace("return y", "return y + 1"));
+        assertEquals(1, reparser.getIncrementalParsesCount());
+
+        //The number of lines didn't change: the statements not changed are reused.
+        assertSame(last.body[0], module.body[0]);
+        assertSame(last.body[1], module.body[1]);
+        assertNotSame(last.body[2], module.body[2]);
+        assertSame(last.body[3], module.body[3]);
+        assertSame(last.body[4], module.body[4]);
+        assertSame(last.body[8], module.body[8]);
+    }
+
+    public void testLinesAddedAndRemoved() throws Exception {
+        String contents = BASE.replace("    return x\n", "    x += 1\n    return x\n");
+        Module module = checkIncremental(contents);
+        assertEquals(9, module.body.length);
+        FunctionDef d = (FunctionDef) module.body[4];
+        assertEquals(15, d.beginLine);
+
+        //Based on the last incremental parse.
+        contents = contents.replace("def b(y):\n    return y\n\n", "");
+        module = checkIncremental(contents);
+        assertEquals(8, module.body.length);
+        d = (FunctionDef) module.body[3];
+        assertEquals(12, d.beginLine);
+
+        contents = contents.replace("def a(x):\n", "def a0():\n    pass\n\ndef a(x):\n");
+        module = checkIncremental(contents);
+        assertEquals(9, module.body.length);
+        assertEquals(3, reparser.getIncrementalParsesCount());
+    }
+
+    public void testCommentAdded() throws Exception {
+        checkIncremental(BASE.replace("    return y\n\n", "    return y\n# new comment\n\n"));
+        checkIncremental(BASE.replace("def d():", "#comment before d\ndef d():"));
+    }
+
+    public void testFallbackToFullParse() throws Exception {
+        //Syntax error
+        assertNull(reparser.reparse(BASE.replace("def b(y):", "def b(y:").toCharArray(), VERSION));
+
+        //Statement now indented (would be part of the previous one).
+        assertNull(reparser.reparse(BASE.replace("def b(y):\n    return y\n", "    b = 10\n").toCharArray(),
+                VERSION));
+
+        //Open string which goes until the end of the document.
+        assertNull(reparser.reparse(BASE.replace("    return y\n", "    return '''y\n").toCharArray(), VERSION));
+
+        //__future__ imports may change the grammar for the whole module
+        assertNull(reparser.reparse(BASE.replace("    return y\n", "    from __future__ import x\n")
+                .toCharArray(), VERSION));
+
+        //Different grammar
+        assertNull(reparser.reparse(BASE.replace("return y", "return y + 1").toCharArray(),
+                IPythonNature.GRAMMAR_PYTHON_VERSION_3_0));
+
+        assertEquals(0, reparser.getIncrementalParsesCount());
+
+        //Still works after the failures.
+        checkIncremental(BASE.replace("return y", "return y + 1"));
+    }
+
+    public void testNoBaseAfterError() throws Exception {
+        reparser.setLastParse(BASE.toCharArray(), VERSION, null, new RuntimeException());
+        assertNull(reparser.reparse(BASE.replace("return y", "return y + 1").toCharArray(), VERSION));
+    }
+}
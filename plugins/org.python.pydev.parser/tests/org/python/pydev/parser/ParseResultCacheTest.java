@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jface.text.Document;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.parser.PyParser.ParserInfo;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.ast.Module;
+
+import com.aptana.shared_core.structure.Tuple;
+
+public class ParseResultCacheTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ParseResultCacheTest.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        ParseResultCache.getDefault().setMaxMemoryInMB(ParseResultCache.DEFAULT_MAX_MEMORY_IN_MB);
+        ParseResultCache.getDefault().clear();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ParseResultCache.getDefault().clear();
+        super.tearDown();
+    }
+
+    public void testReparseUsesCache() throws Exception {
+        String contents = "class A:\n    def m(self):\n        pass\n";
+        int version = IPythonNature.LATEST_GRAMMAR_VERSION;
+
+        Tuple<SimpleNode, Throwable> first = PyParser.reparseDocument(new ParserInfo(new Document(contents), version));
+        Tuple<SimpleNode, Throwable> second = PyParser
+                .reparseDocument(new ParserInfo(new Document(contents), version));
+        assertTrue(first.o1 instanceof Module);
+        assertSame(first.o1, second.o1);
+        assertNotSame(first, second); //the tuple is not shared
+
+        //Different grammar or contents: new parse
+        Tuple<SimpleNode, Throwable> otherGrammar = PyParser.reparseDocument(new ParserInfo(new Document(contents),
+                IPythonNature.GRAMMAR_PYTHON_VERSION_2_5));
+        assertNotSame(first.o1, otherGrammar.o1);
+
+        Tuple<SimpleNode, Throwable> otherContents = PyParser.reparseDocument(new ParserInfo(new Document(contents
+                + "a = 10\n"), version));
+        assertNotSame(first.o1, otherContents.o1);
+
+        //Errors are cached too.
+        Tuple<SimpleNode, Throwable> error = PyParser.reparseDocument(new ParserInfo(new Document("class A("),
+                version));
+        Tuple<SimpleNode, Throwable> error2 = PyParser.reparseDocument(new ParserInfo(new Document("class A("),
+                version));
+        assertNotNull(error.o2);
+        assertSame(error.o2, error2.o2);
+    }
+
+    public void testEviction() throws Exception {
+        ParseResultCache cache = new ParseResultCache(1);
+        char[] contents = new char[20000]; //~400KB estimated (so, only 2 fit in 1MB)
+        for (int i = 0; i < 3; i++) {
+            contents[0] = (char) ('a' + i);
+            cache.put(ParseResultCache.createKey(contents, 1, true), new Tuple<SimpleNode, Throwable>(null, null));
+        }
+        assertEquals(2, cache.size());
+        contents[0] = 'a';
+        assertNull(cache.get(ParseResultCache.createKey(contents, 1, true)));
+        contents[0] = 'c';
+        assertNotNull(cache.get(ParseResultCache.createKey(contents, 1, true)));
+
+        cache.setMaxMemoryInMB(0);
+        assertEquals(0, cache.size());
+    }
+}
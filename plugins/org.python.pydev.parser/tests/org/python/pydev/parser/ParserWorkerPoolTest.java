@@ -0,0 +1,241 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jface.preference.PreferenceStore;
+
+public class ParserWorkerPoolTest extends TestCase {
+
+    public static void main(String[] args) {
+        try {
+            junit.textui.TestRunner.run(ParserWorkerPoolTest.class);
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Keeps the order of the parses done by all the schedulers.
+     */
+    private final List<String> parsed = new ArrayList<String>();
+
+    /**
+     * A scheduler which just records its parses (and may block while parsing until released).
+     */
+    private class SchedulerStub extends ParserScheduler {
+
+        private final String name;
+        private volatile boolean block;
+        private volatile int running;
+        private volatile int maxRunning;
+
+        public SchedulerStub(String name, ParserWorkerPool pool) {
+            super(null, pool);
+            this.name = name;
+        }
+
+        @Override
+        public void reparseDocument(Object... argsToReparse) {
+            running++;
+            maxRunning = Math.max(running, maxRunning);
+            try {
+                while (block) {
+                    synchronized (this) {
+                        try {
+                            this.wait(10);
+                        } catch (InterruptedException e) {
+                            //ignore
+                        }
+                    }
+                }
+                synchronized (parsed) {
+                    parsed.add(name);
+                }
+            } finally {
+                running--;
+            }
+        }
+
+        public int getParsesCount() {
+            int count = 0;
+            synchronized (parsed) {
+                for (String s : parsed) {
+                    if (s.equals(name)) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        setElapseMillis(0);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        PyParserManager.setPyParserManager(null);
+        super.tearDown();
+    }
+
+    private void setElapseMillis(int millis) {
+        PyParserManager.setPyParserManager(null);
+        PreferenceStore preferences = new PreferenceStore();
+        preferences.setValue(PyParserManager.PYDEV_ELAPSE_BEFORE_ANALYSIS, millis);
+        PyParserManager.getPyParserManager(preferences);
+    }
+
+    private void waitForParses(int expected) throws InterruptedException {
+        long initial = System.currentTimeMillis();
+        while (System.currentTimeMillis() - initial < 5000) {
+            synchronized (parsed) {
+                if (parsed.size() >= expected) {
+                    break;
+                }
+            }
+            Thread.sleep(10);
+        }
+        synchronized (parsed) {
+            assertEquals(expected, parsed.size());
+        }
+    }
+
+    private void waitForState(ParserScheduler scheduler, int state) throws InterruptedException {
+        long initial = System.currentTimeMillis();
+        while (scheduler.state != state && System.currentTimeMillis() - initial < 5000) {
+            Thread.sleep(10);
+        }
+        assertEquals(state, scheduler.state);
+    }
+
+    public void testCoalescing() throws Exception {
+        ParserWorkerPool pool = new ParserWorkerPool(1);
+        SchedulerStub a = new SchedulerStub("a", pool);
+        a.block = true; //nothing is parsed until all the requests are done
+        a.parseNow(true);
+        waitForState(a, ParserScheduler.STATE_DOING_PARSE);
+
+        for (int i = 0; i < 10; i++) {
+            a.parseNow();
+            a.parseLater();
+        }
+        assertEquals(1, pool.getQueueLength());
+        a.block = false;
+
+        //the running parse and a single one for all the requests done while it was running
+        waitForParses(2);
+        waitForState(a, ParserScheduler.STATE_WAITING);
+        Thread.sleep(100);
+        assertEquals(2, a.getParsesCount());
+        assertEquals(1, a.maxRunning); //never parsed concurrently
+        assertEquals(0, pool.getQueueLength());
+        assertEquals(2, pool.getParsesCount());
+    }
+
+    public void testDebounce() throws Exception {
+        setElapseMillis(300);
+        ParserWorkerPool pool = new ParserWorkerPool(1);
+        SchedulerStub a = new SchedulerStub("a", pool);
+
+        //each new request makes it wait the elapse time again
+        long initial = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            a.parseNow();
+            assertEquals(ParserScheduler.STATE_WAITING_FOR_ELAPSE, a.state);
+            Thread.sleep(100);
+        }
+        assertEquals(0, a.getParsesCount());
+
+        waitForParses(1);
+        assertTrue(System.currentTimeMillis() - initial >= 400 + 300);
+        waitForState(a, ParserScheduler.STATE_WAITING);
+    }
+
+    public void testParseLaterIsNotPostponed() throws Exception {
+        setElapseMillis(200);
+        ParserWorkerPool pool = new ParserWorkerPool(1);
+        SchedulerStub a = new SchedulerStub("a", pool);
+
+        a.parseLater();
+        assertEquals(ParserScheduler.STATE_PARSE_LATER, a.state);
+        long dueTime = a.dueTime;
+        Thread.sleep(50);
+        a.parseLater(); //doesn't change the time of the pending request
+        assertEquals(dueTime, a.dueTime);
+
+        waitForParses(1);
+    }
+
+    public void testForcedRunsFirstThenLastRequested() throws Exception {
+        ParserWorkerPool pool = new ParserWorkerPool(1);
+        SchedulerStub blocker = new SchedulerStub("blocker", pool);
+        SchedulerStub first = new SchedulerStub("first", pool);
+        SchedulerStub last = new SchedulerStub("last", pool);
+        SchedulerStub forced = new SchedulerStub("forced", pool);
+
+        //keep the only thread busy while the requests are added
+        blocker.block = true;
+        blocker.parseNow(true);
+        waitForState(blocker, ParserScheduler.STATE_DOING_PARSE);
+
+        first.parseNow();
+        Thread.sleep(20);
+        last.parseNow();
+        Thread.sleep(20);
+        forced.parseNow(true);
+        assertEquals(3, pool.getQueueLength());
+
+        blocker.block = false;
+        waitForParses(4);
+        synchronized (parsed) {
+            assertEquals("blocker", parsed.get(0));
+            assertEquals("forced", parsed.get(1));
+            assertEquals("last", parsed.get(2));
+            assertEquals("first", parsed.get(3));
+        }
+    }
+
+    public void testForcedWhileRunning() throws Exception {
+        ParserWorkerPool pool = new ParserWorkerPool(2);
+        SchedulerStub a = new SchedulerStub("a", pool);
+        a.block = true;
+        assertTrue(a.parseNow(true));
+        waitForState(a, ParserScheduler.STATE_DOING_PARSE);
+
+        //a forced request is not accepted while parsing (even with a thread available)
+        assertFalse(a.parseNow(true));
+        assertEquals(0, pool.getQueueLength());
+
+        a.block = false;
+        waitForParses(1);
+        waitForState(a, ParserScheduler.STATE_WAITING);
+        assertEquals(1, a.maxRunning);
+    }
+
+    public void testDispose() throws Exception {
+        setElapseMillis(200);
+        ParserWorkerPool pool = new ParserWorkerPool(1);
+        SchedulerStub a = new SchedulerStub("a", pool);
+        a.parseNow();
+        assertEquals(1, pool.getQueueLength());
+        a.dispose();
+        assertEquals(0, pool.getQueueLength());
+
+        a.parseNow(); //ignored after disposed
+        assertEquals(0, pool.getQueueLength());
+        Thread.sleep(300);
+        assertEquals(0, a.getParsesCount());
+    }
+}
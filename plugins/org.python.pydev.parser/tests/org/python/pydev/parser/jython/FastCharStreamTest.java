@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser.jython;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class FastCharStreamTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(FastCharStreamTest.class);
+    }
+
+    /**
+     * Computes the line and column of each char as it was done before (when reading each char).
+     */
+    private int[][] computeExpected(char[] cs) {
+        int[] lines = new int[cs.length];
+        int[] cols = new int[cs.length];
+        boolean prevCharIsCR = false;
+        boolean prevCharIsLF = false;
+        int column = 0;
+        int line = 1;
+        for (int i = 0; i < cs.length; i++) {
+            char r = cs[i];
+            column++;
+            if (prevCharIsLF) {
+                prevCharIsLF = false;
+                line += (column = 1);
+            } else if (prevCharIsCR) {
+                prevCharIsCR = false;
+                if (r == '\n') {
+                    prevCharIsLF = true;
+                } else {
+                    line += (column = 1);
+                }
+            }
+            if (r == '\r') {
+                prevCharIsCR = true;
+            } else if (r == '\n') {
+                prevCharIsLF = true;
+            }
+            lines[i] = line;
+            cols[i] = column;
+        }
+        return new int[][] { lines, cols };
+    }
+
+    private void check(String s) throws Exception {
+        char[] cs = s.toCharArray();
+        int[][] expected = computeExpected(cs);
+        FastCharStream in = new FastCharStream(cs);
+        Token t = new Token();
+        for (int i = 0; i < cs.length; i++) {
+            assertEquals(cs[i], in.BeginToken());
+            assertEquals(expected[0][i], in.getBeginLine());
+            assertEquals(expected[1][i], in.getBeginColumn());
+            assertEquals(expected[0][i], in.getEndLine());
+            assertEquals(expected[1][i], in.getEndColumn());
+        }
+
+        //Random access (backup and token with begin/end in different lines).
+        Random random = new Random(1);
+        for (int i = 0; i < 200 && cs.length > 0; i++) {
+            int begin = random.nextInt(cs.length);
+            int end = begin + random.nextInt(cs.length - begin);
+            in.restorePos(begin - 1);
+            in.BeginToken();
+            in.restorePos(end);
+            in.setBeginEndChars(t);
+            assertEquals(expected[0][begin], t.beginLine);
+            assertEquals(expected[1][begin], t.beginColumn);
+            assertEquals(expected[0][end], t.endLine);
+            assertEquals(expected[1][end], t.endColumn);
+        }
+    }
+
+    public void testLineAndColumn() throws Exception {
+        check("");
+        check("a");
+        check("\n");
+        check("a\nbc\n");
+        check("a\r\nbc\r\n\r\n");
+        check("a\rb\r\rc\n\rd\r");
+        check("\n\"\"\"\na\n\"\"\"");
+    }
+
+    public void testRandom() throws Exception {
+        Random random = new Random(0);
+        char[] chars = new char[] { 'a', ' ', '\t', '\r', '\n', 'b' };
+        for (int i = 0; i < 50; i++) {
+            int len = random.nextInt(500);
+            char[] cs = new char[len];
+            for (int j = 0; j < len; j++) {
+                cs[j] = chars[random.nextInt(chars.length)];
+            }
+            check(new String(cs));
+        }
+    }
+}
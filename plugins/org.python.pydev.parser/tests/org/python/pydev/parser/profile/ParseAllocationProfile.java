@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser.profile;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+
+import org.eclipse.jface.text.Document;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.parser.PyParser;
+import org.python.pydev.parser.jython.FastCharStream;
+
+import com.aptana.shared_core.string.FastStringBuffer;
+
+/**
+ * Shows the bytes allocated for each parse of a big generated module (and how much of that is used by the
+ * FastCharStream).
+ * 
+ * Note: the allocated bytes are gotten from com.sun.management.ThreadMXBean.getThreadAllocatedBytes (so, it only
+ * works in a Sun/Oracle VM 1.6.0_25 or newer).
+ */
+public class ParseAllocationProfile {
+
+    public static void main(String[] args) throws Exception {
+        FastStringBuffer buf = new FastStringBuffer();
+        for (int i = 0; i < 5000; i++) {
+            buf.append("class Generated").append(i).append("(object):\n");
+            buf.append("    '''Docstring for class ").append(i).append("'''\n");
+            buf.append("    def method(self, a, b=").append(i).append("):\n");
+            buf.append("        return a + b * ").append(i).append(" # comment\n\n");
+        }
+        String contents = buf.toString();
+        char[] chars = contents.toCharArray();
+
+        Object threadMXBean = ManagementFactory.getThreadMXBean();
+        Method getAllocated;
+        try {
+            getAllocated = threadMXBean.getClass().getMethod("getThreadAllocatedBytes", long.class);
+            getAllocated.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            System.out.println("getThreadAllocatedBytes not available in this VM.");
+            return;
+        }
+        long threadId = Thread.currentThread().getId();
+
+        System.out.println("Chars: " + chars.length);
+        for (int i = 0; i < 10; i++) {
+            long before = (Long) getAllocated.invoke(threadMXBean, threadId);
+            new FastCharStream(chars);
+            long stream = (Long) getAllocated.invoke(threadMXBean, threadId) - before;
+
+            Document doc = new Document(contents);
+            before = (Long) getAllocated.invoke(threadMXBean, threadId);
+            long initial = System.currentTimeMillis();
+            PyParser.reparseDocumentInternal(doc, true, IPythonNature.LATEST_GRAMMAR_VERSION);
+            long parse = (Long) getAllocated.invoke(threadMXBean, threadId) - before;
+
+            System.out.println("FastCharStream: " + (stream / 1024) + "KB Parse: " + (parse / 1024) + "KB ("
+                    + (parse / chars.length) + " bytes/char) Time: " + (System.currentTimeMillis() - initial) + "ms");
+        }
+    }
+}
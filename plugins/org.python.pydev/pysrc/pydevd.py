@@ -26,12 +26,14 @@ from pydevd_comm import  CMD_CHANGE_VARIABLE, \
                          CMD_VERSION, \
                          CMD_GET_FILE_CONTENTS, \
                          CMD_SET_PROPERTY_TRACE, \
+                         CMD_GET_VARIABLE_PAGE, \
                          GetGlobalDebugger, \
                          InternalChangeVariable, \
                          InternalGetCompletions, \
                          InternalEvaluateExpression, \
                          InternalGetFrame, \
                          InternalGetVariable, \
+                         InternalGetVariablePage, \
                          InternalEvaluateConsoleExpression, \
                          InternalConsoleGetCompletions, \
                          InternalTerminateThread, \
@@ -562,6 +564,22 @@ class PyDB:
                     except:
                         traceback.print_exc()
 
+                elif cmd_id == CMD_GET_VARIABLE_PAGE:
+                    #the text is: offset\tlimit\tthread_id\tframe_id\tFRAME|GLOBAL\tattributes*
+                    try:
+                        offset, limit, thread_id, frame_id, scopeattrs = text.split('\t', 4)
+
+                        if scopeattrs.find('\t') != -1: # there are attributes beyond scope
+                            scope, attrs = scopeattrs.split('\t', 1)
+                        else:
+                            scope, attrs = (scopeattrs, None)
+
+                        int_cmd = InternalGetVariablePage(seq, thread_id, frame_id, scope, attrs, int(offset), int(limit))
+                        self.postInternalCommand(int_cmd, thread_id)
+
+                    except:
+                        traceback.print_exc()
+
                 elif cmd_id == CMD_GET_COMPLETIONS:
                     #we received some command to get a variable
                     #the text is: thread_id\tframe_id\tactivation token
@@ -838,6 +856,9 @@ class PyDB:
             self.processInternalCommands()
             time.sleep(0.01)
 
+        #the contents may change after resuming
+        pydevd_vars.clearPagedVariables(GetThreadId(thread))
+
         #process any stepping instructions 
         if info.pydev_step_cmd == CMD_STEP_INTO:
             info.pydev_step_stop = None
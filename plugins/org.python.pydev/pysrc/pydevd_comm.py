@@ -49,6 +49,8 @@ each command has a format:
     121      CMD_SET_NEXT_STATEMENT
     122      CMD_SET_PY_EXCEPTION
     124      CMD_SET_PROPERTY_TRACE
+    125      CMD_GET_VARIABLE_PAGE    JAVA      offset \t limit \t             GET_VARIABLE_PAGE with XML of the
+                                                (same as GET_VARIABLE)        children in the range and their total
     
 500 series diagnostics/ok
     501      VERSION                  either      Version string (1.0)        Currently just used at startup
@@ -110,6 +112,7 @@ CMD_SET_NEXT_STATEMENT = 121
 CMD_SET_PY_EXCEPTION = 122
 CMD_GET_FILE_CONTENTS = 123
 CMD_SET_PROPERTY_TRACE = 124
+CMD_GET_VARIABLE_PAGE = 125
 # Pydev debug console commands
 CMD_EVALUATE_CONSOLE_EXPRESSION = 126
 CMD_VERSION = 501
@@ -141,6 +144,7 @@ ID_TO_MEANING = {
     '122':'CMD_SET_PY_EXCEPTION',
     '123':'CMD_GET_FILE_CONTENTS',
     '124':'CMD_SET_PROPERTY_TRACE',
+    '125':'CMD_GET_VARIABLE_PAGE',
     '126':'CMD_EVALUATE_CONSOLE_EXPRESSION',
     '501':'CMD_VERSION',
     '502':'CMD_RETURN',
@@ -541,6 +545,12 @@ class NetCommandFactory:
         except Exception:
             return self.makeErrorMessage(seq, GetExceptionTracebackStr())
 
+    def makeGetVariablePageMessage(self, seq, payload):
+        try:
+            return NetCommand(CMD_GET_VARIABLE_PAGE, seq, payload)
+        except Exception:
+            return self.makeErrorMessage(seq, GetExceptionTracebackStr())
+
     def makeGetFrameMessage(self, seq, payload):
         try:
             return NetCommand(CMD_GET_FRAME, seq, payload)
@@ -689,6 +699,38 @@ class InternalGetVariable(InternalThreadCommand):
             dbg.writer.addCommand(cmd)
 
 
+#=======================================================================================================================
+# InternalGetVariablePage
+#=======================================================================================================================
+class InternalGetVariablePage(InternalThreadCommand):
+    """ gets the children of a variable in the range [offset, offset+limit) (big containers are gotten in pages) """
+    def __init__(self, seq, thread_id, frame_id, scope, attrs, offset, limit):
+        self.sequence = seq
+        self.thread_id = thread_id
+        self.frame_id = frame_id
+        self.scope = scope
+        self.attributes = attrs
+        self.offset = offset
+        self.limit = limit
+     
+    def doIt(self, dbg):
+        """ Converts request into python variable """
+        try:
+            var = pydevd_vars.resolveVar(self.thread_id, self.frame_id, self.scope, self.attributes)
+            total, items = pydevd_vars.getDictionaryPage(var, self.offset, self.limit, self.thread_id,
+                (self.frame_id, self.scope, self.attributes))
+            xml = '<xml total="%s">' % (total,)
+            for k, v in items:
+                xml += pydevd_vars.varToXML(v, str(k))
+
+            xml += "</xml>"
+            cmd = dbg.cmdFactory.makeGetVariablePageMessage(self.sequence, xml)
+            dbg.writer.addCommand(cmd)
+        except Exception:
+            cmd = dbg.cmdFactory.makeErrorMessage(self.sequence, "Error resolving variables " + GetExceptionTracebackStr())
+            dbg.writer.addCommand(cmd)
+
+
 #=======================================================================================================================
 # InternalChangeVariable
 #=======================================================================================================================
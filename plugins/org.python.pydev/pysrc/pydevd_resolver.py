@@ -268,6 +268,26 @@ class TupleResolver: #to enumerate tuples and lists
         d['__len__'] = len(var)
         return d
 
+    def getDictionaryRange(self, var, offset, limit):
+        '''
+            @return: a tuple with the number of children and a list with (key, value) for the children in the range
+            [offset, offset+limit) -- the keys are the same returned in getDictionary (but without the limit of
+            MAX_ITEMS_TO_HANDLE) and __len__ is the last one (as the keys are sorted).
+        '''
+        l = len(var)
+        format = '%0' + str(int(len(str(l)))) + 'd'
+
+        ret = []
+        i = offset
+        end = min(offset + limit, l)
+        while i < end:
+            ret.append((format % i, var[i]))
+            i += 1
+
+        if offset <= l and l < offset + limit:
+            ret.append(('__len__', l))
+        return l + 1, ret
+
 
 
 #=======================================================================================================================
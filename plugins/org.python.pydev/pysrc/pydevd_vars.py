@@ -314,8 +314,8 @@ Current     thread_id:%s, available frames:
 
     return frameFound
 
-def resolveCompoundVariable(thread_id, frame_id, scope, attrs):
-    """ returns the value of the compound variable as a dictionary"""
+def resolveVar(thread_id, frame_id, scope, attrs):
+    """ returns the variable found from the scope following the given attributes """
     frame = findFrame(thread_id, frame_id)
     if frame is None:
         return {}
@@ -339,6 +339,11 @@ def resolveCompoundVariable(thread_id, frame_id, scope, attrs):
         for k in attrList:
             type, _typeName, resolver = getType(var)
             var = resolver.resolve(var, k)
+    return var
+
+def resolveCompoundVariable(thread_id, frame_id, scope, attrs):
+    """ returns the value of the compound variable as a dictionary"""
+    var = resolveVar(thread_id, frame_id, scope, attrs)
 
     try:
         type, _typeName, resolver = getType(var)
@@ -346,6 +351,71 @@ def resolveCompoundVariable(thread_id, frame_id, scope, attrs):
     except:
         traceback.print_exc()
 
+#===============================================================================
+# PagedVariablesContainer
+#===============================================================================
+class PagedVariablesContainer:
+    '''
+    Keeps the dictionary and the sorted keys of the variables gotten in pages while their thread is suspended (so,
+    the keys are sorted once per suspend and not for each page requested).
+    '''
+    lock = threading.Lock()
+    paged = {} #thread_id -> dict(locator -> (var, dictionary, sorted keys))
+
+
+def clearPagedVariables(thread_id):
+    """ discards the variables kept for the pages of the given thread (called when it's resumed) """
+    PagedVariablesContainer.lock.acquire()
+    try:
+        if DictContains(PagedVariablesContainer.paged, thread_id):
+            del PagedVariablesContainer.paged[thread_id]
+    finally:
+        PagedVariablesContainer.lock.release()
+
+
+def getDictionaryPage(var, offset, limit, thread_id=None, locator=None):
+    """ returns a tuple with the number of children of the variable and a list with (key, value) for the children
+    in the range [offset, offset+limit) of its sorted keys
+    
+    @param thread_id: if given, the dictionary and sorted keys are kept (under the locator) until
+        clearPagedVariables is called for the thread.
+    """
+    type, _typeName, resolver = getType(var)
+    if resolver is None:
+        return 0, []
+
+    if hasattr(resolver, 'getDictionaryRange'):
+        #Don't create the whole dictionary for big sequences.
+        return resolver.getDictionaryRange(var, offset, limit)
+
+    cached = None
+    if thread_id is not None:
+        PagedVariablesContainer.lock.acquire()
+        try:
+            cached = PagedVariablesContainer.paged.get(thread_id, {}).get(locator)
+        finally:
+            PagedVariablesContainer.lock.release()
+
+    if cached is not None and cached[0] is var:
+        valDict, keys = cached[1], cached[2]
+    else:
+        valDict = resolver.getDictionary(var)
+        keys = valDict.keys()
+        if hasattr(keys, 'sort'):
+            keys.sort() #Python 2: keys() is a list
+        else:
+            #Python 3: keys() is a view (and keys of different types can't be compared, so, compare them as strings).
+            keys = sorted(keys, key=str)
+
+        if thread_id is not None:
+            PagedVariablesContainer.lock.acquire()
+            try:
+                PagedVariablesContainer.paged.setdefault(thread_id, {})[locator] = (var, valDict, keys)
+            finally:
+                PagedVariablesContainer.lock.release()
+
+    return len(keys), [(k, valDict[k]) for k in keys[offset:offset + limit]]
+
 def evaluateExpression(thread_id, frame_id, expression, doExec):
     '''returns the result of the evaluated expression
     @param doExec: determines if we should do an exec or an eval
@@ -0,0 +1,109 @@
+'''
+Tests for getting the children of variables in pages.
+'''
+
+import os
+import sys
+import unittest
+
+sys.path.append(os.path.split(os.path.split(__file__)[0])[0])
+
+import pydevd_resolver
+import pydevd_vars
+
+#=======================================================================================================================
+# Test
+#=======================================================================================================================
+class Test(unittest.TestCase):
+
+    def tearDown(self):
+        pydevd_vars.clearPagedVariables('thread1')
+
+
+    def testDictionaryRange(self):
+        resolver = pydevd_resolver.TupleResolver()
+        lst = list(range(1000))
+
+        #same keys as getDictionary (but no limit in the number of items)
+        total, items = resolver.getDictionaryRange(lst, 0, 3)
+        self.assertEqual(1001, total) #includes __len__
+        self.assertEqual([('0000', 0), ('0001', 1), ('0002', 2)], items)
+
+        total, items = resolver.getDictionaryRange(lst, 998, 100)
+        self.assertEqual([('0998', 998), ('0999', 999), ('__len__', 1000)], items)
+
+        #__len__ alone in the last page
+        total, items = resolver.getDictionaryRange(lst, 1000, 100)
+        self.assertEqual([('__len__', 1000)], items)
+
+        total, items = resolver.getDictionaryRange(lst, 2000, 100)
+        self.assertEqual([], items)
+
+        #matches getDictionary for small sequences
+        small = ['a', 'b', 'c']
+        total, items = resolver.getDictionaryRange(small, 0, 100)
+        d = resolver.getDictionary(small)
+        self.assertEqual(len(d), total)
+        for k, v in items:
+            self.assertEqual(d[k], v)
+
+
+    def testDictionaryPage(self):
+        d = {}
+        for i in range(30):
+            d['key%02d' % i] = i
+
+        #the DictResolver also adds __len__ (which is the first sorted key) and the id to the keys
+        total, items = pydevd_vars.getDictionaryPage(d, 0, 2)
+        self.assertEqual(31, total)
+        self.assertEqual(('__len__', 30), items[0])
+        self.assert_(items[1][0].startswith('key00 ('))
+        self.assertEqual(0, items[1][1])
+
+        total, items = pydevd_vars.getDictionaryPage(d, 11, 3)
+        self.assertEqual([10, 11, 12], [v for _k, v in items])
+
+        total, items = pydevd_vars.getDictionaryPage(d, 29, 5)
+        self.assertEqual([28, 29], [v for _k, v in items])
+
+
+    def testDictionaryPageSortedOncePerSuspend(self):
+        calls = []
+        class Resolver:
+            def getDictionary(self, var):
+                calls.append(1)
+                return var
+
+        original = pydevd_vars.getType
+        resolver = Resolver()
+        pydevd_vars.getType = lambda var: (type(var), 'dict', resolver)
+        try:
+            d = {'b': 2, 'a': 1, 'c': 3}
+            locator = ('22', 'FRAME', 'd')
+            total, items = pydevd_vars.getDictionaryPage(d, 0, 2, 'thread1', locator)
+            self.assertEqual([('a', 1), ('b', 2)], items)
+            total, items = pydevd_vars.getDictionaryPage(d, 2, 2, 'thread1', locator)
+            self.assertEqual([('c', 3)], items)
+            self.assertEqual(1, len(calls))
+
+            #a different variable in the same locator is not reused
+            d2 = {'x': 1}
+            total, items = pydevd_vars.getDictionaryPage(d2, 0, 2, 'thread1', locator)
+            self.assertEqual([('x', 1)], items)
+            self.assertEqual(2, len(calls))
+
+            #after a resume it must be gotten again
+            pydevd_vars.clearPagedVariables('thread1')
+            pydevd_vars.getDictionaryPage(d2, 0, 2, 'thread1', locator)
+            self.assertEqual(3, len(calls))
+        finally:
+            pydevd_vars.getType = original
+
+
+#=======================================================================================================================
+# main
+#=======================================================================================================================
+if __name__ == '__main__':
+    #this is so that we can run it from the jython tests -- because we don't actually have an __main__ module
+    #(so, it won't try importing the __main__ module)
+    unittest.TextTestRunner().run(unittest.makeSuite(Test))
@@ -243,7 +243,9 @@ public class PyDevBuilder extends IncrementalProjectBuilder {
     }
 
     /**
-     * Default implementation. Visits each resource once at a time. May be overridden if a better implementation is needed.
+     * Default implementation. If the builder parallelism is higher than 1, the resources are loaded and parsed
+     * in worker threads (see PyDevBuilderPipeline), otherwise visits each resource once at a time. May be 
+     * overridden if a better implementation is needed.
      * 
      * @param resourcesToParse list of resources from project that are python files.
      * @param monitor
@@ -255,6 +257,12 @@ public class PyDevBuilder extends IncrementalProjectBuilder {
         // we have 100 units here
         double inc = (visitors.size() * 100) / (double) resourcesToParse.size();
 
+        int parallelism = Math.min(PyDevBuilderPrefPage.getBuilderParallelism(), resourcesToParse.size());
+        if (parallelism > 1) {
+            new PyDevBuilderPipeline(resourcesToParse, visitors, parallelism).run(monitor, inc);
+            return;
+        }
+
         double total = 0;
         int totalResources = resourcesToParse.size();
         int i = 0;
@@ -0,0 +1,463 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.builder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jface.text.IDocument;
+import org.python.pydev.core.FileUtilsFileBuffer;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.callbacks.ICallback0;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.editor.codecompletion.revisited.PythonPathHelper;
+import org.python.pydev.logging.DebugSettings;
+import org.python.pydev.plugin.nature.PythonNature;
+
+import com.aptana.shared_core.string.FastStringBuffer;
+
+/**
+ * Builds the resources of a full build in stages:
+ *
+ * 1. Worker threads resolve the module name, load the document, parse it and call prepareAddedResource on the
+ * visitors that are thread-safe (each worker has its own instances of those visitors, so, the memo is not shared
+ * among threads).
+ *
+ * 2. The prepared resources are put in a bounded queue (so that the workers don't load too many documents in
+ * memory if the other visitors are slower).
+ *
+ * 3. The builder thread gets the resources from the queue and calls visitAddedResource on all the visitors (in 
+ * the same order they were passed, as before). This is needed because the builder thread holds the workspace 
+ * lock during the build (so, changes such as creating markers can only be done in it).
+ *
+ * Only the builder thread uses the progress monitor passed.
+ *
+ * The time spent in each stage of the last full build (and the number of resources which passed through it) is
+ * available from getLastFullBuild() and is reported in the progress monitor when the build finishes.
+ *
+ * @author Fabio
+ */
+public final class PyDevBuilderPipeline {
+
+    public static final int STAGE_LOAD = 0;
+    public static final int STAGE_PARSE = 1;
+    public static final int STAGE_PREPARE = 2;
+    public static final int STAGE_VISIT = 3;
+    public static final int STAGE_WAITING = 4;
+
+    private static final String[] STAGE_NAMES = new String[] { "load", "parse", "prepare", "visit",
+            "builder waiting" };
+
+    private static volatile PyDevBuilderPipeline lastFullBuild;
+
+    /**
+     * @return the pipeline of the last full build done in worker threads (with the time spent in each stage) or
+     * null if there was none.
+     */
+    public static PyDevBuilderPipeline getLastFullBuild() {
+        return lastFullBuild;
+    }
+
+    /**
+     * A resource which already passed through the worker stage.
+     */
+    private static final class PreparedResource {
+
+        private final IFile resource;
+        private final IPythonNature nature;
+        private final HashMap<String, Object> memo;
+        private final ICallback0<IDocument> doc;
+
+        private PreparedResource(IFile resource, IPythonNature nature, HashMap<String, Object> memo,
+                ICallback0<IDocument> doc) {
+            this.resource = resource;
+            this.nature = nature;
+            this.memo = memo;
+            this.doc = doc;
+        }
+    }
+
+    private final List<IFile> resourcesToParse;
+    private final List<PyDevBuilderVisitor> visitors;
+    private final List<PyDevBuilderVisitor> threadSafeVisitors = new ArrayList<PyDevBuilderVisitor>();
+    private final int parallelism;
+    private final int queueCapacity;
+
+    private final Object lock = new Object();
+
+    //All the fields below are synchronized on lock.
+    private final LinkedList<PreparedResource> queue = new LinkedList<PreparedResource>();
+    private int nextResource;
+    private int runningWorkers;
+    private int skippedResources;
+    private volatile boolean canceled;
+    private boolean loggedMisconfiguration;
+
+    //Time spent on each stage (one of the STAGE_XXX constants, in nanos and summed for all the threads).
+    private final long[] stageNanos = new long[STAGE_NAMES.length];
+    //Number of resources which passed through each stage (for STAGE_WAITING, the number of times the builder thread
+    //had to wait for the workers).
+    private final int[] stageCounts = new int[STAGE_NAMES.length];
+    private long totalNanos;
+
+    /*default*/PyDevBuilderPipeline(List<IFile> resourcesToParse, List<PyDevBuilderVisitor> visitors,
+            int parallelism) {
+        this.resourcesToParse = resourcesToParse;
+        this.parallelism = parallelism;
+        this.queueCapacity = parallelism * 4;
+        this.visitors = visitors;
+        for (PyDevBuilderVisitor visitor : visitors) {
+            if (visitor.isThreadSafe()) {
+                threadSafeVisitors.add(visitor);
+            }
+        }
+    }
+
+    /**
+     * Builds all the resources (returns only when all the resources are built or the monitor is canceled).
+     *
+     * @param inc the amount of work to report to the monitor for each resource.
+     */
+    /*default*/void run(IProgressMonitor monitor, double inc) {
+        long initialTime = System.nanoTime();
+        synchronized (lock) {
+            runningWorkers = parallelism;
+        }
+        for (int i = 0; i < parallelism; i++) {
+            Thread thread = new Thread("PyDev: Builder worker " + (i + 1)) {
+                @Override
+                public void run() {
+                    runWorker();
+                }
+            };
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        try {
+            consume(monitor, inc);
+        } finally {
+            canceled = true;
+            synchronized (lock) {
+                lock.notifyAll();
+                //Wait for the workers to finish (and release the resources still in the queue).
+                while (runningWorkers > 0 || queue.size() > 0) {
+                    while (queue.size() > 0) {
+                        queue.removeFirst().nature.endRequests();
+                    }
+                    if (runningWorkers > 0) {
+                        try {
+                            lock.wait(50);
+                        } catch (InterruptedException e) {
+                            //ignore
+                        }
+                    }
+                }
+            }
+        }
+
+        synchronized (lock) {
+            totalNanos = System.nanoTime() - initialTime;
+        }
+        lastFullBuild = this;
+        String metrics = getMetricsStr();
+        monitor.subTask(metrics);
+        if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
+            Log.toLogFile(this, metrics);
+        }
+    }
+
+    public int getResourcesCount() {
+        return resourcesToParse.size();
+    }
+
+    /**
+     * @return the number of resources which were not visited (i.e.: not in the pythonpath).
+     */
+    public int getSkippedCount() {
+        synchronized (lock) {
+            return skippedResources;
+        }
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return the time (in millis) the whole build took.
+     */
+    public long getTotalTimeMillis() {
+        synchronized (lock) {
+            return totalNanos / 1000000;
+        }
+    }
+
+    /**
+     * @return the time (in millis) spent in the given stage (one of the STAGE_XXX constants) summed for all the
+     * threads.
+     */
+    public long getStageTimeMillis(int stage) {
+        synchronized (lock) {
+            return stageNanos[stage] / 1000000;
+        }
+    }
+
+    /**
+     * @return the number of resources which passed through the given stage (one of the STAGE_XXX constants) or, for
+     * STAGE_WAITING, the number of times the builder thread had to wait for the workers.
+     */
+    public int getStageCount(int stage) {
+        synchronized (lock) {
+            return stageCounts[stage];
+        }
+    }
+
+    public String getMetricsStr() {
+        FastStringBuffer buf = new FastStringBuffer(200);
+        buf.append("Full build of ").append(getResourcesCount()).append(" resources (").append(getSkippedCount())
+                .append(" skipped) with ").append(parallelism).append(" threads. Total: ")
+                .append(getTotalTimeMillis()).append("ms");
+        for (int i = 0; i < STAGE_NAMES.length; i++) {
+            buf.append(", ").append(STAGE_NAMES[i]).append(": ").append(getStageTimeMillis(i)).append("ms (")
+                    .append(getStageCount(i)).append(')');
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Runs the visitors in the builder thread.
+     */
+    private void consume(IProgressMonitor monitor, double inc) {
+        FastStringBuffer bufferToCreateString = new FastStringBuffer();
+        int totalResources = resourcesToParse.size();
+        double total = 0;
+        int i = 0;
+        while (true) {
+            if (monitor.isCanceled()) {
+                return;
+            }
+            PreparedResource prepared;
+            long initialWait = System.nanoTime();
+            synchronized (lock) {
+                if (queue.size() == 0 && runningWorkers > 0) {
+                    stageCounts[STAGE_WAITING]++;
+                }
+                while (queue.size() == 0 && runningWorkers > 0) {
+                    try {
+                        lock.wait(100);
+                    } catch (InterruptedException e) {
+                        //ignore
+                    }
+                    if (monitor.isCanceled()) {
+                        return;
+                    }
+                }
+                stageNanos[STAGE_WAITING] += System.nanoTime() - initialWait;
+                if (queue.size() == 0) {
+                    return; //No workers running and nothing else in the queue: finished.
+                }
+                prepared = queue.removeFirst();
+                lock.notifyAll(); //Some worker may be waiting for space in the queue.
+            }
+
+            i++;
+            long initialVisit = System.nanoTime();
+            try {
+                for (PyDevBuilderVisitor visitor : visitors) {
+                    if (monitor.isCanceled()) {
+                        break;
+                    }
+                    try {
+                        visitor.memo = prepared.memo; //setting the memo must be the first thing.
+
+                        PyDevBuilder.communicateProgress(monitor, totalResources, i, prepared.resource, visitor,
+                                bufferToCreateString);
+
+                        //on a full build, all visits are as some add...
+                        visitor.visitAddedResource(prepared.resource, prepared.doc, monitor);
+                    } catch (Exception e) {
+                        Log.log(e);
+                    }
+                }
+            } finally {
+                prepared.nature.endRequests();
+            }
+            synchronized (lock) {
+                stageNanos[STAGE_VISIT] += System.nanoTime() - initialVisit;
+                stageCounts[STAGE_VISIT]++;
+            }
+
+            total += inc;
+            if (total > 1) {
+                monitor.worked((int) total);
+                total -= (int) total;
+            }
+        }
+    }
+
+    /**
+     * Prepares the resources in a worker thread.
+     */
+    private void runWorker() {
+        NullProgressMonitor workerMonitor = new NullProgressMonitor();
+        List<PyDevBuilderVisitor> threadVisitors = new ArrayList<PyDevBuilderVisitor>(threadSafeVisitors.size());
+        try {
+            for (PyDevBuilderVisitor visitor : threadSafeVisitors) {
+                try {
+                    threadVisitors.add(visitor.createThreadInstance());
+                } catch (Exception e) {
+                    Log.log(e);
+                }
+            }
+
+            while (!canceled) {
+                IFile r;
+                synchronized (lock) {
+                    if (nextResource >= resourcesToParse.size()) {
+                        return;
+                    }
+                    r = resourcesToParse.get(nextResource);
+                    nextResource++;
+                }
+
+                PreparedResource prepared = prepare(r, threadVisitors, workerMonitor);
+                if (prepared == null) {
+                    synchronized (lock) {
+                        skippedResources++;
+                    }
+                    continue;
+                }
+
+                synchronized (lock) {
+                    while (queue.size() >= queueCapacity && !canceled) {
+                        try {
+                            lock.wait(100);
+                        } catch (InterruptedException e) {
+                            //ignore
+                        }
+                    }
+                    if (canceled) {
+                        prepared.nature.endRequests();
+                        return;
+                    }
+                    queue.add(prepared);
+                    lock.notifyAll();
+                }
+            }
+        } finally {
+            synchronized (lock) {
+                runningWorkers--;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return the resource prepared to be passed to the visitors in the builder thread or null if it should not be
+     * visited.
+     */
+    private PreparedResource prepare(IFile r, List<PyDevBuilderVisitor> threadVisitors,
+            IProgressMonitor workerMonitor) {
+        PythonPathHelper.markAsPyDevFileIfDetected(r);
+
+        IPythonNature nature = PythonNature.getPythonNature(r);
+        if (nature == null) {
+            return null;
+        }
+        if (!nature.startRequests()) {
+            return null;
+        }
+        boolean ok = false;
+        try {
+            String moduleName;
+            try {
+                //we visit external because we must index them
+                moduleName = nature.resolveModuleOnlyInProjectSources(r, true);
+                if (moduleName == null) {
+                    return null; // we only analyze resources that are in the pythonpath
+                }
+            } catch (Exception e1) {
+                boolean log;
+                synchronized (lock) {
+                    log = !loggedMisconfiguration;
+                    loggedMisconfiguration = true; //No point in logging it over and over again.
+                }
+                if (log) {
+                    Log.log(e1);
+                }
+                return null;
+            }
+
+            //create new memo for each resource
+            HashMap<String, Object> memo = new HashMap<String, Object>();
+            memo.put(PyDevBuilderVisitor.IS_FULL_BUILD, true); //mark it as full build
+
+            long initialLoad = System.nanoTime();
+            ICallback0<IDocument> doc = FileUtilsFileBuffer.getDocOnCallbackFromResource(r);
+            IDocument document = null;
+            if (r.isSynchronized(IResource.DEPTH_ZERO)) {
+                //Load it in this thread (the callback caches it). If it's not synchronized, it'll be loaded later on
+                //in the builder thread as a refresh needs the workspace lock.
+                document = doc.call();
+            }
+            memo.put(PyDevBuilderVisitor.DOCUMENT_TIME, System.currentTimeMillis());
+            PyDevBuilderVisitor.setModuleNameInCache(memo, r, moduleName);
+
+            long initialParse = System.nanoTime();
+            long initialVisit = initialParse;
+            boolean parsed = false;
+            if (document != null) {
+                try {
+                    PyDevBuilderVisitor.createSourceModuleInCache(memo, r, document, moduleName);
+                    parsed = true;
+                } catch (Exception e) {
+                    Log.log(e);
+                }
+
+                initialVisit = System.nanoTime();
+                for (PyDevBuilderVisitor visitor : threadVisitors) {
+                    if (canceled) {
+                        return null;
+                    }
+                    try {
+                        visitor.memo = memo;
+                        visitor.prepareAddedResource(r, doc, workerMonitor);
+                    } catch (Exception e) {
+                        Log.log(e);
+                    }
+                }
+            }
+            long finalTime = System.nanoTime();
+            synchronized (lock) {
+                stageNanos[STAGE_LOAD] += initialParse - initialLoad;
+                stageNanos[STAGE_PARSE] += initialVisit - initialParse;
+                stageNanos[STAGE_PREPARE] += finalTime - initialVisit;
+                if (document != null) {
+                    stageCounts[STAGE_LOAD]++;
+                    stageCounts[STAGE_PREPARE]++;
+                }
+                if (parsed) {
+                    stageCounts[STAGE_PARSE]++;
+                }
+            }
+
+            ok = true;
+            return new PreparedResource(r, nature, memo, doc);
+        } finally {
+            if (!ok) {
+                nature.endRequests();
+            }
+        }
+    }
+}
@@ -20,6 +20,7 @@ import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
+import org.python.pydev.core.concurrency.ParallelRunner;
 import org.python.pydev.parser.PyParserManager;
 import org.python.pydev.plugin.PydevPlugin;
 import org.python.pydev.plugin.preferences.PydevPrefs;
@@ -68,6 +69,13 @@ public class PyDevBuilderPrefPage extends FieldEditorPreferencePage implements I
 
     public static final int DEFAULT_PYC_DELETE_HANDLING = PYC_ALWAYS_DELETE;
 
+    /**
+     * The number of threads used to load and parse the resources on a full build (0 means the number of 
+     * available processors and 1 means that everything is done in the builder thread).
+     */
+    public static final String BUILDER_PARALLELISM = "BUILDER_PARALLELISM";
+    public static final int DEFAULT_BUILDER_PARALLELISM = 0;
+
     private static final String[][] ENTRIES_AND_VALUES = new String[][] {
             { "Delete any orphaned .pyc file.", Integer.toString(PYC_ALWAYS_DELETE) },
             { "Only delete .pyc when .py delete is detected.", Integer.toString(PYC_DELETE_WHEN_PY_IS_DELETED) },
@@ -108,6 +116,8 @@ public class PyDevBuilderPrefPage extends FieldEditorPreferencePage implements I
                 "Disable parser notifications?", p));
         addField(new IntegerFieldEditor(PyParserManager.PYDEV_ELAPSE_BEFORE_ANALYSIS,
                 "Time to elapse before reparsing changed file (millis)", p));
+        addField(new IntegerFieldEditor(PyParserManager.PARSE_CACHE_MAX_MEMORY_IN_MB,
+                "Memory used to cache parsed files (MB)", p));
 
         s = "If only open editors are analyzed, markers will only be added\n" +
                 "to the opened PyDev editors.\n";
@@ -137,6 +147,11 @@ public class PyDevBuilderPrefPage extends FieldEditorPreferencePage implements I
         addField(new ComboFieldEditor(PYC_DELETE_HANDLING, "How to handle .pyc/$py.class deletion?",
                 ENTRIES_AND_VALUES, p));
 
+        IntegerFieldEditor parallelism = new IntegerFieldEditor(BUILDER_PARALLELISM,
+                "Threads used in a full build (0 = number of processors)", p);
+        parallelism.setValidRange(0, 64);
+        addField(parallelism);
+
     }
 
     /* (non-Javadoc)
@@ -200,4 +215,15 @@ public class PyDevBuilderPrefPage extends FieldEditorPreferencePage implements I
         return PydevPrefs.getPreferences().getInt(PYC_DELETE_HANDLING);
     }
 
+    /**
+     * @return the number of threads to be used in a full build (always >= 1).
+     */
+    public static int getBuilderParallelism() {
+        int parallelism = PydevPrefs.getPreferences().getInt(BUILDER_PARALLELISM);
+        if (parallelism <= 0) {
+            parallelism = ParallelRunner.getDefaultParallelism();
+        }
+        return parallelism;
+    }
+
 }
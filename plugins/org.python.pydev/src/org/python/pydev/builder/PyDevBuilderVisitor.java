@@ -174,6 +174,22 @@ public abstract class PyDevBuilderVisitor implements Comparable<PyDevBuilderVisi
      */
     protected SourceModule createSoureModule(IResource resource, IDocument document, String moduleName)
             throws MisconfigurationException {
+        return createSourceModule(resource, document, moduleName);
+    }
+
+    /**
+     * Creates the module for the given resource and puts it in the passed memo (so that getSourceModule will 
+     * return it when the visitors get it for that same resource).
+     * 
+     * Used in a full build to parse the modules before they're passed to the visitors.
+     */
+    public static void createSourceModuleInCache(Map<String, Object> memo, IResource resource, IDocument document,
+            String moduleName) throws MisconfigurationException {
+        memo.put(MODULE_CACHE + resource.getModificationStamp(), createSourceModule(resource, document, moduleName));
+    }
+
+    private static SourceModule createSourceModule(IResource resource, IDocument document, String moduleName)
+            throws MisconfigurationException {
         SourceModule module;
         PythonNature nature = PythonNature.getPythonNature(resource.getProject());
         IFile f = (IFile) resource;
@@ -263,6 +279,40 @@ public abstract class PyDevBuilderVisitor implements Comparable<PyDevBuilderVisi
         return MAX_TO_VISIT_INFINITE;
     }
 
+    /**
+     * @return true if prepareAddedResource may be called from worker threads on a full build (in which case each 
+     * worker thread will have its own instance -- created with createThreadInstance() -- so, the memo is not 
+     * shared, but any other static state must be properly synchronized).
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
+    /**
+     * @return a new instance of this visitor to be used in a worker thread (only called if isThreadSafe() returns
+     * true). The default implementation uses the default constructor (which is required for the visitors 
+     * contributed through the extension point anyways).
+     */
+    public PyDevBuilderVisitor createThreadInstance() {
+        try {
+            return getClass().newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * On a full build, if this visitor is thread-safe, this method is called from a worker thread before 
+     * visitAddedResource is called in the builder thread (with the same memo). 
+     * 
+     * It may be overridden to do the work that doesn't change the workspace (such as computing markers) and put
+     * the results in the memo to be used later in visitAddedResource (the builder thread holds the workspace lock
+     * during the build, so, the workspace must not be changed from this method).
+     */
+    public void prepareAddedResource(IResource resource, ICallback0<IDocument> document, IProgressMonitor monitor) {
+
+    }
+
     /**
      * Called when a resource is changed
      * 
@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.builder.pylint;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.python.pydev.core.log.Log;
+import org.python.pydev.plugin.PydevPlugin;
+
+import com.aptana.shared_core.io.FileUtils;
+
+/**
+ * A persistent cache (in the workspace metadata) with the output of pylint for a given file.
+ *
+ * The key is a hash of the contents of the file along with the configuration used to run pylint and the state of
+ * the sources of its project (so, if neither the file nor the modules it may import changed -- even after a
+ * restart -- pylint doesn't need to be run again for it).
+ *
+ * Each entry is kept in a separate file (named after the key). When the number of entries exceeds the maximum,
+ * the least recently used ones are removed.
+ *
+ * @author Fabio
+ */
+public final class PyLintResultsCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 5000;
+
+    /**
+     * Checking the number of entries requires listing the directory, so, it's only done after some puts.
+     */
+    private static final int PUTS_BETWEEN_CHECKS = 100;
+
+    private static PyLintResultsCache instance;
+
+    /**
+     * @return the cache shared in the process.
+     */
+    public static synchronized PyLintResultsCache getDefault() {
+        if (instance == null) {
+            instance = new PyLintResultsCache(PydevPlugin.getWorkspaceMetadataFile("pylint_results"),
+                    DEFAULT_MAX_ENTRIES);
+        }
+        return instance;
+    }
+
+    private final File dir;
+    private final int maxEntries;
+
+    //synchronized on this
+    private int putsSinceLastCheck;
+
+    /*default*/PyLintResultsCache(File dir, int maxEntries) {
+        this.dir = dir;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param contents the contents of the file to be checked.
+     * @param config the configuration used to run pylint.
+     * @return the key for the cache.
+     */
+    public static String createKey(String contents, String config) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            md.update(config.getBytes("UTF-8"));
+            md.update((byte) 0);
+            md.update(contents.getBytes("UTF-8"));
+            //MAX_RADIX because we'll generate the shorted string possible (only with 0-9 and a-z, so, it's Ok
+            //to use it as a file name).
+            return new BigInteger(1, md.digest()).toString(Character.MAX_RADIX).toLowerCase();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the pylint output for the given key or null if it's not in the cache.
+     */
+    public String get(String key) {
+        File file = new File(dir, key);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            String output = FileUtils.getFileContents(file);
+            file.setLastModified(System.currentTimeMillis()); //the last modified time is used as the last access.
+            return output;
+        } catch (Exception e) {
+            //removed in the meanwhile or not readable: just consider that it's not there.
+            return null;
+        }
+    }
+
+    public void put(String key, String output) {
+        boolean check = false;
+        synchronized (this) {
+            if (!dir.exists()) {
+                dir.mkdirs();
+            }
+            putsSinceLastCheck++;
+            if (putsSinceLastCheck >= PUTS_BETWEEN_CHECKS) {
+                putsSinceLastCheck = 0;
+                check = true;
+            }
+        }
+        //write to a temporary file and rename it, so that a reader never sees a partially written entry.
+        File file = new File(dir, key);
+        File tempFile = new File(dir, key + ".tmp");
+        FileUtils.writeStrToFile(output, tempFile);
+        file.delete();
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+        }
+        if (check) {
+            removeExceeding();
+        }
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public synchronized void clear() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently used entries if there are more entries than the maximum allowed.
+     */
+    public synchronized void removeExceeding() {
+        File[] files = dir.listFiles();
+        if (files == null || files.length <= maxEntries) {
+            return;
+        }
+        final long[] lastModified = new long[files.length];
+        Integer[] indexes = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            lastModified[i] = files[i].lastModified();
+            indexes[i] = i;
+        }
+        Arrays.sort(indexes, new Comparator<Integer>() {
+
+            public int compare(Integer o1, Integer o2) {
+                long l1 = lastModified[o1];
+                long l2 = lastModified[o2];
+                return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < files.length - maxEntries; i++) {
+            File file = files[indexes[i]];
+            if (!file.delete()) {
+                Log.log("Unable to delete pylint cache entry: " + file);
+            }
+        }
+    }
+}
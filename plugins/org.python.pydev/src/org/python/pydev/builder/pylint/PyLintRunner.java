@@ -0,0 +1,618 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.builder.pylint;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.ui.console.IOConsoleOutputStream;
+import org.python.pydev.builder.PydevMarkerUtils;
+import org.python.pydev.builder.PydevMarkerUtils.MarkerInfo;
+import org.python.pydev.consoles.MessageConsoles;
+import org.python.pydev.editor.codecompletion.revisited.PythonPathHelper;
+import org.python.pydev.core.callbacks.ICallback0;
+import org.python.pydev.core.docutils.StringUtils;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.plugin.PydevPlugin;
+import org.python.pydev.plugin.nature.PythonNature;
+import org.python.pydev.runners.SimplePythonRunner;
+import org.python.pydev.ui.UIConstants;
+
+import com.aptana.shared_core.io.FileUtils;
+import com.aptana.shared_core.string.FastStringBuffer;
+import com.aptana.shared_core.structure.Tuple;
+
+/**
+ * Runs pylint for the files requested with a bounded number of workers (PyLintPrefPage.getMaxPyLintDelta()).
+ *
+ * Requests are coalesced per file (a new request for a file that's still pending replaces the previous one) and
+ * the pending files in the same folder are checked together in a single pylint invocation (so that the startup
+ * of pylint is paid once for the batch). The output for each file is kept in the PyLintResultsCache, so, files
+ * that didn't change are not checked again.
+ *
+ * @author Fabio
+ */
+public final class PyLintRunner {
+
+    /**
+     * The maximum number of files checked in a single pylint invocation.
+     */
+    /*default*/static final int MAX_FILES_PER_BATCH = 20;
+
+    private static final String MODULE_HEADER = "************* Module ";
+
+    private static final PyLintRunner instance = new PyLintRunner();
+
+    /**
+     * @return the runner shared in the process.
+     */
+    public static PyLintRunner getDefault() {
+        return instance;
+    }
+
+    /**
+     * A request to check a given file.
+     */
+    public static final class PyLintRequest {
+
+        private final IResource resource;
+        private final ICallback0<IDocument> document;
+        private final IPath location;
+
+        public PyLintRequest(IResource resource, ICallback0<IDocument> document, IPath location) {
+            this.resource = resource;
+            this.document = document;
+            this.location = location;
+        }
+
+        /**
+         * @return the key for the batch of this request (files in the same folder of the same project).
+         */
+        private String getBatchKey() {
+            return resource.getProject().getName() + "|" + location.removeLastSegments(1).toOSString();
+        }
+
+        /**
+         * @return the last part of the module name that pylint will report for this file.
+         */
+        private String getModuleLastPart() {
+            String name = location.removeFileExtension().lastSegment();
+            if ("__init__".equals(name)) {
+                name = location.removeLastSegments(1).lastSegment();
+            }
+            return name;
+        }
+    }
+
+    //All the fields below are synchronized on this.
+
+    /**
+     * batch key -> (location -> request)
+     */
+    private final LinkedHashMap<String, LinkedHashMap<String, PyLintRequest>> pending = new LinkedHashMap<String, LinkedHashMap<String, PyLintRequest>>();
+    private int running;
+
+    private PyLintRunner() {
+    }
+
+    /**
+     * Schedules the given file to be checked.
+     */
+    public void schedule(PyLintRequest request) {
+        synchronized (this) {
+            String batchKey = request.getBatchKey();
+            LinkedHashMap<String, PyLintRequest> batch = pending.get(batchKey);
+            if (batch == null) {
+                batch = new LinkedHashMap<String, PyLintRequest>();
+                pending.put(batchKey, batch);
+            }
+            String locationKey = request.location.toOSString();
+            batch.remove(locationKey); //remove and add it again so that it goes to the end.
+            batch.put(locationKey, request);
+
+            startWorkerIfNeeded();
+        }
+    }
+
+    /**
+     * Must be called synchronized on this.
+     */
+    private void startWorkerIfNeeded() {
+        int maxWorkers = Math.max(1, PyLintPrefPage.getMaxPyLintDelta());
+        if (running < maxWorkers) {
+            running++;
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    runPending();
+                }
+            };
+            thread.setName("PyLint thread");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * @return the next batch to be checked (or null if there's nothing pending -- in which case the worker
+     * calling it must finish).
+     */
+    private synchronized List<PyLintRequest> nextBatch() {
+        Iterator<LinkedHashMap<String, PyLintRequest>> it = pending.values().iterator();
+        if (!it.hasNext()) {
+            return null;
+        }
+        LinkedHashMap<String, PyLintRequest> requests = it.next();
+        List<PyLintRequest> batch = new ArrayList<PyLintRequest>();
+
+        //The output of the files is split by the module name reported by pylint, so, files which would report
+        //the same (last part of the) module name are left for another batch.
+        Set<String> modules = new HashSet<String>();
+        for (Iterator<PyLintRequest> it2 = requests.values().iterator(); it2.hasNext()
+                && batch.size() < MAX_FILES_PER_BATCH;) {
+            PyLintRequest request = it2.next();
+            if (modules.add(request.getModuleLastPart())) {
+                batch.add(request);
+                it2.remove();
+            }
+        }
+        if (requests.size() == 0) {
+            it.remove();
+        }
+        return batch;
+    }
+
+    private void runPending() {
+        try {
+            List<PyLintRequest> batch;
+            while ((batch = nextBatch()) != null) {
+                try {
+                    check(batch);
+                } catch (final Exception e) {
+                    new Job("Error reporting") {
+                        protected IStatus run(IProgressMonitor monitor) {
+                            Log.log(e);
+                            return PydevPlugin.makeStatus(Status.OK, "", null);
+                        }
+                    }.schedule();
+                }
+            }
+        } finally {
+            synchronized (this) {
+                running--;
+                //something may have been scheduled while we were finishing (or we're finishing because of an
+                //error): make sure that someone will check it.
+                if (pending.size() > 0) {
+                    startWorkerIfNeeded();
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks the given files (which are all in the same folder of the same project).
+     */
+    private void check(List<PyLintRequest> batch) throws Exception {
+        IOConsoleOutputStream out = getConsoleOutputStream();
+        IProject project = batch.get(0).resource.getProject();
+        PythonNature nature = PythonNature.getPythonNature(project);
+        if (nature == null) {
+            Throwable e = new RuntimeException("PyLint ERROR: Nature not configured for: " + project);
+            Log.log(e);
+            return;
+        }
+
+        File script = new File(PyLintPrefPage.getPyLintLocation());
+        String scriptToExe = FileUtils.getFileAbsolutePath(script);
+        String interpreter = nature.getProjectInterpreter().getExecutableOrJar();
+
+        ArrayList<String> list = new ArrayList<String>();
+        list.add("--include-ids=y");
+
+        //user args
+        String userArgs = StringUtils.replaceNewLines(PyLintPrefPage.getPyLintArgs(), " ");
+        StringTokenizer tokenizer2 = new StringTokenizer(userArgs);
+        while (tokenizer2.hasMoreTokens()) {
+            list.add(tokenizer2.nextToken());
+        }
+
+        //all the files in the batch are in the same folder (which is used as the cwd).
+        File cwd = new File(batch.get(0).location.toOSString()).getParentFile();
+
+        //Anything that changes the pylint output must be in the config (so that the cache is invalidated).
+        FastStringBuffer config = new FastStringBuffer();
+        config.append(scriptToExe).append('|').append(script.lastModified()).append('|').append(interpreter);
+        for (String arg : list) {
+            config.append('|').append(arg);
+        }
+        File rcFile = findPyLintRc(list, cwd);
+        if (rcFile != null) {
+            config.append("|rcfile:").append(FileUtils.getFileAbsolutePath(rcFile)).append('|')
+                    .append(rcFile.lastModified());
+        }
+        //The output for a file also depends on the modules it imports, so, if any module in the project changed, the
+        //cached outputs for the project are not valid anymore.
+        List<String> sourceFolders = StringUtils.splitAndRemoveEmptyTrimmed(nature.getPythonPathNature()
+                .getOnlyProjectPythonPathStr(false), '|');
+        config.append("|sources:").append(getSourcesLastModified(sourceFolders));
+        String configStr = config.toString();
+
+        PyLintResultsCache cache = PyLintResultsCache.getDefault();
+        List<PyLintRequest> toRun = new ArrayList<PyLintRequest>();
+        Map<PyLintRequest, IDocument> docs = new HashMap<PyLintRequest, IDocument>();
+        Map<PyLintRequest, String> keys = new HashMap<PyLintRequest, String>();
+
+        for (PyLintRequest request : batch) {
+            IDocument doc = request.document.call();
+            if (doc == null) {
+                continue;
+            }
+            docs.put(request, doc);
+            //the path is also in the key: the same contents may have different results in different places
+            //(i.e.: relative imports).
+            String key = PyLintResultsCache.createKey(doc.get(), configStr + "|" + request.location.toOSString());
+            String output = cache.get(key);
+            if (output != null) {
+                PyLintVisitor.write("PyLint: Using cached output for: " + request.location.toOSString(), out);
+                addMarkers(request, doc, output);
+            } else {
+                keys.put(request, key);
+                toRun.add(request);
+            }
+        }
+        if (toRun.size() == 0) {
+            return;
+        }
+
+        if (toRun.size() > 1) {
+            //The similarities checker reports the duplicated lines among all the files checked together (under
+            //the last module reported), which wouldn't happen when checking only one file.
+            list.add("--disable=R0801");
+        }
+        for (PyLintRequest request : toRun) {
+            File arg = new File(request.location.toOSString());
+            list.add(FileUtils.getFileAbsolutePath(arg));
+        }
+
+        String[] paramsToExe = list.toArray(new String[0]);
+        PyLintVisitor.write("PyLint: Executing command line:'", out, scriptToExe, paramsToExe, "'");
+
+        Tuple<String, String> outTup = new SimplePythonRunner().runAndGetOutputFromPythonScript(interpreter,
+                scriptToExe, paramsToExe, cwd, project);
+
+        PyLintVisitor.write("PyLint: The stdout of the command line is: " + outTup.o1, out);
+        PyLintVisitor.write("PyLint: The stderr of the command line is: " + outTup.o2, out);
+
+        String output = outTup.o1;
+        //System.out.println(output);
+        if (output.indexOf("Traceback (most recent call last):") != -1) {
+            Throwable e = new RuntimeException("PyLint ERROR: \n" + output);
+            Log.log(e);
+            return;
+        }
+        if (outTup.o2.indexOf("Traceback (most recent call last):") != -1) {
+            Throwable e = new RuntimeException("PyLint ERROR: \n" + outTup.o2);
+            Log.log(e);
+            return;
+        }
+
+        Map<String, String> outputByModule = null;
+        if (toRun.size() > 1) {
+            outputByModule = splitOutputByModule(output);
+        }
+        for (PyLintRequest request : toRun) {
+            String requestOutput;
+            if (outputByModule == null) {
+                requestOutput = output;
+            } else {
+                requestOutput = outputByModule.get(request.getModuleLastPart());
+                if (requestOutput == null) {
+                    requestOutput = ""; //no messages for the module
+                }
+            }
+            cache.put(keys.get(request), requestOutput);
+            addMarkers(request, docs.get(request), requestOutput);
+        }
+    }
+
+    /**
+     * @return the latest modification time of the python files (and folders, so that removing a module is also
+     * noticed) below the given source folders.
+     */
+    /*default*/static long getSourcesLastModified(List<String> sourceFolders) {
+        long lastModified = 0;
+        List<File> folders = new ArrayList<File>();
+        for (String folder : sourceFolders) {
+            folders.add(new File(folder));
+        }
+        while (folders.size() > 0) {
+            File folder = folders.remove(folders.size() - 1);
+            File[] files = folder.listFiles();
+            if (files == null) {
+                continue;
+            }
+            lastModified = Math.max(lastModified, folder.lastModified());
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    folders.add(file);
+                } else if (PythonPathHelper.isValidSourceFile(file.getName())) {
+                    lastModified = Math.max(lastModified, file.lastModified());
+                }
+            }
+        }
+        return lastModified;
+    }
+
+    /**
+     * @return the configuration file pylint will use when run with the given arguments in the given folder (or null
+     * if there's none). Follows the same lookup pylint does: --rcfile, a pylintrc/.pylintrc in the folder or in
+     * the packages above it, the PYLINTRC environment variable, the user configuration and /etc/pylintrc.
+     */
+    /*default*/static File findPyLintRc(List<String> args, File cwd) {
+        for (int i = 0; i < args.size(); i++) {
+            String arg = args.get(i);
+            if (arg.startsWith("--rcfile=")) {
+                return new File(arg.substring("--rcfile=".length()));
+            }
+            if (arg.equals("--rcfile") && i + 1 < args.size()) {
+                return new File(args.get(i + 1));
+            }
+        }
+
+        if (cwd != null) {
+            File found = findPyLintRcIn(cwd);
+            if (found != null) {
+                return found;
+            }
+            File dir = cwd;
+            while (dir != null && new File(dir, "__init__.py").exists()) {
+                dir = dir.getParentFile();
+                if (dir != null) {
+                    File rc = new File(dir, "pylintrc");
+                    if (rc.isFile()) {
+                        return rc;
+                    }
+                }
+            }
+        }
+
+        String env = System.getenv("PYLINTRC");
+        if (env != null && new File(env).isFile()) {
+            return new File(env);
+        }
+
+        String home = System.getProperty("user.home");
+        if (home != null) {
+            File rc = new File(home, ".pylintrc");
+            if (rc.isFile()) {
+                return rc;
+            }
+            rc = new File(new File(home, ".config"), "pylintrc");
+            if (rc.isFile()) {
+                return rc;
+            }
+        }
+
+        File rc = new File("/etc/pylintrc");
+        if (rc.isFile()) {
+            return rc;
+        }
+        return null;
+    }
+
+    private static File findPyLintRcIn(File dir) {
+        File rc = new File(dir, "pylintrc");
+        if (rc.isFile()) {
+            return rc;
+        }
+        rc = new File(dir, ".pylintrc");
+        if (rc.isFile()) {
+            return rc;
+        }
+        return null;
+    }
+
+    /**
+     * @return a map with the last part of the module name -> the pylint output for that module.
+     */
+    /*default*/static Map<String, String> splitOutputByModule(String output) {
+        Map<String, String> ret = new HashMap<String, String>();
+        String currentModule = null;
+        FastStringBuffer current = new FastStringBuffer();
+
+        StringTokenizer tokenizer = new StringTokenizer(output, "\r\n");
+        while (tokenizer.hasMoreTokens()) {
+            String tok = tokenizer.nextToken();
+            if (tok.startsWith(MODULE_HEADER)) {
+                if (currentModule != null) {
+                    ret.put(currentModule, current.toString());
+                }
+                current.clear();
+                currentModule = tok.substring(MODULE_HEADER.length()).trim();
+                int i = currentModule.lastIndexOf('.');
+                if (i != -1) {
+                    currentModule = currentModule.substring(i + 1);
+                }
+            }
+            current.append(tok).append('\n');
+        }
+        if (currentModule != null) {
+            ret.put(currentModule, current.toString());
+        }
+        return ret;
+    }
+
+    private IOConsoleOutputStream getConsoleOutputStream() throws MalformedURLException {
+        if (PyLintPrefPage.useConsole()) {
+            return MessageConsoles.getConsoleOutputStream("PyLint", UIConstants.PY_LINT_ICON);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Parses the pylint output for the given request and schedules a job to replace its markers.
+     */
+    private void addMarkers(final PyLintRequest request, final IDocument doc, String output) {
+        final List<Object[]> markers = parseOutput(output, doc);
+
+        new Job("Adding markers") {
+
+            protected IStatus run(IProgressMonitor monitor) {
+
+                ArrayList<MarkerInfo> lst = new ArrayList<PydevMarkerUtils.MarkerInfo>();
+
+                for (Iterator<Object[]> iter = markers.iterator(); iter.hasNext();) {
+                    Object[] el = iter.next();
+
+                    String tok = (String) el[0];
+                    int priority = ((Integer) el[1]).intValue();
+                    String id = (String) el[2];
+                    int line = ((Integer) el[3]).intValue();
+
+                    lst.add(new PydevMarkerUtils.MarkerInfo(doc, "ID:" + id + " " + tok,
+                            PyLintVisitor.PYLINT_PROBLEM_MARKER, priority, false, false, line, 0, line, 0, null));
+                }
+
+                PydevMarkerUtils.replaceMarkers(lst, request.resource, PyLintVisitor.PYLINT_PROBLEM_MARKER, true,
+                        monitor);
+
+                return PydevPlugin.makeStatus(Status.OK, "", null);
+            }
+        }.schedule();
+    }
+
+    /**
+     * @return a list with the markers (tok, priority, id, line) found in the given output.
+     */
+    private static List<Object[]> parseOutput(String output, IDocument doc) {
+        List<Object[]> markers = new ArrayList<Object[]>();
+        StringTokenizer tokenizer = new StringTokenizer(output, "\r\n");
+
+        boolean useW = PyLintPrefPage.useWarnings();
+        boolean useE = PyLintPrefPage.useErrors();
+        boolean useF = PyLintPrefPage.useFatal();
+        boolean useC = PyLintPrefPage.useCodingStandard();
+        boolean useR = PyLintPrefPage.useRefactorTips();
+
+        //Set up local values for severity
+        int wSeverity = PyLintPrefPage.wSeverity();
+        int eSeverity = PyLintPrefPage.eSeverity();
+        int fSeverity = PyLintPrefPage.fSeverity();
+        int cSeverity = PyLintPrefPage.cSeverity();
+        int rSeverity = PyLintPrefPage.rSeverity();
+
+        while (tokenizer.hasMoreTokens()) {
+            String tok = tokenizer.nextToken();
+
+            try {
+                boolean found = false;
+                int priority = 0;
+
+                //W0611:  3: Unused import finalize
+                //F0001:  0: Unable to load module test.test2 (list index out of range)
+                //C0321: 25:fdfd: More than one statement on a single line
+                int indexOfDoublePoints = tok.indexOf(":");
+                if (indexOfDoublePoints != -1) {
+
+                    if (tok.startsWith("C") && useC) {
+                        found = true;
+                        //priority = IMarker.SEVERITY_WARNING;
+                        priority = cSeverity;
+                    } else if (tok.startsWith("R") && useR) {
+                        found = true;
+                        //priority = IMarker.SEVERITY_WARNING;
+                        priority = rSeverity;
+                    } else if (tok.startsWith("W") && useW) {
+                        found = true;
+                        //priority = IMarker.SEVERITY_WARNING;
+                        priority = wSeverity;
+                    } else if (tok.startsWith("E") && useE) {
+                        found = true;
+                        //priority = IMarker.SEVERITY_ERROR;
+                        priority = eSeverity;
+                    } else if (tok.startsWith("F") && useF) {
+                        found = true;
+                        //priority = IMarker.SEVERITY_ERROR;
+                        priority = fSeverity;
+                    } else {
+                        continue;
+                    }
+
+                } else {
+                    continue;
+                }
+
+                try {
+                    if (found) {
+                        String id = tok.substring(0, tok.indexOf(":")).trim();
+
+                        int i = tok.indexOf(":");
+                        if (i == -1)
+                            continue;
+
+                        tok = tok.substring(i + 1);
+
+                        i = tok.indexOf(":");
+                        if (i == -1)
+                            continue;
+
+                        final String substring = tok.substring(0, i).trim();
+                        //On PyLint 0.24 it started giving line,col (and not only the line).
+                        int line = Integer.parseInt(StringUtils.split(substring, ',').get(0));
+
+                        IRegion region = null;
+                        try {
+                            region = doc.getLineInformation(line - 1);
+                        } catch (Exception e) {
+                            region = doc.getLineInformation(line);
+                        }
+                        String lineContents = doc.get(region.getOffset(), region.getLength());
+
+                        int pos = -1;
+                        if ((pos = lineContents.indexOf("IGNORE:")) != -1) {
+                            String lintW = lineContents.substring(pos + "IGNORE:".length());
+                            if (lintW.startsWith(id)) {
+                                continue;
+                            }
+                        }
+
+                        i = tok.indexOf(":");
+                        if (i == -1)
+                            continue;
+
+                        tok = tok.substring(i + 1);
+                        markers.add(new Object[] { tok, priority, id, line - 1 });
+                    }
+                } catch (RuntimeException e2) {
+                    Log.log(e2);
+                }
+            } catch (Exception e1) {
+                Log.log(e1);
+            }
+        }
+        return markers;
+    }
+}
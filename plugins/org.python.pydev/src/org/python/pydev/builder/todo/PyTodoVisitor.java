@@ -36,6 +36,33 @@ import org.python.pydev.logging.DebugSettings;
  */
 public class PyTodoVisitor extends PyDevBuilderVisitor {
 
+    /**
+     * Key in the memo for the markers computed in prepareAddedResource.
+     */
+    private static final String TODO_MARKERS = "TODO_MARKERS"; //$NON-NLS-1$
+
+    /**
+     * The markers may be computed in any thread (only replacing the markers must be done in the builder thread).
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public void prepareAddedResource(IResource resource, ICallback0<IDocument> document, IProgressMonitor monitor) {
+        if (document != null) {
+            try {
+                if (!isResourceInPythonpathProjectSources(resource, this.getPythonNature(resource), false)) {
+                    return;
+                }
+                memo.put(TODO_MARKERS, computeTodoMarkers(document.call(), PyTodoPrefPage.getTodoTags()));
+            } catch (Exception e) {
+                Log.log(e);
+            }
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -56,8 +83,12 @@ public class PyTodoVisitor extends PyDevBuilderVisitor {
             }
 
             try {
-                PydevMarkerUtils.replaceMarkers(computeTodoMarkers(document.call(), todoTags), resource, IMarker.TASK,
-                        false, monitor);
+                @SuppressWarnings("unchecked")
+                List<MarkerInfo> markers = (List<MarkerInfo>) memo.get(TODO_MARKERS);
+                if (markers == null) {
+                    markers = computeTodoMarkers(document.call(), todoTags);
+                }
+                PydevMarkerUtils.replaceMarkers(markers, resource, IMarker.TASK, false, monitor);
                 //timer.printDiff("Total time to put markers: "+lst.size());
             } catch (Exception e) {
                 Log.log(e);
@@ -24,6 +24,8 @@ import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.resource.ImageDescriptor;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -35,6 +37,9 @@ import org.python.pydev.core.bundle.BundleInfo;
 import org.python.pydev.core.bundle.IBundleInfo;
 import org.python.pydev.core.bundle.ImageCache;
 import org.python.pydev.core.log.Log;
+import org.python.pydev.editor.codecompletion.PyCodeCompletionPreferencesPage;
+import org.python.pydev.editor.codecompletion.revisited.ModulesManager;
+import org.python.pydev.editor.codecompletion.revisited.modules.CompiledModulesCache;
 import org.python.pydev.editor.codecompletion.shell.AbstractShell;
 import org.python.pydev.plugin.nature.PythonNature;
 import org.python.pydev.plugin.nature.SystemPythonNature;
@@ -190,6 +195,17 @@ public class PydevPlugin extends AbstractUIPlugin {
         setJythonInterpreterManager(new JythonInterpreterManager(preferences));
         setIronpythonInterpreterManager(new IronpythonInterpreterManager(preferences));
 
+        ModulesManager.getModulesManagerCache().setMaxMemoryInMB(
+                PyCodeCompletionPreferencesPage.getModulesCacheMaxMemoryInMB());
+        preferences.addPropertyChangeListener(new IPropertyChangeListener() {
+
+            public void propertyChange(PropertyChangeEvent event) {
+                if (PyCodeCompletionPreferencesPage.MODULES_CACHE_MAX_MEMORY_IN_MB.equals(event.getProperty())) {
+                    ModulesManager.getModulesManagerCache().setMaxMemoryInMB(
+                            PyCodeCompletionPreferencesPage.getModulesCacheMaxMemoryInMB());
+                }
+            }
+        });
 
         //restore the nature for all python projects -- that's done when the project is set now.
         //        new Job("PyDev: Restoring projects python nature"){
@@ -244,6 +260,7 @@ public class PydevPlugin extends AbstractUIPlugin {
         try {
             //stop the running shells
             AbstractShell.shutdownAllShells();
+            CompiledModulesCache.saveAll();
 
             //save the natures (code completion stuff) -- and only the ones initialized 
             //(no point in getting the ones not initialized)
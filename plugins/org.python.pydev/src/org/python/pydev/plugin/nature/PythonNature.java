@@ -22,6 +22,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.internal.resources.Project;
 import org.eclipse.core.internal.resources.ProjectInfo;
@@ -55,17 +56,22 @@ import org.python.pydev.core.IPythonNature;
 import org.python.pydev.core.IPythonPathNature;
 import org.python.pydev.core.IToken;
 import org.python.pydev.core.MisconfigurationException;
+import org.python.pydev.core.ModulesKey;
 import org.python.pydev.core.ProjectMisconfiguredException;
 import org.python.pydev.core.PythonNatureWithoutProjectException;
 import org.python.pydev.core.docutils.StringUtils;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.codecompletion.revisited.ASTManager;
 import org.python.pydev.editor.codecompletion.revisited.ModulesManager;
+import org.python.pydev.editor.codecompletion.revisited.ModulesManagerWithBuild;
 import org.python.pydev.editor.codecompletion.revisited.ProjectModulesManager;
 import org.python.pydev.editor.codecompletion.revisited.PythonPathHelper;
+import org.python.pydev.editor.codecompletion.revisited.PythonPathWatcher;
+import org.python.pydev.editor.codecompletion.revisited.PythonPathWatcher.IPythonPathChangesListener;
 import org.python.pydev.navigator.elements.ProjectConfigError;
 import org.python.pydev.plugin.PydevPlugin;
 import org.python.pydev.ui.interpreters.IInterpreterObserver;
+import org.python.pydev.ui.interpreters.IInterpreterObserver2;
 import org.python.pydev.utils.JobProgressComunicator;
 
 import com.aptana.shared_core.structure.Tuple;
@@ -186,6 +192,7 @@ public class PythonNature extends AbstractPythonNature implements IPythonNature
                     return Status.OK_STATUS;
                 }
                 PythonNatureListenersManager.notifyPythonPathRebuilt(project, nature);
+                watchExternalSourceFolders();
                 //end task
                 jobProgressComunicator.done();
             } catch (Exception e) {
@@ -304,6 +311,7 @@ public class PythonNature extends AbstractPythonNature implements IPythonNature
      * @see org.eclipse.core.resources.IProjectNature#deconfigure()
      */
     public void deconfigure() throws CoreException {
+        stopWatchingExternalSourceFolders();
     }
 
     /**
@@ -330,6 +338,7 @@ public class PythonNature extends AbstractPythonNature implements IPythonNature
             init(null, null, null, new NullProgressMonitor(), null, null);
         } else {
             this.clearCaches(false);
+            stopWatchingExternalSourceFolders();
         }
 
     }
@@ -640,6 +649,8 @@ public class PythonNature extends AbstractPythonNature implements IPythonNature
                     if (!new HashSet<String>(PythonPathHelper.parsePythonPathFromStr(pythonpath, null))
                             .equals(new HashSet<String>(pythonPathHelper.getPythonpath()))) {
                         rebuildPath();
+                    } else {
+                        watchExternalSourceFolders();
                     }
                 }
             } catch (CoreException e) {
@@ -697,6 +708,82 @@ public class PythonNature extends AbstractPythonNature implements IPythonNature
 
     private RebuildPythonNatureModules rebuildJob = new RebuildPythonNatureModules();
 
+    /**
+     * Tracks the external source folders (changes in the workspace are already handled by the builder).
+     */
+    private PythonPathWatcher externalSourceFoldersWatcher;
+
+    /**
+     * Starts tracking the external source folders so that changes in those are applied incrementally (without
+     * having to rebuild the whole pythonpath).
+     */
+    private synchronized void watchExternalSourceFolders() {
+        stopWatchingExternalSourceFolders();
+        List<String> externalPaths;
+        try {
+            externalPaths = pythonPathNature.getProjectExternalSourcePathAsList(true);
+        } catch (CoreException e) {
+            Log.log(e);
+            return;
+        }
+        if (externalPaths.size() == 0) {
+            return;
+        }
+        externalSourceFoldersWatcher = new PythonPathWatcher(externalPaths, new IPythonPathChangesListener() {
+
+            public void pythonpathChanged(Map<File, Set<File>> changes, IProgressMonitor monitor) {
+                externalSourceFoldersChanged(changes, monitor);
+            }
+        });
+    }
+
+    private synchronized void stopWatchingExternalSourceFolders() {
+        if (externalSourceFoldersWatcher != null) {
+            externalSourceFoldersWatcher.dispose();
+            externalSourceFoldersWatcher = null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void externalSourceFoldersChanged(Map<File, Set<File>> changes, IProgressMonitor monitor) {
+        ICodeCompletionASTManager tempAstManager = astManager;
+        if (tempAstManager == null) {
+            return;
+        }
+        IModulesManager modulesManager = tempAstManager.getModulesManager();
+        if (!(modulesManager instanceof ModulesManagerWithBuild)) {
+            return;
+        }
+        ModulesManagerWithBuild manager = (ModulesManagerWithBuild) modulesManager;
+
+        List<ModulesKey> added = new ArrayList<ModulesKey>();
+        List<ModulesKey> removed = new ArrayList<ModulesKey>();
+        for (Map.Entry<File, Set<File>> entry : changes.entrySet()) {
+            Tuple<List<ModulesKey>, List<ModulesKey>> diff = manager.diffModulesBelow(entry.getKey(),
+                    entry.getValue(), new NullProgressMonitor());
+            added.addAll(diff.o1);
+            removed.addAll(diff.o2);
+        }
+        if (added.size() == 0 && removed.size() == 0) {
+            return;
+        }
+        manager.applyModulesDelta(added, removed);
+
+        List<IInterpreterObserver> participants = ExtensionHelper
+                .getParticipants(ExtensionHelper.PYDEV_INTERPRETER_OBSERVER);
+        for (IInterpreterObserver observer : participants) {
+            if (!(observer instanceof IInterpreterObserver2)) {
+                continue;
+            }
+            try {
+                ((IInterpreterObserver2) observer).notifyProjectModulesChanged(this, added, removed, monitor);
+            } catch (Exception e) {
+                //let's keep it safe
+                Log.log(e);
+            }
+        }
+    }
+
     /**
      * @return Returns the completionsCache. Note that it can be null.
      */
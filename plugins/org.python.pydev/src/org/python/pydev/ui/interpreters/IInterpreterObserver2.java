@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ui.interpreters;
+
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.python.pydev.core.ModulesKey;
+import org.python.pydev.plugin.nature.PythonNature;
+
+/**
+ * Optional extension of IInterpreterObserver (observers that implement it are also notified about modules changed
+ * in the filesystem).
+ */
+public interface IInterpreterObserver2 {
+
+    /**
+     * Notifies observers that some modules of the given nature changed in the filesystem (i.e.: in an external
+     * source folder) and were already updated in its modules manager.
+     * 
+     * @param nature the nature that had its modules changed
+     * @param added the modules added or changed
+     * @param removed the modules removed
+     */
+    void notifyProjectModulesChanged(PythonNature nature, List<ModulesKey> added, List<ModulesKey> removed,
+            IProgressMonitor monitor);
+
+}
@@ -198,6 +198,36 @@ public class PyFileListing {
         return getPyFilesBelow(file, filter, monitor, true, checkHasInit);
     }
 
+    /**
+     * Same as getPyFilesBelow(File, FileFilter, IProgressMonitor, boolean), but only the given entries (which must be
+     * directly below the root) are listed -- the root itself is not listed again.
+     */
+    public static PyFileListing getPyFilesBelow(File root, Collection<File> entries, FileFilter filter,
+            IProgressMonitor monitor, boolean checkHasInit) {
+        PyFileListing result = new PyFileListing();
+        Set<File> canonicalFolders = new HashSet<File>();
+        try {
+            canonicalFolders.add(root.getCanonicalFile());
+        } catch (IOException e) {
+            Log.log(e);
+        }
+        for (File entry : entries) {
+            if (monitor != null && monitor.isCanceled()) {
+                break;
+            }
+            if (filter != null && !filter.accept(entry)) {
+                continue;
+            }
+            if (entry.isFile()) {
+                result.addPyFileInfo(new PyFileInfo(entry, ""));
+
+            } else if (entry.isDirectory()) {
+                getPyFilesBelow(result, entry, filter, monitor, true, 1, checkHasInit, "", canonicalFolders);
+            }
+        }
+        return result;
+    }
+
     /**
      * @param includeDirs determines if we can include subdirectories
      * @return a file filter only for python files (and other dirs if specified)
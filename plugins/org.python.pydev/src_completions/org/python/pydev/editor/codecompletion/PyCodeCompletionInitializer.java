@@ -52,6 +52,12 @@ public class PyCodeCompletionInitializer extends AbstractPreferenceInitializer {
                 PyCodeCompletionPreferencesPage.DEFAULT_AUTOCOMPLETE_DELAY);
         node.putInt(PyCodeCompletionPreferencesPage.ARGUMENTS_DEEP_ANALYSIS_N_CHARS,
                 PyCodeCompletionPreferencesPage.DEFAULT_ARGUMENTS_DEEP_ANALYSIS_N_CHARS);
+        node.putInt(PyCodeCompletionPreferencesPage.MODULES_CACHE_MAX_MEMORY_IN_MB,
+                PyCodeCompletionPreferencesPage.DEFAULT_MODULES_CACHE_MAX_MEMORY_IN_MB);
+        node.putInt(PyCodeCompletionPreferencesPage.COMPLETION_SHELLS_POOL_SIZE,
+                PyCodeCompletionPreferencesPage.DEFAULT_COMPLETION_SHELLS_POOL_SIZE);
+        node.putInt(PyCodeCompletionPreferencesPage.COMPLETION_SHELL_REQUEST_TIMEOUT,
+                PyCodeCompletionPreferencesPage.DEFAULT_COMPLETION_SHELL_REQUEST_TIMEOUT);
 
         //Debug
         node.putBoolean(PyLoggingPreferencesPage.DEBUG_CODE_COMPLETION,
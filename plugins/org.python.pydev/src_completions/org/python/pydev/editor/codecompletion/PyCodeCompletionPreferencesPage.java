@@ -19,6 +19,7 @@ import org.eclipse.swt.widgets.Composite;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
 import org.python.pydev.core.docutils.WrapAndCaseUtils;
+import org.python.pydev.editor.codecompletion.revisited.ModulesManagerCache;
 import org.python.pydev.plugin.PydevPlugin;
 import org.python.pydev.utils.LabelFieldEditor;
 
@@ -67,6 +68,15 @@ public class PyCodeCompletionPreferencesPage extends FieldEditorPreferencePage i
     public static final String USE_CODE_COMPLETION_ON_DEBUG_CONSOLES = "USE_CODE_COMPLETION_ON_DEBUG_CONSOLES";
     public static final boolean DEFAULT_USE_CODE_COMPLETION_ON_DEBUG_CONSOLES = true;
 
+    public static final String MODULES_CACHE_MAX_MEMORY_IN_MB = "MODULES_CACHE_MAX_MEMORY_IN_MB";
+    public static final int DEFAULT_MODULES_CACHE_MAX_MEMORY_IN_MB = ModulesManagerCache.DEFAULT_MAX_MEMORY_IN_MB;
+
+    public static final String COMPLETION_SHELLS_POOL_SIZE = "COMPLETION_SHELLS_POOL_SIZE";
+    public static final int DEFAULT_COMPLETION_SHELLS_POOL_SIZE = 2;
+
+    public static final String COMPLETION_SHELL_REQUEST_TIMEOUT = "COMPLETION_SHELL_REQUEST_TIMEOUT";
+    public static final int DEFAULT_COMPLETION_SHELL_REQUEST_TIMEOUT = 60;
+
     /**
      */
     public PyCodeCompletionPreferencesPage() {
@@ -86,6 +96,11 @@ public class PyCodeCompletionPreferencesPage extends FieldEditorPreferencePage i
 
         addField(new IntegerFieldEditor(AUTOCOMPLETE_DELAY, "Autocompletion delay: ", p));
 
+        addField(new IntegerFieldEditor(COMPLETION_SHELLS_POOL_SIZE, "Maximum number of shells per interpreter.", p));
+
+        addField(new IntegerFieldEditor(COMPLETION_SHELL_REQUEST_TIMEOUT,
+                "Timeout for a request to the shell (secs, 0 for none).", p));
+
         String tooltip = WrapAndCaseUtils
                 .wrap("Determines the number of chars in the qualifier request "
                         + "for which constructs such as 'from xxx import yyy' should be "
@@ -97,6 +112,8 @@ public class PyCodeCompletionPreferencesPage extends FieldEditorPreferencePage i
         deepAnalysisFieldEditor.getLabelControl(p).setToolTipText(tooltip);
         deepAnalysisFieldEditor.getTextControl(p).setToolTipText(tooltip);
 
+        addField(new IntegerFieldEditor(MODULES_CACHE_MAX_MEMORY_IN_MB, "Memory used to cache modules (MB)", p));
+
         addField(new BooleanFieldEditor(USE_CODECOMPLETION, "Use code completion?", p));
 
         addField(new BooleanFieldEditor(USE_CODE_COMPLETION_ON_DEBUG_CONSOLES,
@@ -213,6 +230,28 @@ public class PyCodeCompletionPreferencesPage extends FieldEditorPreferencePage i
         return getPreferences().getBoolean(PyCodeCompletionPreferencesPage.APPLY_COMPLETION_ON_RPAREN);
     }
 
+    public static int getCompletionShellsPoolSize() {
+        if (PydevPlugin.getDefault() == null) { //testing
+            return DEFAULT_COMPLETION_SHELLS_POOL_SIZE;
+        }
+        return getPreferences().getInt(PyCodeCompletionPreferencesPage.COMPLETION_SHELLS_POOL_SIZE);
+    }
+
+    /**
+     * @return the time (in millis) a request to the shell may take without reporting progress before the shell is
+     * restarted (0 means no limit).
+     */
+    public static long getCompletionShellRequestTimeoutMillis() {
+        if (PydevPlugin.getDefault() == null) { //testing
+            return DEFAULT_COMPLETION_SHELL_REQUEST_TIMEOUT * 1000L;
+        }
+        return getPreferences().getInt(PyCodeCompletionPreferencesPage.COMPLETION_SHELL_REQUEST_TIMEOUT) * 1000L;
+    }
+
+    public static int getModulesCacheMaxMemoryInMB() {
+        return getPreferences().getInt(PyCodeCompletionPreferencesPage.MODULES_CACHE_MAX_MEMORY_IN_MB);
+    }
+
     private static Preferences getPreferences() {
         PydevPlugin plugin = PydevPlugin.getDefault();
         if (plugin == null) {
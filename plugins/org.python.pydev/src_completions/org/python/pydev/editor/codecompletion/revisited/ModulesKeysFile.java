@@ -0,0 +1,312 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.editor.codecompletion.revisited;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.python.pydev.core.ModulesKey;
+import org.python.pydev.core.ModulesKeyForZip;
+
+import com.aptana.shared_core.utils.PlatformUtils;
+
+/**
+ * Binary format used to save the keys of a modules manager.
+ *
+ * The format is:
+ *
+ * - MODULES_MANAGER_V3 header
+ * - a table with the strings which are repeated among keys: the folders of the files, the zip files and the
+ *   packages of the modules
+ * - the keys (in the same sorted order of the modules manager, so that the tree can be built straight from the
+ *   file). Each key is: kind, package id (in the table) + last part of the name and, depending on the kind, the
+ *   folder id + file name or the zip id + path in zip + is file.
+ *
+ * When reading, the file is memory-mapped (except on Windows, where a mapped file can't be replaced until the
+ * mapping is garbage-collected) and the keys are decoded only as the tree is built.
+ *
+ * @author Fabio
+ */
+final class ModulesKeysFile {
+
+    /*default*/static final String MODULES_MANAGER_V3 = "MODULES_MANAGER_V3\n";
+
+    private static final byte KIND_NO_FILE = 0;
+    private static final byte KIND_FILE = 1;
+    private static final byte KIND_ZIP = 2;
+
+    private static final int NO_ID = -1;
+
+    private ModulesKeysFile() {
+    }
+
+    /**
+     * @return whether the given file starts with the header of this format.
+     */
+    /*default*/static boolean isBinaryFormat(File file) throws IOException {
+        byte[] header = MODULES_MANAGER_V3.getBytes("UTF-8");
+        FileInputStream in = new FileInputStream(file);
+        try {
+            byte[] read = new byte[header.length];
+            int len = 0;
+            while (len < read.length) {
+                int curr = in.read(read, len, read.length - len);
+                if (curr == -1) {
+                    return false;
+                }
+                len += curr;
+            }
+            for (int i = 0; i < header.length; i++) {
+                if (header[i] != read[i]) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            in.close();
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- writing
+
+    private static final class StringTable {
+
+        private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+        private final List<String> strings = new ArrayList<String>();
+
+        private int getId(String s) {
+            if (s == null) {
+                return NO_ID;
+            }
+            Integer id = ids.get(s);
+            if (id == null) {
+                id = strings.size();
+                ids.put(s, id);
+                strings.add(s);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Writes the given keys (which must be sorted).
+     */
+    /*default*/static void write(Collection<ModulesKey> sortedKeys, File file) throws IOException {
+        StringTable table = new StringTable();
+
+        //The table has to be written before the keys, so, the keys are written to memory first.
+        ByteArrayOutputStream keysBytes = new ByteArrayOutputStream(sortedKeys.size() * 24);
+        DataOutputStream keysOut = new DataOutputStream(keysBytes);
+        for (ModulesKey key : sortedKeys) {
+            String name = key.name;
+            int lastDot = name.lastIndexOf('.');
+            int packageId = lastDot == -1 ? NO_ID : table.getId(name.substring(0, lastDot));
+
+            if (key.file == null) {
+                keysOut.writeByte(KIND_NO_FILE);
+                writeNamePart(keysOut, packageId, name, lastDot);
+
+            } else if (key instanceof ModulesKeyForZip) {
+                ModulesKeyForZip zipKey = (ModulesKeyForZip) key;
+                keysOut.writeByte(KIND_ZIP);
+                writeNamePart(keysOut, packageId, name, lastDot);
+                keysOut.writeInt(table.getId(key.file.getPath()));
+                writeString(keysOut, zipKey.zipModulePath);
+                keysOut.writeBoolean(zipKey.isFile);
+
+            } else {
+                keysOut.writeByte(KIND_FILE);
+                writeNamePart(keysOut, packageId, name, lastDot);
+                keysOut.writeInt(table.getId(key.file.getParent()));
+                writeString(keysOut, key.file.getName());
+            }
+        }
+        keysOut.flush();
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.write(MODULES_MANAGER_V3.getBytes("UTF-8"));
+            out.writeInt(table.strings.size());
+            for (String s : table.strings) {
+                writeString(out, s);
+            }
+            out.writeInt(sortedKeys.size());
+            keysBytes.writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeNamePart(DataOutputStream out, int packageId, String name, int lastDot)
+            throws IOException {
+        out.writeInt(packageId);
+        writeString(out, lastDot == -1 ? name : name.substring(lastDot + 1));
+    }
+
+    /**
+     * Strings are written as the length of the bytes followed by the bytes in utf-8 (-1 for null).
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // ------------------------------------------------------------------------------------------------- reading
+
+    /**
+     * Reads the keys (in sorted order) from a file written with write().
+     */
+    /*default*/static final class Reader implements Iterator<ModulesKey> {
+
+        private final ByteBuffer buffer;
+        private final String[] strings;
+
+        /**
+         * The File objects created for the entries in the string table (folders and zips), so that they're
+         * shared among keys.
+         */
+        private final File[] files;
+
+        private final int size;
+        private int read;
+        private byte[] bytes = new byte[256];
+
+        /*default*/Reader(File file) throws IOException {
+            FileInputStream in = new FileInputStream(file);
+            try {
+                FileChannel channel = in.getChannel();
+                long length = channel.size();
+                if (PlatformUtils.isWindowsPlatform()) {
+                    buffer = ByteBuffer.allocate((int) length);
+                    while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                        //keep on reading
+                    }
+                    buffer.flip();
+                } else {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                }
+            } finally {
+                in.close();
+            }
+
+            try {
+                byte[] header = MODULES_MANAGER_V3.getBytes("UTF-8");
+                buffer.position(header.length);
+                strings = new String[buffer.getInt()];
+                for (int i = 0; i < strings.length; i++) {
+                    strings[i] = readString();
+                }
+                files = new File[strings.length];
+                size = buffer.getInt();
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Unexpected end of file in: " + file);
+            } catch (RuntimeException e) {
+                throw new IOException("Error reading: " + file + " (" + e + ")");
+            }
+        }
+
+        /**
+         * @return the number of keys in the file.
+         */
+        /*default*/int size() {
+            return size;
+        }
+
+        public boolean hasNext() {
+            return read < size;
+        }
+
+        /**
+         * @throws IllegalStateException if the file is corrupted.
+         */
+        public ModulesKey next() {
+            if (read >= size) {
+                throw new NoSuchElementException();
+            }
+            read++;
+            try {
+                byte kind = buffer.get();
+                int packageId = buffer.getInt();
+                String lastPart = readString();
+                String name = packageId == NO_ID ? lastPart : strings[packageId] + '.' + lastPart;
+
+                switch (kind) {
+                    case KIND_NO_FILE:
+                        return new ModulesKey(name, null);
+
+                    case KIND_FILE:
+                        int folderId = buffer.getInt();
+                        String fileName = readString();
+                        return new ModulesKey(name, folderId == NO_ID ? new File(fileName) : new File(
+                                getFile(folderId), fileName));
+
+                    case KIND_ZIP:
+                        File zipFile = getFile(buffer.getInt());
+                        String zipModulePath = readString();
+                        boolean isFile = buffer.get() != 0;
+                        return new ModulesKeyForZip(name, zipFile, zipModulePath, isFile);
+
+                    default:
+                        throw new IllegalStateException("Unexpected kind: " + kind);
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IllegalStateException("Unexpected end of file.");
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw new IllegalStateException("Invalid string id.");
+            }
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private File getFile(int id) {
+            File f = files[id];
+            if (f == null) {
+                f = new File(strings[id]);
+                files[id] = f;
+            }
+            return f;
+        }
+
+        private String readString() {
+            int len = buffer.getInt();
+            if (len == -1) {
+                return null;
+            }
+            if (len > bytes.length) {
+                bytes = new byte[Math.max(len, bytes.length * 2)];
+            }
+            buffer.get(bytes, 0, len);
+            try {
+                return new String(bytes, 0, len, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new RuntimeException(e); //utf-8 is always available
+            }
+        }
+    }
+}
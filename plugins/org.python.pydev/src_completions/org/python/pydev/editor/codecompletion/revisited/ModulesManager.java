@@ -198,56 +198,15 @@ public abstract class ModulesManager implements IModulesManager {
 
         File modulesKeysFile = new File(workspaceMetadataFile, "modulesKeys");
         File pythonpatHelperFile = new File(workspaceMetadataFile, "pythonpath");
-        FastStringBuffer buf;
-        HashMap<String, Integer> commonTokens = new HashMap<String, Integer>();
-
+        List<ModulesKey> keys;
         synchronized (modulesKeysLock) {
-            buf = new FastStringBuffer(this.modulesKeys.size() * 50);
-            buf.append(MODULES_MANAGER_V2);
-
-            for (Iterator<ModulesKey> iter = this.modulesKeys.keySet().iterator(); iter.hasNext();) {
-                ModulesKey next = iter.next();
-                buf.append(next.name);
-                if (next.file != null) {
-                    buf.append("|");
-                    if (next instanceof ModulesKeyForZip) {
-                        ModulesKeyForZip modulesKeyForZip = (ModulesKeyForZip) next;
-                        if (modulesKeyForZip.zipModulePath != null) {
-                            String fileStr = next.file.toString();
-                            Integer t = commonTokens.get(fileStr);
-                            if (t == null) {
-                                t = commonTokens.size();
-                                commonTokens.put(fileStr, t);
-                            }
-                            buf.append(t);
-                            buf.append("|");
-
-                            buf.append(modulesKeyForZip.zipModulePath);
-                            buf.append("|");
-                            buf.append(modulesKeyForZip.isFile ? '1' : '0');
-                        }
-                    } else {
-                        buf.append(next.file.toString());
-                    }
-                }
-                buf.append('\n');
-            }
+            keys = new ArrayList<ModulesKey>(this.modulesKeys.keySet());
         }
-        if (commonTokens.size() > 0) {
-            FastStringBuffer header = new FastStringBuffer(buf.length() + (commonTokens.size() * 50));
-            header.append(MODULES_MANAGER_V2);
-            header.append("--COMMON--\n");
-            for (Map.Entry<String, Integer> entries : commonTokens.entrySet()) {
-                header.append(entries.getValue());
-                header.append('=');
-                header.append(entries.getKey());
-                header.append('\n');
-            }
-            header.append("--END-COMMON--\n");
-            header.append(buf);
-            buf = header;
+        try {
+            ModulesKeysFile.write(keys, modulesKeysFile);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
-        FileUtils.writeStrToFile(buf.toString(), modulesKeysFile);
 
         this.pythonPathHelper.saveToFile(pythonpatHelperFile);
     }
@@ -270,6 +229,45 @@ public abstract class ModulesManager implements IModulesManager {
             throw new IOException("Expecting: " + pythonpatHelperFile + " to exist (and be a file).");
         }
 
+        if (ModulesKeysFile.isBinaryFormat(modulesKeysFile)) {
+            ModulesKeysFile.Reader reader = new ModulesKeysFile.Reader(modulesKeysFile);
+            try {
+                buildFromSorted(modulesManager, reader.size(), reader);
+            } catch (IllegalStateException e) {
+                throw new IOException("Error loading modules manager from " + modulesKeysFile + ": "
+                        + e.getMessage());
+            }
+        } else {
+            //Older versions saved it as text (still loaded so that it's not rebuilt on an upgrade).
+            loadFromTextFile(modulesManager, modulesKeysFile);
+        }
+
+        if (modulesManager.pythonPathHelper == null) {
+            throw new IOException("Pythonpath helper not properly restored. " + modulesManager.getClass().getName()
+                    + " dir:" + workspaceMetadataFile);
+        }
+        modulesManager.pythonPathHelper.loadFromFile(pythonpatHelperFile);
+
+        if (modulesManager.pythonPathHelper.getPythonpath() == null) {
+            throw new IOException("Pythonpath helper pythonpath not properly restored. "
+                    + modulesManager.getClass().getName() + " dir:" + workspaceMetadataFile);
+        }
+
+        if (modulesManager.pythonPathHelper.getPythonpath().size() == 0) {
+            throw new IOException("Pythonpath helper pythonpath restored with no contents. "
+                    + modulesManager.getClass().getName() + " dir:" + workspaceMetadataFile);
+        }
+
+        if (modulesManager.modulesKeys.size() < 2) { //if we have few modules, that may indicate a problem... 
+            //if the project is really small, modulesManager will be fast, otherwise, it'll fix the problem.
+            //Note: changed to a really low value because we now make a check after it's restored anyways.
+            throw new IOException("Only " + modulesManager.modulesKeys.size() + " modules restored in I/O. "
+                    + modulesManager.getClass().getName() + " dir:" + workspaceMetadataFile);
+        }
+
+    }
+
+    private static void loadFromTextFile(ModulesManager modulesManager, File modulesKeysFile) {
         String fileContents = FileUtils.getFileContents(modulesKeysFile);
         if (!fileContents.startsWith(MODULES_MANAGER_V2)) {
             throw new RuntimeException("Could not load modules manager from " + modulesKeysFile + " (version changed).");
@@ -302,30 +300,6 @@ public abstract class ModulesManager implements IModulesManager {
         }
 
         handleFileContents(modulesManager, fileContents, intToString);
-
-        if (modulesManager.pythonPathHelper == null) {
-            throw new IOException("Pythonpath helper not properly restored. " + modulesManager.getClass().getName()
-                    + " dir:" + workspaceMetadataFile);
-        }
-        modulesManager.pythonPathHelper.loadFromFile(pythonpatHelperFile);
-
-        if (modulesManager.pythonPathHelper.getPythonpath() == null) {
-            throw new IOException("Pythonpath helper pythonpath not properly restored. "
-                    + modulesManager.getClass().getName() + " dir:" + workspaceMetadataFile);
-        }
-
-        if (modulesManager.pythonPathHelper.getPythonpath().size() == 0) {
-            throw new IOException("Pythonpath helper pythonpath restored with no contents. "
-                    + modulesManager.getClass().getName() + " dir:" + workspaceMetadataFile);
-        }
-
-        if (modulesManager.modulesKeys.size() < 2) { //if we have few modules, that may indicate a problem... 
-            //if the project is really small, modulesManager will be fast, otherwise, it'll fix the problem.
-            //Note: changed to a really low value because we now make a check after it's restored anyways.
-            throw new IOException("Only " + modulesManager.modulesKeys.size() + " modules restored in I/O. "
-                    + modulesManager.getClass().getName() + " dir:" + workspaceMetadataFile);
-        }
-
     }
 
     /**
@@ -401,21 +375,24 @@ public abstract class ModulesManager implements IModulesManager {
             handleLineParts(modulesManager, intToString, parts, partsFound, lst);
         }
 
+        buildFromSorted(modulesManager, lst.size(), lst.iterator());
+    }
+
+    /**
+     * As the keys are saved in sorted order, the tree can be built in sorted order too (which is MUCH faster than
+     * adding items one by one).
+     */
+    @SuppressWarnings("rawtypes")
+    private static void buildFromSorted(ModulesManager modulesManager, int size, final Iterator<ModulesKey> keys) {
         try {
-            final int size = lst.size();
-            //As we saved in sorted order, we can build in sorted order too (which is MUCH faster than adding items one
-            //by one).
             modulesManager.modulesKeys.buildFromSorted(size, new Iterator() {
 
-                private int i = 0;
-
                 public boolean hasNext() {
-                    return i < size;
+                    return keys.hasNext();
                 }
 
                 public Object next() {
-                    final ModulesKey next = lst.get(i);
-                    i++;
+                    final ModulesKey next = keys.next();
                     return new Map.Entry() {
 
                         public Object getKey() {
@@ -436,6 +413,8 @@ public abstract class ModulesManager implements IModulesManager {
                     throw new UnsupportedOperationException();
                 }
             }, null, null);
+        } catch (IllegalStateException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -986,6 +965,13 @@ public abstract class ModulesManager implements IModulesManager {
         ModulesManager.cache.clear();
     }
 
+    /**
+     * @return the cache shared by all the managers (i.e.: to check its statistics or change its memory budget).
+     */
+    public static ModulesManagerCache getModulesManagerCache() {
+        return ModulesManager.cache;
+    }
+
     /** 
      * @see org.python.pydev.core.IProjectModulesManager#isInPythonPath(org.eclipse.core.resources.IResource, org.eclipse.core.resources.IProject)
      */
@@ -6,72 +6,340 @@
  */
 package org.python.pydev.editor.codecompletion.revisited;
 
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.python.pydev.core.ModulesKey;
 import org.python.pydev.editor.codecompletion.revisited.modules.AbstractModule;
-
-import com.aptana.shared_core.cache.LRUCache;
-import com.aptana.shared_core.structure.Tuple;
+import org.python.pydev.editor.codecompletion.revisited.modules.EmptyModule;
+import org.python.pydev.editor.codecompletion.revisited.modules.SourceModule;
 
 /**
- * This is a 'global' cache implementation, that can have at most n objects in
- * the memory at any time.
+ * This is a 'global' cache implementation for the modules of all the managers, which is bounded by the (estimated)
+ * memory used by the modules in it.
+ *
+ * The entries are split in segments (chosen by the module name and the manager), each with its own lock and LRU
+ * order (so, threads requesting different modules don't contend for the same lock). The memory budget is shared by
+ * all the segments: when it's exceeded, the least recently used entry of each segment is removed in turns until the
+ * cache is back in its budget.
+ *
+ * @author Fabio
  */
-final class ModulesManagerCache {
+public final class ModulesManagerCache {
+
+    public static final int DEFAULT_MAX_MEMORY_IN_MB = 100;
+
     /**
-     * Defines the maximum amount of modules that can be in the memory at any time (for all the managers)
+     * Must be a power of 2.
      */
-    private static final int MAX_NUMBER_OF_MODULES = 400;
+    private static final int N_SEGMENTS = 16;
 
     /**
-     * The access to the cache is synchronized
+     * Rough estimate of the memory used by the AST of a source module for each byte in its file.
      */
-    private LRUCache<Tuple<ModulesKey, ModulesManager>, AbstractModule> internalCache;
-    private final Object lock = new Object();
+    private static final int ESTIMATED_BYTES_PER_CHAR = 20;
+
+    /**
+     * Estimate for an empty module (just the key and the module itself).
+     */
+    private static final int ESTIMATED_EMPTY_MODULE_SIZE = 256;
+
+    /**
+     * Estimate for modules whose size we can't compute (i.e.: compiled modules and source modules without a file).
+     */
+    private static final int ESTIMATED_DEFAULT_MODULE_SIZE = 64 * 1024;
+
+    private static final class Key {
+
+        private final ModulesKey key;
+        private final ModulesManager modulesManager;
+        private final int hash;
+
+        private Key(ModulesKey key, ModulesManager modulesManager) {
+            this.key = key;
+            this.modulesManager = modulesManager;
+            this.hash = key.hashCode() * 31 + System.identityHashCode(modulesManager);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return modulesManager == other.modulesManager && key.equals(other.key);
+        }
+    }
+
+    private static final class Entry {
+
+        private final AbstractModule module;
+        private final long cost;
+
+        private Entry(AbstractModule module, long cost) {
+            this.module = module;
+            this.cost = cost;
+        }
+    }
+
+    /**
+     * All the fields are synchronized on the segment itself.
+     */
+    private static final class Segment {
+
+        private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+        private long currentCost;
+    }
+
+    private final Segment[] segments;
+
+    private volatile long maxCost;
+
+    /**
+     * The cost of all the segments (only changed with the lock of the segment whose cost changed).
+     */
+    private final AtomicLong totalCost = new AtomicLong();
+
+    /**
+     * The segment where the next eviction starts (so that all the segments lose entries evenly).
+     */
+    private final AtomicInteger nextEvictionSegment = new AtomicInteger();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
 
     ModulesManagerCache() {
-        internalCache = new LRUCache<Tuple<ModulesKey, ModulesManager>, AbstractModule>(MAX_NUMBER_OF_MODULES);
+        this(DEFAULT_MAX_MEMORY_IN_MB);
+    }
+
+    ModulesManagerCache(int maxMemoryInMB) {
+        segments = new Segment[N_SEGMENTS];
+        for (int i = 0; i < N_SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+        setMaxMemoryInMB(maxMemoryInMB);
+    }
+
+    /**
+     * @param maxMemoryInMB the (estimated) memory the cache may use for all the managers.
+     */
+    public void setMaxMemoryInMB(int maxMemoryInMB) {
+        this.maxCost = ((long) Math.max(0, maxMemoryInMB)) * 1024 * 1024;
+        removeExceeding(null);
+    }
+
+    private Segment getSegment(Key key) {
+        int h = key.hash;
+        h ^= (h >>> 16);
+        return segments[h & (N_SEGMENTS - 1)];
+    }
+
+    /**
+     * @return the estimated memory used by the given module.
+     */
+    private static long estimateCost(AbstractModule module) {
+        if (module instanceof EmptyModule) {
+            return ESTIMATED_EMPTY_MODULE_SIZE;
+        }
+        if (module instanceof SourceModule) {
+            File file = ((SourceModule) module).getFile();
+            if (file != null) {
+                long len = file.length();
+                if (len > 0) {
+                    return len * ESTIMATED_BYTES_PER_CHAR;
+                }
+            }
+        }
+        return ESTIMATED_DEFAULT_MODULE_SIZE;
     }
 
     /**
-     * Overridden so that if we do not find the key, we have the chance to create it.
+     * If we do not find the key, we have the chance to create it (as an empty module) if it's available in the
+     * given manager.
      */
     public AbstractModule getObj(ModulesKey key, ModulesManager modulesManager) {
+        Key cacheKey = new Key(key, modulesManager);
+        Segment segment = getSegment(cacheKey);
+        synchronized (segment) {
+            Entry entry = segment.entries.get(cacheKey);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return entry.module;
+            }
+        }
+        misses.incrementAndGet();
+
         synchronized (modulesManager.modulesKeysLock) {
-            Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
-
-            synchronized (lock) {
-                AbstractModule obj = internalCache.getObj(keyTuple);
-                if (obj == null && modulesManager.modulesKeys.containsKey(key)) {
-                    key = modulesManager.modulesKeys.get(key); //get the 'real' key
-                    obj = AbstractModule.createEmptyModule(key);
-                    internalCache.add(keyTuple, obj);
+            ModulesKey realKey = modulesManager.modulesKeys.get(key);
+            if (realKey == null) {
+                return null;
+            }
+            AbstractModule obj;
+            Key realCacheKey;
+            synchronized (segment) {
+                //Check again: it could've been added while we didn't have the lock.
+                Entry entry = segment.entries.get(cacheKey);
+                if (entry != null) {
+                    return entry.module;
                 }
-                return obj;
+                obj = AbstractModule.createEmptyModule(realKey);
+
+                //Use the 'real' key (the key passed may be changed by the caller later on).
+                realCacheKey = new Key(realKey, modulesManager);
+                put(segment, realCacheKey, obj);
             }
+            removeExceeding(realCacheKey);
+            return obj;
         }
     }
 
+    /**
+     * Note: callers are expected to hold the modulesKeysLock of the manager.
+     */
     public void remove(ModulesKey key, ModulesManager modulesManager) {
-        synchronized (modulesManager.modulesKeysLock) {
-            Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
-            synchronized (lock) {
-                internalCache.remove(keyTuple);
-            }
+        Key cacheKey = new Key(key, modulesManager);
+        Segment segment = getSegment(cacheKey);
+        synchronized (segment) {
+            remove(segment, cacheKey);
         }
     }
 
+    /**
+     * Note: callers are expected to hold the modulesKeysLock of the manager.
+     */
     public void add(ModulesKey key, AbstractModule n, ModulesManager modulesManager) {
-        synchronized (modulesManager.modulesKeysLock) {
-            Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
-            synchronized (lock) {
-                internalCache.add(keyTuple, n);
-            }
+        Key cacheKey = new Key(key, modulesManager);
+        Segment segment = getSegment(cacheKey);
+        synchronized (segment) {
+            put(segment, cacheKey, n);
         }
+        removeExceeding(cacheKey);
     }
 
     public void clear() {
-        synchronized (lock) {
-            internalCache.clear();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.entries.clear();
+                totalCost.addAndGet(-segment.currentCost);
+                segment.currentCost = 0;
+            }
+        }
+    }
+
+    /**
+     * Must be called with the segment lock held (and removeExceeding must be called after the lock is released).
+     */
+    private void put(Segment segment, Key key, AbstractModule module) {
+        remove(segment, key);
+        long cost = estimateCost(module);
+        segment.entries.put(key, new Entry(module, cost));
+        segment.currentCost += cost;
+        totalCost.addAndGet(cost);
+    }
+
+    /**
+     * Must be called with the segment lock held.
+     */
+    private void remove(Segment segment, Key key) {
+        Entry removed = segment.entries.remove(key);
+        if (removed != null) {
+            segment.currentCost -= removed.cost;
+            totalCost.addAndGet(-removed.cost);
+        }
+    }
+
+    /**
+     * Removes the least recently used entry of each segment in turns until we're in the budget (the entry just
+     * added is always kept, as it's about to be used).
+     *
+     * Must be called without any segment lock held (the segments are locked one at a time).
+     */
+    private void removeExceeding(Key keep) {
+        while (totalCost.get() > maxCost) {
+            boolean removed = false;
+            int start = nextEvictionSegment.getAndIncrement();
+            for (int i = 0; i < N_SEGMENTS && totalCost.get() > maxCost; i++) {
+                Segment segment = segments[(start + i) & (N_SEGMENTS - 1)];
+                synchronized (segment) {
+                    if (removeEldest(segment, keep)) {
+                        removed = true;
+                    }
+                }
+            }
+            if (!removed) {
+                return; //only the entry to keep is left
+            }
+        }
+    }
+
+    /**
+     * Must be called with the segment lock held.
+     * 
+     * @return whether an entry was removed.
+     */
+    private boolean removeEldest(Segment segment, Key keep) {
+        Iterator<java.util.Map.Entry<Key, Entry>> it = segment.entries.entrySet().iterator();
+        while (it.hasNext()) {
+            java.util.Map.Entry<Key, Entry> next = it.next();
+            if (next.getKey() == keep) {
+                continue;
+            }
+            segment.currentCost -= next.getValue().cost;
+            totalCost.addAndGet(-next.getValue().cost);
+            it.remove();
+            evictions.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of modules in the cache.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
         }
+        return size;
+    }
+
+    /**
+     * @return the estimated memory (in bytes) used by the modules in the cache.
+     */
+    public long getEstimatedMemory() {
+        return totalCost.get();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of modules removed to keep the cache in its memory budget.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ModulesManagerCache[size=" + size() + ", memory=" + getEstimatedMemory() + ", hits=" + getHits()
+                + ", misses=" + getMisses() + ", evictions=" + getEvictions() + "]";
     }
-}
\ No newline at end of file
+}
@@ -8,15 +8,19 @@ package org.python.pydev.editor.codecompletion.revisited;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.text.IDocument;
 import org.python.pydev.core.DeltaSaver;
+import org.python.pydev.core.FullRepIterable;
 import org.python.pydev.core.IDeltaProcessor;
 import org.python.pydev.core.IPythonNature;
 import org.python.pydev.core.ModulesKey;
@@ -25,10 +29,13 @@ import org.python.pydev.core.callbacks.ICallback0;
 import org.python.pydev.core.docutils.StringUtils;
 import org.python.pydev.editor.codecompletion.revisited.javaintegration.ModulesKeyForJava;
 import org.python.pydev.editor.codecompletion.revisited.modules.AbstractModule;
+import org.python.pydev.utils.PyFileListing;
+import org.python.pydev.utils.PyFileListing.PyFileInfo;
 
 import com.aptana.shared_core.callbacks.ICallback;
 import com.aptana.shared_core.io.FileUtils;
 import com.aptana.shared_core.string.FastStringBuffer;
+import com.aptana.shared_core.structure.Tuple;
 
 public abstract class ModulesManagerWithBuild extends ModulesManager implements IDeltaProcessor<ModulesKey> {
 
@@ -193,6 +200,129 @@ public abstract class ModulesManagerWithBuild extends ModulesManager implements
         }
     }
 
+    // ------------------------ incremental updates (from filesystem changes)
+
+    /**
+     * Computes the modules which should be added and removed because the given entries directly below a folder in
+     * the pythonpath changed (only those entries are listed, not the whole pythonpath).
+     * 
+     * Note that the keys to be added also contain the modules which were just changed (so that the module is
+     * recreated and the additional info may be updated).
+     * 
+     * @param root a folder in the pythonpath.
+     * @param changed the files/folders directly below the root which were added, changed or removed (if the root
+     * itself is passed, all the modules below it are checked).
+     * @return a tuple with the keys to be added and the keys to be removed.
+     */
+    public Tuple<List<ModulesKey>, List<ModulesKey>> diffModulesBelow(File root, Set<File> changed,
+            IProgressMonitor monitor) {
+        root = new File(FileUtils.getFileAbsolutePath(root));
+        String rootPath = root.getPath();
+
+        boolean checkAll = false;
+        Set<File> entries = new HashSet<File>();
+        List<String> entriesPaths = new ArrayList<String>();
+        for (File f : changed) {
+            f = new File(FileUtils.getFileAbsolutePath(f));
+            if (f.equals(root)) {
+                checkAll = true;
+            }
+            entries.add(f);
+            entriesPaths.add(f.getPath());
+        }
+
+        //Folders in the pythonpath which are inside this root (i.e.: site-packages inside Lib) have their own modules.
+        List<String> nestedRoots = new ArrayList<String>();
+        for (String path : pythonPathHelper.getPythonpath()) {
+            path = FileUtils.getFileAbsolutePath(path);
+            if (!path.equals(rootPath) && isSameOrBelow(path, rootPath)) {
+                nestedRoots.add(path);
+            }
+        }
+
+        //The modules we currently have for the changed entries.
+        Map<ModulesKey, ModulesKey> current = new HashMap<ModulesKey, ModulesKey>();
+        synchronized (modulesKeysLock) {
+            for (ModulesKey key : modulesKeys.keySet()) {
+                if (key.file == null || key.getClass() != ModulesKey.class) {
+                    continue; //zips, java, builtins are not changed here.
+                }
+                String path = FileUtils.getFileAbsolutePath(key.file);
+                if (isSameOrBelow(path, rootPath) && !isSameOrBelowAny(path, nestedRoots)
+                        && (checkAll || isSameOrBelowAny(path, entriesPaths))) {
+                    current.put(key, key);
+                }
+            }
+        }
+
+        List<ModulesKey> added = new ArrayList<ModulesKey>();
+        Map<ModulesKey, ModulesKey> found = new HashMap<ModulesKey, ModulesKey>();
+        PyFileListing below = PythonPathHelper.getModulesBelow(root, checkAll ? null : entries, monitor);
+        if (below != null) {
+            FastStringBuffer tempBuf = new FastStringBuffer();
+            for (PyFileInfo pyFileInfo : below.getFoundPyFileInfos()) {
+                String modName = pyFileInfo.getModuleName(tempBuf);
+                if (!PythonPathHelper.isValidModuleLastPart(FullRepIterable.getLastPart(modName))) {
+                    continue;
+                }
+                File f = pyFileInfo.getFile();
+                ModulesKey key = new ModulesKey(modName, f);
+                ModulesKey existing = found.get(key);
+                if (existing == null) {
+                    synchronized (modulesKeysLock) {
+                        existing = current.containsKey(key) ? null : modulesKeys.get(key);
+                    }
+                }
+                //Same conflict resolution used in buildKeysFromModulesFound: source files have priority.
+                if (existing == null || PythonPathHelper.isValidSourceFile(f.getName())) {
+                    found.put(key, key);
+                }
+            }
+            added.addAll(found.values());
+        }
+
+        List<ModulesKey> removed = new ArrayList<ModulesKey>();
+        for (ModulesKey key : current.keySet()) {
+            if (!found.containsKey(key)) {
+                removed.add(key);
+            }
+        }
+        return new Tuple<List<ModulesKey>, List<ModulesKey>>(added, removed);
+    }
+
+    private static boolean isSameOrBelow(String path, String folder) {
+        return path.startsWith(folder)
+                && (path.length() == folder.length() || path.charAt(folder.length()) == File.separatorChar);
+    }
+
+    private static boolean isSameOrBelowAny(String path, List<String> folders) {
+        for (String folder : folders) {
+            if (isSameOrBelow(path, folder)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds and removes the given modules (removals are applied first). No deltas are generated: the state is
+     * persisted once at the end (so, installing a package with hundreds of modules is a single update).
+     */
+    public void applyModulesDelta(Collection<ModulesKey> added, Collection<ModulesKey> removed) {
+        if (added.size() == 0 && removed.size() == 0) {
+            return;
+        }
+        synchronized (modulesKeysLock) {
+            for (ModulesKey key : removed) {
+                super.doRemoveSingleModule(key);
+            }
+            for (ModulesKey key : added) {
+                super.doAddSingleModule(key, AbstractModule.createEmptyModule(key));
+            }
+        }
+        endProcessing();
+    }
+
     // ------------------------ building
 
     public void rebuildModule(File f, ICallback0<IDocument> doc, final IProject project, IProgressMonitor monitor,
@@ -22,8 +22,9 @@ import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -34,6 +35,7 @@ import org.eclipse.ui.ide.IDE;
 import org.python.pydev.core.FullRepIterable;
 import org.python.pydev.core.ModulesKey;
 import org.python.pydev.core.ModulesKeyForZip;
+import org.python.pydev.core.concurrency.ParallelRunner;
 import org.python.pydev.core.docutils.StringUtils;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.PyEdit;
@@ -43,6 +45,7 @@ import org.python.pydev.ui.filetypes.FileTypesPreferencesPage;
 import org.python.pydev.utils.PyFileListing;
 import org.python.pydev.utils.PyFileListing.PyFileInfo;
 
+import com.aptana.shared_core.callbacks.ICallback;
 import com.aptana.shared_core.io.FileUtils;
 import com.aptana.shared_core.string.FastStringBuffer;
 
@@ -83,6 +86,17 @@ public final class PythonPathHelper implements IPythonPathHelper {
      * May return null if the passed file does not exist or is not a directory (e.g.: zip file)
      */
     public static PyFileListing getModulesBelow(File root, IProgressMonitor monitor) {
+        return getModulesBelow(root, null, monitor);
+    }
+
+    /**
+     * Same as getModulesBelow(File, IProgressMonitor), but only the given entries directly below the root are
+     * listed (used to update only the part of the pythonpath which changed).
+     * 
+     * @param onlyEntries the files/folders directly below the root to be listed (if null, all are listed).
+     */
+    public static PyFileListing getModulesBelow(final File root, final Set<File> onlyEntries,
+            IProgressMonitor monitor) {
         if (!root.exists()) {
             return null;
         }
@@ -101,6 +115,10 @@ public final class PythonPathHelper implements IPythonPathHelper {
                 }
 
             };
+            if (onlyEntries != null) {
+                //don't list the root again (only the entries passed)
+                return PyFileListing.getPyFilesBelow(root, onlyEntries, filter, monitor, true);
+            }
             return PyFileListing.getPyFilesBelow(root, filter, monitor, true);
 
         }
@@ -488,47 +506,150 @@ public final class PythonPathHelper implements IPythonPathHelper {
         return pythonpath;
     }
 
+    /**
+     * The number of threads used to list the pythonpath (listing folders and zips is mostly IO-bound -- especially
+     * in network drives -- so, it's not limited to the number of processors).
+     */
+    public static int DISCOVERY_THREADS = Math.max(4, ParallelRunner.getDefaultParallelism());
+
+    /**
+     * A part of the pythonpath to be listed: a zip file or some entries directly below a folder in the pythonpath.
+     */
+    private static final class DiscoveryTask {
+
+        private final File root;
+
+        /**
+         * The entries below the root to be listed (null if the root is a zip file).
+         */
+        private final Set<File> entries;
+
+        private DiscoveryTask(File root, Set<File> entries) {
+            this.root = root;
+            this.entries = entries;
+        }
+
+        private ModulesFoundStructure run(IProgressMonitor monitor) {
+            ModulesFoundStructure ret = new ModulesFoundStructure();
+            if (entries == null) {
+                //not a folder, but maybe a zip file with python modules or java classes...
+                ModulesFoundStructure.ZipContents zipContents = getFromZip(root, monitor);
+                if (zipContents != null) {
+                    ret.zipContents.add(zipContents);
+                }
+                return ret;
+            }
+
+            PyFileListing below = getModulesBelow(root, entries, monitor);
+            if (below != null) {
+                FastStringBuffer tempBuf = new FastStringBuffer();
+                for (PyFileInfo pyFileInfo : below.getFoundPyFileInfos()) {
+                    String modName = pyFileInfo.getModuleName(tempBuf);
+                    if (isValidModuleLastPart(FullRepIterable.getLastPart(modName))) {
+                        ret.regularModules.put(pyFileInfo.getFile(), modName);
+                    }
+                }
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * The monitor passed to the threads listing the pythonpath: only the cancel state is shared (the actual monitor
+     * is only used in the thread which requested the listing).
+     */
+    private static final class DiscoveryMonitor extends NullProgressMonitor {
+
+        private final IProgressMonitor monitor;
+
+        private DiscoveryMonitor(IProgressMonitor monitor) {
+            this.monitor = monitor;
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return monitor.isCanceled();
+        }
+    }
+
+    /**
+     * @return the tasks to list a folder of the pythonpath (one for the files directly below it and one for each
+     * folder, so that big folders such as site-packages are also listed in parallel) or a task to list a zip file.
+     */
+    private static List<DiscoveryTask> createDiscoveryTasks(File root) {
+        List<DiscoveryTask> tasks = new ArrayList<DiscoveryTask>();
+        if (!root.isDirectory()) {
+            tasks.add(new DiscoveryTask(root, null));
+            return tasks;
+        }
+        File[] files = root.listFiles();
+        if (files == null) {
+            return tasks;
+        }
+        Set<File> rootFiles = new HashSet<File>();
+        for (File f : files) {
+            if (f.isDirectory()) {
+                //Folders without an __init__ are skipped by the listing itself.
+                tasks.add(new DiscoveryTask(root, Collections.singleton(f)));
+            } else {
+                rootFiles.add(f);
+            }
+        }
+        if (rootFiles.size() > 0) {
+            tasks.add(new DiscoveryTask(root, rootFiles));
+        }
+        return tasks;
+    }
+
     /**
      * This method should traverse the pythonpath passed and return a structure
      * with the info that could be collected about the files that are related to
      * python modules.
+     * 
+     * The folders (and each folder directly below them) and zip files are listed in parallel (using up to
+     * DISCOVERY_THREADS threads) and the results are merged in the pythonpath order.
      */
     public ModulesFoundStructure getModulesFoundStructure(IProgressMonitor monitor) {
         if (monitor == null) {
             monitor = new NullProgressMonitor();
         }
-        List<String> pythonpathList = getPythonpath();
+        List<File> roots = new ArrayList<File>();
+        for (String element : getPythonpath()) {
+            roots.add(new File(element));
+        }
 
-        ModulesFoundStructure ret = new ModulesFoundStructure();
+        //First get what has to be listed in each root (only its first level is listed here)...
+        List<List<DiscoveryTask>> tasksPerRoot = ParallelRunner.run(roots,
+                new ICallback<List<DiscoveryTask>, File>() {
 
-        FastStringBuffer tempBuf = new FastStringBuffer();
-        for (Iterator<String> iter = pythonpathList.iterator(); iter.hasNext();) {
-            String element = iter.next();
+                    public List<DiscoveryTask> call(File root) {
+                        return createDiscoveryTasks(root);
+                    }
+                }, DISCOVERY_THREADS, new NullProgressMonitor(), "PyDev: Listing pythonpath");
 
-            if (monitor.isCanceled()) {
-                break;
+        List<DiscoveryTask> tasks = new ArrayList<DiscoveryTask>();
+        for (List<DiscoveryTask> rootTasks : tasksPerRoot) {
+            if (rootTasks != null) {
+                tasks.addAll(rootTasks);
             }
+        }
 
-            //the slow part is getting the files... not much we can do (I think).
-            File root = new File(element);
-            PyFileListing below = getModulesBelow(root, monitor);
-            if (below != null) {
+        //and then actually list it.
+        monitor.setTaskName("Listing pythonpath...");
+        final IProgressMonitor discoveryMonitor = new DiscoveryMonitor(monitor);
+        List<ModulesFoundStructure> found = ParallelRunner.run(tasks,
+                new ICallback<ModulesFoundStructure, DiscoveryTask>() {
 
-                Iterator<PyFileInfo> e1 = below.getFoundPyFileInfos().iterator();
-                while (e1.hasNext()) {
-                    PyFileInfo pyFileInfo = e1.next();
-                    File file = pyFileInfo.getFile();
-                    String modName = pyFileInfo.getModuleName(tempBuf);
-                    if (isValidModuleLastPart(FullRepIterable.getLastPart(modName))) {
-                        ret.regularModules.put(file, modName);
+                    public ModulesFoundStructure call(DiscoveryTask task) {
+                        return task.run(discoveryMonitor);
                     }
-                }
+                }, DISCOVERY_THREADS, monitor, "PyDev: Listing pythonpath");
 
-            } else { //ok, it was null, so, maybe this is not a folder, but zip file with java classes...
-                ModulesFoundStructure.ZipContents zipContents = getFromZip(root, monitor);
-                if (zipContents != null) {
-                    ret.zipContents.add(zipContents);
-                }
+        ModulesFoundStructure ret = new ModulesFoundStructure();
+        for (ModulesFoundStructure part : found) {
+            if (part != null) { //null if it was cancelled
+                ret.regularModules.putAll(part.regularModules);
+                ret.zipContents.addAll(part.zipContents);
             }
         }
         return ret;
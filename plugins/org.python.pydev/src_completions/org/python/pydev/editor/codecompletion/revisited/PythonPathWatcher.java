@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.editor.codecompletion.revisited;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.core.path_watch.IFilesystemChangesListener;
+import org.python.pydev.core.path_watch.PathWatch;
+
+import com.aptana.shared_core.io.FileUtils;
+
+/**
+ * Tracks the folders of a pythonpath (through PathWatch) and reports which entries of each folder changed.
+ *
+ * PathWatch already stacks the events of each folder, but installing a package may change many folders (and
+ * generate events for some time), so, the changes are accumulated here and only reported after no new changes
+ * arrive for DELAY_BEFORE_NOTIFY millis.
+ *
+ * Note that only the folders in the pythonpath are tracked (not their sub-folders): installing, upgrading or
+ * removing a package changes its top-level folder, so, that's enough to keep the modules in sync.
+ *
+ * @author Fabio
+ */
+public final class PythonPathWatcher implements IFilesystemChangesListener {
+
+    public static interface IPythonPathChangesListener {
+
+        /**
+         * @param changes maps each folder in the pythonpath to the entries directly below it which were added,
+         * changed or removed (the folder itself is in the set if all its contents must be checked).
+         */
+        void pythonpathChanged(Map<File, Set<File>> changes, IProgressMonitor monitor);
+    }
+
+    public static int DELAY_BEFORE_NOTIFY = 1000;
+
+    private final IPythonPathChangesListener listener;
+
+    private final List<File> roots = new ArrayList<File>();
+
+    //All the fields below are synchronized on lock.
+    private final Object lock = new Object();
+    private Map<File, Set<File>> pending = new HashMap<File, Set<File>>();
+    private boolean disposed;
+
+    private final Job notifyJob = new Job("Pythonpath changes") {
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            Map<File, Set<File>> changes;
+            synchronized (lock) {
+                if (disposed || pending.size() == 0) {
+                    return Status.OK_STATUS;
+                }
+                changes = pending;
+                pending = new HashMap<File, Set<File>>();
+            }
+            try {
+                listener.pythonpathChanged(changes, monitor);
+            } catch (Throwable e) {
+                Log.log(e);
+            }
+            return Status.OK_STATUS;
+        }
+    };
+
+    /**
+     * Starts tracking the folders in the passed pythonpath (zip/egg/jar files are not tracked).
+     */
+    public PythonPathWatcher(List<String> pythonpath, IPythonPathChangesListener listener) {
+        this.listener = listener;
+        this.notifyJob.setPriority(Job.BUILD);
+        this.notifyJob.setSystem(true);
+
+        PathWatch pathWatch = PathWatch.get();
+        for (String path : pythonpath) {
+            File root = new File(FileUtils.getFileAbsolutePath(path));
+            if (root.isFile()) {
+                continue;
+            }
+            roots.add(root);
+            pathWatch.track(root, this);
+        }
+    }
+
+    /**
+     * Stops tracking the pythonpath (pending changes are discarded).
+     */
+    public void dispose() {
+        synchronized (lock) {
+            if (disposed) {
+                return;
+            }
+            disposed = true;
+            pending.clear();
+        }
+        PathWatch pathWatch = PathWatch.get();
+        for (File root : roots) {
+            pathWatch.stopTrack(root, this);
+        }
+        notifyJob.cancel();
+    }
+
+    public void added(File file) {
+        onChange(file);
+    }
+
+    public void removed(File file) {
+        onChange(file);
+    }
+
+    private void onChange(File file) {
+        file = new File(FileUtils.getFileAbsolutePath(file));
+        synchronized (lock) {
+            if (disposed) {
+                return;
+            }
+            boolean found = false;
+            for (File root : roots) {
+                //Either the root itself (removed/added/overflow) or an entry directly below it.
+                if (root.equals(file) || root.equals(file.getParentFile())) {
+                    Set<File> entries = pending.get(root);
+                    if (entries == null) {
+                        entries = new HashSet<File>();
+                        pending.put(root, entries);
+                    }
+                    entries.add(file);
+                    found = true;
+                }
+            }
+            if (!found) {
+                return;
+            }
+        }
+        //Rescheduling postpones the notification while changes keep arriving (if it's already running, the changes
+        //just added are reported in a new run).
+        if (notifyJob.getState() != Job.RUNNING) {
+            notifyJob.cancel();
+        }
+        notifyJob.schedule(DELAY_BEFORE_NOTIFY);
+    }
+}
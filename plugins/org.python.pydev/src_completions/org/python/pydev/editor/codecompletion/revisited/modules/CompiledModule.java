@@ -28,6 +28,7 @@ import org.python.pydev.core.FullRepIterable;
 import org.python.pydev.core.ICodeCompletionASTManager;
 import org.python.pydev.core.ICompletionCache;
 import org.python.pydev.core.ICompletionState;
+import org.python.pydev.core.IInterpreterInfo;
 import org.python.pydev.core.IModule;
 import org.python.pydev.core.IModulesManager;
 import org.python.pydev.core.IPythonNature;
@@ -172,83 +173,98 @@ public class CompiledModule extends AbstractModule {
 
     }
 
+    /**
+     * @param token the module (or module.activationToken) whose completions we want.
+     * @return the completions from the persistent cache (the shell is only contacted if they're not there).
+     */
+    private static Tuple<String, List<String[]>> getImportCompletions(String token, IPythonNature nature,
+            IModulesManager manager) throws Exception {
+        IInterpreterInfo interpreter = nature.getProjectInterpreter();
+        List<String> pythonpath = manager.getCompletePythonPath(interpreter,
+                nature.getRelatedInterpreterManager()); //default
+        CompiledModulesCache persistentCache = CompiledModulesCache.get(interpreter);
+        Tuple<String, List<String[]>> completions = persistentCache.getImportCompletions(token, pythonpath);
+        if (completions == null) {
+            AbstractShell shell = AbstractShell.getServerShell(nature, AbstractShell.COMPLETION_SHELL);
+            completions = shell.getImportCompletions(token, pythonpath);
+            persistentCache.putImportCompletions(token, pythonpath, completions);
+        }
+        return completions;
+    }
+
     private void setTokens(String name, IModulesManager manager) throws IOException, Exception, CoreException {
         if (TRACE_COMPILED_MODULES) {
             Log.log(IStatus.INFO, ("Compiled modules: getting info for:" + name), null);
         }
         final IPythonNature nature = manager.getNature();
-        AbstractShell shell = AbstractShell.getServerShell(nature, AbstractShell.COMPLETION_SHELL);
-        synchronized (shell) {
-            Tuple<String, List<String[]>> completions = shell.getImportCompletions(name, manager.getCompletePythonPath(
-                    nature.getProjectInterpreter(), nature.getRelatedInterpreterManager())); //default
+        Tuple<String, List<String[]>> completions = getImportCompletions(name, nature, manager);
 
-            if (TRACE_COMPILED_MODULES) {
-                Log.log(IStatus.INFO, ("Compiled modules: " + name + " file: " + completions.o1 + " found: "
-                        + completions.o2.size() + " completions."), null);
+        if (TRACE_COMPILED_MODULES) {
+            Log.log(IStatus.INFO, ("Compiled modules: " + name + " file: " + completions.o1 + " found: "
+                    + completions.o2.size() + " completions."), null);
+        }
+        String fPath = completions.o1;
+        if (fPath != null) {
+            if (!fPath.equals("None")) {
+                this.file = new File(fPath);
             }
-            String fPath = completions.o1;
-            if (fPath != null) {
-                if (!fPath.equals("None")) {
-                    this.file = new File(fPath);
-                }
 
-                String f = fPath;
-                if (f.toLowerCase().endsWith(".pyc")) {
-                    f = f.substring(0, f.length() - 1); //remove the c from pyc
-                    File f2 = new File(f);
-                    if (f2.exists()) {
-                        this.file = f2;
-                    }
+            String f = fPath;
+            if (f.toLowerCase().endsWith(".pyc")) {
+                f = f.substring(0, f.length() - 1); //remove the c from pyc
+                File f2 = new File(f);
+                if (f2.exists()) {
+                    this.file = f2;
                 }
             }
-            ArrayList<IToken> array = new ArrayList<IToken>();
-
-            for (String[] element : completions.o2) {
-                //let's make this less error-prone.
-                try {
-                    String o1 = element[0]; //this one is really, really needed
-                    String o2 = "";
-                    String o3 = "";
+        }
+        ArrayList<IToken> array = new ArrayList<IToken>();
 
-                    if (element.length > 0) {
-                        o2 = element[1];
-                    }
+        for (String[] element : completions.o2) {
+            //let's make this less error-prone.
+            try {
+                String o1 = element[0]; //this one is really, really needed
+                String o2 = "";
+                String o3 = "";
 
-                    if (element.length > 0) {
-                        o3 = element[2];
-                    }
+                if (element.length > 0) {
+                    o2 = element[1];
+                }
 
-                    IToken t;
-                    if (element.length > 0) {
-                        t = new CompiledToken(o1, o2, o3, name, Integer.parseInt(element[3]));
-                    } else {
-                        t = new CompiledToken(o1, o2, o3, name, IToken.TYPE_BUILTIN);
-                    }
+                if (element.length > 0) {
+                    o3 = element[2];
+                }
 
-                    array.add(t);
-                } catch (Exception e) {
-                    String received = "";
-                    for (int i = 0; i < element.length; i++) {
-                        received += element[i];
-                        received += "  ";
-                    }
+                IToken t;
+                if (element.length > 0) {
+                    t = new CompiledToken(o1, o2, o3, name, Integer.parseInt(element[3]));
+                } else {
+                    t = new CompiledToken(o1, o2, o3, name, IToken.TYPE_BUILTIN);
+                }
 
-                    Log.log(IStatus.ERROR, ("Error getting completions for compiled module " + name + " received = '"
-                            + received + "'"), e);
+                array.add(t);
+            } catch (Exception e) {
+                String received = "";
+                for (int i = 0; i < element.length; i++) {
+                    received += element[i];
+                    received += "  ";
                 }
-            }
 
-            //as we will use it for code completion on sources that map to modules, the __file__ should also
-            //be added...
-            if (array.size() > 0 && (name.equals("__builtin__") || name.equals("builtins"))) {
-                array.add(new CompiledToken("__file__", "", "", name, IToken.TYPE_BUILTIN));
-                array.add(new CompiledToken("__name__", "", "", name, IToken.TYPE_BUILTIN));
-                array.add(new CompiledToken("__builtins__", "", "", name, IToken.TYPE_BUILTIN));
-                array.add(new CompiledToken("__dict__", "", "", name, IToken.TYPE_BUILTIN));
+                Log.log(IStatus.ERROR, ("Error getting completions for compiled module " + name + " received = '"
+                        + received + "'"), e);
             }
+        }
 
-            addTokens(array);
+        //as we will use it for code completion on sources that map to modules, the __file__ should also
+        //be added...
+        if (array.size() > 0 && (name.equals("__builtin__") || name.equals("builtins"))) {
+            array.add(new CompiledToken("__file__", "", "", name, IToken.TYPE_BUILTIN));
+            array.add(new CompiledToken("__name__", "", "", name, IToken.TYPE_BUILTIN));
+            array.add(new CompiledToken("__builtins__", "", "", name, IToken.TYPE_BUILTIN));
+            array.add(new CompiledToken("__dict__", "", "", name, IToken.TYPE_BUILTIN));
         }
+
+        addTokens(array);
     }
 
     /**
@@ -323,45 +339,35 @@ public class CompiledModule extends AbstractModule {
             try {
                 final IPythonNature nature = manager.getNature();
 
-                final AbstractShell shell;
-                try {
-                    shell = AbstractShell.getServerShell(nature, AbstractShell.COMPLETION_SHELL);
-                } catch (Exception e) {
-                    throw new RuntimeException("Unable to create shell for CompiledModule: " + this.name, e);
-                }
-                synchronized (shell) {
-                    String act = name + '.' + activationToken;
-                    String tokenToCompletion = act;
-                    if (isPythonBuiltin) {
-                        String replacement = BUILTIN_REPLACEMENTS.get(activationToken);
-                        if (replacement != null) {
-                            tokenToCompletion = name + '.' + replacement;
-                        }
+                String act = name + '.' + activationToken;
+                String tokenToCompletion = act;
+                if (isPythonBuiltin) {
+                    String replacement = BUILTIN_REPLACEMENTS.get(activationToken);
+                    if (replacement != null) {
+                        tokenToCompletion = name + '.' + replacement;
                     }
+                }
 
-                    List<String[]> completions = shell.getImportCompletions(
-                            tokenToCompletion,
-                            manager.getModulesManager().getCompletePythonPath(nature.getProjectInterpreter(),
-                                    nature.getRelatedInterpreterManager())).o2;
-
-                    ArrayList<IToken> array = new ArrayList<IToken>();
+                List<String[]> completions = getImportCompletions(tokenToCompletion, nature,
+                        manager.getModulesManager()).o2;
 
-                    for (Iterator<String[]> iter = completions.iterator(); iter.hasNext();) {
-                        String[] element = iter.next();
-                        if (element.length >= 4) {//it might be a server error
-                            IToken t = new CompiledToken(element[0], element[1], element[2], act,
-                                    Integer.parseInt(element[3]));
-                            array.add(t);
-                        }
+                ArrayList<IToken> array = new ArrayList<IToken>();
 
+                for (Iterator<String[]> iter = completions.iterator(); iter.hasNext();) {
+                    String[] element = iter.next();
+                    if (element.length >= 4) {//it might be a server error
+                        IToken t = new CompiledToken(element[0], element[1], element[2], act,
+                                Integer.parseInt(element[3]));
+                        array.add(t);
                     }
-                    toks = (CompiledToken[]) array.toArray(new CompiledToken[0]);
-                    HashMap<String, IToken> map = new HashMap<String, IToken>();
-                    for (IToken token : toks) {
-                        map.put(token.getRepresentation(), token);
-                    }
-                    cache.put(activationToken, map);
+
                 }
+                toks = (CompiledToken[]) array.toArray(new CompiledToken[0]);
+                HashMap<String, IToken> map = new HashMap<String, IToken>();
+                for (IToken token : toks) {
+                    map.put(token.getRepresentation(), token);
+                }
+                cache.put(activationToken, map);
             } catch (Exception e) {
                 Log.log("Error while getting info for module:" + this.name + ". Project: "
                         + manager.getNature().getProject(), e);
@@ -419,75 +425,82 @@ public class CompiledModule extends AbstractModule {
             return found;
         }
 
-        AbstractShell shell = AbstractShell.getServerShell(nature, AbstractShell.COMPLETION_SHELL);
-        synchronized (shell) {
-            Tuple<String[], int[]> def = shell.getLineCol(this.name, token, nature.getAstManager().getModulesManager()
-                    .getCompletePythonPath(nature.getProjectInterpreter(), nature.getRelatedInterpreterManager())); //default
-            if (def == null) {
-                if (TRACE_COMPILED_MODULES) {
-                    System.out.println("CompiledModule.findDefinition:" + token + " = empty");
-                }
-                this.definitionsFoundCache.add(token, EMPTY_DEFINITION);
-                return EMPTY_DEFINITION;
-            }
-            String fPath = def.o1[0];
-            if (fPath.equals("None")) {
-                if (TRACE_COMPILED_MODULES) {
-                    System.out.println("CompiledModule.findDefinition:" + token + " = None");
-                }
-                Definition[] definition = new Definition[] { new Definition(def.o2[0], def.o2[1], token, null, null,
-                        this) };
-                this.definitionsFoundCache.add(token, definition);
-                return definition;
+        IInterpreterInfo interpreter = nature.getProjectInterpreter();
+        List<String> pythonpath = nature.getAstManager().getModulesManager()
+                .getCompletePythonPath(interpreter, nature.getRelatedInterpreterManager()); //default
+        CompiledModulesCache persistentCache = CompiledModulesCache.get(interpreter);
+        Tuple<String[], int[]> def = persistentCache.getLineCol(this.name, token, pythonpath);
+        if (def == null) {
+            AbstractShell shell = AbstractShell.getServerShell(nature, AbstractShell.COMPLETION_SHELL);
+            def = shell.getLineCol(this.name, token, pythonpath);
+            if (def != null) {
+                persistentCache.putLineCol(this.name, token, pythonpath, def);
             }
-            File f = new File(fPath);
-            String foundModName = nature.resolveModule(f);
-            String foundAs = def.o1[1];
-
-            IModule mod;
-            if (foundModName == null) {
-                //this can happen in a case where we have a definition that's found from a compiled file which actually
-                //maps to a file that's outside of the pythonpath known by Pydev.
-                String n = FullRepIterable.getFirstPart(f.getName());
-                mod = AbstractModule.createModule(n, f, nature, true);
-            } else {
-                mod = nature.getAstManager().getModule(foundModName, nature, true);
+        }
+        if (def == null) {
+            if (TRACE_COMPILED_MODULES) {
+                System.out.println("CompiledModule.findDefinition:" + token + " = empty");
             }
-
+            this.definitionsFoundCache.add(token, EMPTY_DEFINITION);
+            return EMPTY_DEFINITION;
+        }
+        String fPath = def.o1[0];
+        if (fPath.equals("None")) {
             if (TRACE_COMPILED_MODULES) {
-                System.out.println("CompiledModule.findDefinition: found at:" + mod.getName());
+                System.out.println("CompiledModule.findDefinition:" + token + " = None");
             }
-            int foundLine = def.o2[0];
-            if (foundLine == 0 && foundAs != null && foundAs.length() > 0 && mod != null
-                    && state.canStillCheckFindSourceFromCompiled(mod, foundAs)) {
-                //TODO: The nature (and so the grammar to be used) must be defined by the file we'll parse
-                //(so, we need to know the system modules manager that actually created it to know the actual nature)
-                IModule sourceMod = AbstractModule.createModuleFromDoc(mod.getName(), f,
-                        new Document(FileUtils.getPyFileContents(f)), nature, true);
-                if (sourceMod instanceof SourceModule) {
-                    Definition[] definitions = (Definition[]) sourceMod.findDefinition(
-                            state.getCopyWithActTok(foundAs), -1, -1, nature);
-                    if (definitions.length > 0) {
-                        this.definitionsFoundCache.add(token, definitions);
-                        return definitions;
-                    }
+            Definition[] definition = new Definition[] { new Definition(def.o2[0], def.o2[1], token, null, null,
+                    this) };
+            this.definitionsFoundCache.add(token, definition);
+            return definition;
+        }
+        File f = new File(fPath);
+        String foundModName = nature.resolveModule(f);
+        String foundAs = def.o1[1];
+
+        IModule mod;
+        if (foundModName == null) {
+            //this can happen in a case where we have a definition that's found from a compiled file which actually
+            //maps to a file that's outside of the pythonpath known by Pydev.
+            String n = FullRepIterable.getFirstPart(f.getName());
+            mod = AbstractModule.createModule(n, f, nature, true);
+        } else {
+            mod = nature.getAstManager().getModule(foundModName, nature, true);
+        }
+
+        if (TRACE_COMPILED_MODULES) {
+            System.out.println("CompiledModule.findDefinition: found at:" + mod.getName());
+        }
+        int foundLine = def.o2[0];
+        if (foundLine == 0 && foundAs != null && foundAs.length() > 0 && mod != null
+                && state.canStillCheckFindSourceFromCompiled(mod, foundAs)) {
+            //TODO: The nature (and so the grammar to be used) must be defined by the file we'll parse
+            //(so, we need to know the system modules manager that actually created it to know the actual nature)
+            IModule sourceMod = AbstractModule.createModuleFromDoc(mod.getName(), f,
+                    new Document(FileUtils.getPyFileContents(f)), nature, true);
+            if (sourceMod instanceof SourceModule) {
+                Definition[] definitions = (Definition[]) sourceMod.findDefinition(
+                        state.getCopyWithActTok(foundAs), -1, -1, nature);
+                if (definitions.length > 0) {
+                    this.definitionsFoundCache.add(token, definitions);
+                    return definitions;
                 }
             }
-            if (mod == null) {
-                mod = this;
-            }
-            int foundCol = def.o2[1];
-            if (foundCol < 0) {
-                foundCol = 0;
-            }
-            if (TRACE_COMPILED_MODULES) {
-                System.out.println("CompiledModule.findDefinition: found compiled at:" + mod.getName());
-            }
-            Definition[] definitions = new Definition[] { new Definition(foundLine + 1, foundCol + 1, token, null,
-                    null, mod) };
-            this.definitionsFoundCache.add(token, definitions);
-            return definitions;
         }
+        if (mod == null) {
+            mod = this;
+        }
+        int foundCol = def.o2[1];
+        if (foundCol < 0) {
+            foundCol = 0;
+        }
+        if (TRACE_COMPILED_MODULES) {
+            System.out.println("CompiledModule.findDefinition: found compiled at:" + mod.getName());
+        }
+        Definition[] definitions = new Definition[] { new Definition(foundLine + 1, foundCol + 1, token, null,
+                null, mod) };
+        this.definitionsFoundCache.add(token, definitions);
+        return definitions;
     }
 
     @Override
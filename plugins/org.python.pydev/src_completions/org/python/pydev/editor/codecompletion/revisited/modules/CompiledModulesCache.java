@@ -0,0 +1,387 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.editor.codecompletion.revisited.modules;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.python.pydev.core.IInterpreterInfo;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.plugin.PydevPlugin;
+
+import com.aptana.shared_core.io.FileUtils;
+import com.aptana.shared_core.string.FastStringBuffer;
+import com.aptana.shared_core.structure.Tuple;
+
+/**
+ * Keeps the results of the shell for compiled modules (completions and definitions) in the disk, so that the shell
+ * doesn't need to be contacted again for the same request in a new session.
+ *
+ * There's one cache for each interpreter (saved in the same directory where the system modules manager of the
+ * interpreter is saved). The cache is cleared if the interpreter (executable, version, pythonpath or forced
+ * builtins) changes and each entry is discarded if the file the shell reported for it changes.
+ *
+ * As the shell results depend on the complete pythonpath used for the request (i.e.: with the project source
+ * folders), the entries are keyed by that pythonpath too. The least recently used entries are discarded when there
+ * are more than MAX_ENTRIES entries.
+ *
+ * @author Fabio
+ */
+public final class CompiledModulesCache {
+
+    private static final String CACHE_FILE_NAME = "v2_compiled_modules_cache";
+
+    /**
+     * The maximum number of entries kept (for each interpreter).
+     */
+    /*default*/static int MAX_ENTRIES = 20000;
+
+    /**
+     * The maximum number of different pythonpaths kept (for each interpreter). If there are more, the cache is
+     * cleared.
+     */
+    private static final int MAX_PYTHONPATHS = 100;
+
+    /**
+     * Used when the file of an entry is not available (i.e.: builtin modules).
+     */
+    private static final long NO_FILE_TIME = -1;
+
+    private static final class Entry implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String file;
+        private final long fileTime;
+
+        /**
+         * For completions: the file and the completions. For definitions: new String[]{file, foundAs}, new
+         * int[]{line, col}.
+         */
+        private final Object result;
+
+        private Entry(String file, Object result) {
+            this.file = file;
+            this.fileTime = getFileTime(file);
+            this.result = result;
+        }
+
+        private boolean isValid() {
+            return fileTime == NO_FILE_TIME || fileTime == getFileTime(file);
+        }
+    }
+
+    private static final class Contents implements Serializable {
+
+        private static final long serialVersionUID = 2L;
+
+        private String fingerprint;
+
+        /**
+         * The entries in access order (the least recently used first).
+         */
+        private LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+        /**
+         * complete pythonpath -> id used in the keys of the entries.
+         */
+        private HashMap<String, Integer> pythonpaths = new HashMap<String, Integer>();
+
+        private void clear() {
+            entries.clear();
+            pythonpaths.clear();
+        }
+    }
+
+    private static final Map<String, CompiledModulesCache> caches = new HashMap<String, CompiledModulesCache>();
+
+    /**
+     * @return the cache for the given interpreter.
+     */
+    public static CompiledModulesCache get(IInterpreterInfo info) {
+        CompiledModulesCache cache;
+        synchronized (caches) {
+            cache = caches.get(info.getExecutableOrJar());
+            if (cache == null) {
+                cache = new CompiledModulesCache(info);
+                caches.put(info.getExecutableOrJar(), cache);
+            }
+        }
+        cache.checkInfo(info);
+        return cache;
+    }
+
+    /**
+     * Saves the caches changed in this session.
+     */
+    public static void saveAll() {
+        List<CompiledModulesCache> toSave;
+        synchronized (caches) {
+            toSave = new ArrayList<CompiledModulesCache>(caches.values());
+        }
+        for (CompiledModulesCache cache : toSave) {
+            cache.save();
+        }
+    }
+
+    /**
+     * Clears all the caches (i.e.: when the user requests the shells to be restarted).
+     */
+    public static void clearAll() {
+        List<CompiledModulesCache> toClear;
+        synchronized (caches) {
+            toClear = new ArrayList<CompiledModulesCache>(caches.values());
+        }
+        for (CompiledModulesCache cache : toClear) {
+            cache.clear();
+        }
+    }
+
+    private static long getFileTime(String file) {
+        if (file == null || file.equals("None")) {
+            return NO_FILE_TIME;
+        }
+        File f = new File(file);
+        if (!f.exists()) {
+            return NO_FILE_TIME;
+        }
+        return f.lastModified();
+    }
+
+    private static String createFingerprint(IInterpreterInfo info) {
+        FastStringBuffer buf = new FastStringBuffer();
+        buf.append(info.getExecutableOrJar()).append('|').append(info.getVersion()).append('|');
+        for (String path : info.getPythonPath()) {
+            buf.append(path).append('|');
+        }
+        buf.append('|');
+        for (Iterator<String> it = info.forcedLibsIterator(); it.hasNext();) {
+            buf.append(it.next()).append('|');
+        }
+        return buf.toString();
+    }
+
+    private final File cacheFile;
+
+    //All the fields below are synchronized on this.
+    private Contents contents;
+
+    /**
+     * The last info checked against the fingerprint (so that the fingerprint isn't created again for the same info).
+     */
+    private WeakReference<IInterpreterInfo> checkedInfo = new WeakReference<IInterpreterInfo>(null);
+    private boolean dirty;
+    private int hits;
+    private int misses;
+
+    private CompiledModulesCache(IInterpreterInfo info) {
+        File file = null;
+        try {
+            File dir = PydevPlugin.getWorkspaceMetadataFile(info.getExeAsFileSystemValidPath());
+            file = new File(dir, CACHE_FILE_NAME);
+        } catch (Exception e) {
+            //in tests the metadata may not be available (the cache is only kept in memory then).
+        }
+        this.cacheFile = file;
+    }
+
+    private synchronized Contents getContents() {
+        if (contents == null) {
+            if (cacheFile != null && cacheFile.exists()) {
+                try {
+                    contents = readContents(cacheFile);
+                } catch (Throwable e) {
+                    Log.log("Error reading compiled modules cache from: " + cacheFile, e);
+                }
+            }
+            if (contents == null) {
+                contents = new Contents();
+            }
+        }
+        return contents;
+    }
+
+    /**
+     * Reads the contents resolving the classes with the class loader of this plugin (the ObjectInputStream from
+     * shared_core can't load the classes from this plugin).
+     */
+    private static Contents readContents(File file) throws IOException, ClassNotFoundException {
+        final ClassLoader classLoader = CompiledModulesCache.class.getClassLoader();
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            ObjectInputStream stream = new ObjectInputStream(in) {
+                @Override
+                protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                    try {
+                        return Class.forName(desc.getName(), false, classLoader);
+                    } catch (ClassNotFoundException e) {
+                        return super.resolveClass(desc);
+                    }
+                }
+            };
+            try {
+                return (Contents) stream.readObject();
+            } finally {
+                stream.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private synchronized void checkInfo(IInterpreterInfo info) {
+        if (checkedInfo.get() == info) {
+            return;
+        }
+        String fingerprint = createFingerprint(info);
+        Contents c = getContents();
+        if (!fingerprint.equals(c.fingerprint)) {
+            c.clear();
+            c.fingerprint = fingerprint;
+            dirty = true;
+        }
+        checkedInfo = new WeakReference<IInterpreterInfo>(info);
+    }
+
+    /**
+     * @return the key for an entry with the given type and token for requests with the given pythonpath.
+     */
+    private synchronized String createKey(char type, List<String> pythonpath, String token) {
+        FastStringBuffer buf = new FastStringBuffer();
+        for (String path : pythonpath) {
+            buf.append(path).append('|');
+        }
+        String pythonpathStr = buf.toString();
+
+        Contents c = getContents();
+        Integer id = c.pythonpaths.get(pythonpathStr);
+        if (id == null) {
+            if (c.pythonpaths.size() >= MAX_PYTHONPATHS) {
+                c.clear();
+            }
+            id = c.pythonpaths.size();
+            c.pythonpaths.put(pythonpathStr, id);
+            dirty = true;
+        }
+        return buf.clear().append(type).append(id.intValue()).append('|').append(token).toString();
+    }
+
+    private synchronized Object get(char type, List<String> pythonpath, String token) {
+        String key = createKey(type, pythonpath, token);
+        Contents c = getContents();
+        Entry entry = c.entries.get(key);
+        if (entry != null) {
+            if (entry.isValid()) {
+                hits++;
+                return entry.result;
+            }
+            c.entries.remove(key);
+            dirty = true;
+        }
+        misses++;
+        return null;
+    }
+
+    private synchronized void put(char type, List<String> pythonpath, String token, String file, Object result) {
+        String key = createKey(type, pythonpath, token);
+        LinkedHashMap<String, Entry> entries = getContents().entries;
+        entries.put(key, new Entry(file, result));
+        if (entries.size() > MAX_ENTRIES) {
+            Iterator<String> it = entries.keySet().iterator();
+            while (entries.size() > MAX_ENTRIES) {
+                it.next();
+                it.remove();
+            }
+        }
+        dirty = true;
+    }
+
+    /**
+     * @param pythonpath the complete pythonpath used to ask the shell for the completions.
+     * @return the completions cached for the given token (a module or module.activationToken) or null if not
+     * cached.
+     */
+    @SuppressWarnings("unchecked")
+    public Tuple<String, List<String[]>> getImportCompletions(String token, List<String> pythonpath) {
+        Tuple<String, List<String[]>> ret = (Tuple<String, List<String[]>>) get('I', pythonpath, token);
+        if (ret == null) {
+            return null;
+        }
+        //A new list, as the clients may change it.
+        return new Tuple<String, List<String[]>>(ret.o1, new ArrayList<String[]>(ret.o2));
+    }
+
+    public void putImportCompletions(String token, List<String> pythonpath,
+            Tuple<String, List<String[]>> completions) {
+        if (completions.o1 == null && completions.o2.size() == 0) {
+            return; //invalid completion (error in the shell): don't cache it.
+        }
+        put('I', pythonpath, token, completions.o1, new Tuple<String, List<String[]>>(completions.o1,
+                new ArrayList<String[]>(completions.o2)));
+    }
+
+    /**
+     * @return the definition cached for the given token or null if not cached.
+     * @see org.python.pydev.editor.codecompletion.shell.AbstractShell#getLineCol(String, String, List)
+     */
+    @SuppressWarnings("unchecked")
+    public Tuple<String[], int[]> getLineCol(String moduleName, String token, List<String> pythonpath) {
+        return (Tuple<String[], int[]>) get('D', pythonpath, moduleName + "." + token);
+    }
+
+    public void putLineCol(String moduleName, String token, List<String> pythonpath, Tuple<String[], int[]> def) {
+        put('D', pythonpath, moduleName + "." + token, def.o1[0], def);
+    }
+
+    public synchronized void clear() {
+        getContents().clear();
+        dirty = true;
+    }
+
+    public synchronized int size() {
+        return getContents().entries.size();
+    }
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    private synchronized void save() {
+        if (!dirty || cacheFile == null || contents == null) {
+            return;
+        }
+        try {
+            File dir = cacheFile.getParentFile();
+            if (!dir.exists()) {
+                dir.mkdirs();
+            }
+            //Throws if the write fails (so, it's still dirty and a later save will retry it).
+            FileUtils.writeToStreamAndCloseIt(contents, new FileOutputStream(cacheFile));
+            dirty = false;
+        } catch (Throwable e) {
+            Log.log("Error writing compiled modules cache to: " + cacheFile, e);
+        }
+    }
+}
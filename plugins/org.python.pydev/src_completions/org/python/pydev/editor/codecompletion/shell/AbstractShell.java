@@ -23,6 +23,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -37,18 +38,21 @@ import org.python.pydev.core.PythonNatureWithoutProjectException;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.codecompletion.PyCodeCompletionPreferencesPage;
 import org.python.pydev.editor.codecompletion.revisited.ModulesManager;
+import org.python.pydev.editor.codecompletion.revisited.modules.CompiledModulesCache;
 import org.python.pydev.logging.DebugSettings;
 import org.python.pydev.plugin.PydevPlugin;
 
 import com.aptana.shared_core.net.LocalHost;
 import com.aptana.shared_core.net.SocketUtil;
+import com.aptana.shared_core.string.FastStringBuffer;
 import com.aptana.shared_core.structure.Tuple;
 
 /**
  * This is the shell that 'talks' to the python / jython process (it is intended to be subclassed so that
  * we know how to deal with each). 
  * 
- * Its methods are synched to prevent concurrent access.
+ * Its methods are synched to prevent concurrent access (to have requests answered in parallel, more than
+ * one shell may be created for an interpreter -- see ShellPool).
  * 
  * @author fabioz
  *
@@ -87,6 +91,18 @@ public abstract class AbstractShell {
      */
     private boolean isInOperation = false;
 
+    /**
+     * The number of requests waiting for or being answered by this shell (used to choose the least busy shell).
+     */
+    private final AtomicInteger pendingRequests = new AtomicInteger();
+
+    //Statistics (synchronized on statsLock).
+    private final Object statsLock = new Object();
+    private long requests;
+    private long totalQueueWaitMillis;
+    private long totalServiceMillis;
+    private long timeouts;
+
     private static void dbg(String string, int priority) {
         if (priority <= DEBUG_SHELL) {
             System.out.println(string);
@@ -101,18 +117,25 @@ public abstract class AbstractShell {
      */
     private static final String ENCODING_UTF_8 = "UTF-8";
 
+    /**
+     * Messages received from the server (without the END@@ delimiter).
+     */
+    private static final String MSG_PROCESSING = "@@PROCESSING_";
+    private static final String MSG_PROCESSING_PROGRESS = "@@PROCESSING:";
+    private static final String MSG_COMPLETIONS = "@@COMPLETIONS";
+
     /**
      * Reference to 'global python shells'
      * 
      * this works as follows:
      * we have the interpreter as that the shell is related to as the 1st key
      * 
-     * and then we have the id with the shell type that points to the actual shell
+     * and then we have the id with the shell type that points to the pool with the actual shells
      * 
      * @see #COMPLETION_SHELL
      * @see #OTHERS_SHELL
      */
-    protected static Map<String, Map<Integer, AbstractShell>> shells = new HashMap<String, Map<Integer, AbstractShell>>();
+    protected static Map<String, Map<Integer, ShellPool>> shells = new HashMap<String, Map<Integer, ShellPool>>();
 
     /**
      * if we are already finished for good, we may not start new shells (this is a static, because this 
@@ -123,19 +146,14 @@ public abstract class AbstractShell {
     /**
      * simple stop of a shell (it may be later restarted)
      */
-    public synchronized static void stopServerShell(IInterpreterInfo interpreter, int id) {
+    public static void stopServerShell(IInterpreterInfo interpreter, int id) {
+        ShellPool pool;
         synchronized (shells) {
-            Map<Integer, AbstractShell> typeToShell = getTypeToShellFromId(interpreter);
-            AbstractShell pythonShell = (AbstractShell) typeToShell.get(new Integer(id));
-
-            if (pythonShell != null) {
-                try {
-                    pythonShell.endIt();
-                } catch (Exception e) {
-                    // ignore... we are ending it anyway...
-                }
-            }
-            typeToShell.remove(id); //there's no exception if it was not there in the 1st place...
+            Map<Integer, ShellPool> typeToShell = getTypeToShellFromId(interpreter);
+            pool = typeToShell.remove(id); //there's no exception if it was not there in the 1st place...
+        }
+        if (pool != null) {
+            pool.endShells(true);
         }
     }
 
@@ -143,26 +161,17 @@ public abstract class AbstractShell {
      * stops all registered shells 
      *
      */
-    public synchronized static void shutdownAllShells() {
+    public static void shutdownAllShells() {
         synchronized (shells) {
             if (DebugSettings.DEBUG_CODE_COMPLETION) {
                 Log.toLogFile("Shutting down all shells (for good)...", AbstractShell.class);
             }
+            finishedForGood = true; //we may no longer restart shells
 
-            for (Iterator<Map<Integer, AbstractShell>> iter = shells.values().iterator(); iter.hasNext();) {
-                finishedForGood = true; //we may no longer restart shells
-
-                Map<Integer, AbstractShell> rel = (Map<Integer, AbstractShell>) iter.next();
+            for (Map<Integer, ShellPool> rel : shells.values()) {
                 if (rel != null) {
-                    for (Iterator<AbstractShell> iter2 = rel.values().iterator(); iter2.hasNext();) {
-                        AbstractShell element = iter2.next();
-                        if (element != null) {
-                            try {
-                                element.shutdown(); //shutdown
-                            } catch (Exception e) {
-                                Log.log(e); //let's log it... this should not happen
-                            }
-                        }
+                    for (ShellPool pool : rel.values()) {
+                        pool.shutdown();
                     }
                 }
             }
@@ -183,11 +192,9 @@ public abstract class AbstractShell {
                     Log.toLogFile("Restarting all shells and clearing caches...", AbstractShell.class);
                 }
 
-                for (Map<Integer, AbstractShell> val : shells.values()) {
-                    for (AbstractShell val2 : val.values()) {
-                        if (val2 != null) {
-                            val2.endIt();
-                        }
+                for (Map<Integer, ShellPool> val : shells.values()) {
+                    for (ShellPool pool : val.values()) {
+                        pool.endShells(false);
                     }
                     IInterpreterManager[] interpreterManagers = PydevPlugin.getAllInterpreterManagers();
                     for (IInterpreterManager iInterpreterManager : interpreterManagers) {
@@ -203,6 +210,7 @@ public abstract class AbstractShell {
                     }
                     //Clear the global modules cache!
                     ModulesManager.clearCache();
+                    CompiledModulesCache.clearAll();
                 }
             } catch (Exception e) {
                 Log.log(e);
@@ -214,20 +222,43 @@ public abstract class AbstractShell {
 
     /**
      * @param interpreter the interpreter whose shell we want.
-     * @return a map with the type of the shell mapping to the shell itself
+     * @return a map with the type of the shell mapping to the pool with the shells
      */
-    private synchronized static Map<Integer, AbstractShell> getTypeToShellFromId(IInterpreterInfo interpreter) {
+    private static Map<Integer, ShellPool> getTypeToShellFromId(IInterpreterInfo interpreter) {
         synchronized (shells) {
-            Map<Integer, AbstractShell> typeToShell = shells.get(interpreter.getExecutableOrJar());
+            Map<Integer, ShellPool> typeToShell = shells.get(interpreter.getExecutableOrJar());
 
             if (typeToShell == null) {
-                typeToShell = new HashMap<Integer, AbstractShell>();
+                typeToShell = new HashMap<Integer, ShellPool>();
                 shells.put(interpreter.getExecutableOrJar(), typeToShell);
             }
             return typeToShell;
         }
     }
 
+    /**
+     * @return the pool with the shells for the given interpreter and id.
+     */
+    private static ShellPool getShellPool(IInterpreterInfo interpreter, int id, boolean create) {
+        synchronized (shells) {
+            Map<Integer, ShellPool> typeToShell = getTypeToShellFromId(interpreter);
+            ShellPool pool = typeToShell.get(id);
+            if (pool == null && create) {
+                pool = new ShellPool(interpreter, id);
+                typeToShell.put(id, pool);
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * @return the pool with the shells for the given interpreter and id (i.e.: to check its statistics) or null if
+     * no shell was requested for it.
+     */
+    public static ShellPool getShellPool(IInterpreterInfo interpreter, int id) {
+        return getShellPool(interpreter, id, false);
+    }
+
     /**
      * register a shell and give it an id
      * 
@@ -236,20 +267,17 @@ public abstract class AbstractShell {
      * @see #COMPLETION_SHELL
      * @see #OTHERS_SHELL
      *
-     * @param shell the shell to register
+     * @param shell the shell to register (if null, shells will be created on demand again)
      */
-    public synchronized static void putServerShell(IPythonNature nature, int id, AbstractShell shell) {
-        synchronized (shells) {
-            try {
-                Map<Integer, AbstractShell> typeToShell = getTypeToShellFromId(nature.getProjectInterpreter());
-                typeToShell.put(new Integer(id), shell);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
+    public static void putServerShell(IPythonNature nature, int id, AbstractShell shell) {
+        try {
+            getShellPool(nature.getProjectInterpreter(), id, true).setShell(shell);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
         }
     }
 
-    public synchronized static AbstractShell getServerShell(IPythonNature nature, int id) throws IOException,
+    public static AbstractShell getServerShell(IPythonNature nature, int id) throws IOException,
             JDTNotAvailableException, CoreException, MisconfigurationException, PythonNatureWithoutProjectException {
         return getServerShell(nature.getProjectInterpreter(), nature.getInterpreterType(), id);
     }
@@ -265,69 +293,55 @@ public abstract class AbstractShell {
      * @see #COMPLETION_SHELL
      * @see #OTHERS_SHELL
      * 
-     * @return the shell with the given id related to some nature
+     * @return the shell with the given id related to some nature (if there's more than one shell for it, the
+     * one with less pending requests is returned).
      * 
      * @throws CoreException
      * @throws IOException
      * @throws MisconfigurationException 
      */
-    private synchronized static AbstractShell getServerShell(IInterpreterInfo interpreter, int relatedTo, int id)
+    private static AbstractShell getServerShell(IInterpreterInfo interpreter, int relatedTo, int id)
             throws IOException, JDTNotAvailableException, CoreException, MisconfigurationException {
-        AbstractShell pythonShell = null;
-        synchronized (shells) {
-            if (DebugSettings.DEBUG_CODE_COMPLETION) {
-                Log.toLogFile("Synchronizing on shells...", AbstractShell.class);
-            }
-            if (DebugSettings.DEBUG_CODE_COMPLETION) {
-                String flavor;
-                switch (relatedTo) {
-                    case IPythonNature.INTERPRETER_TYPE_JYTHON:
-                        flavor = "Jython";
-                        break;
-                    case IPythonNature.INTERPRETER_TYPE_IRONPYTHON:
-                        flavor = "IronPython";
-                        break;
-                    default:
-                        flavor = "Python";
-                }
-                ;
-                Log.toLogFile(
-                        "Getting shell related to:" + flavor + " id:" + id + " interpreter: "
-                                + interpreter.getExecutableOrJar(), AbstractShell.class);
+        if (DebugSettings.DEBUG_CODE_COMPLETION) {
+            String flavor;
+            switch (relatedTo) {
+                case IPythonNature.INTERPRETER_TYPE_JYTHON:
+                    flavor = "Jython";
+                    break;
+                case IPythonNature.INTERPRETER_TYPE_IRONPYTHON:
+                    flavor = "IronPython";
+                    break;
+                default:
+                    flavor = "Python";
             }
-            Map<Integer, AbstractShell> typeToShell = getTypeToShellFromId(interpreter);
-            pythonShell = (AbstractShell) typeToShell.get(new Integer(id));
+            ;
+            Log.toLogFile(
+                    "Getting shell related to:" + flavor + " id:" + id + " interpreter: "
+                            + interpreter.getExecutableOrJar(), AbstractShell.class);
+        }
+        return getShellPool(interpreter, id, true).getShell(relatedTo);
+    }
 
-            if (pythonShell == null) {
-                if (DebugSettings.DEBUG_CODE_COMPLETION) {
-                    Log.toLogFile("pythonShell == null", AbstractShell.class);
-                }
-                if (relatedTo == IPythonNature.INTERPRETER_TYPE_PYTHON) {
-                    pythonShell = new PythonShell();
+    /**
+     * @return a new (not started) shell for the given kind of interpreter.
+     */
+    /*default*/static AbstractShell createServerShell(int relatedTo) throws IOException, JDTNotAvailableException,
+            CoreException, MisconfigurationException {
+        AbstractShell pythonShell;
+        if (relatedTo == IPythonNature.INTERPRETER_TYPE_PYTHON) {
+            pythonShell = new PythonShell();
 
-                } else if (relatedTo == IPythonNature.INTERPRETER_TYPE_JYTHON) {
-                    pythonShell = new JythonShell();
+        } else if (relatedTo == IPythonNature.INTERPRETER_TYPE_JYTHON) {
+            pythonShell = new JythonShell();
 
-                } else if (relatedTo == IPythonNature.INTERPRETER_TYPE_IRONPYTHON) {
-                    pythonShell = new IronpythonShell();
-
-                } else {
-                    throw new RuntimeException("unknown related id");
-                }
-                if (DebugSettings.DEBUG_CODE_COMPLETION) {
-                    Log.toLogFile("pythonShell.startIt()", AbstractShell.class);
-                    Log.addLogLevel();
-                }
-                pythonShell.startIt(interpreter, AbstractShell.DEFAULT_SLEEP_BETWEEN_ATTEMPTS); //first start it
-                if (DebugSettings.DEBUG_CODE_COMPLETION) {
-                    Log.remLogLevel();
-                    Log.toLogFile("Finished pythonShell.startIt()", AbstractShell.class);
-                }
-
-                //then make it accessible
-                typeToShell.put(new Integer(id), pythonShell);
-            }
+        } else if (relatedTo == IPythonNature.INTERPRETER_TYPE_IRONPYTHON) {
+            pythonShell = new IronpythonShell();
 
+        } else {
+            throw new RuntimeException("unknown related id");
+        }
+        if (DebugSettings.DEBUG_CODE_COMPLETION) {
+            Log.toLogFile("Created shell: " + pythonShell.getClass().getName(), AbstractShell.class);
         }
         return pythonShell;
     }
@@ -352,6 +366,10 @@ public abstract class AbstractShell {
      * Server socket (accept connections).
      */
     protected ServerSocket serverSocket;
+    /**
+     * Reads the messages from socketToRead.
+     */
+    private ShellMessageReader messageReader;
 
     /**
      * Initialize given the file that points to the python server (execute it
@@ -487,6 +505,7 @@ public abstract class AbstractShell {
                                 socketToRead = serverSocket.accept();
                                 dbg("socketToRead.setSoTimeout(5000) ", 1);
                                 socketToRead.setSoTimeout(5000); //let's give it a higher timeout, as we're already half - connected
+                                messageReader = new ShellMessageReader(socketToRead.getInputStream());
                                 connected = true;
                                 dbg("connected! ", 1);
                             } catch (SocketTimeoutException e) {
@@ -576,22 +595,9 @@ public abstract class AbstractShell {
     }
 
     public synchronized void clearSocket() throws IOException {
-        long maxTime = System.currentTimeMillis() + (1000 * 50); //50 secs timeout
-
-        while (System.currentTimeMillis() < maxTime) { //clear until we get no message and timeout is not elapsed
-            byte[] b = new byte[AbstractShell.BUFFER_SIZE];
-            if (this.socketToRead != null) {
-                this.socketToRead.getInputStream().read(b);
-
-                String s = new String(b);
-                s = s.replaceAll((char) 0 + "", ""); //python sends this char as payload.
-                if (s.length() == 0) {
-                    return;
-                }
-            } else {
-                //if we have no socket, simply return (nothing to clear)
-                return;
-            }
+        //if we have no socket, simply return (nothing to clear)
+        if (this.messageReader != null) {
+            this.messageReader.clear();
         }
     }
 
@@ -625,68 +631,55 @@ public abstract class AbstractShell {
         isInRead = true;
 
         try {
-            StringBuffer str = new StringBuffer();
-            int j = 0;
-            while (j < 200) {
-                byte[] b = new byte[AbstractShell.BUFFER_SIZE];
-
-                this.socketToRead.getInputStream().read(b);
-
-                String s = new String(b);
+            long timeout = PyCodeCompletionPreferencesPage.getCompletionShellRequestTimeoutMillis();
+            long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+            String lastStatus = null;
+            while (true) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    //Note: the shell is restarted when this exception gets to getTheCompletions.
+                    throw new SocketTimeoutException("Shell request timed out (" + timeout + " millis).");
+                }
+                //the socket only times out when the whole time for the request (since the last progress reported)
+                //is elapsed (the shell may take a while without sending anything -- i.e.: when importing some big
+                //module).
+                socketToRead.setSoTimeout(timeout > 0 ? (int) Math.min(remaining, Integer.MAX_VALUE) : 0);
+
+                //blocks until a message arrives (or the socket timeout is reached).
+                String msg = this.messageReader.readMessage();
+                if (msg == null) {
+                    throw new IOException("Connection to the shell closed before receiving the message end.");
+                }
 
                 //processing without any status to present to the user
-                if (s.indexOf("@@PROCESSING_END@@") != -1) { //each time we get a processing message, reset j to 0.
-                    s = s.replaceAll("@@PROCESSING_END@@", "");
-                    j = 0;
+                if (msg.equals(MSG_PROCESSING)) {
                     communicateWork("Processing...", monitor);
+                    continue;
                 }
 
                 //processing with some kind of status
-                if (s.indexOf("@@PROCESSING:") != -1) { //each time we get a processing message, reset j to 0.
-                    s = s.replaceAll("@@PROCESSING:", "");
-                    s = s.replaceAll("END@@", "");
-                    j = 0;
-                    s = URLDecoder.decode(s, ENCODING_UTF_8);
-                    if (s.trim().equals("") == false) {
-                        communicateWork("Processing: " + s, monitor);
+                if (msg.startsWith(MSG_PROCESSING_PROGRESS)) {
+                    String status = URLDecoder.decode(msg.substring(MSG_PROCESSING_PROGRESS.length()),
+                            ENCODING_UTF_8);
+                    if (status.trim().length() > 0) {
+                        //The shell reports progress (i.e.: a new module being imported): give the request the whole
+                        //timeout again. Note that the same status is sent repeatedly by the keep alive thread in the
+                        //shell even if it's stuck, so, only a new status counts as progress.
+                        if (timeout > 0 && !status.equals(lastStatus)) {
+                            deadline = System.currentTimeMillis() + timeout;
+                        }
+                        lastStatus = status;
+                        communicateWork("Processing: " + status, monitor);
                     } else {
                         communicateWork("Processing...", monitor);
                     }
-                    s = "";
+                    continue;
                 }
 
-                s = s.replaceAll((char) 0 + "", ""); //python sends this char as payload.
-                str.append(s);
-
-                if (str.indexOf("END@@") != -1) {
-                    break;
-                } else {
-
-                    if (s.length() == 0) { //only raise if nothing was received.
-                        j++;
-                    } else {
-                        j = 0; //we are receiving, even though that may take a long time if the namespace is really polluted...
-                    }
-                    sleepALittle(10);
+                if (msg.startsWith(MSG_COMPLETIONS)) {
+                    return msg.substring(MSG_COMPLETIONS.length());
                 }
-
-            }
-
-            String ret = str.toString().replaceFirst("@@COMPLETIONS", "");
-            //remove END@@
-            try {
-                if (ret.indexOf("END@@") != -1) {
-                    ret = ret.substring(0, ret.indexOf("END@@"));
-                    return ret;
-                } else {
-                    throw new RuntimeException("Couldn't find END@@ on received string.");
-                }
-            } catch (RuntimeException e) {
-                if (ret.length() > 500) {
-                    ret = ret.substring(0, 499) + "...(continued)...";//if the string gets too big, it can crash Eclipse...
-                }
-                Log.log(IStatus.ERROR, ("ERROR WITH STRING:" + ret), e);
-                return "";
+                return msg;
             }
         } finally {
             isInRead = false;
@@ -765,6 +758,7 @@ public abstract class AbstractShell {
         } catch (Exception e) {
         }
         socketToRead = null;
+        messageReader = null;
 
         try {
             if (serverSocket != null) {
@@ -781,6 +775,7 @@ public abstract class AbstractShell {
      */
     public synchronized void shutdown() {
         socketToRead = null;
+        messageReader = null;
         socketToWrite = null;
         serverSocket = null;
         if (process != null) {
@@ -813,23 +808,32 @@ public abstract class AbstractShell {
      * @return list with tuples: new String[]{token, description}
      * @throws CoreException
      */
-    public synchronized Tuple<String, List<String[]>> getImportCompletions(String str, List<String> pythonpath)
+    public Tuple<String, List<String[]>> getImportCompletions(String str, List<String> pythonpath)
             throws CoreException {
-        while (isInOperation) {
-            sleepALittle(25);
-        }
-        isInOperation = true;
+        long requestTime = beginRequest();
         try {
-            internalChangePythonPath(pythonpath);
+            synchronized (this) {
+                while (isInOperation) {
+                    sleepALittle(25);
+                }
+                isInOperation = true;
+                long serviceTime = startService(requestTime);
+                try {
+                    internalChangePythonPath(pythonpath);
 
-            try {
-                str = URLEncoder.encode(str, ENCODING_UTF_8);
-                return this.getTheCompletions("@@IMPORTS:" + str + "\nEND@@");
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+                    try {
+                        str = URLEncoder.encode(str, ENCODING_UTF_8);
+                        return this.getTheCompletions("@@IMPORTS:" + str + "\nEND@@");
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                } finally {
+                    isInOperation = false;
+                    endService(serviceTime);
+                }
             }
         } finally {
-            isInOperation = false;
+            endRequest();
         }
     }
 
@@ -837,15 +841,99 @@ public abstract class AbstractShell {
      * @param pythonpath
      * @throws CoreException
      */
-    public synchronized void changePythonPath(List<String> pythonpath) throws CoreException {
-        while (isInOperation) {
-            sleepALittle(25);
-        }
-        isInOperation = true;
+    public void changePythonPath(List<String> pythonpath) throws CoreException {
+        long requestTime = beginRequest();
         try {
-            internalChangePythonPath(pythonpath);
+            synchronized (this) {
+                while (isInOperation) {
+                    sleepALittle(25);
+                }
+                isInOperation = true;
+                long serviceTime = startService(requestTime);
+                try {
+                    internalChangePythonPath(pythonpath);
+                } finally {
+                    isInOperation = false;
+                    endService(serviceTime);
+                }
+            }
         } finally {
-            isInOperation = false;
+            endRequest();
+        }
+    }
+
+    /**
+     * Marks that a new request is waiting for this shell.
+     * 
+     * @return the time of the request.
+     */
+    private long beginRequest() {
+        pendingRequests.incrementAndGet();
+        return System.currentTimeMillis();
+    }
+
+    private void endRequest() {
+        pendingRequests.decrementAndGet();
+    }
+
+    /**
+     * Marks that the shell started answering a request.
+     * 
+     * @return the time the service started.
+     */
+    private long startService(long requestTime) {
+        long now = System.currentTimeMillis();
+        synchronized (statsLock) {
+            requests++;
+            totalQueueWaitMillis += now - requestTime;
+        }
+        return now;
+    }
+
+    private void endService(long serviceTime) {
+        long elapsed = System.currentTimeMillis() - serviceTime;
+        synchronized (statsLock) {
+            totalServiceMillis += elapsed;
+        }
+    }
+
+    /**
+     * @return the number of requests waiting for or being answered by this shell.
+     */
+    public int getPendingRequests() {
+        return pendingRequests.get();
+    }
+
+    public long getRequestsCount() {
+        synchronized (statsLock) {
+            return requests;
+        }
+    }
+
+    /**
+     * @return the total time (in millis) requests waited for this shell to be available.
+     */
+    public long getTotalQueueWaitMillis() {
+        synchronized (statsLock) {
+            return totalQueueWaitMillis;
+        }
+    }
+
+    /**
+     * @return the total time (in millis) this shell took answering requests.
+     */
+    public long getTotalServiceMillis() {
+        synchronized (statsLock) {
+            return totalServiceMillis;
+        }
+    }
+
+    /**
+     * @return the number of requests which timed out in this shell.
+     */
+    public long getTimeoutsCount() {
+        synchronized (statsLock) {
+            return timeouts;
         }
     }
 
@@ -880,6 +968,14 @@ public abstract class AbstractShell {
             restartShell();
             return getInvalidCompletion();
 
+        } catch (SocketTimeoutException e) {
+            synchronized (statsLock) {
+                timeouts++;
+            }
+            Log.log(IStatus.ERROR, "Timeout getting completions (restarting shell).", e);
+            restartShell();
+            return getInvalidCompletion();
+
         } catch (Exception e) {
             if (DebugSettings.DEBUG_CODE_COMPLETION) {
                 Log.log(IStatus.ERROR, "ERROR getting completions.", e);
@@ -934,7 +1030,15 @@ public abstract class AbstractShell {
     protected synchronized Tuple<String, List<String[]>> getCompletions() throws IOException {
         ArrayList<String[]> list = new ArrayList<String[]>();
         String read = this.read();
-        String string = read.replaceAll("\\(", "").replaceAll("\\)", "");
+        int len = read.length();
+        FastStringBuffer buf = new FastStringBuffer(len);
+        for (int i = 0; i < len; i++) {
+            char c = read.charAt(i);
+            if (c != '(' && c != ')') {
+                buf.append(c);
+            }
+        }
+        String string = buf.toString();
         StringTokenizer tokenizer = new StringTokenizer(string, ",");
 
         //the first token is always the file for the module (no matter what)
@@ -988,40 +1092,53 @@ public abstract class AbstractShell {
      * @param token the token we are looking for
      * @return the file where the token was defined, its line and its column (or null if it was not found)
      */
-    public synchronized Tuple<String[], int[]> getLineCol(String moduleName, String token, List<String> pythonpath) {
-        while (isInOperation) {
-            sleepALittle(25);
-        }
-        isInOperation = true;
+    public Tuple<String[], int[]> getLineCol(String moduleName, String token, List<String> pythonpath) {
+        long requestTime = beginRequest();
         try {
-            String str = moduleName + "." + token;
-            internalChangePythonPath(pythonpath);
-
-            try {
-                str = URLEncoder.encode(str, ENCODING_UTF_8);
-                Tuple<String, List<String[]>> theCompletions = this.getTheCompletions("@@SEARCH" + str + "\nEND@@");
-
-                List<String[]> def = theCompletions.o2;
-                if (def.size() == 0) {
-                    return null;
+            synchronized (this) {
+                while (isInOperation) {
+                    sleepALittle(25);
                 }
-
-                String[] comps = def.get(0);
-                if (comps.length == 0) {
-                    return null;
+                isInOperation = true;
+                long serviceTime = startService(requestTime);
+                try {
+                    return internalGetLineCol(moduleName, token, pythonpath);
+                } finally {
+                    isInOperation = false;
+                    endService(serviceTime);
                 }
+            }
+        } finally {
+            endRequest();
+        }
+    }
 
-                int line = Integer.parseInt(comps[0]);
-                int col = Integer.parseInt(comps[1]);
+    private Tuple<String[], int[]> internalGetLineCol(String moduleName, String token, List<String> pythonpath) {
+        String str = moduleName + "." + token;
+        internalChangePythonPath(pythonpath);
 
-                String foundAs = comps[2];
-                return new Tuple<String[], int[]>(new String[] { theCompletions.o1, foundAs }, new int[] { line, col });
+        try {
+            str = URLEncoder.encode(str, ENCODING_UTF_8);
+            Tuple<String, List<String[]>> theCompletions = this.getTheCompletions("@@SEARCH" + str + "\nEND@@");
 
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+            List<String[]> def = theCompletions.o2;
+            if (def.size() == 0) {
+                return null;
             }
-        } finally {
-            isInOperation = false;
+
+            String[] comps = def.get(0);
+            if (comps.length == 0) {
+                return null;
+            }
+
+            int line = Integer.parseInt(comps[0]);
+            int col = Integer.parseInt(comps[1]);
+
+            String foundAs = comps[2];
+            return new Tuple<String[], int[]>(new String[] { theCompletions.o1, foundAs }, new int[] { line, col });
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
         }
     }
 
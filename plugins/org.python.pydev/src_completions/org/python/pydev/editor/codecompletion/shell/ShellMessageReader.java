@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.editor.codecompletion.shell;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the messages sent by the shell server (pycompletionserver.py).
+ *
+ * Each message ends with END@@ (the contents of the messages are url-encoded by the server, so, the delimiter can't
+ * appear inside a message). The bytes are read in blocks into a buffer which is reused among messages and only the
+ * bytes not checked yet are scanned for the delimiter.
+ *
+ * @author Fabio
+ */
+public final class ShellMessageReader {
+
+    private static final byte[] MSG_END = new byte[] { 'E', 'N', 'D', '@', '@' };
+
+    private final InputStream in;
+
+    private byte[] buffer = new byte[AbstractShell.BUFFER_SIZE * 8];
+
+    /**
+     * Start of the data still not returned.
+     */
+    private int start;
+
+    /**
+     * End of the data read.
+     */
+    private int end;
+
+    /**
+     * Position from where the delimiter should still be searched.
+     */
+    private int scanFrom;
+
+    public ShellMessageReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Blocks until a whole message is available (or the stream's timeout is reached).
+     *
+     * @return the next message (without the END@@ delimiter) or null if the stream was closed.
+     */
+    public String readMessage() throws IOException {
+        while (true) {
+            int found = indexOfEnd();
+            if (found != -1) {
+                String msg = decode(start, found);
+                start = found + MSG_END.length;
+                scanFrom = start;
+                return msg;
+            }
+            scanFrom = Math.max(start, end - MSG_END.length + 1);
+
+            if (end == buffer.length) {
+                if (start > 0) {
+                    //move the pending data to the start of the buffer
+                    System.arraycopy(buffer, start, buffer, 0, end - start);
+                    scanFrom -= start;
+                    end -= start;
+                    start = 0;
+                } else {
+                    byte[] newBuffer = new byte[buffer.length * 2];
+                    System.arraycopy(buffer, 0, newBuffer, 0, end);
+                    buffer = newBuffer;
+                }
+            }
+            int read = in.read(buffer, end, buffer.length - end);
+            if (read == -1) {
+                return null;
+            }
+            end += read;
+        }
+    }
+
+    /**
+     * Discards the data already received (and the data available without blocking).
+     */
+    public void clear() throws IOException {
+        start = end = scanFrom = 0;
+        int available = in.available();
+        while (available > 0) {
+            long skipped = in.skip(available);
+            if (skipped <= 0) {
+                break;
+            }
+            available = in.available();
+        }
+    }
+
+    private int indexOfEnd() {
+        int last = end - MSG_END.length;
+        outer: for (int i = scanFrom; i <= last; i++) {
+            for (int j = 0; j < MSG_END.length; j++) {
+                if (buffer[i + j] != MSG_END[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * The messages are url-encoded (the module file is the only part which may have non-ascii chars). Any 0 char is
+     * skipped (python may send it as payload).
+     */
+    private String decode(int from, int to) throws IOException {
+        String msg = new String(buffer, from, to - from, "UTF-8");
+        if (msg.indexOf('\0') != -1) {
+            msg = msg.replace("\0", "");
+        }
+        return msg;
+    }
+}
@@ -0,0 +1,300 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.editor.codecompletion.shell;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.CoreException;
+import org.python.copiedfromeclipsesrc.JDTNotAvailableException;
+import org.python.pydev.core.IInterpreterInfo;
+import org.python.pydev.core.MisconfigurationException;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.editor.codecompletion.PyCodeCompletionPreferencesPage;
+
+/**
+ * The shells (python processes) related to an interpreter and a shell id.
+ *
+ * Each request is dispatched to the shell with less pending requests. A spare shell is started in a background
+ * thread as soon as the first shell is up (and later, whenever all the shells are busy and the pool is still not
+ * full), so that it's already warm when the next requests arrive, instead of having the request wait for the
+ * process to be created.
+ *
+ * Only the completion shell may have more than one shell (the number of shells is a code completion preference).
+ *
+ * @author Fabio
+ */
+public class ShellPool {
+
+    private final IInterpreterInfo interpreter;
+    private final int id;
+
+    //All the fields below are synchronized on this.
+    private final List<AbstractShell> shells = new ArrayList<AbstractShell>();
+    private int starting;
+    private boolean disposed;
+
+    /**
+     * If a shell was explicitly set, no other shells are created.
+     */
+    private boolean fixed;
+
+    /*default*/ShellPool(IInterpreterInfo interpreter, int id) {
+        this.interpreter = interpreter;
+        this.id = id;
+    }
+
+    private int getMaxShells() {
+        if (fixed || id != AbstractShell.COMPLETION_SHELL) {
+            return 1;
+        }
+        return Math.max(1, PyCodeCompletionPreferencesPage.getCompletionShellsPoolSize());
+    }
+
+    /**
+     * @return the shell with less pending requests (or null if there's no shell available).
+     *
+     * Must be called with the lock held.
+     */
+    private AbstractShell getLeastBusy() {
+        AbstractShell chosen = null;
+        int chosenPending = Integer.MAX_VALUE;
+        for (AbstractShell shell : shells) {
+            int pending = shell.getPendingRequests();
+            if (pending < chosenPending) {
+                chosen = shell;
+                chosenPending = pending;
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * @param relatedTo the kind of interpreter (used if a new shell has to be created).
+     * @return the shell which should be used for the next request.
+     */
+    /*default*/AbstractShell getShell(int relatedTo) throws IOException, JDTNotAvailableException, CoreException,
+            MisconfigurationException {
+        AbstractShell chosen;
+        boolean startSpare = false;
+        synchronized (this) {
+            while (true) {
+                chosen = getLeastBusy();
+                if (chosen != null) {
+                    if (chosen.getPendingRequests() > 0 && starting == 0 && shells.size() < getMaxShells()) {
+                        starting++;
+                        startSpare = true;
+                    }
+                    break;
+                }
+                if (starting == 0) {
+                    //no shell available: start it in this thread.
+                    starting++;
+                    break;
+                }
+                //Some other thread is starting a shell: wait for it.
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    //ignore
+                }
+            }
+        }
+
+        if (chosen == null) {
+            AbstractShell shell = null;
+            boolean started = false;
+            try {
+                shell = createShell(relatedTo);
+                started = true;
+            } finally {
+                synchronized (this) {
+                    starting--;
+                    if (started) {
+                        shells.add(shell);
+                        //pre-warm a spare shell for the next requests
+                        if (!disposed && starting == 0 && shells.size() < getMaxShells()) {
+                            starting++;
+                            startSpare = true;
+                        }
+                    }
+                    notifyAll();
+                }
+            }
+            if (startSpare) {
+                startSpareShell(relatedTo);
+            }
+            return shell;
+        }
+
+        if (startSpare) {
+            startSpareShell(relatedTo);
+        }
+        return chosen;
+    }
+
+    /**
+     * Creates and starts a new shell.
+     */
+    /*default*/AbstractShell createShell(int relatedTo) throws IOException, JDTNotAvailableException, CoreException,
+            MisconfigurationException {
+        AbstractShell shell = AbstractShell.createServerShell(relatedTo);
+        shell.startIt(interpreter, AbstractShell.DEFAULT_SLEEP_BETWEEN_ATTEMPTS);
+        return shell;
+    }
+
+    private void startSpareShell(final int relatedTo) {
+        Thread thread = new Thread("PyDev: Starting spare shell") {
+            @Override
+            public void run() {
+                AbstractShell shell = null;
+                try {
+                    shell = createShell(relatedTo);
+                } catch (Throwable e) {
+                    Log.log(e);
+                    shell = null;
+                } finally {
+                    boolean add;
+                    synchronized (ShellPool.this) {
+                        starting--;
+                        add = shell != null && !disposed && shells.size() < getMaxShells();
+                        if (add) {
+                            shells.add(shell);
+                        }
+                        ShellPool.this.notifyAll();
+                    }
+                    if (shell != null && !add) {
+                        shell.endIt();
+                    }
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Sets the shell to be used (any other shell in the pool is removed from it, but not finished).
+     *
+     * @param shell the shell to be used (if null, the pool returns to creating its own shells).
+     */
+    /*default*/synchronized void setShell(AbstractShell shell) {
+        shells.clear();
+        fixed = shell != null;
+        if (shell != null) {
+            shells.add(shell);
+        }
+    }
+
+    /**
+     * Finishes the processes of all the shells.
+     *
+     * @param dispose if true, the shells are removed and the pool may no longer be used, otherwise, the shells are
+     * kept to be restarted on the next request.
+     */
+    /*default*/void endShells(boolean dispose) {
+        List<AbstractShell> toEnd;
+        synchronized (this) {
+            toEnd = new ArrayList<AbstractShell>(shells);
+            if (dispose) {
+                disposed = true;
+                shells.clear();
+            }
+        }
+        for (AbstractShell shell : toEnd) {
+            try {
+                shell.endIt();
+            } catch (Exception e) {
+                // ignore... we are ending it anyway...
+            }
+        }
+    }
+
+    /**
+     * Destroys the processes without closing the connections correctly (intended for shutdowns).
+     */
+    /*default*/void shutdown() {
+        List<AbstractShell> toShutdown;
+        synchronized (this) {
+            disposed = true;
+            toShutdown = new ArrayList<AbstractShell>(shells);
+            shells.clear();
+        }
+        for (AbstractShell shell : toShutdown) {
+            try {
+                shell.shutdown();
+            } catch (Exception e) {
+                Log.log(e); //let's log it... this should not happen
+            }
+        }
+    }
+
+    private synchronized List<AbstractShell> getShells() {
+        return new ArrayList<AbstractShell>(shells);
+    }
+
+    /**
+     * @return the number of shells currently in the pool.
+     */
+    public synchronized int getShellsCount() {
+        return shells.size();
+    }
+
+    public int getPendingRequests() {
+        int pending = 0;
+        for (AbstractShell shell : getShells()) {
+            pending += shell.getPendingRequests();
+        }
+        return pending;
+    }
+
+    public long getRequestsCount() {
+        long requests = 0;
+        for (AbstractShell shell : getShells()) {
+            requests += shell.getRequestsCount();
+        }
+        return requests;
+    }
+
+    /**
+     * @return the average time (in millis) requests waited for a shell to be available.
+     */
+    public long getAverageQueueWaitMillis() {
+        long requests = 0;
+        long total = 0;
+        for (AbstractShell shell : getShells()) {
+            requests += shell.getRequestsCount();
+            total += shell.getTotalQueueWaitMillis();
+        }
+        return requests == 0 ? 0 : total / requests;
+    }
+
+    /**
+     * @return the average time (in millis) the shells took to answer a request.
+     */
+    public long getAverageServiceMillis() {
+        long requests = 0;
+        long total = 0;
+        for (AbstractShell shell : getShells()) {
+            requests += shell.getRequestsCount();
+            total += shell.getTotalServiceMillis();
+        }
+        return requests == 0 ? 0 : total / requests;
+    }
+
+    /**
+     * @return the number of requests which timed out (and had their shell restarted).
+     */
+    public long getTimeoutsCount() {
+        long timeouts = 0;
+        for (AbstractShell shell : getShells()) {
+            timeouts += shell.getTimeoutsCount();
+        }
+        return timeouts;
+    }
+}
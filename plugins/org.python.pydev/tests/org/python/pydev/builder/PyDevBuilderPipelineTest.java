@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.builder;
+
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+public class PyDevBuilderPipelineTest extends TestCase {
+
+    public static void main(String[] args) {
+        try {
+            junit.textui.TestRunner.run(PyDevBuilderPipelineTest.class);
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void testMetrics() throws Exception {
+        PyDevBuilderPipeline pipeline = new PyDevBuilderPipeline(new ArrayList<IFile>(),
+                new ArrayList<PyDevBuilderVisitor>(), 2);
+        pipeline.run(new NullProgressMonitor(), 0);
+
+        assertSame(pipeline, PyDevBuilderPipeline.getLastFullBuild());
+        assertEquals(0, pipeline.getResourcesCount());
+        assertEquals(0, pipeline.getSkippedCount());
+        assertEquals(2, pipeline.getParallelism());
+        assertTrue(pipeline.getTotalTimeMillis() >= 0);
+        assertEquals(0, pipeline.getStageTimeMillis(PyDevBuilderPipeline.STAGE_LOAD));
+        assertEquals(0, pipeline.getStageTimeMillis(PyDevBuilderPipeline.STAGE_PARSE));
+        assertEquals(0, pipeline.getStageCount(PyDevBuilderPipeline.STAGE_LOAD));
+        assertEquals(0, pipeline.getStageCount(PyDevBuilderPipeline.STAGE_VISIT));
+
+        String metrics = pipeline.getMetricsStr();
+        assertTrue(metrics, metrics.startsWith("Full build of 0 resources (0 skipped) with 2 threads."));
+        assertTrue(metrics, metrics.indexOf("builder waiting: ") != -1);
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.builder;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jface.text.IDocument;
+import org.python.pydev.core.callbacks.ICallback0;
+import org.python.pydev.editor.codecompletion.revisited.javaintegration.AbstractWorkbenchTestCase;
+
+/**
+ * Sends real resources through the stages of the PyDevBuilderPipeline.
+ *
+ * @author Fabio
+ */
+public class PyDevBuilderPipelineTestWorkbench extends AbstractWorkbenchTestCase {
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(PyDevBuilderPipelineTestWorkbench.class.getName());
+
+        suite.addTestSuite(PyDevBuilderPipelineTestWorkbench.class);
+
+        if (suite.countTestCases() == 0) {
+            throw new Error("There are no test cases to run");
+        } else {
+            return suite;
+        }
+    }
+
+    /**
+     * Counts the resources it prepares (in the worker threads) and visits (in the builder thread).
+     */
+    public static class CountingVisitor extends PyDevBuilderVisitor {
+
+        private static final AtomicInteger prepared = new AtomicInteger();
+        private final List<IResource> visited = new ArrayList<IResource>();
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
+
+        @Override
+        public void prepareAddedResource(IResource resource, ICallback0<IDocument> document, IProgressMonitor monitor) {
+            assertNotNull(document.call());
+            prepared.incrementAndGet();
+        }
+
+        @Override
+        public void visitChangedResource(IResource resource, ICallback0<IDocument> document, IProgressMonitor monitor) {
+            visited.add(resource);
+        }
+
+        @Override
+        public void visitRemovedResource(IResource resource, ICallback0<IDocument> document, IProgressMonitor monitor) {
+        }
+    }
+
+    private List<IFile> created = new ArrayList<IFile>();
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (IFile file : created) {
+            file.delete(true, null);
+        }
+        super.tearDown();
+    }
+
+    private IFile createFile(IFile file, String contents) throws Exception {
+        file.create(new ByteArrayInputStream(contents.getBytes()), true, new NullProgressMonitor());
+        created.add(file);
+        return file;
+    }
+
+    public void testStages() throws Exception {
+        IFile mod2 = createFile(initFile.getParent().getFile(new Path("mod2.py")), "class Foo:\n    pass\n");
+        IFile mod3 = createFile(initFile.getParent().getFile(new Path("mod3.py")), "def bar():\n    return 1\n");
+        //not below the source folder: must be skipped.
+        IFile notInPythonpath = createFile(mod1.getProject().getFile(new Path("not_in_pythonpath.py")), "a = 1\n");
+
+        List<IFile> resources = new ArrayList<IFile>();
+        resources.add(mod1);
+        resources.add(mod2);
+        resources.add(notInPythonpath);
+        resources.add(mod3);
+
+        CountingVisitor visitor = new CountingVisitor();
+        List<PyDevBuilderVisitor> visitors = new ArrayList<PyDevBuilderVisitor>();
+        visitors.add(visitor);
+
+        CountingVisitor.prepared.set(0);
+        PyDevBuilderPipeline pipeline = new PyDevBuilderPipeline(resources, visitors, 2);
+        pipeline.run(new NullProgressMonitor(), 1);
+
+        assertSame(pipeline, PyDevBuilderPipeline.getLastFullBuild());
+        assertEquals(4, pipeline.getResourcesCount());
+        assertEquals(1, pipeline.getSkippedCount());
+        assertEquals(3, pipeline.getStageCount(PyDevBuilderPipeline.STAGE_LOAD));
+        assertEquals(3, pipeline.getStageCount(PyDevBuilderPipeline.STAGE_PARSE));
+        assertEquals(3, pipeline.getStageCount(PyDevBuilderPipeline.STAGE_PREPARE));
+        assertEquals(3, pipeline.getStageCount(PyDevBuilderPipeline.STAGE_VISIT));
+
+        //the visitor passed is used in the builder thread and its thread instances in the workers.
+        assertEquals(3, CountingVisitor.prepared.get());
+        assertEquals(3, visitor.visited.size());
+        assertFalse(visitor.visited.contains(notInPythonpath));
+
+        String metrics = pipeline.getMetricsStr();
+        assertTrue(metrics, metrics.startsWith("Full build of 4 resources (1 skipped) with 2 threads."));
+        assertTrue(metrics, metrics.indexOf("visit: ") != -1);
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.builder.pylint;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.aptana.shared_core.io.FileUtils;
+
+public class PyLintResultsCacheTest extends TestCase {
+
+    private File dir;
+
+    public static void main(String[] args) {
+        try {
+            junit.textui.TestRunner.run(PyLintResultsCacheTest.class);
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        dir = File.createTempFile("pylint_results_cache_test", "");
+        dir.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectoryTree(dir);
+        super.tearDown();
+    }
+
+    public void testCache() throws Exception {
+        PyLintResultsCache cache = new PyLintResultsCache(dir, 3);
+        String key = PyLintResultsCache.createKey("a = 10\n", "config");
+        assertEquals(key, PyLintResultsCache.createKey("a = 10\n", "config"));
+        assertFalse(key.equals(PyLintResultsCache.createKey("a = 10\n", "config2")));
+        assertFalse(key.equals(PyLintResultsCache.createKey("a = 20\n", "config")));
+
+        assertNull(cache.get(key));
+        cache.put(key, "W0611:  3: Unused import foo\n");
+        assertEquals("W0611:  3: Unused import foo\n", cache.get(key));
+
+        //a new instance (i.e.: after a restart) still has it
+        assertEquals("W0611:  3: Unused import foo\n", new PyLintResultsCache(dir, 3).get(key));
+
+        cache.clear();
+        assertNull(cache.get(key));
+    }
+
+    public void testRemoveExceeding() throws Exception {
+        PyLintResultsCache cache = new PyLintResultsCache(dir, 3);
+        for (int i = 0; i < 5; i++) {
+            cache.put("key" + i, "output" + i);
+            new File(dir, "key" + i).setLastModified(1000000000000L + i * 10000);
+        }
+        cache.removeExceeding();
+        assertNull(cache.get("key0"));
+        assertNull(cache.get("key1"));
+        assertEquals("output2", cache.get("key2"));
+        assertEquals("output4", cache.get("key4"));
+    }
+
+    public void testSplitOutputByModule() throws Exception {
+        String output = "" +
+                "************* Module pack.mod1\n" +
+                "W0611:  3: Unused import foo\n" +
+                "C0111:  1: Missing docstring\n" +
+                "************* Module mod2\r\n" +
+                "E0602:  5: Undefined variable 'bar'\r\n" +
+                "";
+        Map<String, String> split = PyLintRunner.splitOutputByModule(output);
+        assertEquals(2, split.size());
+        assertEquals("************* Module pack.mod1\n" +
+                "W0611:  3: Unused import foo\n" +
+                "C0111:  1: Missing docstring\n", split.get("mod1"));
+        assertEquals("************* Module mod2\n" +
+                "E0602:  5: Undefined variable 'bar'\n", split.get("mod2"));
+    }
+
+    public void testSourcesLastModified() throws Exception {
+        File pack = new File(dir, "pack");
+        pack.mkdirs();
+        File mod = new File(pack, "mod.py");
+        FileUtils.writeStrToFile("", mod);
+        File other = new File(pack, "other.txt");
+        FileUtils.writeStrToFile("", other);
+        pack.setLastModified(1000);
+        dir.setLastModified(1000);
+        mod.setLastModified(2000);
+        other.setLastModified(5000);
+
+        List<String> sourceFolders = new ArrayList<String>();
+        sourceFolders.add(dir.getAbsolutePath());
+        sourceFolders.add(new File(dir, "does_not_exist").getAbsolutePath());
+        //only python files are considered
+        assertEquals(2000, PyLintRunner.getSourcesLastModified(sourceFolders));
+
+        //a module changed in some sub folder
+        mod.setLastModified(3000);
+        assertEquals(3000, PyLintRunner.getSourcesLastModified(sourceFolders));
+
+        //a module removed (the folder is changed)
+        pack.setLastModified(4000);
+        assertEquals(4000, PyLintRunner.getSourcesLastModified(sourceFolders));
+    }
+
+    public void testFindPyLintRc() throws Exception {
+        File pack = new File(dir, "pack");
+        File sub = new File(pack, "sub");
+        sub.mkdirs();
+        FileUtils.writeStrToFile("", new File(pack, "__init__.py"));
+        FileUtils.writeStrToFile("", new File(sub, "__init__.py"));
+        File rootRc = new File(dir, "pylintrc");
+        FileUtils.writeStrToFile("[MESSAGES CONTROL]\n", rootRc);
+
+        List<String> args = new ArrayList<String>();
+        //found walking up the packages
+        assertEquals(rootRc, PyLintRunner.findPyLintRc(args, sub));
+
+        //the one in the folder has precedence
+        File subRc = new File(sub, ".pylintrc");
+        FileUtils.writeStrToFile("[MESSAGES CONTROL]\n", subRc);
+        assertEquals(subRc, PyLintRunner.findPyLintRc(args, sub));
+
+        //and an explicit --rcfile has precedence over all
+        File explicit = new File(dir, "explicit_rc");
+        args.add("--rcfile=" + explicit.getAbsolutePath());
+        assertEquals(explicit.getAbsolutePath(), PyLintRunner.findPyLintRc(args, sub).getAbsolutePath());
+    }
+}
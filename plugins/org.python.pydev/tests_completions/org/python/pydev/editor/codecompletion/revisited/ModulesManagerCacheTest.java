@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.editor.codecompletion.revisited;
+
+import junit.framework.TestCase;
+
+import org.python.pydev.core.ModulesKey;
+import org.python.pydev.editor.codecompletion.revisited.modules.AbstractModule;
+
+public class ModulesManagerCacheTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ModulesManagerCacheTest.class);
+    }
+
+    public void testHitsAndMisses() throws Exception {
+        SystemModulesManager manager = new SystemModulesManager(null);
+        manager.addModule(new ModulesKey("foo", null));
+        SystemModulesManager manager2 = new SystemModulesManager(null);
+
+        ModulesManagerCache cache = new ModulesManagerCache();
+        AbstractModule foo = cache.getObj(new ModulesKey("foo", null), manager);
+        assertNotNull(foo);
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        assertSame(foo, cache.getObj(new ModulesKey("foo", null), manager));
+        assertEquals(1, cache.getHits());
+
+        //Not in the other manager
+        assertNull(cache.getObj(new ModulesKey("foo", null), manager2));
+        assertNull(cache.getObj(new ModulesKey("bar", null), manager));
+        assertEquals(3, cache.getMisses());
+        assertEquals(1, cache.size());
+
+        cache.remove(new ModulesKey("foo", null), manager);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getEstimatedMemory());
+        assertEquals(0, cache.getEvictions());
+    }
+
+    public void testEviction() throws Exception {
+        SystemModulesManager manager = new SystemModulesManager(null);
+        ModulesManagerCache cache = new ModulesManagerCache(0);
+        for (int i = 0; i < 100; i++) {
+            ModulesKey key = new ModulesKey("mod" + i, null);
+            manager.addModule(key);
+            cache.add(key, AbstractModule.createEmptyModule(key), manager);
+        }
+        //Without memory, only the last module added is kept.
+        assertEquals(1, cache.size());
+        assertEquals(99, cache.getEvictions());
+
+        cache.setMaxMemoryInMB(10);
+        cache.clear();
+        for (int i = 0; i < 100; i++) {
+            assertNotNull(cache.getObj(new ModulesKey("mod" + i, null), manager));
+        }
+        assertEquals(100, cache.size());
+        assertTrue(cache.getEstimatedMemory() > 0);
+    }
+
+    public void testGlobalBudget() throws Exception {
+        SystemModulesManager manager = new SystemModulesManager(null);
+        ModulesManagerCache cache = new ModulesManagerCache(1);
+        int emptyModulesInBudget = 1024 * 1024 / 256; //each empty module is estimated in 256 bytes
+        for (int i = 0; i < emptyModulesInBudget + 1000; i++) {
+            ModulesKey key = new ModulesKey("mod" + i, null);
+            manager.addModule(key);
+            cache.add(key, AbstractModule.createEmptyModule(key), manager);
+        }
+        //The budget is for the whole cache (regardless of how the modules are distributed among the segments).
+        assertEquals(emptyModulesInBudget, cache.size());
+        assertEquals(1024 * 1024, cache.getEstimatedMemory());
+        assertEquals(1000, cache.getEvictions());
+
+        //the last one added is still there
+        long hits = cache.getHits();
+        cache.getObj(new ModulesKey("mod" + (emptyModulesInBudget + 999), null), manager);
+        assertEquals(hits + 1, cache.getHits());
+
+        //lowering the budget removes entries from all the segments
+        cache.setMaxMemoryInMB(0);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getEstimatedMemory());
+    }
+}
@@ -109,6 +109,32 @@ public class ModulesManagerTest extends CodeCompletionTestsBase {
 
     }
 
+    public void testLoadTextFormat() throws Exception {
+        //Files saved by older versions (as text) must still be loaded.
+        File f = new File("modules_manager_testing.temporary_dir");
+        try {
+            FileUtils.deleteDirectoryTree(f);
+        } catch (Exception e1) {
+            //ignore
+        }
+        f.mkdirs();
+        try {
+            FileUtils.writeStrToFile("MODULES_MANAGER_V2\n--COMMON--\n0=zip.zip\n--END-COMMON--\nMODULES_MANAGER_V2\n"
+                    + "bar|bar.py\nempty\nzip|0|path|1\n", new File(f, "modulesKeys"));
+            FileUtils.writeStrToFile("rara\nboo", new File(f, "pythonpath"));
+
+            SystemModulesManager loaded = new SystemModulesManager(null);
+            SystemModulesManager.loadFromFile(loaded, f);
+            assertEquals(3, loaded.getSize(false));
+            ModulesKey key = loaded.modulesKeys.get(new ModulesKey("zip", null));
+            assertEquals(new File("zip.zip"), key.file);
+            assertEquals("path", ((ModulesKeyForZip) key).zipModulePath);
+            assertEquals(new File("bar.py"), loaded.modulesKeys.get(new ModulesKey("bar", null)).file);
+        } finally {
+            FileUtils.deleteDirectoryTree(f);
+        }
+    }
+
     public void testRestoreContents() throws Exception {
         String contents = "" +
                 "A|A.py\n" +
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.editor.codecompletion.revisited.modules;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.python.pydev.ui.pythonpathconf.InterpreterInfo;
+
+import com.aptana.shared_core.io.FileUtils;
+import com.aptana.shared_core.structure.Tuple;
+
+public class CompiledModulesCacheTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(CompiledModulesCacheTest.class);
+    }
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("compiled_modules_cache_test", ".pyd");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    public void testCache() throws Exception {
+        InterpreterInfo info = new InterpreterInfo("2.6", "compiled_modules_cache_test_python", Arrays.asList("lib"));
+        CompiledModulesCache cache = CompiledModulesCache.get(info);
+        cache.clear();
+        List<String> pythonpath = Arrays.asList("lib", "project");
+        assertNull(cache.getImportCompletions("mod", pythonpath));
+
+        List<String[]> completions = new ArrayList<String[]>();
+        completions.add(new String[] { "tok", "doc", "", "1" });
+        cache.putImportCompletions("mod", pythonpath, new Tuple<String, List<String[]>>(file.getAbsolutePath(),
+                completions));
+        cache.putImportCompletions("builtin", pythonpath, new Tuple<String, List<String[]>>("None", completions));
+        cache.putLineCol("mod", "tok", pythonpath, new Tuple<String[], int[]>(new String[] { "None", "" },
+                new int[] { 1, 2 }));
+
+        //Errors are not cached.
+        cache.putImportCompletions("error", pythonpath, new Tuple<String, List<String[]>>(null,
+                new ArrayList<String[]>()));
+        assertNull(cache.getImportCompletions("error", pythonpath));
+
+        Tuple<String, List<String[]>> cached = cache.getImportCompletions("mod", pythonpath);
+        assertEquals(file.getAbsolutePath(), cached.o1);
+        assertEquals("tok", cached.o2.get(0)[0]);
+        assertEquals(2, cache.getLineCol("mod", "tok", pythonpath).o2[1]);
+
+        //Another project (with another pythonpath) doesn't get the results of the first
+        List<String> pythonpath2 = Arrays.asList("lib", "project2");
+        assertNull(cache.getImportCompletions("mod", pythonpath2));
+        assertNull(cache.getLineCol("mod", "tok", pythonpath2));
+
+        //The module file changed
+        FileUtils.writeStrToFile("changed", file);
+        file.setLastModified(file.lastModified() + 5000);
+        assertNull(cache.getImportCompletions("mod", pythonpath));
+        assertNotNull(cache.getImportCompletions("builtin", pythonpath));
+
+        //The interpreter changed
+        info = new InterpreterInfo("2.6", "compiled_modules_cache_test_python", Arrays.asList("lib", "lib2"));
+        cache = CompiledModulesCache.get(info);
+        assertNull(cache.getImportCompletions("builtin", pythonpath));
+        assertEquals(0, cache.size());
+    }
+
+    public void testMaxEntries() throws Exception {
+        int initial = CompiledModulesCache.MAX_ENTRIES;
+        CompiledModulesCache.MAX_ENTRIES = 2;
+        try {
+            InterpreterInfo info = new InterpreterInfo("2.6", "compiled_modules_cache_test_python2",
+                    Arrays.asList("lib"));
+            CompiledModulesCache cache = CompiledModulesCache.get(info);
+            cache.clear();
+            List<String> pythonpath = Arrays.asList("lib");
+            List<String[]> completions = new ArrayList<String[]>();
+            completions.add(new String[] { "tok", "doc", "", "1" });
+            Tuple<String, List<String[]>> tup = new Tuple<String, List<String[]>>("None", completions);
+
+            cache.putImportCompletions("mod1", pythonpath, tup);
+            cache.putImportCompletions("mod2", pythonpath, tup);
+            assertNotNull(cache.getImportCompletions("mod1", pythonpath)); //mod2 is now the least recently used
+            cache.putImportCompletions("mod3", pythonpath, tup);
+
+            assertEquals(2, cache.size());
+            assertNotNull(cache.getImportCompletions("mod1", pythonpath));
+            assertNull(cache.getImportCompletions("mod2", pythonpath));
+            assertNotNull(cache.getImportCompletions("mod3", pythonpath));
+        } finally {
+            CompiledModulesCache.MAX_ENTRIES = initial;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.editor.codecompletion.revisited.profile;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.python.pydev.editor.codecompletion.revisited.ModulesFoundStructure;
+import org.python.pydev.editor.codecompletion.revisited.PythonPathHelper;
+
+import com.aptana.shared_core.io.FileUtils;
+
+/**
+ * Lists a synthetic pythonpath with 100k modules (4 folders with 50 packages with 500 modules each) with a single
+ * thread and with the default number of threads.
+ */
+public class ModulesFoundStructureProfile extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ModulesFoundStructureProfile.class);
+    }
+
+    private static final int ROOTS = 4;
+    private static final int PACKAGES = 50;
+    private static final int MODULES = 500;
+
+    private File baseDir;
+    private List<String> pythonpath;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDir = new File(FileUtils.getFileAbsolutePath(new File("ModulesFoundStructureProfile.temporary_dir")));
+        try {
+            FileUtils.deleteDirectoryTree(baseDir);
+        } catch (Exception e) {
+            //ignore
+        }
+
+        pythonpath = new ArrayList<String>();
+        for (int i = 0; i < ROOTS; i++) {
+            File root = new File(baseDir, "site-packages" + i);
+            pythonpath.add(root.getAbsolutePath());
+            for (int j = 0; j < PACKAGES; j++) {
+                File pack = new File(root, "pack" + j);
+                pack.mkdirs();
+                new File(pack, "__init__.py").createNewFile();
+                for (int k = 1; k < MODULES; k++) {
+                    new File(pack, "mod" + k + ".py").createNewFile();
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectoryTree(baseDir);
+        super.tearDown();
+    }
+
+    /**
+     * Compares the listing with a single thread and with DISCOVERY_THREADS (uncomment the prints to see the times).
+     *
+     * -- note that the difference is much bigger in network drives (where the time is mostly spent waiting
+     * for the listing of each folder) than in a local disk with the files already in the filesystem cache.
+     */
+    public void testListing() throws Exception {
+        PythonPathHelper helper = new PythonPathHelper();
+        helper.setPythonPath(pythonpath);
+
+        int initialThreads = PythonPathHelper.DISCOVERY_THREADS;
+        try {
+            //warm up (so that both runs get the filesystem cache)
+            helper.getModulesFoundStructure(null);
+
+            PythonPathHelper.DISCOVERY_THREADS = 1;
+            @SuppressWarnings("unused")
+            long curr = System.currentTimeMillis();
+            ModulesFoundStructure sequential = helper.getModulesFoundStructure(null);
+            //uncomment line below to see the time for listing
+            //System.out.println(StringUtils.format("Single thread took: %s secs", (System.currentTimeMillis() - curr) / 1000.0));
+
+            PythonPathHelper.DISCOVERY_THREADS = initialThreads;
+            curr = System.currentTimeMillis();
+            ModulesFoundStructure parallel = helper.getModulesFoundStructure(null);
+            //uncomment line below to see the time for listing
+            //System.out.println(StringUtils.format("Default threads took: %s secs", (System.currentTimeMillis() - curr) / 1000.0));
+
+            assertEquals(ROOTS * PACKAGES * MODULES, sequential.regularModules.size());
+            assertEquals(sequential.regularModules, parallel.regularModules);
+            assertEquals("pack3.mod7", parallel.regularModules.get(new File(pythonpath.get(0), "pack3/mod7.py")));
+        } finally {
+            PythonPathHelper.DISCOVERY_THREADS = initialThreads;
+        }
+    }
+}
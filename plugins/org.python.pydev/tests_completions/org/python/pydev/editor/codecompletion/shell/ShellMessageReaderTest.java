@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.editor.codecompletion.shell;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import junit.framework.TestCase;
+
+public class ShellMessageReaderTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ShellMessageReaderTest.class);
+    }
+
+    /**
+     * Returns at most n bytes in each read (to simulate messages split among many reads).
+     */
+    private static final class ChunkedInputStream extends InputStream {
+
+        private final InputStream in;
+        private final int n;
+
+        private ChunkedInputStream(byte[] bytes, int n) {
+            this.in = new ByteArrayInputStream(bytes);
+            this.n = n;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return in.read(b, off, Math.min(len, n));
+        }
+    }
+
+    public void testReadMessages() throws Exception {
+        String contents = "@@PROCESSING_END@@@@PROCESSING:mod%2FEND@@\0\0@@COMPLETIONS(None,(a,b))END@@";
+        for (int chunk = 1; chunk < 10; chunk++) {
+            ShellMessageReader reader = new ShellMessageReader(new ChunkedInputStream(contents.getBytes("UTF-8"),
+                    chunk));
+            assertEquals("@@PROCESSING_", reader.readMessage());
+            assertEquals("@@PROCESSING:mod%2F", reader.readMessage());
+            assertEquals("@@COMPLETIONS(None,(a,b))", reader.readMessage());
+            assertNull(reader.readMessage());
+        }
+    }
+
+    public void testBigMessage() throws Exception {
+        StringBuffer buf = new StringBuffer("@@COMPLETIONS(None");
+        for (int i = 0; i < 5000; i++) {
+            buf.append(",(tok").append(i).append(",desc)");
+        }
+        String msg = buf.toString();
+        ShellMessageReader reader = new ShellMessageReader(new ChunkedInputStream(
+                (msg + "END@@" + msg + "END@@").getBytes("UTF-8"), 1000));
+        assertEquals(msg, reader.readMessage());
+        assertEquals(msg, reader.readMessage());
+        assertNull(reader.readMessage());
+    }
+
+    public void testIncompleteMessage() throws Exception {
+        ShellMessageReader reader = new ShellMessageReader(new ByteArrayInputStream("@@COMPLETIONS(None,END@"
+                .getBytes("UTF-8")));
+        assertNull(reader.readMessage());
+    }
+}
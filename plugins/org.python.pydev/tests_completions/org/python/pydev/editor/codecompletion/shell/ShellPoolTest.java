@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.editor.codecompletion.shell;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.CoreException;
+import org.python.pydev.core.IInterpreterInfo;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.editor.codecompletion.PyCodeCompletionPreferencesPage;
+
+public class ShellPoolTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ShellPoolTest.class);
+    }
+
+    private File serverFile;
+
+    /**
+     * A shell which doesn't start any process (and whose pending requests are set by the test).
+     */
+    private static final class ShellStub extends AbstractShell {
+
+        private int pending;
+
+        public ShellStub(File serverFile) throws IOException, CoreException {
+            super(serverFile);
+        }
+
+        @Override
+        protected ProcessCreationInfo createServerProcess(IInterpreterInfo interpreter, int pWrite, int pRead) {
+            throw new RuntimeException("Not expected to be called.");
+        }
+
+        @Override
+        public int getPendingRequests() {
+            return pending;
+        }
+
+        @Override
+        public synchronized void endIt() {
+        }
+    }
+
+    private static final class ShellPoolStub extends ShellPool {
+
+        private final File serverFile;
+        private int created;
+
+        public ShellPoolStub(File serverFile) {
+            super(null, AbstractShell.COMPLETION_SHELL);
+            this.serverFile = serverFile;
+        }
+
+        @Override
+        AbstractShell createShell(int relatedTo) throws IOException, CoreException {
+            synchronized (this) {
+                created++;
+            }
+            return new ShellStub(serverFile);
+        }
+
+        public synchronized int getCreated() {
+            return created;
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        serverFile = File.createTempFile("shell_pool_test", ".py");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        serverFile.delete();
+        super.tearDown();
+    }
+
+    private void waitForShellsCount(ShellPool pool, int count) throws InterruptedException {
+        for (int i = 0; i < 100 && pool.getShellsCount() < count; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(count, pool.getShellsCount());
+    }
+
+    public void testCheckoutReturnAndReplace() throws Exception {
+        assertEquals(2, PyCodeCompletionPreferencesPage.getCompletionShellsPoolSize());
+        ShellPoolStub pool = new ShellPoolStub(serverFile);
+
+        //the first request creates a shell in the current thread and pre-warms a spare.
+        ShellStub shell1 = (ShellStub) pool.getShell(IPythonNature.INTERPRETER_TYPE_PYTHON);
+        waitForShellsCount(pool, 2);
+        assertEquals(2, pool.getCreated());
+
+        //while the 1st is busy, the spare is used
+        shell1.pending = 1;
+        ShellStub shell2 = (ShellStub) pool.getShell(IPythonNature.INTERPRETER_TYPE_PYTHON);
+        assertNotSame(shell1, shell2);
+
+        //both busy: the pool is full, so, no other shell is created
+        shell2.pending = 2;
+        assertSame(shell1, pool.getShell(IPythonNature.INTERPRETER_TYPE_PYTHON));
+        Thread.sleep(100);
+        assertEquals(2, pool.getCreated());
+        assertEquals(2, pool.getShellsCount());
+
+        //the 2nd is returned
+        shell2.pending = 0;
+        assertSame(shell2, pool.getShell(IPythonNature.INTERPRETER_TYPE_PYTHON));
+
+        //replace the shells by an explicit one: no spare is created for it
+        ShellStub shell3 = new ShellStub(serverFile);
+        pool.setShell(shell3);
+        assertSame(shell3, pool.getShell(IPythonNature.INTERPRETER_TYPE_PYTHON));
+        shell3.pending = 1;
+        assertSame(shell3, pool.getShell(IPythonNature.INTERPRETER_TYPE_PYTHON));
+        assertEquals(1, pool.getShellsCount());
+        assertEquals(2, pool.getCreated());
+
+        //back to creating its own shells
+        pool.setShell(null);
+        ShellStub shell4 = (ShellStub) pool.getShell(IPythonNature.INTERPRETER_TYPE_PYTHON);
+        assertNotSame(shell3, shell4);
+        waitForShellsCount(pool, 2);
+        assertEquals(4, pool.getCreated());
+
+        pool.endShells(true);
+        assertEquals(0, pool.getShellsCount());
+    }
+}